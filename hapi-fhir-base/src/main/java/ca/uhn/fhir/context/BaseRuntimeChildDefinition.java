@@ -86,8 +86,15 @@ public abstract class BaseRuntimeChildDefinition {
 	public interface IAccessor {
 		List<IBase> getValues(IBase theTarget);
 
+		@SuppressWarnings("unchecked")
 		default <T extends IBase> Optional<T> getFirstValueOrNull(IBase theTarget) {
-			return (Optional<T>) getValues(theTarget).stream().findFirst();
+			// Avoids creating a stream, since this is called for every bundle entry and narrative.
+			// Like Stream#findFirst, this fails if the first value is null.
+			List<IBase> values = getValues(theTarget);
+			if (values.isEmpty()) {
+				return Optional.empty();
+			}
+			return Optional.of((T) values.get(0));
 		}
 	}
 
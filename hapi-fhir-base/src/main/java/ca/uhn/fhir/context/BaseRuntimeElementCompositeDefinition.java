@@ -35,8 +35,12 @@ import ca.uhn.fhir.model.base.composite.BaseContainedDt;
 import ca.uhn.fhir.model.base.composite.BaseNarrativeDt;
 import ca.uhn.fhir.model.base.composite.BaseResourceReferenceDt;
 import ca.uhn.fhir.model.primitive.BoundCodeDt;
+import ca.uhn.fhir.parser.CompositeEncodePlan;
 import ca.uhn.fhir.parser.DataFormatException;
+import ca.uhn.fhir.util.ICompiledTerserPath;
 import ca.uhn.fhir.util.ReflectionUtil;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.hl7.fhir.instance.model.api.IAnyResource;
 import org.hl7.fhir.instance.model.api.IBase;
 import org.hl7.fhir.instance.model.api.IBaseBackboneElement;
@@ -64,11 +68,20 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.function.Function;
 
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
 public abstract class BaseRuntimeElementCompositeDefinition<T extends IBase> extends BaseRuntimeElementDefinition<T> {
 
+	/**
+	 * The maximum number of compiled terser paths cached for a single type
+	 *
+	 * @see #getCompiledTerserPath(String, Function)
+	 * @since 7.6.0
+	 */
+	public static final int MAX_CACHED_TERSER_PATHS = 1000;
+
 	private static final org.slf4j.Logger ourLog =
 			org.slf4j.LoggerFactory.getLogger(BaseRuntimeElementCompositeDefinition.class);
 	private final FhirContext myContext;
@@ -79,6 +92,9 @@ public abstract class BaseRuntimeElementCompositeDefinition<T extends IBase> ext
 	private Map<String, BaseRuntimeChildDefinition> myNameToChild = new HashMap<>();
 	private List<ScannedField> myScannedFields = new ArrayList<>();
 	private volatile SealingStateEnum mySealed = SealingStateEnum.NOT_SEALED;
+	private volatile CompositeEncodePlan myEncodePlan;
+	private final Cache<String, ICompiledTerserPath> myCompiledTerserPaths =
+			CacheBuilder.newBuilder().maximumSize(MAX_CACHED_TERSER_PATHS).build();
 
 	@SuppressWarnings("unchecked")
 	public BaseRuntimeElementCompositeDefinition(
@@ -173,6 +189,48 @@ public abstract class BaseRuntimeElementCompositeDefinition<T extends IBase> ext
 		return myChildrenAndExtensions;
 	}
 
+	/**
+	 * Returns the precompiled plan used by the parsers to encode instances of this type. The
+	 * plan is created the first time it is requested and is then reused for the lifetime of
+	 * this definition.
+	 * <p>
+	 * This method is used internally by HAPI FHIR and is not intended to be used by client code.
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public CompositeEncodePlan getEncodePlan() {
+		CompositeEncodePlan retVal = myEncodePlan;
+		if (retVal == null) {
+			// Benign race: if two threads get here at the same time they will build equivalent plans
+			retVal = new CompositeEncodePlan(this);
+			myEncodePlan = retVal;
+		}
+		return retVal;
+	}
+
+	/**
+	 * Returns the compiled form of a {@link ca.uhn.fhir.util.FhirTerser} path which starts at
+	 * this type, using the given function to compile it if it has not been cached yet. This is
+	 * used internally by the terser, and is generally not useful to call directly.
+	 * <p>
+	 * At most {@link #MAX_CACHED_TERSER_PATHS} paths are cached for each type, so that callers
+	 * which build paths dynamically can not cause unbounded growth. Once that limit is reached,
+	 * the least recently used paths are evicted.
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public ICompiledTerserPath getCompiledTerserPath(
+			String thePath, Function<String, ICompiledTerserPath> theCompiler) {
+		ICompiledTerserPath retVal = myCompiledTerserPaths.getIfPresent(thePath);
+		if (retVal == null) {
+			retVal = theCompiler.apply(thePath);
+			myCompiledTerserPaths.put(thePath, retVal);
+		}
+		return retVal;
+	}
+
 	/**
 	 * Has this class been sealed
 	 */
@@ -31,6 +31,7 @@ import ca.uhn.fhir.model.api.IResource;
 import ca.uhn.fhir.model.api.annotation.ResourceDef;
 import ca.uhn.fhir.model.view.ViewGenerator;
 import ca.uhn.fhir.narrative.INarrativeGenerator;
+import ca.uhn.fhir.parser.CborParser;
 import ca.uhn.fhir.parser.DataFormatException;
 import ca.uhn.fhir.parser.IParser;
 import ca.uhn.fhir.parser.IParserErrorHandler;
@@ -59,8 +60,6 @@ import org.hl7.fhir.instance.model.api.IBaseBundle;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IPrimitiveType;
 
-import java.io.IOException;
-import java.io.InputStream;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
@@ -68,7 +67,6 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumMap;
-import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -76,7 +74,6 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.Properties;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -136,6 +133,7 @@ public class FhirContext {
 	private volatile Boolean myFormatJsonSupported;
 	private volatile Boolean myFormatNDJsonSupported;
 	private volatile Boolean myFormatRdfSupported;
+	private volatile Boolean myFormatCborSupported;
 	private IFhirValidatorFactory myFhirValidatorFactory = FhirValidator::new;
 
 	/**
@@ -639,20 +637,8 @@ public class FhirContext {
 
 	@Nonnull
 	private Set<String> buildResourceNames() {
-		Set<String> retVal = new HashSet<>();
-		Properties props = new Properties();
-		try (InputStream propFile = myVersion.getFhirVersionPropertiesFile()) {
-			props.load(propFile);
-		} catch (IOException e) {
-			throw new ConfigurationException(Msg.code(1685) + "Failed to load version properties file", e);
-		}
-		Enumeration<?> propNames = props.propertyNames();
-		while (propNames.hasMoreElements()) {
-			String next = (String) propNames.nextElement();
-			if (next.startsWith("resource.")) {
-				retVal.add(next.substring("resource.".length()).trim());
-			}
-		}
+		Set<String> retVal = new HashSet<>(
+				ModelScannerSnapshot.forVersion(myVersion.getVersion()).getResourceNames());
 		retVal.addAll(myCustomResourceNames);
 		return retVal;
 	}
@@ -824,6 +810,21 @@ public class FhirContext {
 		return retVal;
 	}
 
+	/**
+	 * @return Returns <code>true</code> if the CBOR serialization format is supported, based on the
+	 * available libraries on the classpath.
+	 *
+	 * @since 7.6.0
+	 */
+	public boolean isFormatCborSupported() {
+		Boolean retVal = myFormatCborSupported;
+		if (retVal == null) {
+			retVal = tryToInitParser(() -> newCborParser());
+			myFormatCborSupported = retVal;
+		}
+		return retVal;
+	}
+
 	public IVersionSpecificBundleFactory newBundleFactory() {
 		return myVersion.newBundleFactory(this);
 	}
@@ -914,6 +915,27 @@ public class FhirContext {
 		return new RDFParser(this, myParserErrorHandler, Lang.TURTLE);
 	}
 
+	/**
+	 * Create and return a new CBOR parser. CBOR is a binary encoding of the FHIR JSON structure, so
+	 * the returned parser must be used with methods which read and write bytes (e.g.
+	 * {@link IParser#encodeResourceToOutputStream(IBaseResource, java.io.OutputStream)}). This
+	 * parser requires the <code>jackson-dataformat-cbor</code> library to be on the classpath.
+	 *
+	 * <p>
+	 * Thread safety: <b>Parsers are not guaranteed to be thread safe</b>. Create a new parser instance for every thread
+	 * or every message being parsed/encoded.
+	 * </p>
+	 * <p>
+	 * Performance Note: <b>This method is cheap</b> to call, and may be called once for every message being processed
+	 * without incurring any performance penalty
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public CborParser newCborParser() {
+		return new CborParser(this, myParserErrorHandler);
+	}
+
 	/**
 	 * Instantiates a new client instance. This method requires an interface which is defined specifically for your use
 	 * cases to contain methods for each of the RESTful operations you wish to implement (e.g. "read ImagingStudy",
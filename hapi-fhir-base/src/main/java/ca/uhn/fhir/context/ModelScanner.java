@@ -24,7 +24,6 @@ import ca.uhn.fhir.i18n.Msg;
 import ca.uhn.fhir.model.api.BaseIdentifiableElement;
 import ca.uhn.fhir.model.api.ExtensionDt;
 import ca.uhn.fhir.model.api.IDatatype;
-import ca.uhn.fhir.model.api.IElement;
 import ca.uhn.fhir.model.api.IResource;
 import ca.uhn.fhir.model.api.IResourceBlock;
 import ca.uhn.fhir.model.api.IValueSetEnumBinder;
@@ -41,7 +40,6 @@ import ca.uhn.fhir.util.ReflectionUtil;
 import jakarta.annotation.Nonnull;
 import org.hl7.fhir.instance.model.api.IBase;
 import org.hl7.fhir.instance.model.api.IBaseBackboneElement;
-import org.hl7.fhir.instance.model.api.IBaseDatatype;
 import org.hl7.fhir.instance.model.api.IBaseDatatypeElement;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IBaseXhtml;
@@ -49,8 +47,6 @@ import org.hl7.fhir.instance.model.api.ICompositeType;
 import org.hl7.fhir.instance.model.api.IIdType;
 import org.hl7.fhir.instance.model.api.IPrimitiveType;
 
-import java.io.IOException;
-import java.io.InputStream;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.AnnotatedElement;
 import java.lang.reflect.Field;
@@ -66,7 +62,6 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Properties;
 import java.util.Set;
 
 import static org.apache.commons.lang3.StringUtils.isBlank;
@@ -562,77 +557,25 @@ class ModelScanner {
 			FhirVersionEnum theVersion,
 			Map<Class<? extends IBase>, BaseRuntimeElementDefinition<?>> theExistingElementDefinitions) {
 		Set<Class<? extends IBase>> retVal = new HashSet<>();
+		ModelScannerSnapshot snapshot = ModelScannerSnapshot.forVersion(theVersion);
 
-		try (InputStream str = theVersion.getVersionImplementation().getFhirVersionPropertiesFile()) {
-			Properties prop = new Properties();
-			prop.load(str);
-			for (Entry<Object, Object> nextEntry : prop.entrySet()) {
-				String nextKey = nextEntry.getKey().toString();
-				String nextValue = nextEntry.getValue().toString();
-
-				if (nextKey.startsWith("datatype.")) {
-					if (theDatatypes != null) {
-						try {
-							// Datatypes
-
-							@SuppressWarnings("unchecked")
-							Class<? extends IBase> dtType = (Class<? extends IBase>) Class.forName(nextValue);
-							if (theExistingElementDefinitions.containsKey(dtType)) {
-								continue;
-							}
-							retVal.add(dtType);
-
-							if (IElement.class.isAssignableFrom(dtType)) {
-								@SuppressWarnings("unchecked")
-								Class<? extends IElement> nextClass = (Class<? extends IElement>) dtType;
-								theDatatypes.add(nextClass);
-							} else if (IBaseDatatype.class.isAssignableFrom(dtType)) {
-								@SuppressWarnings("unchecked")
-								Class<? extends IBaseDatatype> nextClass = (Class<? extends IBaseDatatype>) dtType;
-								theDatatypes.add(nextClass);
-							} else {
-								ourLog.warn("Class is not assignable from " + IElement.class.getSimpleName() + " or "
-										+ IBaseDatatype.class.getSimpleName() + ": " + nextValue);
-								continue;
-							}
-
-						} catch (ClassNotFoundException e) {
-							throw new ConfigurationException(
-									Msg.code(1725) + "Unknown class[" + nextValue + "] for data type definition: "
-											+ nextKey.substring("datatype.".length()),
-									e);
-						}
-					}
-				} else if (nextKey.startsWith("resource.")) {
-					// Resources
-					String resName = nextKey.substring("resource.".length()).toLowerCase();
-					try {
-						@SuppressWarnings("unchecked")
-						Class<? extends IBaseResource> nextClass =
-								(Class<? extends IBaseResource>) Class.forName(nextValue);
-						if (theExistingElementDefinitions.containsKey(nextClass)) {
-							continue;
-						}
-						if (!IBaseResource.class.isAssignableFrom(nextClass)) {
-							throw new ConfigurationException(Msg.code(1726) + "Class is not assignable from "
-									+ IBaseResource.class.getSimpleName() + ": " + nextValue);
-						}
-
-						theResourceTypes.put(resName, nextClass);
-					} catch (ClassNotFoundException e) {
-						throw new ConfigurationException(
-								Msg.code(1727) + "Unknown class[" + nextValue + "] for resource definition: "
-										+ nextKey.substring("resource.".length()),
-								e);
-					}
-				} else {
-					throw new ConfigurationException(Msg.code(1728) + "Unexpected property in version property file: "
-							+ nextKey + "=" + nextValue);
+		if (theDatatypes != null) {
+			for (Class<? extends IBase> dtType : snapshot.getDatatypes()) {
+				if (theExistingElementDefinitions.containsKey(dtType)) {
+					continue;
+				}
+				retVal.add(dtType);
+				if (snapshot.isScannableDatatype(dtType)) {
+					theDatatypes.add(dtType);
 				}
 			}
-		} catch (IOException e) {
-			throw new ConfigurationException(Msg.code(1729) + "Failed to load model property file from classpath: "
-					+ "/ca/uhn/fhir/model/dstu/model.properties");
+		}
+
+		for (Entry<String, Class<? extends IBaseResource>> nextEntry :
+				snapshot.getResourceTypes().entrySet()) {
+			if (!theExistingElementDefinitions.containsKey(nextEntry.getValue())) {
+				theResourceTypes.put(nextEntry.getKey(), nextEntry.getValue());
+			}
 		}
 
 		return retVal;
@@ -0,0 +1,205 @@
+/*
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.context;
+
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.model.api.IElement;
+import org.hl7.fhir.instance.model.api.IBase;
+import org.hl7.fhir.instance.model.api.IBaseDatatype;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Snapshot of the structure classes declared in the version property file for a given
+ * FHIR version (see {@link ca.uhn.fhir.model.api.IFhirVersion#getFhirVersionPropertiesFile()}).
+ * <p>
+ * The property file was previously loaded, and every class listed in it was looked up and
+ * initialized, each time the {@link ModelScanner} ran. Because a {@link FhirContext} scans
+ * resource types lazily as they are first used, this happened many times over the life of
+ * every context. The snapshot is created once per version and shared by all contexts for that
+ * version. Classes are loaded without being initialized, so the static state of resource types
+ * which are never used (e.g. their search parameter constants) is never created.
+ * </p>
+ * <p>
+ * The snapshot only contains classes, not runtime definitions. Definitions hold references to
+ * the context which created them, so they are still built per context by the {@link ModelScanner}
+ * when each type is first needed.
+ * </p>
+ */
+final class ModelScannerSnapshot {
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(ModelScannerSnapshot.class);
+	private static final Map<FhirVersionEnum, ModelScannerSnapshot> ourSnapshots = new ConcurrentHashMap<>();
+
+	private final List<Class<? extends IBase>> myDatatypes;
+	private final Set<Class<? extends IBase>> myScannableDatatypes;
+	private final Map<String, Class<? extends IBaseResource>> myResourceTypes;
+	private final Set<String> myResourceNames;
+
+	private ModelScannerSnapshot(
+			List<Class<? extends IBase>> theDatatypes,
+			Set<Class<? extends IBase>> theScannableDatatypes,
+			Map<String, Class<? extends IBaseResource>> theResourceTypes,
+			Set<String> theResourceNames) {
+		myDatatypes = Collections.unmodifiableList(theDatatypes);
+		myScannableDatatypes = Collections.unmodifiableSet(theScannableDatatypes);
+		myResourceTypes = Collections.unmodifiableMap(theResourceTypes);
+		myResourceNames = Collections.unmodifiableSet(theResourceNames);
+	}
+
+	/**
+	 * All datatype classes declared by the version, in declaration order
+	 */
+	List<Class<? extends IBase>> getDatatypes() {
+		return myDatatypes;
+	}
+
+	/**
+	 * Is the given datatype one which should be scanned (i.e. is it a model element)?
+	 */
+	boolean isScannableDatatype(Class<? extends IBase> theDatatype) {
+		return myScannableDatatypes.contains(theDatatype);
+	}
+
+	/**
+	 * Resource classes declared by the version, keyed by lowercase resource name
+	 */
+	Map<String, Class<? extends IBaseResource>> getResourceTypes() {
+		return myResourceTypes;
+	}
+
+	/**
+	 * Resource names declared by the version, as they appear in the property file (e.g. <code>Patient</code>)
+	 */
+	Set<String> getResourceNames() {
+		return myResourceNames;
+	}
+
+	/**
+	 * Returns the snapshot for the given version, loading it if this is the first
+	 * time it has been requested
+	 *
+	 * @throws ConfigurationException If the version property file can not be loaded, or refers to invalid classes
+	 */
+	static ModelScannerSnapshot forVersion(FhirVersionEnum theVersion) {
+		ModelScannerSnapshot retVal = ourSnapshots.get(theVersion);
+		if (retVal == null) {
+			// Not using computeIfAbsent since loading classes while holding the map lock can deadlock
+			retVal = load(theVersion);
+			ModelScannerSnapshot existing = ourSnapshots.putIfAbsent(theVersion, retVal);
+			if (existing != null) {
+				retVal = existing;
+			}
+		}
+		return retVal;
+	}
+
+	/**
+	 * Discards all snapshots. This is only intended to be used by benchmarks which
+	 * need to measure a cold start.
+	 */
+	static void clearAll() {
+		ourSnapshots.clear();
+	}
+
+	private static ModelScannerSnapshot load(FhirVersionEnum theVersion) {
+		long start = System.currentTimeMillis();
+		ClassLoader classLoader = ModelScannerSnapshot.class.getClassLoader();
+		List<Class<? extends IBase>> datatypes = new ArrayList<>();
+		Set<Class<? extends IBase>> scannableDatatypes = new HashSet<>();
+		Map<String, Class<? extends IBaseResource>> resourceTypes = new LinkedHashMap<>();
+		Set<String> resourceNames = new HashSet<>();
+
+		try (InputStream str = theVersion.getVersionImplementation().getFhirVersionPropertiesFile()) {
+			Properties prop = new Properties();
+			prop.load(str);
+			for (Entry<Object, Object> nextEntry : prop.entrySet()) {
+				String nextKey = nextEntry.getKey().toString();
+				String nextValue = nextEntry.getValue().toString();
+
+				if (nextKey.startsWith("datatype.")) {
+					try {
+						@SuppressWarnings("unchecked")
+						Class<? extends IBase> dtType =
+								(Class<? extends IBase>) Class.forName(nextValue, false, classLoader);
+						datatypes.add(dtType);
+
+						if (IElement.class.isAssignableFrom(dtType) || IBaseDatatype.class.isAssignableFrom(dtType)) {
+							scannableDatatypes.add(dtType);
+						} else {
+							ourLog.warn("Class is not assignable from " + IElement.class.getSimpleName() + " or "
+									+ IBaseDatatype.class.getSimpleName() + ": " + nextValue);
+						}
+
+					} catch (ClassNotFoundException e) {
+						throw new ConfigurationException(
+								Msg.code(1725) + "Unknown class[" + nextValue + "] for data type definition: "
+										+ nextKey.substring("datatype.".length()),
+								e);
+					}
+				} else if (nextKey.startsWith("resource.")) {
+					String resName = nextKey.substring("resource.".length()).toLowerCase();
+					resourceNames.add(nextKey.substring("resource.".length()).trim());
+					try {
+						Class<?> nextClass = Class.forName(nextValue, false, classLoader);
+						if (!IBaseResource.class.isAssignableFrom(nextClass)) {
+							throw new ConfigurationException(Msg.code(1726) + "Class is not assignable from "
+									+ IBaseResource.class.getSimpleName() + ": " + nextValue);
+						}
+
+						@SuppressWarnings("unchecked")
+						Class<? extends IBaseResource> resourceClass = (Class<? extends IBaseResource>) nextClass;
+						resourceTypes.put(resName, resourceClass);
+					} catch (ClassNotFoundException e) {
+						throw new ConfigurationException(
+								Msg.code(1727) + "Unknown class[" + nextValue + "] for resource definition: "
+										+ nextKey.substring("resource.".length()),
+								e);
+					}
+				} else {
+					throw new ConfigurationException(Msg.code(1728) + "Unexpected property in version property file: "
+							+ nextKey + "=" + nextValue);
+				}
+			}
+		} catch (IOException e) {
+			throw new ConfigurationException(Msg.code(1729) + "Failed to load model property file from classpath: "
+					+ "/ca/uhn/fhir/model/dstu/model.properties");
+		}
+
+		ourLog.debug(
+				"Loaded {} datatypes and {} resource types for FHIR version {} in {}ms",
+				datatypes.size(),
+				resourceTypes.size(),
+				theVersion,
+				System.currentTimeMillis() - start);
+		return new ModelScannerSnapshot(datatypes, scannableDatatypes, resourceTypes, resourceNames);
+	}
+}
@@ -46,6 +46,7 @@ public class ParserOptions {
 	private boolean myAutoContainReferenceTargetsWithNoId = true;
 	private Set<String> myEncodeElementsForSummaryMode = null;
 	private Set<String> myDontEncodeElementsForSummaryMode = null;
+	private boolean myParseJsonUsingTokenStream = false;
 
 	/**
 	 * If set to {@literal true} (which is the default), contained resources may be specified by
@@ -324,4 +325,47 @@ public class ParserOptions {
 	public Set<String> getDontEncodeElementsForSummaryMode() {
 		return myDontEncodeElementsForSummaryMode;
 	}
+
+	/**
+	 * If set to <code>true</code> (default is <code>false</code>), the JSON parser will build the
+	 * resource model directly from the Jackson token stream instead of first reading the entire
+	 * document into a Jackson tree. This roughly halves the peak memory required to parse
+	 * large documents (e.g. big transaction Bundles or Binary resources) since the
+	 * content is never held in memory twice.
+	 * <p>
+	 * Elements are populated in the same way as the default tree-based parser, including
+	 * <code>resourceType</code> properties which do not appear first in a resource object
+	 * and primitive extensions supplied using <code>_element</code> properties. Note that
+	 * <code>_element</code> properties are only applied to complex (non-primitive) elements
+	 * if they appear before the element they apply to.
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public boolean isParseJsonUsingTokenStream() {
+		return myParseJsonUsingTokenStream;
+	}
+
+	/**
+	 * If set to <code>true</code> (default is <code>false</code>), the JSON parser will build the
+	 * resource model directly from the Jackson token stream instead of first reading the entire
+	 * document into a Jackson tree. This roughly halves the peak memory required to parse
+	 * large documents (e.g. big transaction Bundles or Binary resources) since the
+	 * content is never held in memory twice.
+	 * <p>
+	 * Elements are populated in the same way as the default tree-based parser, including
+	 * <code>resourceType</code> properties which do not appear first in a resource object
+	 * and primitive extensions supplied using <code>_element</code> properties. Note that
+	 * <code>_element</code> properties are only applied to complex (non-primitive) elements
+	 * if they appear before the element they apply to.
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	@SuppressWarnings({"UnusedReturnValue"})
+	@Nonnull
+	public ParserOptions setParseJsonUsingTokenStream(boolean theParseJsonUsingTokenStream) {
+		myParseJsonUsingTokenStream = theParseJsonUsingTokenStream;
+		return this;
+	}
 }
@@ -29,8 +29,6 @@ import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.context.FhirVersionEnum;
 import ca.uhn.fhir.context.ParserOptions;
 import ca.uhn.fhir.context.RuntimeChildChoiceDefinition;
-import ca.uhn.fhir.context.RuntimeChildContainedResources;
-import ca.uhn.fhir.context.RuntimeChildNarrativeDefinition;
 import ca.uhn.fhir.context.RuntimeResourceDefinition;
 import ca.uhn.fhir.i18n.Msg;
 import ca.uhn.fhir.model.api.IIdentifiableElement;
@@ -47,7 +45,7 @@ import ca.uhn.fhir.util.CollectionUtil;
 import ca.uhn.fhir.util.FhirTerser;
 import ca.uhn.fhir.util.MetaUtil;
 import ca.uhn.fhir.util.UrlUtil;
-import com.google.common.base.Charsets;
+import jakarta.annotation.Nonnull;
 import jakarta.annotation.Nullable;
 import org.apache.commons.io.output.StringBuilderWriter;
 import org.apache.commons.lang3.StringUtils;
@@ -82,6 +80,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import static org.apache.commons.lang3.StringUtils.isBlank;
@@ -154,24 +153,26 @@ public abstract class BaseParser implements IParser {
 		return theEncodeContext
 				.getCompositeChildrenCache()
 				.computeIfAbsent(new Key(elementDef, theContainedResource, theParent, theEncodeContext), (k) -> {
-					final List<BaseRuntimeChildDefinition> children = elementDef.getChildrenAndExtension();
+					final List<CompositeEncodePlan.ChildPlan> children =
+							elementDef.getEncodePlan().getChildren();
 					final List<CompositeChildElement> result = new ArrayList<>(children.size());
 
-					for (final BaseRuntimeChildDefinition child : children) {
-						CompositeChildElement myNext = new CompositeChildElement(theParent, child, theEncodeContext);
+					for (final CompositeEncodePlan.ChildPlan child : children) {
 
 						/*
 						 * There are lots of reasons we might skip encoding a particular child
 						 */
-						if (myNext.getDef().getElementName().equals("id")) {
+						if (child.isId()) {
 							continue;
-						} else if (!myNext.shouldBeEncoded(theContainedResource)) {
+						}
+						CompositeChildElement myNext = new CompositeChildElement(theParent, child, theEncodeContext);
+						if (!myNext.shouldBeEncoded(theContainedResource)) {
 							continue;
-						} else if (myNext.getDef() instanceof RuntimeChildNarrativeDefinition) {
+						} else if (child.isNarrative()) {
 							if (isSuppressNarratives() || isSummaryMode()) {
 								continue;
 							}
-						} else if (myNext.getDef() instanceof RuntimeChildContainedResources) {
+						} else if (child.isContainedResources()) {
 							if (theContainedResource) {
 								continue;
 							}
@@ -345,6 +346,25 @@ public abstract class BaseParser implements IParser {
 		return retVal;
 	}
 
+	/**
+	 * Determines the element name and definition to use when encoding the given value of the
+	 * given child. The result is resolved in advance for each of the child's datatypes by the
+	 * child's {@link CompositeEncodePlan.ChildPlan encode plan} (if it has one), since it depends
+	 * only on the child and the value's datatype.
+	 */
+	ChildNameAndDef getChildNameAndDef(CompositeChildElement theChildElement, IBase theValue) {
+		CompositeEncodePlan.ChildPlan plan = theChildElement.getPlan();
+		if (plan == null) {
+			return getChildNameAndDef(theChildElement.getDef(), theValue);
+		}
+
+		ChildNameAndDef retVal = plan.getChildNameAndDef(theValue.getClass());
+		if (retVal == null) {
+			retVal = getChildNameAndDef(plan.getDef(), theValue);
+		}
+		return retVal;
+	}
+
 	@SuppressWarnings("unchecked")
 	ChildNameAndDef getChildNameAndDef(BaseRuntimeChildDefinition theChild, IBase theValue) {
 		Class<? extends IBase> type = theValue.getClass();
@@ -622,18 +642,31 @@ public abstract class BaseParser implements IParser {
 
 	@Override
 	public IBaseResource parseResource(InputStream theInputStream) throws DataFormatException {
-		return parseResource(new InputStreamReader(theInputStream, Charsets.UTF_8));
+		return parseResource(null, theInputStream);
 	}
 
 	@Override
 	public <T extends IBaseResource> T parseResource(Class<T> theResourceType, InputStream theInputStream)
 			throws DataFormatException {
-		return parseResource(theResourceType, new InputStreamReader(theInputStream, Constants.CHARSET_UTF8));
+		return parseAndPostProcess(theResourceType, () -> doParseResource(theResourceType, theInputStream));
 	}
 
 	@Override
 	public <T extends IBaseResource> T parseResource(Class<T> theResourceType, Reader theReader)
 			throws DataFormatException {
+		return parseAndPostProcess(theResourceType, () -> doParseResource(theResourceType, theReader));
+	}
+
+	/**
+	 * Parses a resource from a stream. By default the stream is read as UTF-8 text using
+	 * {@link #doParseResource(Class, Reader)}, but parsers for binary encodings override this.
+	 */
+	protected <T extends IBaseResource> T doParseResource(Class<T> theResourceType, InputStream theInputStream)
+			throws DataFormatException {
+		return doParseResource(theResourceType, new InputStreamReader(theInputStream, Constants.CHARSET_UTF8));
+	}
+
+	private <T extends IBaseResource> T parseAndPostProcess(Class<T> theResourceType, Supplier<T> theParseFunction) {
 
 		/*
 		 * We do this so that the context can verify that the structure is for
@@ -644,7 +677,7 @@ public abstract class BaseParser implements IParser {
 		}
 
 		// Actually do the parse
-		T retVal = doParseResource(theResourceType, theReader);
+		T retVal = theParseFunction.get();
 
 		RuntimeResourceDefinition def = myContext.getResourceDefinition(retVal);
 		if ("Bundle".equals(def.getName())) {
@@ -1010,6 +1043,7 @@ public abstract class BaseParser implements IParser {
 
 		private final BaseRuntimeElementDefinition<?> myChildDef;
 		private final String myChildName;
+		private String myAlternateChildName;
 
 		public ChildNameAndDef(String theChildName, BaseRuntimeElementDefinition<?> theChildDef) {
 			myChildName = theChildName;
@@ -1023,6 +1057,19 @@ public abstract class BaseParser implements IParser {
 		public String getChildName() {
 			return myChildName;
 		}
+
+		/**
+		 * Returns the name used for the JSON <code>_element</code> property that holds
+		 * extensions and IDs for primitive values (e.g. "_birthDate")
+		 */
+		public String getAlternateChildName() {
+			String retVal = myAlternateChildName;
+			if (retVal == null) {
+				retVal = '_' + myChildName;
+				myAlternateChildName = retVal;
+			}
+			return retVal;
+		}
 	}
 
 	/**
@@ -1062,6 +1109,13 @@ public abstract class BaseParser implements IParser {
 					ParserUtil.determineApplicableResourceTypesForTerserPaths(myEncodeElementPaths);
 		}
 
+		/**
+		 * Are there any element filters (i.e. elements to encode or not to encode) in effect
+		 */
+		boolean hasElementFilters() {
+			return myEncodeElementPaths != null || myDontEncodeElementPaths != null;
+		}
+
 		private Map<Key, List<BaseParser.CompositeChildElement>> getCompositeChildrenCache() {
 			return myCompositeChildrenCache;
 		}
@@ -1069,6 +1123,7 @@ public abstract class BaseParser implements IParser {
 
 	protected class CompositeChildElement {
 		private final BaseRuntimeChildDefinition myDef;
+		private final CompositeEncodePlan.ChildPlan myPlan;
 		private final CompositeChildElement myParent;
 		private final RuntimeResourceDefinition myResDef;
 		private final EncodeContext myEncodeContext;
@@ -1077,7 +1132,23 @@ public abstract class BaseParser implements IParser {
 				CompositeChildElement theParent,
 				@Nullable BaseRuntimeChildDefinition theDef,
 				EncodeContext theEncodeContext) {
+			this(theParent, theDef, null, theEncodeContext);
+		}
+
+		CompositeChildElement(
+				CompositeChildElement theParent,
+				@Nonnull CompositeEncodePlan.ChildPlan thePlan,
+				EncodeContext theEncodeContext) {
+			this(theParent, thePlan.getDef(), thePlan, theEncodeContext);
+		}
+
+		private CompositeChildElement(
+				CompositeChildElement theParent,
+				@Nullable BaseRuntimeChildDefinition theDef,
+				@Nullable CompositeEncodePlan.ChildPlan thePlan,
+				EncodeContext theEncodeContext) {
 			myDef = theDef;
+			myPlan = thePlan;
 			myParent = theParent;
 			myResDef = null;
 			myEncodeContext = theEncodeContext;
@@ -1099,6 +1170,7 @@ public abstract class BaseParser implements IParser {
 		public CompositeChildElement(RuntimeResourceDefinition theResDef, EncodeContext theEncodeContext) {
 			myResDef = theResDef;
 			myDef = null;
+			myPlan = null;
 			myParent = null;
 			myEncodeContext = theEncodeContext;
 		}
@@ -1243,6 +1315,15 @@ public abstract class BaseParser implements IParser {
 			return myDef;
 		}
 
+		/**
+		 * Returns the precompiled encode plan for this child, or <code>null</code> if this element
+		 * was not created from a plan
+		 */
+		@Nullable
+		CompositeEncodePlan.ChildPlan getPlan() {
+			return myPlan;
+		}
+
 		public CompositeChildElement getParent() {
 			return myParent;
 		}
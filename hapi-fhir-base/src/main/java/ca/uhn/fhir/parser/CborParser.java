@@ -0,0 +1,192 @@
+/*
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.parser;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.parser.json.jackson.JacksonStructure;
+import ca.uhn.fhir.parser.json.jackson.JacksonWriter;
+import ca.uhn.fhir.rest.api.EncodingEnum;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.StreamReadConstraints;
+import com.fasterxml.jackson.core.StreamReadFeature;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.apache.commons.lang3.Validate;
+import org.hl7.fhir.instance.model.api.IBase;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+
+/**
+ * This class is the FHIR CBOR parser/encoder. Users should not interact with this class directly, but should use
+ * {@link FhirContext#newCborParser()} to get an instance.
+ * <p>
+ * The CBOR encoding is a binary (<a href="https://www.rfc-editor.org/rfc/rfc8949">RFC 8949</a>) representation
+ * of exactly the same structure as the FHIR JSON encoding, so all of the encoding options supported by the
+ * JSON parser are also supported here. Content is smaller than JSON text and faster to encode, but parsing
+ * is not measurably faster than parsing JSON, since building the resource model dominates the cost. Decimal
+ * values are encoded as CBOR decimal fractions, so their precision is preserved.
+ * </p>
+ * <p>
+ * Because the content is binary, resources must be encoded using
+ * {@link #encodeResourceToOutputStream(IBaseResource, OutputStream)} or {@link #encodeResourceToBytes(IBaseResource)}
+ * and parsed using {@link #parseResource(Class, InputStream)} or {@link #parseResource(Class, byte[])}. The
+ * methods which work with strings, readers and writers are not supported.
+ * </p>
+ * <p>
+ * This parser requires the <code>com.fasterxml.jackson.dataformat:jackson-dataformat-cbor</code> library,
+ * see {@link FhirContext#isFormatCborSupported()}.
+ * </p>
+ *
+ * @since 7.6.0
+ */
+public class CborParser extends ca.uhn.fhir.parser.JsonParser {
+
+	private static final CBORFactory ourCborFactory = createCborFactory();
+	private static final ObjectMapper ourCborObjectMapper = createCborObjectMapper(ourCborFactory);
+
+	/**
+	 * Do not use this constructor, the recommended way to obtain a new instance of the CBOR parser is to invoke
+	 * {@link FhirContext#newCborParser()}.
+	 */
+	public CborParser(FhirContext theContext, IParserErrorHandler theParserErrorHandler) {
+		super(theContext, theParserErrorHandler);
+	}
+
+	@Override
+	public EncodingEnum getEncoding() {
+		return EncodingEnum.CBOR;
+	}
+
+	/**
+	 * Pretty printing does not apply to a binary encoding, so this setting is ignored
+	 */
+	@Override
+	public IParser setPrettyPrint(boolean thePrettyPrint) {
+		return this;
+	}
+
+	@Override
+	public void encodeResourceToOutputStream(IBaseResource theResource, OutputStream theOutputStream)
+			throws IOException, DataFormatException {
+		Validate.notNull(theOutputStream, "theOutputStream can not be null");
+		try (JsonGenerator generator = ourCborFactory.createGenerator(theOutputStream)) {
+			encodeResourceToJsonLikeWriter(theResource, new JacksonWriter(generator));
+		}
+	}
+
+	/**
+	 * Encodes a resource as CBOR
+	 */
+	public byte[] encodeResourceToBytes(IBaseResource theResource) throws DataFormatException {
+		ByteArrayOutputStream retVal = new ByteArrayOutputStream();
+		try {
+			encodeResourceToOutputStream(theResource, retVal);
+		} catch (IOException e) {
+			throw new DataFormatException(Msg.code(2570) + e.getMessage(), e);
+		}
+		return retVal.toByteArray();
+	}
+
+	/**
+	 * Parses a resource from CBOR
+	 */
+	public <T extends IBaseResource> T parseResource(Class<T> theResourceType, byte[] theContent)
+			throws DataFormatException {
+		return parseResource(theResourceType, new ByteArrayInputStream(theContent));
+	}
+
+	@Override
+	protected <T extends IBaseResource> T doParseResource(Class<T> theResourceType, InputStream theInputStream) {
+		try {
+			if (getContext().getParserOptions().isParseJsonUsingTokenStream()) {
+				try (JsonParser parser = ourCborFactory.createParser(theInputStream)) {
+					return new JsonTokenStreamParser(this).parse(theResourceType, parser);
+				}
+			}
+
+			JsonNode root = ourCborObjectMapper.readTree(theInputStream);
+			if (root == null || root.isMissingNode()) {
+				throw new DataFormatException(Msg.code(2571) + "Did not find any content to parse");
+			}
+			if (!root.isObject()) {
+				throw new DataFormatException(Msg.code(2572)
+						+ "Content does not appear to be FHIR CBOR, root must be a map but was: " + root.getNodeType());
+			}
+			JacksonStructure jsonStructure = new JacksonStructure();
+			jsonStructure.setNativeObject((ObjectNode) root);
+			return doParseResource(theResourceType, jsonStructure);
+		} catch (IOException e) {
+			throw JacksonStructure.toDataFormatException(e);
+		}
+	}
+
+	@Override
+	public <T extends IBaseResource> T doParseResource(Class<T> theResourceType, Reader theReader) {
+		throw new DataFormatException(
+				Msg.code(2573) + "CBOR is a binary encoding and can not be parsed from a String or Reader");
+	}
+
+	@Override
+	protected void doEncodeResourceToWriter(IBaseResource theResource, Writer theWriter, EncodeContext theEncodeContext)
+			throws IOException {
+		throw new DataFormatException(
+				Msg.code(2574) + "CBOR is a binary encoding and can not be encoded to a String or Writer");
+	}
+
+	@Override
+	protected void doEncodeToWriter(IBase theElement, Writer theWriter, EncodeContext theEncodeContext)
+			throws IOException, DataFormatException {
+		throw new DataFormatException(
+				Msg.code(2575) + "CBOR is a binary encoding and can not be encoded to a String or Writer");
+	}
+
+	private static CBORFactory createCborFactory() {
+		return CBORFactory.builder()
+				.disable(StreamWriteFeature.AUTO_CLOSE_TARGET)
+				.disable(StreamReadFeature.AUTO_CLOSE_SOURCE)
+				.streamReadConstraints(StreamReadConstraints.builder()
+						.maxStringLength(Integer.MAX_VALUE)
+						.build())
+				.build();
+	}
+
+	private static ObjectMapper createCborObjectMapper(CBORFactory theFactory) {
+		ObjectMapper retVal = new CBORMapper(theFactory);
+		retVal = retVal.setNodeFactory(new JsonNodeFactory(true));
+		retVal = retVal.enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS);
+		retVal = retVal.enable(DeserializationFeature.FAIL_ON_TRAILING_TOKENS);
+		return retVal;
+	}
+}
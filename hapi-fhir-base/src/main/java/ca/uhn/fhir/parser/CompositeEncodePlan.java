@@ -0,0 +1,190 @@
+/*
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.parser;
+
+import ca.uhn.fhir.context.BaseRuntimeChildDatatypeDefinition;
+import ca.uhn.fhir.context.BaseRuntimeChildDefinition;
+import ca.uhn.fhir.context.BaseRuntimeElementCompositeDefinition;
+import ca.uhn.fhir.context.BaseRuntimeElementDefinition;
+import ca.uhn.fhir.context.RuntimeChildChoiceDefinition;
+import ca.uhn.fhir.context.RuntimeChildContainedResources;
+import ca.uhn.fhir.context.RuntimeChildDeclaredExtensionDefinition;
+import ca.uhn.fhir.context.RuntimeChildNarrativeDefinition;
+import ca.uhn.fhir.context.RuntimeChildResourceBlockDefinition;
+import ca.uhn.fhir.context.RuntimeChildResourceDefinition;
+import org.hl7.fhir.instance.model.api.IBase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A precompiled description of how instances of a single composite type are encoded
+ * by the parsers. This captures everything about the encoding of a type which does not
+ * depend on the specific instance being encoded or on the parser configuration (e.g.
+ * the child element names, whether each child repeats, whether it holds extensions, and
+ * the JSON/XML name to use for each choice type), so that this work is done once per type
+ * instead of once per element encoded.
+ * <p>
+ * Plans are created lazily and cached on the type definition itself. See
+ * {@link BaseRuntimeElementCompositeDefinition#getEncodePlan()}.
+ * </p>
+ * <p>
+ * This class is used internally by HAPI FHIR and is not intended to be used by client code.
+ * </p>
+ *
+ * @since 7.6.0
+ */
+public final class CompositeEncodePlan {
+
+	private final List<ChildPlan> myChildren;
+
+	public CompositeEncodePlan(BaseRuntimeElementCompositeDefinition<?> theDefinition) {
+		List<BaseRuntimeChildDefinition> children = theDefinition.getChildrenAndExtension();
+		List<ChildPlan> childPlans = new ArrayList<>(children.size());
+		for (BaseRuntimeChildDefinition next : children) {
+			childPlans.add(new ChildPlan(next));
+		}
+		myChildren = Collections.unmodifiableList(childPlans);
+	}
+
+	/**
+	 * Returns a plan for each child of the type, in the order that they should be encoded
+	 */
+	List<ChildPlan> getChildren() {
+		return myChildren;
+	}
+
+	static final class ChildPlan {
+
+		private final BaseRuntimeChildDefinition myDef;
+		private final boolean myId;
+		private final boolean myExtension;
+		private final boolean myNarrative;
+		private final boolean myContainedResources;
+		private final boolean myMultipleCardinality;
+		private final Map<Class<? extends IBase>, BaseParser.ChildNameAndDef> myChildNameAndDefByDatatype;
+		private final Class<? extends IBase> mySingleDatatype;
+		private final BaseParser.ChildNameAndDef mySingleChildNameAndDef;
+
+		private ChildPlan(BaseRuntimeChildDefinition theDef) {
+			myDef = theDef;
+
+			String elementName = theDef.getElementName();
+			myId = "id".equals(elementName);
+			myExtension = "extension".equals(elementName)
+					|| "modifierExtension".equals(elementName)
+					|| theDef instanceof RuntimeChildDeclaredExtensionDefinition;
+			myNarrative = theDef instanceof RuntimeChildNarrativeDefinition;
+			myContainedResources = theDef instanceof RuntimeChildContainedResources;
+
+			BaseRuntimeChildDefinition replacedParentDefinition = theDef.getReplacedParentDefinition();
+			myMultipleCardinality = theDef.isMultipleCardinality()
+					|| (replacedParentDefinition != null && replacedParentDefinition.isMultipleCardinality());
+
+			/*
+			 * The element name and definition for each datatype this child can hold are resolved
+			 * up front. Values of any other class (e.g. a user subclass of a model type, or the
+			 * concrete resource in a child typed as any resource) are resolved by the parser each time.
+			 */
+			List<Class<? extends IBase>> datatypes = new ArrayList<>();
+			if (theDef instanceof RuntimeChildChoiceDefinition) {
+				datatypes.addAll(((RuntimeChildChoiceDefinition) theDef).getValidChildTypes());
+			} else if (theDef instanceof BaseRuntimeChildDatatypeDefinition) {
+				datatypes.add(((BaseRuntimeChildDatatypeDefinition) theDef).getDatatype());
+			} else if (theDef instanceof RuntimeChildResourceBlockDefinition
+					|| theDef instanceof RuntimeChildResourceDefinition) {
+				BaseRuntimeElementDefinition<?> childDef = theDef.getChildByName(theDef.getElementName());
+				if (childDef != null) {
+					datatypes.add(childDef.getImplementingClass());
+				}
+			}
+			Map<Class<? extends IBase>, BaseParser.ChildNameAndDef> childNameAndDefs = new HashMap<>();
+			for (Class<? extends IBase> nextDatatype : datatypes) {
+				String childName = theDef.getChildNameByDatatype(nextDatatype);
+				BaseRuntimeElementDefinition<?> childDef = theDef.getChildElementDefinitionByDatatype(nextDatatype);
+				if (childName != null && childDef != null) {
+					childNameAndDefs.put(nextDatatype, new BaseParser.ChildNameAndDef(childName, childDef));
+				}
+			}
+			myChildNameAndDefByDatatype = Map.copyOf(childNameAndDefs);
+
+			// Most children have only one datatype, which can be matched without a map lookup
+			if (childNameAndDefs.size() == 1) {
+				Map.Entry<Class<? extends IBase>, BaseParser.ChildNameAndDef> entry =
+						childNameAndDefs.entrySet().iterator().next();
+				mySingleDatatype = entry.getKey();
+				mySingleChildNameAndDef = entry.getValue();
+			} else {
+				mySingleDatatype = null;
+				mySingleChildNameAndDef = null;
+			}
+		}
+
+		BaseRuntimeChildDefinition getDef() {
+			return myDef;
+		}
+
+		/**
+		 * Is this the element ID child (which is encoded separately from the other children)
+		 */
+		boolean isId() {
+			return myId;
+		}
+
+		/**
+		 * Does this child hold extensions (either undeclared <code>extension</code>/<code>modifierExtension</code>
+		 * or a declared extension)
+		 */
+		boolean isExtension() {
+			return myExtension;
+		}
+
+		boolean isNarrative() {
+			return myNarrative;
+		}
+
+		boolean isContainedResources() {
+			return myContainedResources;
+		}
+
+		/**
+		 * Should values for this child be encoded as a repeating element (i.e. a JSON array). This
+		 * is true if either this child, or the child it replaces in a parent type, can repeat.
+		 */
+		boolean isMultipleCardinality() {
+			return myMultipleCardinality;
+		}
+
+		/**
+		 * Returns the name and definition to use when encoding a value of the given datatype,
+		 * or <code>null</code> if the datatype is not one of the datatypes declared for this
+		 * child (e.g. a user subclass of a model type)
+		 */
+		BaseParser.ChildNameAndDef getChildNameAndDef(Class<? extends IBase> theDatatype) {
+			if (theDatatype == mySingleDatatype) {
+				return mySingleChildNameAndDef;
+			}
+			return myChildNameAndDefByDatatype.get(theDatatype);
+		}
+	}
+}
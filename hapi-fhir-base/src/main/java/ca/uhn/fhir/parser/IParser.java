@@ -34,8 +34,11 @@ import org.hl7.fhir.instance.model.api.IIdType;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
@@ -68,6 +71,23 @@ public interface IParser {
 	 */
 	void encodeResourceToWriter(IBaseResource theResource, Writer theWriter) throws IOException, DataFormatException;
 
+	/**
+	 * Encodes a resource using the parser's given encoding format. Text encodings are written using
+	 * the UTF-8 charset. This method must be used for {@link EncodingEnum#isBinary() binary} encodings,
+	 * which can not be written to a string or a writer.
+	 *
+	 * @param theResource     The resource to encode. Must not be null.
+	 * @param theOutputStream The stream to write to. Note that the stream will not be closed by the parser upon completion.
+	 * @throws DataFormatException If any invalid elements within the contents to be encoded prevent successful encoding.
+	 * @since 7.6.0
+	 */
+	default void encodeResourceToOutputStream(IBaseResource theResource, OutputStream theOutputStream)
+			throws IOException, DataFormatException {
+		Writer writer = new OutputStreamWriter(theOutputStream, StandardCharsets.UTF_8);
+		encodeResourceToWriter(theResource, writer);
+		writer.flush();
+	}
+
 	/**
 	 * Encodes any FHIR element to a string.
 	 * If a {@link IBaseResource resource object} is passed in, the resource will be encoded using standard FHIR
@@ -296,6 +316,34 @@ public interface IParser {
 	 */
 	IBaseResource parseResource(String theMessageString) throws ConfigurationException, DataFormatException;
 
+	/**
+	 * Returns a lazily parsed resource which holds on to the raw content and only parses it
+	 * when it is first needed. This is useful for code which often only needs a few elements
+	 * of a large resource, or which forwards resources without looking at them.
+	 *
+	 * @param theResourceType The resource type to use. This can be used to explicitly specify a class which extends a built-in type
+	 *                        (e.g. a custom type extending the default Patient class)
+	 * @param theString       The string to parse
+	 * @see LazyParsedResource
+	 * @since 7.6.0
+	 */
+	default <T extends IBaseResource> LazyParsedResource<T> parseResourceLazily(
+			Class<T> theResourceType, String theString) {
+		return new LazyParsedResource<>(this, theResourceType, theString);
+	}
+
+	/**
+	 * Returns a lazily parsed resource which holds on to the raw content and only parses it
+	 * when it is first needed. The resource type is determined from the content.
+	 *
+	 * @param theString The string to parse
+	 * @see LazyParsedResource
+	 * @since 7.6.0
+	 */
+	default LazyParsedResource<IBaseResource> parseResourceLazily(String theString) {
+		return new LazyParsedResource<>(this, null, theString);
+	}
+
 	/**
 	 * If provided, specifies the elements which should NOT be encoded. Valid values for this
 	 * field would include:
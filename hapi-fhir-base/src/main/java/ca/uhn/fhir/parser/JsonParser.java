@@ -26,7 +26,6 @@ import ca.uhn.fhir.context.BaseRuntimeElementDefinition.ChildTypeEnum;
 import ca.uhn.fhir.context.ConfigurationException;
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.context.FhirVersionEnum;
-import ca.uhn.fhir.context.RuntimeChildContainedResources;
 import ca.uhn.fhir.context.RuntimeChildDeclaredExtensionDefinition;
 import ca.uhn.fhir.context.RuntimeChildNarrativeDefinition;
 import ca.uhn.fhir.context.RuntimeChildUndeclaredExtensionDefinition;
@@ -52,11 +51,16 @@ import ca.uhn.fhir.parser.json.BaseJsonLikeValue.ValueType;
 import ca.uhn.fhir.parser.json.BaseJsonLikeWriter;
 import ca.uhn.fhir.parser.json.JsonLikeStructure;
 import ca.uhn.fhir.parser.json.jackson.JacksonStructure;
+import ca.uhn.fhir.parser.json.jackson.JacksonWriter;
+import ca.uhn.fhir.rest.api.Constants;
 import ca.uhn.fhir.rest.api.EncodingEnum;
 import ca.uhn.fhir.util.ElementUtil;
+import com.fasterxml.jackson.core.JsonToken;
+import jakarta.annotation.Nullable;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 import org.apache.commons.text.WordUtils;
+import org.hl7.fhir.instance.model.api.IAnyResource;
 import org.hl7.fhir.instance.model.api.IBase;
 import org.hl7.fhir.instance.model.api.IBaseBooleanDatatype;
 import org.hl7.fhir.instance.model.api.IBaseDecimalDatatype;
@@ -72,6 +76,7 @@ import org.hl7.fhir.instance.model.api.IPrimitiveType;
 
 import java.io.IOException;
 import java.io.Reader;
+import java.io.StringReader;
 import java.io.Writer;
 import java.math.BigDecimal;
 import java.util.ArrayList;
@@ -236,6 +241,10 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 
 	@Override
 	public <T extends IBaseResource> T doParseResource(Class<T> theResourceType, Reader theReader) {
+		if (getContext().getParserOptions().isParseJsonUsingTokenStream()) {
+			return new JsonTokenStreamParser(this).parse(theResourceType, theReader);
+		}
+
 		JsonLikeStructure jsonStructure = new JacksonStructure();
 		jsonStructure.load(theReader);
 
@@ -451,8 +460,32 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 			CompositeChildElement theParent,
 			EncodeContext theEncodeContext)
 			throws IOException {
+		encodeCompositeElementChildrenToStreamWriter(
+				theResDef,
+				theResource,
+				theElement,
+				theEventWriter,
+				theContainedResource,
+				theParent,
+				false,
+				theEncodeContext);
+	}
 
-		{
+	/**
+	 * @param theMetaOnly If <code>true</code>, only the <code>meta</code> child of the element is encoded
+	 */
+	private void encodeCompositeElementChildrenToStreamWriter(
+			RuntimeResourceDefinition theResDef,
+			IBaseResource theResource,
+			IBase theElement,
+			BaseJsonLikeWriter theEventWriter,
+			boolean theContainedResource,
+			CompositeChildElement theParent,
+			boolean theMetaOnly,
+			EncodeContext theEncodeContext)
+			throws IOException {
+
+		if (!theMetaOnly) {
 			String elementId = getCompositeElementId(theElement);
 			if (isNotBlank(elementId)) {
 				write(theEventWriter, "id", elementId);
@@ -465,10 +498,13 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 		for (CompositeChildElement nextChildElem : compositeChildElements) {
 
 			BaseRuntimeChildDefinition nextChild = nextChildElem.getDef();
+			CompositeEncodePlan.ChildPlan nextChildPlan = nextChildElem.getPlan();
 
-			if (nextChildElem.getDef().getElementName().equals("extension")
-					|| nextChildElem.getDef().getElementName().equals("modifierExtension")
-					|| nextChild instanceof RuntimeChildDeclaredExtensionDefinition) {
+			if (theMetaOnly && !"meta".equals(nextChild.getElementName())) {
+				continue;
+			}
+
+			if (nextChildPlan.isExtension()) {
 				if (!haveWrittenExtensions) {
 					extractAndWriteExtensionsAsDirectChild(
 							theElement,
@@ -485,7 +521,7 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 				continue;
 			}
 
-			if (nextChild instanceof RuntimeChildNarrativeDefinition) {
+			if (nextChildPlan.isNarrative()) {
 				INarrativeGenerator gen = getContext().getNarrativeGenerator();
 				if (gen != null) {
 					INarrative narr;
@@ -517,7 +553,7 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 						}
 					}
 				}
-			} else if (nextChild instanceof RuntimeChildContainedResources) {
+			} else if (nextChildPlan.isContainedResources()) {
 				String childName = nextChild.getValidChildNames().iterator().next();
 				BaseRuntimeElementDefinition<?> child = nextChild.getChildByName(childName);
 				encodeChildElementToStreamWriter(
@@ -542,6 +578,7 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 			}
 
 			String currentChildName = null;
+			String currentAlternateChildName = null;
 			boolean inArray = false;
 
 			ArrayList<ArrayList<HeldExtension>> extensions = new ArrayList<>(0);
@@ -562,7 +599,7 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 					}
 				}
 
-				BaseParser.ChildNameAndDef childNameAndDef = super.getChildNameAndDef(nextChild, nextValue);
+				BaseParser.ChildNameAndDef childNameAndDef = super.getChildNameAndDef(nextChildElem, nextValue);
 				if (childNameAndDef == null) {
 					continue;
 				}
@@ -659,9 +696,7 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 					if (inArray) {
 						theEventWriter.endArray();
 					}
-					BaseRuntimeChildDefinition replacedParentDefinition = nextChild.getReplacedParentDefinition();
-					if (nextChild.isMultipleCardinality()
-							|| (replacedParentDefinition != null && replacedParentDefinition.isMultipleCardinality())) {
+					if (nextChildPlan.isMultipleCardinality()) {
 						beginArray(theEventWriter, nextChildSpecificName);
 						inArray = true;
 						encodeChildElementToStreamWriter(
@@ -689,6 +724,7 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 								theEncodeContext);
 					}
 					currentChildName = nextChildSpecificName;
+					currentAlternateChildName = childNameAndDef.getAlternateChildName();
 				} else {
 					encodeChildElementToStreamWriter(
 							theResDef,
@@ -716,9 +752,9 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 					|| (!comments.isEmpty() && isSupportsFhirComment())) {
 				if (inArray) {
 					// If this is a repeatable field, the extensions go in an array too
-					beginArray(theEventWriter, '_' + currentChildName);
+					beginArray(theEventWriter, currentAlternateChildName);
 				} else {
-					beginObject(theEventWriter, '_' + currentChildName);
+					beginObject(theEventWriter, currentAlternateChildName);
 				}
 
 				for (int i = 0; i < valueIdx; i++) {
@@ -938,18 +974,102 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 			parseMetaForDSTU2(theResDef, theResource, theEventWriter, theContainedResource, theEncodeContext, resDef);
 		}
 
-		encodeCompositeElementToStreamWriter(
-				theResDef,
-				theResource,
-				theResource,
-				theEventWriter,
-				theContainedResource,
-				new CompositeChildElement(resDef, theEncodeContext),
-				theEncodeContext);
+		String passThroughMembers =
+				getPassThroughObjectMembers(theResource, theEventWriter, theContainedResource, theEncodeContext);
+		if (passThroughMembers != null) {
+			encodeCompositeElementChildrenToStreamWriter(
+					theResDef,
+					theResource,
+					theResource,
+					theEventWriter,
+					false,
+					new CompositeChildElement(resDef, theEncodeContext),
+					true,
+					theEncodeContext);
+			if (!passThroughMembers.isEmpty()) {
+				((JacksonWriter) theEventWriter).writeRawObjectMembers(passThroughMembers);
+			}
+		} else {
+			encodeCompositeElementToStreamWriter(
+					theResDef,
+					theResource,
+					theResource,
+					theEventWriter,
+					theContainedResource,
+					new CompositeChildElement(resDef, theEncodeContext),
+					theEncodeContext);
+		}
 
 		theEventWriter.endObject();
 	}
 
+	/**
+	 * If the resource carries the JSON text it was parsed from (see {@link Constants#RESOURCE_PASS_THROUGH_JSON})
+	 * and nothing about the current encoding configuration could cause the output to differ from that text,
+	 * returns the members of that text which follow <code>resourceType</code>, <code>id</code> and <code>meta</code>
+	 * so that they can be written as-is. The ID and meta are always encoded from the resource, since these are
+	 * populated separately from the stored text. Returns <code>null</code> if the resource must be encoded normally.
+	 */
+	@Nullable
+	private String getPassThroughObjectMembers(
+			IBaseResource theResource,
+			BaseJsonLikeWriter theEventWriter,
+			boolean theContainedResource,
+			EncodeContext theEncodeContext) {
+		if (theContainedResource
+				|| !(theResource instanceof IAnyResource)
+				|| !(theEventWriter instanceof JacksonWriter)
+				|| !((JacksonWriter) theEventWriter).isRawOutputSupported()
+				|| theEventWriter.isPrettyPrint()) {
+			return null;
+		}
+
+		Object passThroughJson = theResource.getUserData(Constants.RESOURCE_PASS_THROUGH_JSON);
+		if (!(passThroughJson instanceof String)) {
+			return null;
+		}
+
+		if (isSummaryMode()
+				|| isSuppressNarratives()
+				|| theEncodeContext.hasElementFilters()
+				|| getStripVersionsFromReferences() != null
+				|| (getDontStripVersionsFromReferencesAtPaths() != null
+						&& !getDontStripVersionsFromReferencesAtPaths().isEmpty())
+				|| getContext().getNarrativeGenerator() != null) {
+			return null;
+		}
+
+		String json = (String) passThroughJson;
+		try (com.fasterxml.jackson.core.JsonParser parser = JacksonStructure.createJsonParser(new StringReader(json))) {
+			if (parser.nextToken() != JsonToken.START_OBJECT) {
+				return null;
+			}
+
+			/*
+			 * The stored text is produced by this parser, so resourceType, id and meta (if
+			 * present) always come before any other element
+			 */
+			JsonToken token;
+			while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+				String name = parser.currentName();
+				if (!"resourceType".equals(name) && !"id".equals(name) && !"_id".equals(name) && !"meta".equals(name)) {
+					int start = (int) parser.currentTokenLocation().getCharOffset();
+					int end = json.lastIndexOf('}');
+					if (start < 0 || end < start) {
+						return null;
+					}
+					return json.substring(start, end).trim();
+				}
+				parser.nextToken();
+				parser.skipChildren();
+			}
+			return token == JsonToken.END_OBJECT ? "" : null;
+		} catch (IOException e) {
+			ourLog.debug("Failed to read pass-through JSON for resource {}", theResource.getIdElement(), e);
+			return null;
+		}
+	}
+
 	private void parseMetaForDSTU2(
 			RuntimeResourceDefinition theResDef,
 			IBaseResource theResource,
@@ -0,0 +1,633 @@
+/*
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.parser;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.FhirVersionEnum;
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.parser.json.BaseJsonLikeValue.ScalarType;
+import ca.uhn.fhir.parser.json.BaseJsonLikeValue.ValueType;
+import ca.uhn.fhir.parser.json.jackson.JacksonStructure;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.StreamReadConstraints;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+/**
+ * Parses FHIR JSON by driving a {@link ParserState} directly from a Jackson token
+ * stream, without ever building a Jackson tree for the document. This is used by
+ * {@link ca.uhn.fhir.parser.JsonParser} when
+ * {@link ca.uhn.fhir.context.ParserOptions#isParseJsonUsingTokenStream()} is enabled.
+ * <p>
+ * Two features of FHIR JSON require lookahead, and these are handled by buffering only
+ * the smallest amount of content possible:
+ * </p>
+ * <ul>
+ *    <li>
+ *       A resource object can not be started until its <code>resourceType</code> is known, and an
+ *       extension can not be started until its <code>url</code> is known. Any properties appearing
+ *       before these are held in a {@link TokenBuffer} and replayed once the discriminator is found.
+ *    </li>
+ *    <li>
+ *       Primitive values may have a matching <code>_element</code> property anywhere in the same
+ *       object. Primitive values are therefore held until the end of the enclosing object, and
+ *       <code>_element</code> values are buffered until they can be paired.
+ *    </li>
+ * </ul>
+ * <p>
+ * Instances are not thread safe, and should be used for a single parse only.
+ * </p>
+ */
+class JsonTokenStreamParser {
+
+	private final ca.uhn.fhir.parser.JsonParser myParser;
+	private final FhirContext myContext;
+	private final IParserErrorHandler myErrorHandler;
+	private final boolean mySupportsFhirComments;
+
+	JsonTokenStreamParser(ca.uhn.fhir.parser.JsonParser theParser) {
+		myParser = theParser;
+		myContext = theParser.getContext();
+		myErrorHandler = theParser.getErrorHandler();
+		mySupportsFhirComments = !myContext.getVersion().getVersion().isNewerThan(FhirVersionEnum.DSTU2_1);
+	}
+
+	<T extends IBaseResource> T parse(Class<T> theResourceType, Reader theReader) {
+		try (JsonParser jsonParser = JacksonStructure.createJsonParser(theReader)) {
+			return parse(theResourceType, jsonParser);
+		} catch (IOException e) {
+			throw JacksonStructure.toDataFormatException(e);
+		}
+	}
+
+	/**
+	 * Parses a resource from the given token stream, which may be for any format supported
+	 * by Jackson (e.g. CBOR). The caller is responsible for closing the stream.
+	 */
+	<T extends IBaseResource> T parse(Class<T> theResourceType, JsonParser theJsonParser) {
+		ParserState<T> state =
+				ParserState.getPreResourceInstance(myParser, theResourceType, myContext, true, myErrorHandler);
+
+		try {
+			JsonToken first = theJsonParser.nextToken();
+			if (first == null) {
+				throw new DataFormatException(Msg.code(2554) + "Did not find any content to parse");
+			}
+			if (first != JsonToken.START_OBJECT) {
+				throw new DataFormatException(Msg.code(2555)
+						+ "Content does not appear to be FHIR JSON, first non-whitespace character was: '"
+						+ theJsonParser.getText().charAt(0) + "' (must be '{')");
+			}
+
+			parseResourceObject(theJsonParser, state, true);
+			state.endingElement();
+
+			if (theJsonParser.nextToken() != null) {
+				throw new DataFormatException(Msg.code(2556)
+						+ "Failed to parse JSON encoded FHIR content: Trailing token (of type "
+						+ theJsonParser.currentToken() + ") found after value");
+			}
+		} catch (IOException e) {
+			throw JacksonStructure.toDataFormatException(e);
+		}
+
+		return state.getObject();
+	}
+
+	/**
+	 * Parses a JSON object representing a resource. The parser must be positioned on the
+	 * {@link JsonToken#START_OBJECT} token, and will be positioned on the matching
+	 * {@link JsonToken#END_OBJECT} token when this method returns.
+	 */
+	private void parseResourceObject(JsonParser theJsonParser, ParserState<?> theState, boolean theTopLevel)
+			throws IOException {
+		TokenBuffer prefix = null;
+		String resourceType = null;
+		while (theJsonParser.nextToken() == JsonToken.FIELD_NAME) {
+			if ("resourceType".equals(theJsonParser.currentName())) {
+				JsonToken valueToken = theJsonParser.nextToken();
+				if (valueToken == JsonToken.VALUE_STRING) {
+					resourceType = theJsonParser.getText();
+				} else {
+					theJsonParser.skipChildren();
+				}
+				break;
+			}
+			if (prefix == null) {
+				prefix = newTokenBuffer(theJsonParser);
+				prefix.writeStartObject();
+			}
+			prefix.copyCurrentStructure(theJsonParser);
+		}
+
+		if (isBlank(resourceType)) {
+			if (theTopLevel) {
+				throw new DataFormatException(
+						Msg.code(2557) + "Invalid JSON content detected, missing required element: 'resourceType'");
+			}
+			throw new DataFormatException(Msg.code(2558)
+					+ "Missing required element 'resourceType' from JSON resource object, unable to parse");
+		}
+
+		theState.enteringNewElement(null, resourceType);
+		ObjectFrame frame = new ObjectFrame();
+		if (prefix != null) {
+			prefix.writeEndObject();
+			parseBufferedFields(prefix, theState, frame, false);
+		}
+		if (theJsonParser.currentToken() != JsonToken.END_OBJECT) {
+			parseFields(theJsonParser, theState, frame, false);
+		}
+		frame.flush(theState);
+		theState.endingElement();
+	}
+
+	/**
+	 * Parses a JSON array of extension objects. The parser must be positioned on the
+	 * {@link JsonToken#START_ARRAY} token, and will be positioned on the matching
+	 * {@link JsonToken#END_ARRAY} token when this method returns.
+	 */
+	private void parseExtensionArray(JsonParser theJsonParser, ParserState<?> theState, boolean theIsModifier)
+			throws IOException {
+		JsonToken next;
+		while ((next = theJsonParser.nextToken()) != JsonToken.END_ARRAY) {
+			if (next != JsonToken.START_OBJECT) {
+				myErrorHandler.incorrectJsonType(
+						null,
+						theIsModifier ? "modifierExtension" : "extension",
+						ValueType.OBJECT,
+						null,
+						toValueType(next),
+						toScalarType(next));
+				theJsonParser.skipChildren();
+				continue;
+			}
+			parseExtensionObject(theJsonParser, theState, theIsModifier);
+		}
+	}
+
+	private void parseExtensionObject(JsonParser theJsonParser, ParserState<?> theState, boolean theIsModifier)
+			throws IOException {
+		TokenBuffer prefix = null;
+		String url = null;
+		boolean foundUrl = false;
+		boolean atEnd = true;
+		while (theJsonParser.nextToken() == JsonToken.FIELD_NAME) {
+			if ("url".equals(theJsonParser.currentName())) {
+				JsonToken valueToken = theJsonParser.nextToken();
+				if (isScalar(valueToken)) {
+					url = myParser.getExtensionUrl(toScalarString(theJsonParser, valueToken));
+					foundUrl = true;
+				} else {
+					theJsonParser.skipChildren();
+				}
+				atEnd = false;
+				break;
+			}
+			if (prefix == null) {
+				prefix = newTokenBuffer(theJsonParser);
+				prefix.writeStartObject();
+			}
+			prefix.copyCurrentStructure(theJsonParser);
+		}
+
+		if (!foundUrl) {
+			String parentElementName = theIsModifier ? "modifierExtension" : "extension";
+			myErrorHandler.missingRequiredElement(new ParseLocation().setParentElementName(parentElementName), "url");
+		}
+
+		theState.enteringNewElementExtension(null, url, theIsModifier, myParser.getServerBaseUrl());
+		ObjectFrame frame = new ObjectFrame();
+		if (prefix != null) {
+			prefix.writeEndObject();
+			parseBufferedFields(prefix, theState, frame, true);
+		}
+		if (!atEnd) {
+			parseFields(theJsonParser, theState, frame, true);
+		}
+		frame.flush(theState);
+		theState.endingElement();
+	}
+
+	private void parseBufferedFields(
+			TokenBuffer theBuffer, ParserState<?> theState, ObjectFrame theFrame, boolean theInExtension)
+			throws IOException {
+		try (JsonParser bufferParser = asParser(theBuffer)) {
+			bufferParser.nextToken();
+			parseFields(bufferParser, theState, theFrame, theInExtension);
+		}
+	}
+
+	/**
+	 * Parses the properties of a JSON object until the closing {@link JsonToken#END_OBJECT}
+	 * is reached. The parser must be positioned on the token preceding the first property
+	 * (i.e. the {@link JsonToken#START_OBJECT} or the value of the previously consumed property).
+	 */
+	private void parseFields(
+			JsonParser theJsonParser, ParserState<?> theState, ObjectFrame theFrame, boolean theInExtension)
+			throws IOException {
+		while (theJsonParser.nextToken() == JsonToken.FIELD_NAME) {
+			String name = theJsonParser.currentName();
+			JsonToken valueToken = theJsonParser.nextToken();
+
+			if (theInExtension && "url".equals(name)) {
+				theJsonParser.skipChildren();
+				continue;
+			}
+			if (!theInExtension && "resourceType".equals(name) && theState.isToplevelResourceElement()) {
+				theJsonParser.skipChildren();
+				continue;
+			}
+			if ("extension".equals(name) || "modifierExtension".equals(name)) {
+				boolean isModifier = "modifierExtension".equals(name);
+				if (valueToken == JsonToken.START_ARRAY) {
+					parseExtensionArray(theJsonParser, theState, isModifier);
+				} else if (valueToken != JsonToken.VALUE_NULL) {
+					throw new DataFormatException(
+							Msg.code(2559) + "Syntax error parsing JSON FHIR structure: Expected ARRAY at element '"
+									+ name + "', found '" + toValueType(valueToken) + "'");
+				}
+				continue;
+			}
+			if (!theInExtension && "fhir_comments".equals(name)) {
+				parseFhirComments(theJsonParser, theState, valueToken);
+				continue;
+			}
+			if (name.charAt(0) == '_') {
+				if (name.length() > 1) {
+					theFrame.addAlternate(name.substring(1), theJsonParser, valueToken);
+				} else {
+					theJsonParser.skipChildren();
+				}
+				continue;
+			}
+
+			if ("id".equals(name) && valueToken != JsonToken.VALUE_STRING) {
+				myErrorHandler.incorrectJsonType(
+						null,
+						"id",
+						ValueType.SCALAR,
+						ScalarType.STRING,
+						toValueType(valueToken),
+						toScalarType(valueToken));
+			}
+
+			theFrame.markSeen(name);
+			if (valueToken == JsonToken.START_ARRAY) {
+				int index = 0;
+				JsonToken next;
+				while ((next = theJsonParser.nextToken()) != JsonToken.END_ARRAY) {
+					parseValue(theJsonParser, theState, theFrame, name, next, index++, true);
+				}
+			} else {
+				parseValue(theJsonParser, theState, theFrame, name, valueToken, 0, false);
+			}
+		}
+	}
+
+	private void parseValue(
+			JsonParser theJsonParser,
+			ParserState<?> theState,
+			ObjectFrame theFrame,
+			String theName,
+			JsonToken theValueToken,
+			int theIndex,
+			boolean theInArray)
+			throws IOException {
+		switch (theValueToken) {
+			case START_ARRAY:
+				JsonToken next;
+				while ((next = theJsonParser.nextToken()) != JsonToken.END_ARRAY) {
+					parseValue(theJsonParser, theState, theFrame, theName, next, theIndex, true);
+				}
+				break;
+			case START_OBJECT:
+				if (!theInArray && theState.elementIsRepeating(theName)) {
+					myErrorHandler.incorrectJsonType(null, theName, ValueType.ARRAY, null, ValueType.OBJECT, null);
+				}
+				theState.enteringNewElement(null, theName);
+				theFrame.applyAlternate(theState, theName, theIndex, theInArray);
+				if (theState.isPreResource()) {
+					parseResourceObject(theJsonParser, theState, false);
+				} else {
+					ObjectFrame childFrame = new ObjectFrame();
+					parseFields(theJsonParser, theState, childFrame, false);
+					childFrame.flush(theState);
+				}
+				theState.endingElement();
+				break;
+			case VALUE_NULL:
+				theFrame.addPrimitive(theName, null, theIndex, theInArray);
+				break;
+			default:
+				theFrame.addPrimitive(theName, toScalarString(theJsonParser, theValueToken), theIndex, theInArray);
+				break;
+		}
+	}
+
+	private void parseFhirComments(JsonParser theJsonParser, ParserState<?> theState, JsonToken theValueToken)
+			throws IOException {
+		if (mySupportsFhirComments && theValueToken == JsonToken.START_ARRAY) {
+			JsonToken next;
+			while ((next = theJsonParser.nextToken()) != JsonToken.END_ARRAY) {
+				if (next == JsonToken.VALUE_STRING) {
+					theState.commentPre(theJsonParser.getText());
+				} else {
+					theJsonParser.skipChildren();
+				}
+			}
+		} else {
+			theJsonParser.skipChildren();
+		}
+	}
+
+	/**
+	 * Applies the contents of an <code>_element</code> property (extensions, element ID
+	 * and comments) to the element currently being parsed
+	 */
+	private void parseAlternate(TokenBuffer theAlternate, ParserState<?> theState, String theAlternateName)
+			throws IOException {
+		try (JsonParser alternateParser = asParser(theAlternate)) {
+			JsonToken first = alternateParser.nextToken();
+			if (first == JsonToken.VALUE_NULL) {
+				return;
+			}
+			if (first != JsonToken.START_OBJECT) {
+				myErrorHandler.incorrectJsonType(
+						null, theAlternateName, ValueType.OBJECT, null, toValueType(first), null);
+				return;
+			}
+
+			while (alternateParser.nextToken() == JsonToken.FIELD_NAME) {
+				String name = alternateParser.currentName();
+				JsonToken valueToken = alternateParser.nextToken();
+				if ("extension".equals(name) || "modifierExtension".equals(name)) {
+					if (valueToken == JsonToken.START_ARRAY) {
+						parseExtensionArray(alternateParser, theState, "modifierExtension".equals(name));
+					} else {
+						alternateParser.skipChildren();
+					}
+				} else if ("id".equals(name)) {
+					if (valueToken == JsonToken.VALUE_STRING) {
+						theState.attributeValue("id", alternateParser.getText());
+					} else {
+						myErrorHandler.incorrectJsonType(
+								null,
+								"id",
+								ValueType.SCALAR,
+								ScalarType.STRING,
+								toValueType(valueToken),
+								toScalarType(valueToken));
+						alternateParser.skipChildren();
+					}
+				} else if ("fhir_comments".equals(name)) {
+					parseFhirComments(alternateParser, theState, valueToken);
+				} else {
+					alternateParser.skipChildren();
+				}
+			}
+		}
+	}
+
+	private static TokenBuffer newTokenBuffer(JsonParser theJsonParser) {
+		// Decimals must be kept as BigDecimal or we'd lose precision in the replayed values
+		return new TokenBuffer(theJsonParser).forceUseOfBigDecimal(true);
+	}
+
+	private static JsonParser asParser(TokenBuffer theBuffer) {
+		return theBuffer.asParser(StreamReadConstraints.builder()
+				.maxStringLength(Integer.MAX_VALUE)
+				.build());
+	}
+
+	private static boolean isScalar(JsonToken theToken) {
+		return theToken != null && theToken.isScalarValue() && theToken != JsonToken.VALUE_NULL;
+	}
+
+	private static String toScalarString(JsonParser theJsonParser, JsonToken theToken) throws IOException {
+		switch (theToken) {
+			case VALUE_NUMBER_FLOAT:
+				return theJsonParser.getDecimalValue().toPlainString();
+			case VALUE_NUMBER_INT:
+				return theJsonParser.getNumberValue().toString();
+			default:
+				return theJsonParser.getText();
+		}
+	}
+
+	private static ValueType toValueType(JsonToken theToken) {
+		if (theToken == null) {
+			return ValueType.NULL;
+		}
+		switch (theToken) {
+			case START_ARRAY:
+				return ValueType.ARRAY;
+			case START_OBJECT:
+				return ValueType.OBJECT;
+			case VALUE_NULL:
+				return ValueType.NULL;
+			default:
+				return ValueType.SCALAR;
+		}
+	}
+
+	private static ScalarType toScalarType(JsonToken theToken) {
+		if (theToken == null) {
+			return null;
+		}
+		switch (theToken) {
+			case VALUE_STRING:
+				return ScalarType.STRING;
+			case VALUE_NUMBER_INT:
+			case VALUE_NUMBER_FLOAT:
+				return ScalarType.NUMBER;
+			case VALUE_TRUE:
+			case VALUE_FALSE:
+				return ScalarType.BOOLEAN;
+			default:
+				return null;
+		}
+	}
+
+	/**
+	 * Holds the primitive values and <code>_element</code> properties found in a single
+	 * JSON object until the end of that object is reached and they can be paired up
+	 */
+	private class ObjectFrame {
+
+		private Map<String, List<PendingPrimitive>> myPrimitives = Collections.emptyMap();
+		private Map<String, Alternate> myAlternates = Collections.emptyMap();
+		private Set<String> mySeenNames = Collections.emptySet();
+
+		void markSeen(String theName) {
+			if (mySeenNames.isEmpty()) {
+				mySeenNames = new HashSet<>();
+			}
+			mySeenNames.add(theName);
+		}
+
+		void addPrimitive(String theName, String theValue, int theIndex, boolean theInArray) {
+			if (myPrimitives.isEmpty()) {
+				myPrimitives = new LinkedHashMap<>();
+			}
+			myPrimitives
+					.computeIfAbsent(theName, t -> new ArrayList<>(1))
+					.add(new PendingPrimitive(theValue, theIndex, theInArray));
+		}
+
+		void addAlternate(String theName, JsonParser theJsonParser, JsonToken theValueToken) throws IOException {
+			Alternate alternate = new Alternate(theValueToken == JsonToken.START_ARRAY);
+			if (alternate.myArray) {
+				while (theJsonParser.nextToken() != JsonToken.END_ARRAY) {
+					TokenBuffer buffer = newTokenBuffer(theJsonParser);
+					buffer.copyCurrentStructure(theJsonParser);
+					alternate.myValues.add(buffer);
+				}
+			} else {
+				TokenBuffer buffer = newTokenBuffer(theJsonParser);
+				buffer.copyCurrentStructure(theJsonParser);
+				alternate.myValues.add(buffer);
+			}
+
+			if (myAlternates.isEmpty()) {
+				myAlternates = new HashMap<>();
+			}
+			myAlternates.put(theName, alternate);
+		}
+
+		/**
+		 * Applies the <code>_element</code> value (if any) for the given element to the element
+		 * that is currently being parsed
+		 */
+		void applyAlternate(ParserState<?> theState, String theName, int theIndex, boolean theInArray)
+				throws IOException {
+			Alternate alternate = myAlternates.get(theName);
+			if (alternate == null) {
+				return;
+			}
+			String alternateName = '_' + theName;
+			TokenBuffer value = null;
+			if (theInArray) {
+				if (!alternate.myArray) {
+					myErrorHandler.incorrectJsonType(
+							null, alternateName, ValueType.ARRAY, null, alternate.getJsonType(), null);
+					return;
+				}
+				if (alternate.myValues.size() > theIndex) {
+					value = alternate.myValues.get(theIndex);
+				}
+			} else if (alternate.myArray) {
+				if (alternate.myValues.size() > 1) {
+					throw new DataFormatException(Msg.code(2560) + "Unexpected array of length "
+							+ alternate.myValues.size() + " (expected 0 or 1) for element: " + alternateName);
+				}
+				if (alternate.myValues.size() == 1) {
+					value = alternate.myValues.get(0);
+				}
+			} else {
+				value = alternate.myValues.get(0);
+			}
+
+			if (value != null) {
+				parseAlternate(value, theState, alternateName);
+			}
+		}
+
+		void flush(ParserState<?> theState) throws IOException {
+			for (Map.Entry<String, List<PendingPrimitive>> nextEntry : myPrimitives.entrySet()) {
+				String name = nextEntry.getKey();
+				for (PendingPrimitive next : nextEntry.getValue()) {
+					theState.enteringNewElement(null, name);
+					if (next.myValue != null) {
+						theState.attributeValue("value", next.myValue);
+					}
+					applyAlternate(theState, name, next.myIndex, next.myInArray);
+					theState.endingElement();
+				}
+			}
+
+			/*
+			 * This happens if an element has an extension but no actual value. I.e.
+			 * if a resource has a "_status" element but no corresponding "status"
+			 * element. This could be used to handle a null value with an extension
+			 * for example.
+			 */
+			for (Map.Entry<String, Alternate> nextEntry : myAlternates.entrySet()) {
+				String name = nextEntry.getKey();
+				if (mySeenNames.contains(name)) {
+					continue;
+				}
+				Alternate alternate = nextEntry.getValue();
+				if (alternate.getJsonType() == ValueType.OBJECT) {
+					theState.enteringNewElement(null, name);
+					parseAlternate(alternate.myValues.get(0), theState, '_' + name);
+					theState.endingElement();
+				} else {
+					myErrorHandler.incorrectJsonType(
+							null, '_' + name, ValueType.OBJECT, null, alternate.getJsonType(), null);
+				}
+			}
+		}
+	}
+
+	private static class PendingPrimitive {
+
+		private final String myValue;
+		private final int myIndex;
+		private final boolean myInArray;
+
+		private PendingPrimitive(String theValue, int theIndex, boolean theInArray) {
+			myValue = theValue;
+			myIndex = theIndex;
+			myInArray = theInArray;
+		}
+	}
+
+	private static class Alternate {
+
+		private final boolean myArray;
+		private final List<TokenBuffer> myValues = new ArrayList<>(1);
+
+		private Alternate(boolean theArray) {
+			myArray = theArray;
+		}
+
+		ValueType getJsonType() {
+			if (myArray) {
+				return ValueType.ARRAY;
+			}
+			return toValueType(myValues.get(0).firstToken());
+		}
+	}
+}
@@ -0,0 +1,343 @@
+/*
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.parser;
+
+import ca.uhn.fhir.parser.json.jackson.JacksonStructure;
+import ca.uhn.fhir.rest.api.EncodingEnum;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonToken;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.apache.commons.lang3.Validate;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.apache.commons.lang3.StringUtils.defaultString;
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
+
+/**
+ * A resource which has been read by a parser but which is only parsed into the resource model
+ * when it is actually needed. Instances are created using {@link IParser#parseResourceLazily(Class, String)}.
+ * <p>
+ * The raw content is kept for the lifetime of this object. Until {@link #getResource()} has been called,
+ * {@link #encodeResourceToWriter(Writer)} simply copies the raw content instead of parsing and re-encoding
+ * it. This makes it cheap to forward resources which are not inspected along the way. Note that the copied
+ * content is exactly the original content, so it is not affected by the configuration of the parser
+ * (e.g. pretty printing or summary mode).
+ * </p>
+ * <p>
+ * When only a few top level elements of a large resource are needed (e.g. for <code>_elements</code>
+ * filtering or subscription matching), {@link #getPartialResource(String...)} can be used to parse
+ * only those elements. For JSON content, the other elements are still read by the tokenizer, but they are
+ * not copied and are never turned into model objects. For other encodings, the full resource is parsed.
+ * </p>
+ * <p>
+ * Lazy parsing is opt-in. The parsers, the server and the JPA server never create instances of this
+ * class themselves, so it only helps code which calls {@link IParser#parseResourceLazily(Class, String)}.
+ * </p>
+ * <p>
+ * Like parsers, instances of this class are not thread safe.
+ * </p>
+ *
+ * @since 7.6.0
+ */
+public class LazyParsedResource<T extends IBaseResource> {
+
+	private final IParser myParser;
+	private final Class<T> myResourceType;
+	private final String myContent;
+	private T myResource;
+	private String myResourceTypeName;
+
+	/**
+	 * Constructor
+	 *
+	 * @param theParser       The parser to use when the content is parsed
+	 * @param theResourceType The resource type to parse into, or <code>null</code> to determine the type from the content
+	 * @param theContent      The raw resource content
+	 */
+	public LazyParsedResource(
+			@Nonnull IParser theParser, @Nullable Class<T> theResourceType, @Nonnull String theContent) {
+		Validate.notNull(theParser, "theParser must not be null");
+		Validate.notNull(theContent, "theContent must not be null");
+		myParser = theParser;
+		myResourceType = theResourceType;
+		myContent = theContent;
+	}
+
+	/**
+	 * Returns the raw content this resource was created from
+	 */
+	@Nonnull
+	public String getContent() {
+		return myContent;
+	}
+
+	/**
+	 * Returns the encoding of the raw content
+	 */
+	@Nonnull
+	public EncodingEnum getEncoding() {
+		return myParser.getEncoding();
+	}
+
+	/**
+	 * Has the full resource been parsed (i.e. has {@link #getResource()} been called)?
+	 */
+	public boolean isMaterialized() {
+		return myResource != null;
+	}
+
+	/**
+	 * Returns the resource type name (e.g. <code>Patient</code>). For JSON content this is read
+	 * from the <code>resourceType</code> property without parsing the rest of the resource.
+	 */
+	@Nonnull
+	public String getResourceType() {
+		if (myResourceTypeName == null) {
+			if (myResource == null && getEncoding() == EncodingEnum.JSON) {
+				myResourceTypeName = scanJsonResourceType();
+			}
+			if (myResourceTypeName == null) {
+				myResourceTypeName = getResource().fhirType();
+			}
+		}
+		return myResourceTypeName;
+	}
+
+	/**
+	 * Parses the full resource (if this has not already happened) and returns it. Because the
+	 * returned resource may be modified by the caller, once this method has been called
+	 * {@link #encodeResourceToWriter(Writer)} will encode the resource instead of copying
+	 * the raw content.
+	 *
+	 * @throws DataFormatException If the resource can not be parsed
+	 */
+	@Nonnull
+	public T getResource() {
+		if (myResource == null) {
+			myResource = parse(myContent);
+		}
+		return myResource;
+	}
+
+	/**
+	 * Returns a resource containing only the given top level elements (along with <code>id</code>
+	 * and <code>meta</code>, which are always included). Element names may be given with or
+	 * without the resource type prefix (e.g. <code>name</code> or <code>Patient.name</code>). Paths
+	 * to child elements (e.g. <code>Patient.name.family</code>) cause the entire top level element
+	 * to be included, and choice elements are given without their type suffix (e.g. <code>value</code>
+	 * rather than <code>valueQuantity</code>).
+	 * <p>
+	 * The returned resource is a new object which is independent of the resource returned by
+	 * {@link #getResource()}, and calling this method does not cause this resource to be
+	 * considered materialized. If the full resource has already been parsed, the full resource
+	 * is returned.
+	 * </p>
+	 *
+	 * @throws DataFormatException If the resource can not be parsed
+	 */
+	@Nonnull
+	public T getPartialResource(String... theElements) {
+		if (myResource != null || getEncoding() != EncodingEnum.JSON) {
+			return getResource();
+		}
+		Set<String> elementNames = toTopLevelElementNames(Arrays.asList(theElements));
+		if (elementNames == null) {
+			return parse(myContent);
+		}
+		return parse(filterJsonTopLevelElements(elementNames));
+	}
+
+	/**
+	 * Writes the resource to the given writer. If the resource has not been materialized, the
+	 * raw content is copied as-is. Otherwise the resource is encoded using the parser which
+	 * created this object.
+	 */
+	public void encodeResourceToWriter(Writer theWriter) throws IOException {
+		if (myResource == null) {
+			theWriter.write(myContent);
+		} else {
+			myParser.encodeResourceToWriter(myResource, theWriter);
+		}
+	}
+
+	/**
+	 * Returns the resource as a string. See {@link #encodeResourceToWriter(Writer)}.
+	 */
+	@Nonnull
+	public String encodeResourceToString() {
+		if (myResource == null) {
+			return myContent;
+		}
+		return myParser.encodeResourceToString(myResource);
+	}
+
+	@SuppressWarnings("unchecked")
+	private T parse(String theContent) {
+		if (myResourceType != null) {
+			return myParser.parseResource(myResourceType, theContent);
+		}
+		return (T) myParser.parseResource(theContent);
+	}
+
+	@Nullable
+	private String scanJsonResourceType() {
+		try (com.fasterxml.jackson.core.JsonParser parser =
+				JacksonStructure.createJsonParser(new StringReader(myContent))) {
+			if (parser.nextToken() != JsonToken.START_OBJECT) {
+				return null;
+			}
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String name = parser.currentName();
+				JsonToken value = parser.nextToken();
+				if ("resourceType".equals(name) && value == JsonToken.VALUE_STRING) {
+					String resourceType = parser.getText();
+					return isNotBlank(resourceType) ? resourceType : null;
+				}
+				parser.skipChildren();
+			}
+			return null;
+		} catch (IOException e) {
+			throw JacksonStructure.toDataFormatException(e);
+		}
+	}
+
+	/**
+	 * Writes a copy of the JSON content containing only the <code>resourceType</code>,
+	 * <code>id</code>, <code>meta</code>, and the given elements (along with their
+	 * <code>_element</code> alternates for primitive extensions)
+	 */
+	private String filterJsonTopLevelElements(Set<String> theElements) {
+		StringWriter writer = new StringWriter();
+		try (com.fasterxml.jackson.core.JsonParser parser =
+						JacksonStructure.createJsonParser(new StringReader(myContent));
+				JsonGenerator generator = JacksonStructure.createJsonGenerator(writer)) {
+			if (parser.nextToken() != JsonToken.START_OBJECT) {
+				// Let the parser produce the appropriate error
+				return myContent;
+			}
+
+			generator.writeStartObject();
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String name = parser.currentName();
+				parser.nextToken();
+				String elementName = name.startsWith("_") ? name.substring(1) : name;
+				if ("resourceType".equals(name)
+						|| "id".equals(elementName)
+						|| "meta".equals(elementName)
+						|| isIncludedElement(theElements, elementName)) {
+					generator.writeFieldName(name);
+					copyCurrentStructure(parser, generator);
+				} else {
+					parser.skipChildren();
+				}
+			}
+			generator.writeEndObject();
+		} catch (IOException e) {
+			throw JacksonStructure.toDataFormatException(e);
+		}
+		return writer.toString();
+	}
+
+	/**
+	 * Similar to {@link JsonGenerator#copyCurrentStructure(com.fasterxml.jackson.core.JsonParser)}, but
+	 * copies numbers using their original text so that decimal precision is preserved
+	 */
+	private static void copyCurrentStructure(
+			com.fasterxml.jackson.core.JsonParser theParser, JsonGenerator theGenerator) throws IOException {
+		int depth = 0;
+		JsonToken token = theParser.currentToken();
+		while (token != null) {
+			if (token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) {
+				theGenerator.writeNumber(theParser.getText());
+			} else {
+				theGenerator.copyCurrentEvent(theParser);
+			}
+
+			if (token.isStructStart()) {
+				depth++;
+			} else if (token.isStructEnd()) {
+				depth--;
+			}
+			if (depth == 0) {
+				break;
+			}
+			token = theParser.nextToken();
+		}
+	}
+
+	/**
+	 * Is the given JSON property one of the requested elements? Choice elements (e.g. <code>value</code>)
+	 * match any of their typed names (e.g. <code>valueQuantity</code>).
+	 */
+	private static boolean isIncludedElement(Set<String> theElements, String theJsonName) {
+		if (theElements.contains(theJsonName)) {
+			return true;
+		}
+		for (String next : theElements) {
+			if (theJsonName.length() > next.length()
+					&& theJsonName.startsWith(next)
+					&& Character.isUpperCase(theJsonName.charAt(next.length()))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the names of the top level elements referred to by the given paths, or <code>null</code>
+	 * if one of the paths refers to the whole resource (e.g. <code>Patient</code>)
+	 */
+	@Nullable
+	private static Set<String> toTopLevelElementNames(Collection<String> theElements) {
+		Set<String> retVal = new HashSet<>();
+		for (String next : theElements) {
+			String path = defaultString(next).trim();
+			if (path.isEmpty()) {
+				continue;
+			}
+			boolean startsWithResourceType = Character.isUpperCase(path.charAt(0)) || path.startsWith("*");
+			if (startsWithResourceType) {
+				int firstDot = path.indexOf('.');
+				if (firstDot == -1) {
+					return null;
+				}
+				path = path.substring(firstDot + 1);
+			}
+			int nextDot = path.indexOf('.');
+			if (nextDot != -1) {
+				path = path.substring(0, nextDot);
+			}
+			if (isNotBlank(path)) {
+				retVal.add(path);
+			}
+		}
+		return retVal;
+	}
+}
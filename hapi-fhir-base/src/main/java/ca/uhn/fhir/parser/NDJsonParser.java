@@ -24,6 +24,7 @@ import ca.uhn.fhir.i18n.Msg;
 import ca.uhn.fhir.rest.api.EncodingEnum;
 import ca.uhn.fhir.util.BundleBuilder;
 import ca.uhn.fhir.util.BundleUtil;
+import org.apache.commons.lang3.Validate;
 import org.hl7.fhir.instance.model.api.IBaseBundle;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 
@@ -32,6 +33,7 @@ import java.io.IOException;
 import java.io.Reader;
 import java.io.Writer;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * This class is the FHIR NDJSON parser/encoder. Users should not interact with this class directly, but should use
@@ -121,4 +123,39 @@ public class NDJsonParser extends BaseParser {
 			throw new DataFormatException(Msg.code(1835) + err.getMessage());
 		}
 	}
+
+	/**
+	 * Returns an iterator which parses the resources in the given NDJSON content one line at a time,
+	 * as they are requested. Unlike {@link #parseResource(Reader)}, this does not collect the
+	 * resources into a Bundle, so content of any size can be processed using a bounded amount of memory.
+	 *
+	 * @param theReader The NDJSON content. This reader is closed when the returned iterator is closed.
+	 * @since 7.6.0
+	 */
+	public NDJsonResourceIterator parseResources(Reader theReader) {
+		return new NDJsonResourceIterator(
+				myFhirContext, getErrorHandler(), theReader, null, 1, NDJsonResourceIterator.DEFAULT_BATCH_SIZE);
+	}
+
+	/**
+	 * Returns an iterator which parses the resources in the given NDJSON content in batches of lines
+	 * on the given executor (e.g. {@link java.util.concurrent.ForkJoinPool#commonPool()}), reading
+	 * a bounded number of batches ahead of the consumer. Resources are returned in the order in
+	 * which they appear in the content.
+	 *
+	 * @param theReader      The NDJSON content. This reader is closed when the returned iterator is closed.
+	 * @param theExecutor    The executor used to parse batches of lines
+	 * @param theParallelism The number of batches which are expected to be parsed concurrently
+	 * @since 7.6.0
+	 */
+	public NDJsonResourceIterator parseResources(Reader theReader, Executor theExecutor, int theParallelism) {
+		Validate.notNull(theExecutor, "theExecutor must not be null");
+		return new NDJsonResourceIterator(
+				myFhirContext,
+				getErrorHandler(),
+				theReader,
+				theExecutor,
+				theParallelism,
+				NDJsonResourceIterator.DEFAULT_BATCH_SIZE);
+	}
 }
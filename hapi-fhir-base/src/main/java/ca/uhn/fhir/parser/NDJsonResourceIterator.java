@@ -0,0 +1,235 @@
+/*
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.parser;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.apache.commons.lang3.Validate;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+/**
+ * Reads resources from NDJSON (newline delimited JSON) content one line at a time, so that
+ * arbitrarily large files can be processed using a bounded amount of memory. Instances are
+ * created using {@link NDJsonParser#parseResources(Reader)} or
+ * {@link NDJsonParser#parseResources(Reader, Executor, int)}.
+ * <p>
+ * If an executor is supplied, lines are parsed in batches on that executor, with a limited
+ * number of batches read ahead of the consumer. Resources are always returned in the order
+ * in which they appear in the content.
+ * </p>
+ * <p>
+ * Blank lines are ignored. Instances of this class are not thread safe, and should be closed
+ * when they are no longer needed (this closes the underlying reader).
+ * </p>
+ *
+ * @since 7.6.0
+ */
+public class NDJsonResourceIterator implements Iterator<IBaseResource>, Closeable {
+
+	/**
+	 * Default number of lines parsed by a single task when parsing in parallel
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 100;
+
+	private final FhirContext myContext;
+	private final IParserErrorHandler myErrorHandler;
+	private final BufferedReader myReader;
+	private final Executor myExecutor;
+	private final int myMaxBatchesInFlight;
+	private final int myBatchSize;
+	private final Deque<Future<List<IBaseResource>>> myPending = new ArrayDeque<>();
+	private Iterator<IBaseResource> myCurrentBatch = Collections.emptyIterator();
+	private long myLineNumber;
+	private boolean myEndOfContent;
+
+	NDJsonResourceIterator(
+			@Nonnull FhirContext theContext,
+			@Nonnull IParserErrorHandler theErrorHandler,
+			@Nonnull Reader theReader,
+			@Nullable Executor theExecutor,
+			int theParallelism,
+			int theBatchSize) {
+		Validate.isTrue(theParallelism > 0, "theParallelism must be greater than 0");
+		Validate.isTrue(theBatchSize > 0, "theBatchSize must be greater than 0");
+		myContext = theContext;
+		myErrorHandler = theErrorHandler;
+		myReader = theReader instanceof BufferedReader ? (BufferedReader) theReader : new BufferedReader(theReader);
+		myExecutor = theExecutor;
+		if (theExecutor == null) {
+			myMaxBatchesInFlight = 1;
+			myBatchSize = 1;
+		} else {
+			// Read ahead enough batches to keep every worker busy while the consumer catches up
+			myMaxBatchesInFlight = theParallelism * 2;
+			myBatchSize = theBatchSize;
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		while (!myCurrentBatch.hasNext()) {
+			fillPending();
+			Future<List<IBaseResource>> next = myPending.pollFirst();
+			if (next == null) {
+				return false;
+			}
+			myCurrentBatch = awaitBatch(next).iterator();
+		}
+		return true;
+	}
+
+	@Override
+	public IBaseResource next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException(Msg.code(2561) + "No more resources");
+		}
+		return myCurrentBatch.next();
+	}
+
+	/**
+	 * Returns a sequential, ordered stream of the remaining resources. Closing the stream
+	 * closes this iterator.
+	 */
+	public Stream<IBaseResource> stream() {
+		Spliterator<IBaseResource> spliterator =
+				Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL);
+		return StreamSupport.stream(spliterator, false).onClose(this::closeQuietly);
+	}
+
+	@Override
+	public void close() throws IOException {
+		for (Future<List<IBaseResource>> next : myPending) {
+			next.cancel(false);
+		}
+		myPending.clear();
+		myCurrentBatch = Collections.emptyIterator();
+		myEndOfContent = true;
+		myReader.close();
+	}
+
+	private void closeQuietly() {
+		try {
+			close();
+		} catch (IOException e) {
+			throw new InternalErrorException(Msg.code(2562) + e.getMessage(), e);
+		}
+	}
+
+	private void fillPending() {
+		while (!myEndOfContent && myPending.size() < myMaxBatchesInFlight) {
+			long firstLineNumber = myLineNumber + 1;
+			List<String> lines = readBatch();
+			if (lines.isEmpty()) {
+				break;
+			}
+			if (myExecutor == null) {
+				myPending.add(CompletableFuture.completedFuture(parseBatch(firstLineNumber, lines)));
+			} else {
+				myPending.add(CompletableFuture.supplyAsync(() -> parseBatch(firstLineNumber, lines), myExecutor));
+			}
+		}
+	}
+
+	/**
+	 * Reads the next batch of lines. Blank lines are kept (as <code>null</code>) so that
+	 * line numbers in error messages remain accurate.
+	 */
+	private List<String> readBatch() {
+		List<String> retVal = new ArrayList<>(myBatchSize);
+		int nonBlankLines = 0;
+		try {
+			while (nonBlankLines < myBatchSize) {
+				String line = myReader.readLine();
+				if (line == null) {
+					myEndOfContent = true;
+					break;
+				}
+				myLineNumber++;
+				if (isBlank(line)) {
+					retVal.add(null);
+				} else {
+					retVal.add(line);
+					nonBlankLines++;
+				}
+			}
+		} catch (IOException e) {
+			throw new DataFormatException(Msg.code(2563) + e.getMessage(), e);
+		}
+		return nonBlankLines > 0 ? retVal : Collections.emptyList();
+	}
+
+	private List<IBaseResource> parseBatch(long theFirstLineNumber, List<String> theLines) {
+		IParser parser = myContext.newJsonParser().setParserErrorHandler(myErrorHandler);
+		List<IBaseResource> retVal = new ArrayList<>(theLines.size());
+		long lineNumber = theFirstLineNumber;
+		for (String next : theLines) {
+			if (next != null) {
+				try {
+					// The string must be trimmed, as per the NDJson spec 3.2
+					retVal.add(parser.parseResource(next.trim()));
+				} catch (DataFormatException e) {
+					throw new DataFormatException(
+							Msg.code(2564) + "Failed to parse NDJSON line " + lineNumber + ": " + e.getMessage(), e);
+				}
+			}
+			lineNumber++;
+		}
+		return retVal;
+	}
+
+	private static List<IBaseResource> awaitBatch(Future<List<IBaseResource>> theFuture) {
+		try {
+			return theFuture.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InternalErrorException(Msg.code(2565) + e.getMessage(), e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new InternalErrorException(Msg.code(2566) + e.getMessage(), e);
+		}
+	}
+}
@@ -721,7 +721,7 @@ public class RDFParser extends BaseParser {
 						continue;
 					}
 
-					ChildNameAndDef childNameAndDef = super.getChildNameAndDef(nextChild, nextValue);
+					ChildNameAndDef childNameAndDef = super.getChildNameAndDef(nextChildElem, nextValue);
 					if (childNameAndDef == null) {
 						continue;
 					}
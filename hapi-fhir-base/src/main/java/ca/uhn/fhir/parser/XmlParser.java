@@ -24,7 +24,6 @@ import ca.uhn.fhir.context.BaseRuntimeDeclaredChildDefinition;
 import ca.uhn.fhir.context.BaseRuntimeElementDefinition;
 import ca.uhn.fhir.context.ConfigurationException;
 import ca.uhn.fhir.context.FhirContext;
-import ca.uhn.fhir.context.RuntimeChildContainedResources;
 import ca.uhn.fhir.context.RuntimeChildExtension;
 import ca.uhn.fhir.context.RuntimeChildNarrativeDefinition;
 import ca.uhn.fhir.context.RuntimeChildUndeclaredExtensionDefinition;
@@ -434,7 +433,7 @@ public class XmlParser extends BaseParser {
 				continue;
 			}
 
-			if (nextChild instanceof RuntimeChildNarrativeDefinition) {
+			if (nextChildElem.getPlan().isNarrative()) {
 				Optional<IBase> narr = nextChild.getAccessor().getFirstValueOrNull(theElement);
 				INarrativeGenerator gen = getContext().getNarrativeGenerator();
 				if (gen != null && narr.isPresent() == false) {
@@ -461,7 +460,7 @@ public class XmlParser extends BaseParser {
 				}
 			}
 
-			if (nextChild instanceof RuntimeChildContainedResources) {
+			if (nextChildElem.getPlan().isContainedResources()) {
 				encodeChildElementToStreamWriter(
 						theResource,
 						theEventWriter,
@@ -486,7 +485,7 @@ public class XmlParser extends BaseParser {
 						continue;
 					}
 
-					BaseParser.ChildNameAndDef childNameAndDef = super.getChildNameAndDef(nextChild, nextValue);
+					BaseParser.ChildNameAndDef childNameAndDef = super.getChildNameAndDef(nextChildElem, nextValue);
 					if (childNameAndDef == null) {
 						continue;
 					}
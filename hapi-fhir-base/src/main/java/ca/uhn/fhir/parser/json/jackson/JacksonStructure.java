@@ -116,39 +116,64 @@ public class JacksonStructure implements JsonLikeStructure {
 				setNativeArray((ArrayNode) OBJECT_MAPPER.readTree(pbr));
 			}
 		} catch (Exception e) {
-			String message;
-			if (e instanceof JsonProcessingException) {
-				/*
-				 * Currently there is no way of preventing Jackson from adding this
-				 * annoying REDACTED message from certain messages we get back from
-				 * the parser, so we just manually strip them. Hopefully Jackson
-				 * will accept this request at some point:
-				 * https://github.com/FasterXML/jackson-core/issues/1158
-				 */
-				JsonProcessingException jpe = (JsonProcessingException) e;
-				StringBuilder messageBuilder = new StringBuilder();
-				String originalMessage = jpe.getOriginalMessage();
-				originalMessage = originalMessage.replace(
-						"Source: REDACTED (`StreamReadFeature.INCLUDE_SOURCE_IN_LOCATION` disabled); ", "");
-				messageBuilder.append(originalMessage);
-				if (jpe.getLocation() != null) {
-					messageBuilder.append("\n at [");
-					jpe.getLocation().appendOffsetDescription(messageBuilder);
-					messageBuilder.append("]");
-				}
-				message = messageBuilder.toString();
-			} else {
-				message = e.getMessage();
-			}
+			throw toDataFormatException(e);
+		}
+	}
 
-			if (message.startsWith("Unexpected char 39")) {
-				throw new DataFormatException(
-						Msg.code(1860) + "Failed to parse JSON encoded FHIR content: " + message + " - "
-								+ "This may indicate that single quotes are being used as JSON escapes where double quotes are required",
-						e);
+	/**
+	 * Creates a Jackson token stream parser for the given reader, using the same parser
+	 * features and read constraints that are used when loading a tree with {@link #load(Reader)}.
+	 * Callers are responsible for closing the returned parser.
+	 */
+	public static JsonParser createJsonParser(Reader theReader) throws IOException {
+		return OBJECT_MAPPER.getFactory().createParser(theReader);
+	}
+
+	/**
+	 * Creates a Jackson generator for the given writer, using the same factory that is used
+	 * by {@link #createJsonParser(Reader)}. Callers are responsible for closing the returned generator.
+	 */
+	public static JsonGenerator createJsonGenerator(Writer theWriter) throws IOException {
+		return OBJECT_MAPPER.getFactory().createGenerator(theWriter);
+	}
+
+	/**
+	 * Converts a failure raised by Jackson while reading JSON content into a
+	 * {@link DataFormatException} with a user-friendly message.
+	 */
+	public static DataFormatException toDataFormatException(Exception e) {
+		String message;
+		if (e instanceof JsonProcessingException) {
+			/*
+			 * Currently there is no way of preventing Jackson from adding this
+			 * annoying REDACTED message from certain messages we get back from
+			 * the parser, so we just manually strip them. Hopefully Jackson
+			 * will accept this request at some point:
+			 * https://github.com/FasterXML/jackson-core/issues/1158
+			 */
+			JsonProcessingException jpe = (JsonProcessingException) e;
+			StringBuilder messageBuilder = new StringBuilder();
+			String originalMessage = jpe.getOriginalMessage();
+			originalMessage = originalMessage.replace(
+					"Source: REDACTED (`StreamReadFeature.INCLUDE_SOURCE_IN_LOCATION` disabled); ", "");
+			messageBuilder.append(originalMessage);
+			if (jpe.getLocation() != null) {
+				messageBuilder.append("\n at [");
+				jpe.getLocation().appendOffsetDescription(messageBuilder);
+				messageBuilder.append("]");
 			}
-			throw new DataFormatException(Msg.code(1861) + "Failed to parse JSON encoded FHIR content: " + message, e);
+			message = messageBuilder.toString();
+		} else {
+			message = e.getMessage();
+		}
+
+		if (message.startsWith("Unexpected char 39")) {
+			return new DataFormatException(
+					Msg.code(1860) + "Failed to parse JSON encoded FHIR content: " + message + " - "
+							+ "This may indicate that single quotes are being used as JSON escapes where double quotes are required",
+					e);
 		}
+		return new DataFormatException(Msg.code(1861) + "Failed to parse JSON encoded FHIR content: " + message, e);
 	}
 
 	@Override
@@ -40,6 +40,16 @@ public class JacksonWriter extends BaseJsonLikeWriter {
 		setWriter(theWriter);
 	}
 
+	/**
+	 * Creates a writer which writes to the given generator. This can be used to write the FHIR
+	 * JSON structure using any format supported by Jackson (e.g. CBOR).
+	 *
+	 * @since 7.6.0
+	 */
+	public JacksonWriter(JsonGenerator theJsonGenerator) {
+		myJsonGenerator = theJsonGenerator;
+	}
+
 	public JacksonWriter() {}
 
 	@Override
@@ -179,6 +189,28 @@ public class JacksonWriter extends BaseJsonLikeWriter {
 		return this;
 	}
 
+	/**
+	 * Returns <code>true</code> if {@link #writeRawObjectMembers(String)} can be used with this writer,
+	 * which is only the case when writing JSON text
+	 */
+	public boolean isRawOutputSupported() {
+		return myJsonGenerator.getOutputTarget() instanceof Writer;
+	}
+
+	/**
+	 * Writes one or more complete, comma separated object members (e.g. <code>"a":1,"b":[2]</code>)
+	 * verbatim into the object currently being written, after any members which have already been
+	 * written. No further members may be written to the object after this, only {@link #endObject()}.
+	 * This method must not be used when pretty printing.
+	 */
+	public BaseJsonLikeWriter writeRawObjectMembers(String theMembers) throws IOException {
+		if (myJsonGenerator.getOutputContext().getEntryCount() > 0) {
+			myJsonGenerator.writeRaw(',');
+		}
+		myJsonGenerator.writeRaw(theMembers);
+		return this;
+	}
+
 	@Override
 	public BaseJsonLikeWriter endObject() throws IOException {
 		myJsonGenerator.writeEndObject();
@@ -60,6 +60,13 @@ public class Constants {
 	 */
 	public static final String CT_FHIR_JSON_NEW = "application/fhir+json";
 
+	/**
+	 * The MimeType for the HAPI FHIR binary (CBOR) encoding
+	 *
+	 * @since 7.6.0
+	 */
+	public static final String CT_FHIR_CBOR = "application/fhir+cbor";
+
 	public static final String CT_FHIR_XML = "application/xml+fhir";
 
 	/**
@@ -85,6 +92,7 @@ public class Constants {
 	public static final String EXTOP_VALIDATE_MODE = "mode";
 	public static final String EXTOP_VALIDATE_PROFILE = "profile";
 	public static final String EXTOP_VALIDATE_RESOURCE = "resource";
+	public static final String FORMAT_CBOR = "cbor";
 	public static final String FORMAT_HTML = "html";
 	public static final String FORMAT_JSON = "json";
 	public static final String FORMAT_NDJSON = "ndjson";
@@ -176,6 +184,7 @@ public class Constants {
 	public static final String PARAM_CONTENT = "_content";
 	public static final String PARAM_COUNT = "_count";
 	public static final String PARAM_OFFSET = "_offset";
+	public static final String PARAM_KEYSET = "_keyset";
 	public static final String PARAM_DELETE = "_delete";
 	public static final String PARAM_ELEMENTS = "_elements";
 	public static final String PARAM_ELEMENTS_EXCLUDE_MODIFIER = ":exclude";
@@ -304,6 +313,17 @@ public class Constants {
 	 */
 	public static final String RESOURCE_PARTITION_ID = Constants.class.getName() + "_RESOURCE_PARTITION_ID";
 
+	/**
+	 * {@link org.hl7.fhir.instance.model.api.IBaseResource#getUserData(String) User metadata key} used
+	 * to store the JSON text that a resource was parsed from, when that text may be written
+	 * directly by the JSON parser instead of re-encoding the resource. Value for this key will be
+	 * of type {@link String}. Anything which modifies a resource carrying this key (other than its
+	 * ID and <code>Resource.meta</code>) must remove the key.
+	 *
+	 * @since 7.6.0
+	 */
+	public static final String RESOURCE_PASS_THROUGH_JSON = Constants.class.getName() + "_RESOURCE_PASS_THROUGH_JSON";
+
 	public static final String PARTITION_IDS = "partitionIds";
 	public static final String CT_APPLICATION_GZIP = "application/gzip";
 	public static final String[] EMPTY_STRING_ARRAY = new String[0];
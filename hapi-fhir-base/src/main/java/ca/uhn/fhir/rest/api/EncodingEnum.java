@@ -56,6 +56,26 @@ public enum EncodingEnum {
 		public IParser newParser(FhirContext theContext) {
 			return theContext.newNDJsonParser();
 		}
+	},
+
+	/**
+	 * Binary encoding of the FHIR JSON representation using CBOR (RFC 8949). Parsers for this
+	 * encoding read and write bytes, so they must be used with
+	 * {@link IParser#parseResource(Class, java.io.InputStream)} and
+	 * {@link IParser#encodeResourceToOutputStream(org.hl7.fhir.instance.model.api.IBaseResource, java.io.OutputStream)}.
+	 *
+	 * @since 7.6.0
+	 */
+	CBOR(Constants.CT_FHIR_CBOR, Constants.CT_FHIR_CBOR, Constants.FORMAT_CBOR) {
+		@Override
+		public IParser newParser(FhirContext theContext) {
+			return theContext.newCborParser();
+		}
+
+		@Override
+		public boolean isBinary() {
+			return true;
+		}
 	};
 
 	/**
@@ -78,6 +98,11 @@ public enum EncodingEnum {
 	 */
 	public static final String NDJSON_PLAIN_STRING = "ndjson";
 
+	/**
+	 * "cbor"
+	 */
+	public static final String CBOR_PLAIN_STRING = "cbor";
+
 	private static Map<String, EncodingEnum> ourContentTypeToEncoding;
 	private static Map<String, EncodingEnum> ourContentTypeToEncodingLegacy;
 	private static Map<String, EncodingEnum> ourContentTypeToEncodingStrict;
@@ -123,6 +148,7 @@ public enum EncodingEnum {
 		ourContentTypeToEncoding.put(XML_PLAIN_STRING, XML);
 		ourContentTypeToEncoding.put(RDF_PLAIN_STRING, RDF);
 		ourContentTypeToEncoding.put(NDJSON_PLAIN_STRING, NDJSON);
+		ourContentTypeToEncoding.put(CBOR_PLAIN_STRING, CBOR);
 		ourContentTypeToEncoding.put(Constants.FORMAT_TURTLE, RDF);
 
 		ourContentTypeToEncodingLegacy = Collections.unmodifiableMap(ourContentTypeToEncodingLegacy);
@@ -161,6 +187,16 @@ public enum EncodingEnum {
 
 	public abstract IParser newParser(final FhirContext theContext);
 
+	/**
+	 * Returns <code>true</code> if this is a binary encoding, meaning that content in this
+	 * encoding can not be represented as a string and must be read and written as bytes.
+	 *
+	 * @since 7.6.0
+	 */
+	public boolean isBinary() {
+		return false;
+	}
+
 	public static EncodingEnum detectEncoding(final String theBody) {
 		EncodingEnum retVal = detectEncodingNoDefault(theBody);
 		retVal = ObjectUtils.defaultIfNull(retVal, EncodingEnum.XML);
@@ -400,7 +400,7 @@ public class FhirTerser {
 
 		BaseRuntimeElementCompositeDefinition<?> currentDef = (BaseRuntimeElementCompositeDefinition<?>) def;
 
-		List<String> parts = parsePath(currentDef, thePath);
+		List<String> parts = getCompiledPath(currentDef, thePath).getParts();
 
 		List<T> retVal = getValues(currentDef, theTarget, parts, theWantedType);
 		if (retVal.isEmpty()) {
@@ -757,7 +757,7 @@ public class FhirTerser {
 	public <T extends IBase> List<T> getValues(IBase theElement, String thePath, Class<T> theWantedClass) {
 		BaseRuntimeElementCompositeDefinition<?> def =
 				(BaseRuntimeElementCompositeDefinition<?>) myContext.getElementDefinition(theElement.getClass());
-		List<String> parts = parsePath(def, thePath);
+		List<String> parts = getCompiledPath(def, thePath).getParts();
 		return getValues(def, theElement, parts, theWantedClass);
 	}
 
@@ -776,7 +776,7 @@ public class FhirTerser {
 			IBase theElement, String thePath, Class<T> theWantedClass, boolean theCreate) {
 		BaseRuntimeElementCompositeDefinition<?> def =
 				(BaseRuntimeElementCompositeDefinition<?>) myContext.getElementDefinition(theElement.getClass());
-		List<String> parts = parsePath(def, thePath);
+		List<String> parts = getCompiledPath(def, thePath).getParts();
 		return getValues(def, theElement, parts, theWantedClass, theCreate, false);
 	}
 
@@ -796,10 +796,57 @@ public class FhirTerser {
 			IBase theElement, String thePath, Class<T> theWantedClass, boolean theCreate, boolean theAddExtension) {
 		BaseRuntimeElementCompositeDefinition<?> def =
 				(BaseRuntimeElementCompositeDefinition<?>) myContext.getElementDefinition(theElement.getClass());
-		List<String> parts = parsePath(def, thePath);
+		List<String> parts = getCompiledPath(def, thePath).getParts();
 		return getValues(def, theElement, parts, theWantedClass, theCreate, theAddExtension);
 	}
 
+	/**
+	 * Compiles a path so that it can be evaluated repeatedly against instances of the given type
+	 * without being parsed again. Paths use the same syntax as {@link #getValues(IBase, String)}.
+	 * <p>
+	 * Note that the string based methods on this class (e.g. {@link #getValues(IBase, String)})
+	 * also cache the paths they are given, so this method is mainly useful for avoiding the cache
+	 * lookup in very hot code, and for validating a path up front.
+	 * </p>
+	 *
+	 * @param theType The type the path starts at (e.g. <code>Patient.class</code>)
+	 * @param thePath The path (e.g. <code>Patient.name.family</code>)
+	 * @throws IllegalArgumentException If the type is not a composite type
+	 * @throws ConfigurationException   If the path is invalid
+	 * @since 7.6.0
+	 */
+	public ICompiledTerserPath compile(@Nonnull Class<? extends IBase> theType, @Nonnull String thePath) {
+		Validate.notNull(theType, "theType must not be null");
+		Validate.notBlank(thePath, "thePath must not be empty");
+
+		BaseRuntimeElementDefinition<?> def = myContext.getElementDefinition(theType);
+		if (!(def instanceof BaseRuntimeElementCompositeDefinition)) {
+			throw new IllegalArgumentException(Msg.code(2568) + "Type is not a composite type: " + theType.getName());
+		}
+		return getCompiledPath((BaseRuntimeElementCompositeDefinition<?>) def, thePath);
+	}
+
+	/**
+	 * Compiles a path so that it can be evaluated repeatedly against resources of the given type
+	 * without being parsed again. See {@link #compile(Class, String)}.
+	 *
+	 * @param theResourceType The resource type the path starts at (e.g. <code>Patient</code>)
+	 * @param thePath         The path (e.g. <code>Patient.name.family</code>)
+	 * @throws ConfigurationException If the path is invalid
+	 * @since 7.6.0
+	 */
+	public ICompiledTerserPath compile(@Nonnull String theResourceType, @Nonnull String thePath) {
+		Validate.notBlank(theResourceType, "theResourceType must not be empty");
+		Validate.notBlank(thePath, "thePath must not be empty");
+
+		return getCompiledPath(myContext.getResourceDefinition(theResourceType), thePath);
+	}
+
+	private CompiledTerserPath getCompiledPath(BaseRuntimeElementCompositeDefinition<?> theDef, String thePath) {
+		return (CompiledTerserPath) theDef.getCompiledTerserPath(
+				thePath, path -> new CompiledTerserPath(myContext, theDef, path, List.copyOf(parsePath(theDef, path))));
+	}
+
 	private List<String> parsePath(BaseRuntimeElementCompositeDefinition<?> theElementDef, String thePath) {
 		List<String> parts = new ArrayList<>();
 
@@ -1558,7 +1605,7 @@ public class FhirTerser {
 		IBase target = theTarget;
 		BaseRuntimeElementCompositeDefinition<?> def =
 				(BaseRuntimeElementCompositeDefinition<?>) myContext.getElementDefinition(target.getClass());
-		List<String> parts = parsePath(def, thePath);
+		List<String> parts = getCompiledPath(def, thePath).getParts();
 
 		for (int i = 0, partsSize = parts.size(); ; i++) {
 			String nextPart = parts.get(i);
@@ -1903,4 +1950,57 @@ public class FhirTerser {
 			}
 		}
 	}
+
+	/**
+	 * Path parsed against a specific type. Instances are cached on the type definition
+	 * (see {@link BaseRuntimeElementCompositeDefinition#getCompiledTerserPath(String, java.util.function.Function)})
+	 * so they must not hold any per-call state, or a reference to the terser which created them.
+	 */
+	private static final class CompiledTerserPath implements ICompiledTerserPath {
+		private final FhirContext myContext;
+		private final BaseRuntimeElementCompositeDefinition<?> myDefinition;
+		private final String myPath;
+		private final List<String> myParts;
+
+		private CompiledTerserPath(
+				FhirContext theContext,
+				BaseRuntimeElementCompositeDefinition<?> theDefinition,
+				String thePath,
+				List<String> theParts) {
+			myContext = theContext;
+			myDefinition = theDefinition;
+			myPath = thePath;
+			myParts = theParts;
+		}
+
+		@Override
+		public String getPath() {
+			return myPath;
+		}
+
+		List<String> getParts() {
+			return myParts;
+		}
+
+		@Override
+		public <T extends IBase> List<T> getValues(IBase theTarget, Class<T> theWantedClass) {
+			Validate.notNull(theTarget, "theTarget must not be null");
+
+			BaseRuntimeElementCompositeDefinition<?> def = myDefinition;
+			if (theTarget.getClass() != def.getImplementingClass()) {
+				BaseRuntimeElementDefinition<?> targetDef = myContext.getElementDefinition(theTarget.getClass());
+				if (!(targetDef instanceof BaseRuntimeElementCompositeDefinition)) {
+					throw new IllegalArgumentException(Msg.code(2569) + "Target is not a composite type: "
+							+ theTarget.getClass().getName());
+				}
+				def = (BaseRuntimeElementCompositeDefinition<?>) targetDef;
+			}
+			return myContext.newTerser().getValues(def, theTarget, myParts, theWantedClass);
+		}
+
+		@Override
+		public String toString() {
+			return "CompiledTerserPath[" + myDefinition.getName() + ":" + myPath + "]";
+		}
+	}
 }
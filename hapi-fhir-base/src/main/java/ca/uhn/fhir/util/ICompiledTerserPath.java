@@ -0,0 +1,79 @@
+/*
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.util;
+
+import org.hl7.fhir.instance.model.api.IBase;
+import org.hl7.fhir.instance.model.api.IPrimitiveType;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A {@link FhirTerser} path which has been parsed against a specific type, so that it can be
+ * evaluated repeatedly without being parsed again. Instances are created using
+ * {@link FhirTerser#compile(Class, String)} or {@link FhirTerser#compile(String, String)}, and
+ * are immutable and thread safe.
+ *
+ * @since 7.6.0
+ */
+public interface ICompiledTerserPath {
+
+	/**
+	 * Returns the path this object was compiled from
+	 */
+	String getPath();
+
+	/**
+	 * Returns the values at this path in the given element. This is equivalent to
+	 * {@link FhirTerser#getValues(IBase, String, Class)}.
+	 *
+	 * @param theTarget      The element to evaluate the path against. Must be an instance of the type the path was compiled for.
+	 * @param theWantedClass The desired class to be returned in a list.
+	 */
+	<T extends IBase> List<T> getValues(IBase theTarget, Class<T> theWantedClass);
+
+	/**
+	 * Returns the values at this path in the given element. This is equivalent to
+	 * {@link FhirTerser#getValues(IBase, String)}.
+	 */
+	default List<IBase> getValues(IBase theTarget) {
+		return getValues(theTarget, IBase.class);
+	}
+
+	/**
+	 * Returns the first value at this path in the given element, if any. This is equivalent to
+	 * {@link FhirTerser#getSingleValue(IBase, String, Class)}.
+	 */
+	default <T extends IBase> Optional<T> getSingleValue(IBase theTarget, Class<T> theWantedClass) {
+		List<T> values = getValues(theTarget, theWantedClass);
+		if (values.isEmpty()) {
+			return Optional.empty();
+		}
+		return Optional.of(values.get(0));
+	}
+
+	/**
+	 * Returns the string value of the first primitive value at this path in the given element, if any.
+	 * This is equivalent to {@link FhirTerser#getSinglePrimitiveValue(IBase, String)}.
+	 */
+	default Optional<String> getSinglePrimitiveValue(IBase theTarget) {
+		return getSingleValue(theTarget, IPrimitiveType.class).map(IPrimitiveType::getValueAsString);
+	}
+}
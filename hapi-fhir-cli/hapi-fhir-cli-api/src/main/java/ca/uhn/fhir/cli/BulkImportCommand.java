@@ -24,6 +24,7 @@ import ca.uhn.fhir.batch2.jobs.imprt.BulkImportFileServlet;
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.i18n.Msg;
 import ca.uhn.fhir.jpa.model.util.JpaConstants;
+import ca.uhn.fhir.parser.NDJsonParser;
 import ca.uhn.fhir.rest.api.Constants;
 import ca.uhn.fhir.rest.api.MethodOutcome;
 import ca.uhn.fhir.rest.client.api.IGenericClient;
@@ -36,7 +37,6 @@ import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 import org.apache.commons.io.IOCase;
-import org.apache.commons.io.LineIterator;
 import org.apache.commons.io.file.PathUtils;
 import org.apache.commons.io.filefilter.FileFileFilter;
 import org.apache.commons.io.filefilter.IOFileFilter;
@@ -304,9 +304,10 @@ public class BulkImportCommand extends BaseCommand {
 						is = nextIs;
 					}
 					Reader reader = new InputStreamReader(is, StandardCharsets.UTF_8);
-					LineIterator lineIterator = new LineIterator(reader);
-					String firstLine = lineIterator.next();
-					IBaseResource resource = ctx.newJsonParser().parseResource(firstLine);
+					// Only the first resource is needed, so only the first line is parsed
+					IBaseResource resource = ((NDJsonParser) ctx.newNDJsonParser())
+							.parseResources(reader)
+							.next();
 					types.add(myFhirCtx.getResourceType(resource));
 				}
 			}
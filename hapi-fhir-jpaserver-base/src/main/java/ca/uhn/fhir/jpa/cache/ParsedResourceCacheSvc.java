@@ -0,0 +1,239 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.cache;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.model.entity.IBaseResourceEntity;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.util.MemoryCacheService;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import jakarta.annotation.PreDestroy;
+import org.apache.commons.lang3.time.DateUtils;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Keeps resources which have been parsed from the database in memory, so that loading the same
+ * version of the same resource again does not require its stored body to be decompressed and
+ * parsed. Only resource types listed in {@link JpaStorageSettings#getParsedResourceCacheResourceTypes()}
+ * are cached.
+ * <p>
+ * Cached resources are never returned directly. Callers always receive a copy, so they are free to
+ * modify the resources they are given. Only the resource body is cached; the caller is responsible
+ * for populating the resource metadata from the database. Each entry records the PID, version and
+ * last updated time of the row it was parsed from, and is only used for a row with the same values.
+ * Entries are also removed when the resource changes, using the {@link IResourceChangeListenerRegistry}.
+ * </p>
+ *
+ * @since 7.6.0
+ */
+public class ParsedResourceCacheSvc implements IResourceChangeListener {
+
+	private static final Logger ourLog = LoggerFactory.getLogger(ParsedResourceCacheSvc.class);
+	private static final long REFRESH_INTERVAL = DateUtils.MILLIS_PER_MINUTE;
+
+	private final Set<String> myWatchedResourceTypes = ConcurrentHashMap.newKeySet();
+	private final LongAdder myHitCount = new LongAdder();
+	private final LongAdder myMissCount = new LongAdder();
+
+	@Autowired
+	private JpaStorageSettings myStorageSettings;
+
+	@Autowired
+	private MemoryCacheService myMemoryCacheService;
+
+	@Autowired
+	private IResourceChangeListenerRegistry myResourceChangeListenerRegistry;
+
+	/**
+	 * Returns a copy of the cached resource for the given entity if there is one, or parses the
+	 * resource using the given parser otherwise.
+	 *
+	 * @param theEntity       The entity the resource is being loaded from
+	 * @param theResourceType The type the resource will be parsed as
+	 * @param theParser       Parses the resource body from the entity
+	 */
+	@SuppressWarnings("unchecked")
+	@Nullable
+	public <R extends IBaseResource> R getOrParse(
+			@Nonnull IBaseResourceEntity theEntity, @Nonnull Class<R> theResourceType, @Nonnull Supplier<R> theParser) {
+		String resourceType = theEntity.getResourceType();
+		if (theEntity.getResourceId() == null
+				|| !myStorageSettings.getParsedResourceCacheResourceTypes().contains(resourceType)) {
+			return theParser.get();
+		}
+		registerListenerIfRequired(resourceType);
+
+		String key = resourceType + '/' + theEntity.getIdDt().getIdPart();
+		CachedResource cached = myMemoryCacheService.getIfPresent(MemoryCacheService.CacheEnum.PARSED_RESOURCE, key);
+		if (cached != null && cached.matches(theEntity) && cached.getResource().getClass() == theResourceType) {
+			myHitCount.increment();
+			return (R) copy(cached.getResource());
+		}
+
+		myMissCount.increment();
+		R retVal = theParser.get();
+		if (retVal != null) {
+			IBaseResource copy = copy(retVal);
+			if (copy != null && copy.getClass() == retVal.getClass()) {
+				// The entity might have been written by the current transaction, so don't cache it until that commits
+				myMemoryCacheService.putAfterCommit(
+						MemoryCacheService.CacheEnum.PARSED_RESOURCE, key, new CachedResource(theEntity, copy));
+			}
+		}
+		return retVal;
+	}
+
+	/**
+	 * Returns the number of resources which were copied from the cache instead of being parsed
+	 */
+	public long getHitCount() {
+		return myHitCount.sum();
+	}
+
+	/**
+	 * Returns the number of resources of a cached type which had to be parsed
+	 */
+	public long getMissCount() {
+		return myMissCount.sum();
+	}
+
+	/**
+	 * Returns the approximate number of resources currently in the cache
+	 */
+	public long getEstimatedSize() {
+		return myMemoryCacheService.getEstimatedSize(MemoryCacheService.CacheEnum.PARSED_RESOURCE);
+	}
+
+	/**
+	 * Removes all resources from the cache, and resets the hit and miss counts
+	 */
+	public void invalidateAll() {
+		myMemoryCacheService.invalidateCaches(MemoryCacheService.CacheEnum.PARSED_RESOURCE);
+		myHitCount.reset();
+		myMissCount.reset();
+	}
+
+	@Override
+	public void handleInit(Collection<IIdType> theResourceIds) {
+		// Nothing is cached until it is loaded
+	}
+
+	@Override
+	public void handleChange(IResourceChangeEvent theResourceChangeEvent) {
+		invalidate(theResourceChangeEvent.getUpdatedResourceIds());
+		invalidate(theResourceChangeEvent.getDeletedResourceIds());
+	}
+
+	@PreDestroy
+	public void unregisterListener() {
+		if (!myWatchedResourceTypes.isEmpty()) {
+			myResourceChangeListenerRegistry.unregisterResourceResourceChangeListener(this);
+			myWatchedResourceTypes.clear();
+		}
+	}
+
+	private void invalidate(List<IIdType> theResourceIds) {
+		for (IIdType next : theResourceIds) {
+			String key = next.getResourceType() + '/' + next.getIdPart();
+			myMemoryCacheService.invalidate(MemoryCacheService.CacheEnum.PARSED_RESOURCE, key);
+		}
+	}
+
+	private void registerListenerIfRequired(String theResourceType) {
+		if (myWatchedResourceTypes.add(theResourceType)) {
+			ourLog.info("Watching {} resources for changes to the parsed resource cache", theResourceType);
+			myResourceChangeListenerRegistry.registerResourceResourceChangeListener(
+					theResourceType, SearchParameterMap.newSynchronous(), this, REFRESH_INTERVAL);
+		}
+	}
+
+	/**
+	 * Creates a deep copy of a resource, or returns <code>null</code> if the resource's structure
+	 * version does not support copying (in which case the resource is not cached)
+	 */
+	@Nullable
+	static IBaseResource copy(IBaseResource theResource) {
+		if (theResource instanceof org.hl7.fhir.r4.model.Resource) {
+			return ((org.hl7.fhir.r4.model.Resource) theResource).copy();
+		}
+		if (theResource instanceof org.hl7.fhir.r5.model.Resource) {
+			return ((org.hl7.fhir.r5.model.Resource) theResource).copy();
+		}
+		if (theResource instanceof org.hl7.fhir.r4b.model.Resource) {
+			return ((org.hl7.fhir.r4b.model.Resource) theResource).copy();
+		}
+		if (theResource instanceof org.hl7.fhir.dstu3.model.Resource) {
+			return ((org.hl7.fhir.dstu3.model.Resource) theResource).copy();
+		}
+		return null;
+	}
+
+	private static class CachedResource {
+
+		private final long myResourcePid;
+		private final long myVersion;
+		private final Long myUpdated;
+		private final IBaseResource myResource;
+
+		private CachedResource(IBaseResourceEntity theEntity, IBaseResource theResource) {
+			myResourcePid = theEntity.getResourceId();
+			myVersion = theEntity.getVersion();
+			myUpdated = toMillis(theEntity.getUpdatedDate());
+			myResource = theResource;
+		}
+
+		/**
+		 * The last updated time is compared as well as the version, since the content of an
+		 * existing version can be replaced by an update with history rewrite
+		 */
+		boolean matches(IBaseResourceEntity theEntity) {
+			return myResourcePid == theEntity.getResourceId()
+					&& myVersion == theEntity.getVersion()
+					&& Objects.equals(myUpdated, toMillis(theEntity.getUpdatedDate()));
+		}
+
+		IBaseResource getResource() {
+			return myResource;
+		}
+
+		/**
+		 * Dates loaded by Hibernate may be {@link java.sql.Timestamp} instances, which are
+		 * never equal to plain {@link Date} instances, so times are compared as millis
+		 */
+		@Nullable
+		private static Long toMillis(@Nullable Date theDate) {
+			return theDate != null ? theDate.getTime() : null;
+		}
+	}
+}
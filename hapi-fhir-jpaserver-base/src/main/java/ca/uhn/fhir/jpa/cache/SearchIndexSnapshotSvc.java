@@ -0,0 +1,623 @@
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.cache;
+
+import ca.uhn.fhir.IHapiBootOrder;
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.FhirVersionEnum;
+import ca.uhn.fhir.context.RuntimeResourceDefinition;
+import ca.uhn.fhir.interceptor.api.Hook;
+import ca.uhn.fhir.interceptor.api.HookParams;
+import ca.uhn.fhir.interceptor.api.IInterceptorBroadcaster;
+import ca.uhn.fhir.interceptor.api.IInterceptorService;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
+import ca.uhn.fhir.jpa.api.dao.IDao;
+import ca.uhn.fhir.jpa.api.dao.IFhirResourceDao;
+import ca.uhn.fhir.jpa.model.config.PartitionSettings;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.searchparam.extractor.ResourceIndexedSearchParams;
+import ca.uhn.fhir.jpa.searchparam.matcher.InMemoryMatchResult;
+import ca.uhn.fhir.jpa.searchparam.matcher.InMemoryResourceMatcher;
+import ca.uhn.fhir.jpa.searchparam.matcher.IndexedSearchParamExtractor;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.SearchContainedModeEnum;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.api.server.IPreResourceAccessDetails;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.api.server.SimplePreResourceAccessDetails;
+import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
+import ca.uhn.fhir.rest.param.TokenOrListParam;
+import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.server.IPagingProvider;
+import ca.uhn.fhir.rest.server.SimpleBundleProvider;
+import ca.uhn.fhir.rest.server.interceptor.ServerInterceptorUtil;
+import ca.uhn.fhir.rest.server.servlet.ServletRequestDetails;
+import ca.uhn.fhir.rest.server.util.CompositeInterceptorBroadcaster;
+import ca.uhn.fhir.util.StopWatch;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
+import jakarta.annotation.Nullable;
+import jakarta.annotation.PreDestroy;
+import org.hl7.fhir.instance.model.api.IAnyResource;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import static ca.uhn.fhir.jpa.util.SearchParameterMapCalculator.isWantOnlyCount;
+
+/**
+ * Answers searches for small, read-mostly resource types from an in-memory snapshot instead of
+ * the database. Only resource types listed in
+ * {@link JpaStorageSettings#getSearchIndexSnapshotResourceTypes()} are kept in a snapshot.
+ * <p>
+ * A snapshot holds every current resource of its type along with the search indexes extracted
+ * from it, and searches are evaluated against these indexes using the {@link InMemoryResourceMatcher}.
+ * The snapshot is loaded when the type is first searched, and is kept current using the
+ * {@link IResourceChangeListenerRegistry}. Resources written on this server are marked as changed
+ * when their transaction commits, and are reloaded by the next search, so a client always sees its
+ * own writes. Any search which can not be answered exactly from a snapshot returns <code>null</code>
+ * from {@link #search(String, SearchParameterMap, Integer, RequestDetails)}, and the caller
+ * executes it against the database as usual.
+ * </p>
+ *
+ * @since 7.6.0
+ */
+public class SearchIndexSnapshotSvc {
+
+	private static final Logger ourLog = LoggerFactory.getLogger(SearchIndexSnapshotSvc.class);
+	private static final int LOAD_BATCH_SIZE = 500;
+
+	private final ConcurrentMap<String, Snapshot> mySnapshots = new ConcurrentHashMap<>();
+	private final AtomicLong myChangeSequence = new AtomicLong();
+	private final LongAdder myAnsweredCount = new LongAdder();
+	private final LongAdder myFallbackCount = new LongAdder();
+
+	@Autowired
+	private FhirContext myFhirContext;
+
+	@Autowired
+	private JpaStorageSettings myStorageSettings;
+
+	@Autowired
+	private PartitionSettings myPartitionSettings;
+
+	@Autowired
+	private DaoRegistry myDaoRegistry;
+
+	@Autowired
+	private InMemoryResourceMatcher myInMemoryResourceMatcher;
+
+	@Autowired
+	private IndexedSearchParamExtractor myIndexedSearchParamExtractor;
+
+	@Autowired
+	private IResourceChangeListenerRegistry myResourceChangeListenerRegistry;
+
+	@Autowired
+	private IInterceptorService myInterceptorService;
+
+	@Autowired
+	private IInterceptorBroadcaster myInterceptorBroadcaster;
+
+	@EventListener(classes = {ContextRefreshedEvent.class})
+	@Order(IHapiBootOrder.REGISTER_INTERCEPTORS)
+	public void start() {
+		myInterceptorService.registerInterceptor(this);
+	}
+
+	@PreDestroy
+	public void stop() {
+		myInterceptorService.unregisterInterceptor(this);
+		invalidateAll();
+	}
+
+	/**
+	 * Answers a search from the snapshot of the given resource type if possible.
+	 *
+	 * @param theResourceType         The resource type being searched
+	 * @param theParams               The search parameters
+	 * @param theLoadSynchronousUpTo  The maximum number of results to load for a synchronous search, if one was requested
+	 * @param theRequestDetails       The request details
+	 * @return The search results, or <code>null</code> if the search must be executed against the database
+	 */
+	@Nullable
+	public IBundleProvider search(
+			String theResourceType,
+			SearchParameterMap theParams,
+			@Nullable Integer theLoadSynchronousUpTo,
+			RequestDetails theRequestDetails) {
+		if (!myStorageSettings.getSearchIndexSnapshotResourceTypes().contains(theResourceType)
+				|| myPartitionSettings.isPartitioningEnabled()) {
+			return null;
+		}
+
+		// Resources are returned as copies, and older structures can't be copied
+		if (!myFhirContext.getVersion().getVersion().isEqualOrNewerThan(FhirVersionEnum.DSTU3)) {
+			myFallbackCount.increment();
+			return null;
+		}
+
+		Snapshot snapshot = getOrCreateSnapshot(theResourceType);
+		RuntimeResourceDefinition resourceDef = myFhirContext.getResourceDefinition(theResourceType);
+
+		/*
+		 * Searches inside a transaction (e.g. in a transaction bundle) may need to see resources
+		 * which that transaction has written but not yet committed, so they always use the database
+		 */
+		if (!snapshot.isInitialized()
+				|| TransactionSynchronizationManager.isActualTransactionActive()
+				|| !canBeAnsweredFromSnapshot(theParams, resourceDef)) {
+			myFallbackCount.increment();
+			return null;
+		}
+
+		snapshot.applyPendingChanges();
+
+		List<Entry> matches = new ArrayList<>();
+		for (Entry next : snapshot.getEntries()) {
+			InMemoryMatchResult result =
+					myInMemoryResourceMatcher.match(theParams, next.getResource(), resourceDef, next.getIndexes());
+			if (!result.supported()) {
+				ourLog.debug(
+						"Search of {} can not be answered from snapshot: {}",
+						theResourceType,
+						result.getUnsupportedReason());
+				myFallbackCount.increment();
+				return null;
+			}
+			if (result.matched()) {
+				matches.add(next);
+			}
+		}
+
+		Integer loadSynchronousUpTo =
+				theLoadSynchronousUpTo != null ? theLoadSynchronousUpTo : theParams.getLoadSynchronousUpTo();
+		if (loadSynchronousUpTo != null && matches.size() > loadSynchronousUpTo) {
+			matches = matches.subList(0, loadSynchronousUpTo);
+		}
+		int total = matches.size();
+
+		if (isWantOnlyCount(theParams)) {
+			myAnsweredCount.increment();
+			SimpleBundleProvider retVal = new SimpleBundleProvider();
+			retVal.setSize(total);
+			return retVal;
+		}
+
+		/*
+		 * Results from a snapshot can't be stored for paging, so searches which would need a
+		 * next page link are left to the database
+		 */
+		boolean synchronous = theParams.isLoadSynchronous() || loadSynchronousUpTo != null;
+		Integer count = theParams.getCount();
+		int fromIndex = 0;
+		int toIndex = total;
+		if (theParams.isOffsetQuery()) {
+			fromIndex = Math.min(theParams.getOffset(), total);
+			toIndex = Math.min(fromIndex + count, total);
+		} else if (!synchronous) {
+			Integer pageSize = getFirstPageSize(theParams, theRequestDetails);
+			if (pageSize != null && total > pageSize) {
+				myFallbackCount.increment();
+				return null;
+			}
+		}
+
+		List<IBaseResource> resources = new ArrayList<>(toIndex - fromIndex);
+		for (Entry next : matches.subList(fromIndex, toIndex)) {
+			IBaseResource copy = ParsedResourceCacheSvc.copy(next.getResource());
+			if (copy == null) {
+				myFallbackCount.increment();
+				return null;
+			}
+			IDao.RESOURCE_PID.put(copy, next.getResourcePid());
+			resources.add(copy);
+		}
+		resources = fireAccessHooks(resources, theRequestDetails);
+
+		myAnsweredCount.increment();
+		SimpleBundleProvider retVal = new SimpleBundleProvider(resources);
+		retVal.setSize(total);
+		retVal.setPreferredPageSize(count);
+		if (theParams.isOffsetQuery()) {
+			retVal.setCurrentPageOffset(theParams.getOffset());
+			retVal.setCurrentPageSize(count);
+		}
+		return retVal;
+	}
+
+	@Hook(Pointcut.STORAGE_PRECOMMIT_RESOURCE_CREATED)
+	public void resourceCreated(IBaseResource theResource) {
+		handleLocalChange(theResource);
+	}
+
+	@Hook(Pointcut.STORAGE_PRECOMMIT_RESOURCE_UPDATED)
+	public void resourceUpdated(IBaseResource theOldResource, IBaseResource theNewResource) {
+		handleLocalChange(theNewResource);
+	}
+
+	@Hook(Pointcut.STORAGE_PRECOMMIT_RESOURCE_DELETED)
+	public void resourceDeleted(IBaseResource theResource) {
+		handleLocalChange(theResource);
+	}
+
+	/**
+	 * Returns the number of searches which were answered from a snapshot
+	 */
+	public long getAnsweredCount() {
+		return myAnsweredCount.sum();
+	}
+
+	/**
+	 * Returns the number of searches of a snapshot resource type which had to be executed
+	 * against the database
+	 */
+	public long getFallbackCount() {
+		return myFallbackCount.sum();
+	}
+
+	/**
+	 * Returns the number of resources in the snapshot for the given resource type, or
+	 * <code>-1</code> if there is no loaded snapshot for that type
+	 */
+	public int getSnapshotSize(String theResourceType) {
+		Snapshot snapshot = mySnapshots.get(theResourceType);
+		if (snapshot == null || !snapshot.isInitialized()) {
+			return -1;
+		}
+		return snapshot.size();
+	}
+
+	/**
+	 * Returns the number of milliseconds since the snapshot for the given resource type was last
+	 * compared against the database, which is the longest time for which changes made by other
+	 * servers may be missing from it. Returns <code>-1</code> if there is no loaded snapshot for
+	 * that type.
+	 */
+	public long getMillisSinceLastRefresh(String theResourceType) {
+		Snapshot snapshot = mySnapshots.get(theResourceType);
+		if (snapshot == null || !snapshot.isInitialized()) {
+			return -1;
+		}
+		return Duration.between(snapshot.getLastRefreshed(), Instant.now()).toMillis();
+	}
+
+	/**
+	 * Discards all snapshots, and resets the answered and fallback counts
+	 */
+	public void invalidateAll() {
+		for (Snapshot next : mySnapshots.values()) {
+			myResourceChangeListenerRegistry.unregisterResourceResourceChangeListener(next);
+		}
+		mySnapshots.clear();
+		myAnsweredCount.reset();
+		myFallbackCount.reset();
+	}
+
+	/**
+	 * Loads the snapshot for the given resource type if it has not been loaded yet
+	 */
+	@VisibleForTesting
+	public void refreshSnapshot(String theResourceType) {
+		getOrCreateSnapshot(theResourceType).getCache().forceRefresh();
+	}
+
+	/**
+	 * Returns the size of the first page the server will return for a search, or <code>null</code>
+	 * if the search is not being performed by a server (in which case the results aren't paged)
+	 */
+	@Nullable
+	private static Integer getFirstPageSize(SearchParameterMap theParams, RequestDetails theRequestDetails) {
+		if (theParams.getCount() != null) {
+			return theParams.getCount();
+		}
+		if (theRequestDetails == null || theRequestDetails.getServer() == null) {
+			return null;
+		}
+		IPagingProvider pagingProvider = theRequestDetails.getServer().getPagingProvider();
+		return pagingProvider != null ? pagingProvider.getDefaultPageSize() : 0;
+	}
+
+	private boolean canBeAnsweredFromSnapshot(SearchParameterMap theParams, RuntimeResourceDefinition theResourceDef) {
+		if (!theParams.getIncludes().isEmpty()
+				|| !theParams.getRevIncludes().isEmpty()
+				|| theParams.getSort() != null
+				|| theParams.getEverythingMode() != null
+				|| theParams.isLastN()
+				|| theParams.isDeleteExpunge()
+				|| theParams.getSearchContainedMode() != SearchContainedModeEnum.FALSE) {
+			return false;
+		}
+		return myInMemoryResourceMatcher
+				.canBeEvaluatedInMemory(theParams, theResourceDef)
+				.supported();
+	}
+
+	private List<IBaseResource> fireAccessHooks(List<IBaseResource> theResources, RequestDetails theRequestDetails) {
+		// Interceptor call: STORAGE_PREACCESS_RESOURCES
+		if (CompositeInterceptorBroadcaster.hasHooks(
+				Pointcut.STORAGE_PREACCESS_RESOURCES, myInterceptorBroadcaster, theRequestDetails)) {
+			SimplePreResourceAccessDetails accessDetails = new SimplePreResourceAccessDetails(theResources);
+			HookParams params = new HookParams()
+					.add(IPreResourceAccessDetails.class, accessDetails)
+					.add(RequestDetails.class, theRequestDetails)
+					.addIfMatchesType(ServletRequestDetails.class, theRequestDetails);
+			CompositeInterceptorBroadcaster.doCallHooks(
+					myInterceptorBroadcaster, theRequestDetails, Pointcut.STORAGE_PREACCESS_RESOURCES, params);
+			List<IBaseResource> allowed = new ArrayList<>(theResources.size());
+			for (int i = 0; i < theResources.size(); i++) {
+				if (!accessDetails.isDontReturnResourceAtIndex(i)) {
+					allowed.add(theResources.get(i));
+				}
+			}
+			theResources = allowed;
+		}
+
+		// Interceptor call: STORAGE_PRESHOW_RESOURCES
+		return ServerInterceptorUtil.fireStoragePreshowResource(
+				theResources, theRequestDetails, myInterceptorBroadcaster);
+	}
+
+	private void handleLocalChange(IBaseResource theResource) {
+		if (theResource == null) {
+			return;
+		}
+		Snapshot snapshot = mySnapshots.get(myFhirContext.getResourceType(theResource));
+		if (snapshot == null) {
+			return;
+		}
+
+		// The change must not be loaded into the snapshot until it is visible to other transactions
+		String idPart = theResource.getIdElement().getIdPart();
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCommit() {
+					snapshot.markChanged(idPart);
+				}
+			});
+		} else {
+			snapshot.markChanged(idPart);
+		}
+	}
+
+	private Snapshot getOrCreateSnapshot(String theResourceType) {
+		return mySnapshots.computeIfAbsent(theResourceType, t -> {
+			ourLog.info("Creating search index snapshot for {} resources", t);
+			long refreshInterval = myStorageSettings.getSearchIndexSnapshotRefreshIntervalMillis();
+			Snapshot snapshot = new Snapshot(t, refreshInterval);
+			IResourceChangeListenerCache cache =
+					myResourceChangeListenerRegistry.registerResourceResourceChangeListener(
+							t, SearchParameterMap.newSynchronous(), snapshot, refreshInterval);
+			snapshot.setCache(cache);
+			return snapshot;
+		});
+	}
+
+	/**
+	 * Loads the current versions of the given resources into the snapshot, and removes any of
+	 * them which no longer exist
+	 */
+	private void loadResources(Snapshot theSnapshot, Collection<String> theIdParts) {
+		IFhirResourceDao<?> dao = myDaoRegistry.getResourceDao(theSnapshot.getResourceType());
+		for (List<String> nextChunk : Lists.partition(new ArrayList<>(theIdParts), LOAD_BATCH_SIZE)) {
+			TokenOrListParam idParam = new TokenOrListParam();
+			nextChunk.forEach(t -> idParam.addOr(new TokenParam(t)));
+			SearchParameterMap map = SearchParameterMap.newSynchronous();
+			map.add(IAnyResource.SP_RES_ID, idParam);
+
+			// Make sure that the search is never answered from the snapshot itself
+			SystemRequestDetails requestDetails = new SystemRequestDetails();
+			requestDetails.addHeader(Constants.HEADER_CACHE_CONTROL, Constants.CACHE_CONTROL_NO_CACHE);
+
+			Set<String> found = new HashSet<>();
+			for (IBaseResource next : dao.search(map, requestDetails).getAllResources()) {
+				Long resourcePid = IDao.RESOURCE_PID.get(next);
+				if (resourcePid == null) {
+					continue;
+				}
+				ResourceIndexedSearchParams indexes =
+						myIndexedSearchParamExtractor.extractIndexedSearchParams(next, requestDetails);
+				theSnapshot.put(new Entry(resourcePid, next, indexes));
+				found.add(next.getIdElement().getIdPart());
+			}
+			for (String next : nextChunk) {
+				if (!found.contains(next)) {
+					theSnapshot.remove(next);
+				}
+			}
+		}
+	}
+
+	private static class Entry {
+
+		private final long myResourcePid;
+		private final IBaseResource myResource;
+		private final ResourceIndexedSearchParams myIndexes;
+
+		private Entry(long theResourcePid, IBaseResource theResource, ResourceIndexedSearchParams theIndexes) {
+			myResourcePid = theResourcePid;
+			myResource = theResource;
+			myIndexes = theIndexes;
+		}
+
+		long getResourcePid() {
+			return myResourcePid;
+		}
+
+		IBaseResource getResource() {
+			return myResource;
+		}
+
+		ResourceIndexedSearchParams getIndexes() {
+			return myIndexes;
+		}
+	}
+
+	/**
+	 * The resources of one type. Entries are ordered by PID so that searches return results in
+	 * the same order as an unsorted database search.
+	 */
+	private class Snapshot implements IResourceChangeListener {
+
+		private final String myResourceType;
+		private final long myRefreshInterval;
+		private final ConcurrentSkipListMap<Long, Entry> myEntries = new ConcurrentSkipListMap<>();
+		private final ConcurrentMap<String, Long> myIdPartToPid = new ConcurrentHashMap<>();
+
+		/**
+		 * Resources which have changed but have not been reloaded yet, along with the sequence
+		 * number of their latest change, so that a change which arrives while the resource is
+		 * being reloaded is not lost
+		 */
+		private final ConcurrentMap<String, Long> myPendingChanges = new ConcurrentHashMap<>();
+
+		private volatile IResourceChangeListenerCache myCache;
+		private volatile boolean myInitialized;
+		private volatile Instant myLastLoaded = Instant.MIN;
+
+		private Snapshot(String theResourceType, long theRefreshInterval) {
+			myResourceType = theResourceType;
+			myRefreshInterval = theRefreshInterval;
+		}
+
+		@Override
+		public void handleInit(Collection<IIdType> theResourceIds) {
+			StopWatch sw = new StopWatch();
+			List<String> idParts =
+					theResourceIds.stream().map(IIdType::getIdPart).collect(Collectors.toList());
+			loadResources(this, idParts);
+			myLastLoaded = Instant.now();
+			myInitialized = true;
+			ourLog.info("Loaded {} {} resources into search index snapshot in {}", size(), myResourceType, sw);
+		}
+
+		@Override
+		public void handleChange(IResourceChangeEvent theResourceChangeEvent) {
+			theResourceChangeEvent.getCreatedResourceIds().forEach(t -> markChanged(t.getIdPart()));
+			theResourceChangeEvent.getUpdatedResourceIds().forEach(t -> markChanged(t.getIdPart()));
+			theResourceChangeEvent.getDeletedResourceIds().forEach(t -> markChanged(t.getIdPart()));
+		}
+
+		void markChanged(String theIdPart) {
+			myPendingChanges.put(theIdPart, myChangeSequence.incrementAndGet());
+		}
+
+		/**
+		 * Reloads any changed resources before the snapshot is searched. Searches which arrive
+		 * while another thread is reloading wait for it to finish, since the snapshot may be
+		 * missing a change which that thread has already seen.
+		 */
+		void applyPendingChanges() {
+			if (myPendingChanges.isEmpty()) {
+				return;
+			}
+			synchronized (this) {
+				if (myPendingChanges.isEmpty()) {
+					return;
+				}
+				Map<String, Long> changes = new HashMap<>(myPendingChanges);
+				loadResources(this, changes.keySet());
+				changes.forEach(myPendingChanges::remove);
+				myLastLoaded = Instant.now();
+			}
+		}
+
+		void put(Entry theEntry) {
+			String idPart = theEntry.getResource().getIdElement().getIdPart();
+			Long previousPid = myIdPartToPid.put(idPart, theEntry.getResourcePid());
+			if (previousPid != null && previousPid != theEntry.getResourcePid()) {
+				myEntries.remove(previousPid);
+			}
+			myEntries.put(theEntry.getResourcePid(), theEntry);
+		}
+
+		void remove(String theIdPart) {
+			Long pid = myIdPartToPid.remove(theIdPart);
+			if (pid != null) {
+				myEntries.remove(pid);
+			}
+		}
+
+		Collection<Entry> getEntries() {
+			return myEntries.values();
+		}
+
+		int size() {
+			return myEntries.size();
+		}
+
+		boolean isInitialized() {
+			return myInitialized;
+		}
+
+		String getResourceType() {
+			return myResourceType;
+		}
+
+		IResourceChangeListenerCache getCache() {
+			return myCache;
+		}
+
+		void setCache(IResourceChangeListenerCache theCache) {
+			myCache = theCache;
+		}
+
+		/**
+		 * The listener cache schedules its next refresh one refresh interval after the last one
+		 */
+		Instant getLastRefreshed() {
+			Instant retVal = myLastLoaded;
+			Instant nextRefresh = myCache.getNextRefreshTime();
+			if (!Instant.MIN.equals(nextRefresh)) {
+				Instant lastRefresh = nextRefresh.minusMillis(myRefreshInterval);
+				if (lastRefresh.isAfter(retVal)) {
+					retVal = lastRefresh;
+				}
+			}
+			return retVal;
+		}
+	}
+}
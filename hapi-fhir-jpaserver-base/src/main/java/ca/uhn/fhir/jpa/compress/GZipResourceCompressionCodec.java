@@ -0,0 +1,50 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.compress;
+
+import ca.uhn.fhir.jpa.dao.GZipUtil;
+import ca.uhn.fhir.jpa.model.entity.ResourceEncodingEnum;
+import jakarta.annotation.Nonnull;
+
+/**
+ * Codec for {@link ResourceEncodingEnum#JSONC}, using GZip
+ *
+ * @since 7.6.0
+ */
+public class GZipResourceCompressionCodec implements IResourceCompressionCodec {
+
+	@Nonnull
+	@Override
+	public ResourceEncodingEnum getEncoding() {
+		return ResourceEncodingEnum.JSONC;
+	}
+
+	@Nonnull
+	@Override
+	public byte[] compress(@Nonnull String theResourceType, @Nonnull String theEncodedResource) {
+		return GZipUtil.compress(theEncodedResource);
+	}
+
+	@Nonnull
+	@Override
+	public String decompress(@Nonnull byte[] theCompressed) {
+		return GZipUtil.decompress(theCompressed);
+	}
+}
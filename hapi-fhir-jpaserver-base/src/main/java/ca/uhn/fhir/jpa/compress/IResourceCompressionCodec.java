@@ -0,0 +1,57 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.compress;
+
+import ca.uhn.fhir.jpa.model.entity.ResourceEncodingEnum;
+import jakarta.annotation.Nonnull;
+
+/**
+ * Compresses and decompresses the encoded text of stored resources for a single
+ * {@link ResourceEncodingEnum#isCompressed() compressed} resource encoding. Implementations
+ * must be thread safe.
+ *
+ * @since 7.6.0
+ */
+public interface IResourceCompressionCodec {
+
+	/**
+	 * Returns the encoding which is stored alongside content compressed by this codec. No two
+	 * registered codecs may return the same encoding, and this codec should always return the same encoding.
+	 */
+	@Nonnull
+	ResourceEncodingEnum getEncoding();
+
+	/**
+	 * Compresses the encoded text of a resource
+	 *
+	 * @param theResourceType    The resource type (e.g. <code>Patient</code>). Codecs may use this to select a dictionary.
+	 * @param theEncodedResource The encoded resource text
+	 */
+	@Nonnull
+	byte[] compress(@Nonnull String theResourceType, @Nonnull String theEncodedResource);
+
+	/**
+	 * Decompresses content previously returned by {@link #compress(String, String)}. Content must
+	 * remain readable for as long as it is stored, so any dictionary used to compress it must
+	 * be identified by the compressed content itself.
+	 */
+	@Nonnull
+	String decompress(@Nonnull byte[] theCompressed);
+}
@@ -0,0 +1,59 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.compress;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+
+/**
+ * Stores the dictionaries used by the {@link ZstdResourceCompressionCodec}. Small resources of the
+ * same type share a lot of boilerplate (element names, code systems, profile URLs) which generic
+ * compression can't take advantage of, since each resource is compressed on its own. A dictionary
+ * trained from a sample of existing resources of a type lets each resource refer to that shared
+ * content instead.
+ *
+ * @since 7.6.0
+ */
+public interface IResourceCompressionDictionarySvc {
+
+	/**
+	 * Returns the dictionary which should be used to compress new resources of the given type,
+	 * or <code>null</code> if no dictionary has been trained for that type
+	 */
+	@Nullable
+	ResourceCompressionDictionary getActiveDictionary(@Nonnull String theResourceType);
+
+	/**
+	 * Returns the dictionary with the given ID, or <code>null</code> if no such dictionary exists
+	 */
+	@Nullable
+	ResourceCompressionDictionary getDictionary(long theDictionaryId);
+
+	/**
+	 * Trains a new dictionary using a sample of the stored resources of the given type, stores it,
+	 * and makes it the active dictionary for that type. Resources stored before this call are not
+	 * affected, since the dictionaries they were compressed with are never removed.
+	 *
+	 * @param theResourceType The resource type
+	 * @param theMaxSamples   The maximum number of resources to use as samples
+	 */
+	@Nonnull
+	ResourceCompressionDictionary trainDictionary(@Nonnull String theResourceType, int theMaxSamples);
+}
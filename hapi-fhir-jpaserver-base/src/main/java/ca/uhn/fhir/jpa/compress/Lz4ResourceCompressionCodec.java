@@ -0,0 +1,84 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.compress;
+
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.jpa.model.entity.ResourceEncodingEnum;
+import ca.uhn.fhir.parser.DataFormatException;
+import jakarta.annotation.Nonnull;
+import net.jpountz.lz4.LZ4CompressorWithLength;
+import net.jpountz.lz4.LZ4DecompressorWithLength;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Codec for {@link ResourceEncodingEnum#JLZ4}. LZ4 compresses less than GZip, but
+ * compresses and decompresses several times faster, which makes it a good fit for
+ * write-heavy ingestion.
+ *
+ * @since 7.6.0
+ */
+public class Lz4ResourceCompressionCodec implements IResourceCompressionCodec {
+
+	/**
+	 * LZ4 can not expand data by more than this ratio, so a larger declared length means the content is corrupt
+	 */
+	private static final int MAX_EXPANSION_RATIO = 255;
+
+	private final LZ4CompressorWithLength myCompressor;
+	private final LZ4DecompressorWithLength myDecompressor;
+
+	/**
+	 * Constructor
+	 */
+	public Lz4ResourceCompressionCodec() {
+		LZ4Factory factory = LZ4Factory.fastestInstance();
+		myCompressor = new LZ4CompressorWithLength(factory.fastCompressor());
+		myDecompressor = new LZ4DecompressorWithLength(factory.fastDecompressor());
+	}
+
+	@Nonnull
+	@Override
+	public ResourceEncodingEnum getEncoding() {
+		return ResourceEncodingEnum.JLZ4;
+	}
+
+	@Nonnull
+	@Override
+	public byte[] compress(@Nonnull String theResourceType, @Nonnull String theEncodedResource) {
+		return myCompressor.compress(theEncodedResource.getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Nonnull
+	@Override
+	public String decompress(@Nonnull byte[] theCompressed) {
+		try {
+			int length = LZ4DecompressorWithLength.getDecompressedLength(theCompressed);
+			if (length < 0 || (long) length > (long) theCompressed.length * MAX_EXPANSION_RATIO) {
+				throw new LZ4Exception("Invalid decompressed length: " + length);
+			}
+			return new String(myDecompressor.decompress(theCompressed), StandardCharsets.UTF_8);
+		} catch (LZ4Exception e) {
+			throw new DataFormatException(Msg.code(2577) + "Failed to decompress contents", e);
+		}
+	}
+}
@@ -0,0 +1,131 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.compress;
+
+import ca.uhn.fhir.jpa.model.entity.ResourceEncodingEnum;
+import com.google.common.base.Utf8;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.apache.commons.lang3.Validate;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Holds the {@link IResourceCompressionCodec codec} used for each
+ * {@link ResourceEncodingEnum#isCompressed() compressed} resource encoding, and collects
+ * {@link ResourceCompressionMetrics metrics} about their use.
+ * <p>
+ * Codecs for {@link ResourceEncodingEnum#JSONC}, {@link ResourceEncodingEnum#JZSTD} and
+ * {@link ResourceEncodingEnum#JLZ4} are registered by default, and may be replaced using
+ * {@link #registerCodec(IResourceCompressionCodec)} (e.g. to use a different compression level).
+ * </p>
+ *
+ * @since 7.6.0
+ */
+public class ResourceCompressionCodecRegistry {
+
+	private final Map<ResourceEncodingEnum, IResourceCompressionCodec> myCodecs =
+			new EnumMap<>(ResourceEncodingEnum.class);
+	private final Map<ResourceEncodingEnum, ResourceCompressionMetrics> myMetrics =
+			new EnumMap<>(ResourceEncodingEnum.class);
+
+	/**
+	 * Constructor which registers the default codecs, without compression dictionaries
+	 */
+	public ResourceCompressionCodecRegistry() {
+		this(null);
+	}
+
+	/**
+	 * Constructor which registers the default codecs
+	 *
+	 * @param theDictionarySvc If not <code>null</code>, supplies the dictionaries used by the Zstandard codec
+	 */
+	public ResourceCompressionCodecRegistry(@Nullable IResourceCompressionDictionarySvc theDictionarySvc) {
+		for (ResourceEncodingEnum next : ResourceEncodingEnum.values()) {
+			if (next.isCompressed()) {
+				myMetrics.put(next, new ResourceCompressionMetrics(next));
+			}
+		}
+		registerCodec(new GZipResourceCompressionCodec());
+		registerCodec(new ZstdResourceCompressionCodec(
+				ZstdResourceCompressionCodec.DEFAULT_COMPRESSION_LEVEL, theDictionarySvc));
+		registerCodec(new Lz4ResourceCompressionCodec());
+	}
+
+	/**
+	 * Registers a codec, replacing any codec previously registered for the same encoding.
+	 * Do not call this method after the server has been started.
+	 *
+	 * @param theCodec The codec to register.
+	 */
+	public void registerCodec(@Nonnull IResourceCompressionCodec theCodec) {
+		ResourceEncodingEnum encoding = theCodec.getEncoding();
+		Validate.isTrue(encoding.isCompressed(), "Encoding %s is not a compressed encoding", encoding);
+		myCodecs.put(encoding, theCodec);
+	}
+
+	@Nonnull
+	public IResourceCompressionCodec getCodec(@Nonnull ResourceEncodingEnum theEncoding) {
+		IResourceCompressionCodec retVal = myCodecs.get(theEncoding);
+		Validate.notNull(retVal, "No compression codec for encoding: %s", theEncoding);
+		return retVal;
+	}
+
+	/**
+	 * Compresses the encoded text of a resource using the codec for the given encoding
+	 */
+	@Nonnull
+	public byte[] compress(
+			@Nonnull ResourceEncodingEnum theEncoding,
+			@Nonnull String theResourceType,
+			@Nonnull String theEncodedResource) {
+		IResourceCompressionCodec codec = getCodec(theEncoding);
+		long start = System.nanoTime();
+		byte[] retVal = codec.compress(theResourceType, theEncodedResource);
+		myMetrics
+				.get(theEncoding)
+				.recordCompress(Utf8.encodedLength(theEncodedResource), retVal.length, System.nanoTime() - start);
+		return retVal;
+	}
+
+	/**
+	 * Decompresses content using the codec for the given encoding
+	 */
+	@Nonnull
+	public String decompress(@Nonnull ResourceEncodingEnum theEncoding, @Nonnull byte[] theCompressed) {
+		IResourceCompressionCodec codec = getCodec(theEncoding);
+		long start = System.nanoTime();
+		String retVal = codec.decompress(theCompressed);
+		myMetrics.get(theEncoding).recordDecompress(System.nanoTime() - start);
+		return retVal;
+	}
+
+	/**
+	 * Returns the metrics collected for the given compressed encoding
+	 */
+	@Nonnull
+	public ResourceCompressionMetrics getMetrics(@Nonnull ResourceEncodingEnum theEncoding) {
+		ResourceCompressionMetrics retVal = myMetrics.get(theEncoding);
+		Validate.notNull(retVal, "Encoding %s is not a compressed encoding", theEncoding);
+		return retVal;
+	}
+}
@@ -0,0 +1,77 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.compress;
+
+import jakarta.annotation.Nonnull;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * A trained compression dictionary for a single resource type. Dictionaries are immutable
+ * once they have been stored, since content compressed using them refers to them by ID.
+ *
+ * @since 7.6.0
+ */
+public class ResourceCompressionDictionary {
+
+	private final long myDictionaryId;
+	private final String myResourceType;
+	private final byte[] myContents;
+
+	/**
+	 * Constructor
+	 *
+	 * @param theDictionaryId The dictionary ID, as embedded in the dictionary contents and in the content compressed using it
+	 * @param theResourceType The resource type the dictionary was trained for
+	 * @param theContents     The dictionary contents
+	 */
+	public ResourceCompressionDictionary(
+			long theDictionaryId, @Nonnull String theResourceType, @Nonnull byte[] theContents) {
+		myDictionaryId = theDictionaryId;
+		myResourceType = theResourceType;
+		myContents = theContents;
+	}
+
+	public long getDictionaryId() {
+		return myDictionaryId;
+	}
+
+	@Nonnull
+	public String getResourceType() {
+		return myResourceType;
+	}
+
+	/**
+	 * Returns the dictionary contents. Callers must not modify the returned array.
+	 */
+	@Nonnull
+	public byte[] getContents() {
+		return myContents;
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+				.append("dictionaryId", myDictionaryId)
+				.append("resourceType", myResourceType)
+				.append("size", myContents.length)
+				.toString();
+	}
+}
@@ -0,0 +1,213 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.compress;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
+import ca.uhn.fhir.jpa.api.dao.IFhirResourceDao;
+import ca.uhn.fhir.jpa.dao.data.IResourceCompressionDictionaryDao;
+import ca.uhn.fhir.jpa.dao.tx.IHapiTransactionService;
+import ca.uhn.fhir.jpa.entity.ResourceCompressionDictionaryEntity;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.parser.IParser;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.SortOrderEnum;
+import ca.uhn.fhir.rest.api.SortSpec;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import ca.uhn.fhir.sl.cache.Cache;
+import ca.uhn.fhir.sl.cache.CacheFactory;
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictTrainer;
+import com.github.luben.zstd.ZstdException;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.apache.commons.lang3.Validate;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stores compression dictionaries in the <code>HFJ_RES_COMPRESS_DICT</code> table. The active
+ * dictionary for each resource type is cached for a short time, so dictionaries trained on
+ * another server in a cluster are picked up within a minute.
+ *
+ * @since 7.6.0
+ */
+public class ResourceCompressionDictionarySvcImpl implements IResourceCompressionDictionarySvc {
+
+	/**
+	 * Default maximum dictionary size, in bytes
+	 */
+	public static final int DEFAULT_DICTIONARY_SIZE = 32 * 1024;
+
+	private static final Logger ourLog = LoggerFactory.getLogger(ResourceCompressionDictionarySvcImpl.class);
+
+	private final Cache<String, Optional<ResourceCompressionDictionary>> myActiveDictionaries =
+			CacheFactory.build(TimeUnit.MINUTES.toMillis(1), 1000);
+	private final Map<Long, ResourceCompressionDictionary> myDictionaries = new ConcurrentHashMap<>();
+
+	@Autowired
+	private IResourceCompressionDictionaryDao myDictionaryDao;
+
+	@Autowired
+	private IHapiTransactionService myTxService;
+
+	@Autowired
+	private DaoRegistry myDaoRegistry;
+
+	@Autowired
+	private FhirContext myFhirContext;
+
+	private int myDictionarySize = DEFAULT_DICTIONARY_SIZE;
+
+	/**
+	 * Sets the maximum size of newly trained dictionaries, in bytes. Default is {@link #DEFAULT_DICTIONARY_SIZE}.
+	 */
+	public void setDictionarySize(int theDictionarySize) {
+		Validate.isTrue(theDictionarySize > 0, "theDictionarySize must be greater than 0");
+		myDictionarySize = theDictionarySize;
+	}
+
+	@Nullable
+	@Override
+	public ResourceCompressionDictionary getActiveDictionary(@Nonnull String theResourceType) {
+		return myActiveDictionaries
+				.get(theResourceType, this::loadActiveDictionary)
+				.orElse(null);
+	}
+
+	@Nullable
+	@Override
+	public ResourceCompressionDictionary getDictionary(long theDictionaryId) {
+		ResourceCompressionDictionary retVal = myDictionaries.get(theDictionaryId);
+		if (retVal == null) {
+			// Dictionaries are never modified, so once loaded they can be kept indefinitely
+			retVal = myTxService
+					.withSystemRequest()
+					.execute(() -> myDictionaryDao.findByDictionaryId(theDictionaryId))
+					.map(this::toDictionary)
+					.orElse(null);
+		}
+		return retVal;
+	}
+
+	@Nonnull
+	@Override
+	public ResourceCompressionDictionary trainDictionary(@Nonnull String theResourceType, int theMaxSamples) {
+		Validate.isTrue(theMaxSamples > 0, "theMaxSamples must be greater than 0");
+		List<byte[]> samples = loadSamples(theResourceType, theMaxSamples);
+		if (samples.isEmpty()) {
+			throw new InvalidRequestException(Msg.code(2581) + "No resources of type " + theResourceType
+					+ " are available to train a dictionary");
+		}
+
+		int totalSize = samples.stream().mapToInt(t -> t.length).sum();
+		ZstdDictTrainer trainer = new ZstdDictTrainer(totalSize, myDictionarySize);
+		samples.forEach(trainer::addSample);
+		byte[] contents;
+		try {
+			contents = trainer.trainSamples();
+		} catch (ZstdException e) {
+			throw new InvalidRequestException(
+					Msg.code(2582) + "Unable to train a compression dictionary for resource type " + theResourceType
+							+ " using " + samples.size() + " resources: " + e.getMessage(),
+					e);
+		}
+
+		long dictionaryId = Zstd.getDictIdFromDict(contents);
+		ResourceCompressionDictionaryEntity entity = myTxService
+				.withSystemRequest()
+				.execute(() -> {
+					Optional<ResourceCompressionDictionaryEntity> existing =
+							myDictionaryDao.findByDictionaryId(dictionaryId);
+					if (existing.isPresent()) {
+						return existing.get();
+					}
+					ResourceCompressionDictionaryEntity newEntity = new ResourceCompressionDictionaryEntity();
+					newEntity.setDictionaryId(dictionaryId);
+					newEntity.setResourceType(theResourceType);
+					newEntity.setContents(contents);
+					newEntity.setCreated(new Date());
+					return myDictionaryDao.save(newEntity);
+				});
+		myActiveDictionaries.invalidate(theResourceType);
+
+		ourLog.info(
+				"Trained compression dictionary {} for resource type {} ({} bytes) using {} resources ({} bytes)",
+				dictionaryId,
+				theResourceType,
+				contents.length,
+				samples.size(),
+				totalSize);
+		return toDictionary(entity);
+	}
+
+	private Optional<ResourceCompressionDictionary> loadActiveDictionary(String theResourceType) {
+		return myTxService
+				.withSystemRequest()
+				.execute(() -> myDictionaryDao.findNewestForResourceType(theResourceType, PageRequest.of(0, 1)))
+				.stream()
+				.findFirst()
+				.map(this::toDictionary);
+	}
+
+	/**
+	 * Samples are the most recently updated resources of the given type, encoded the same way
+	 * as they are stored (i.e. without the resource ID or metadata)
+	 */
+	private List<byte[]> loadSamples(String theResourceType, int theMaxSamples) {
+		IFhirResourceDao<?> dao = myDaoRegistry.getResourceDao(theResourceType);
+		SearchParameterMap map = SearchParameterMap.newSynchronous();
+		map.setLoadSynchronousUpTo(theMaxSamples);
+		map.setSort(new SortSpec(Constants.PARAM_LASTUPDATED, SortOrderEnum.DESC));
+		IBundleProvider outcome = dao.search(map, SystemRequestDetails.forAllPartitions());
+
+		IParser parser = myFhirContext.newJsonParser();
+		parser.setOmitResourceId(true);
+		parser.setDontEncodeElements(Set.of("*.meta"));
+		List<byte[]> retVal = new ArrayList<>(theMaxSamples);
+		for (IBaseResource next : outcome.getResources(0, theMaxSamples)) {
+			retVal.add(parser.encodeResourceToString(next).getBytes(StandardCharsets.UTF_8));
+		}
+		return retVal;
+	}
+
+	private ResourceCompressionDictionary toDictionary(ResourceCompressionDictionaryEntity theEntity) {
+		return myDictionaries.computeIfAbsent(
+				theEntity.getDictionaryId(),
+				t -> new ResourceCompressionDictionary(
+						theEntity.getDictionaryId(), theEntity.getResourceType(), theEntity.getContents()));
+	}
+}
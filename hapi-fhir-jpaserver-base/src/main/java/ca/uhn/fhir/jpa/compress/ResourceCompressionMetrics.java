@@ -0,0 +1,142 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.compress;
+
+import ca.uhn.fhir.jpa.model.entity.ResourceEncodingEnum;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cumulative compression statistics for a single encoding, collected by the
+ * {@link ResourceCompressionCodecRegistry}. This class is thread safe.
+ *
+ * @since 7.6.0
+ */
+public class ResourceCompressionMetrics {
+
+	private final ResourceEncodingEnum myEncoding;
+	private final LongAdder myCompressCount = new LongAdder();
+	private final LongAdder myUncompressedSize = new LongAdder();
+	private final LongAdder myCompressedSize = new LongAdder();
+	private final LongAdder myCompressNanos = new LongAdder();
+	private final LongAdder myDecompressCount = new LongAdder();
+	private final LongAdder myDecompressNanos = new LongAdder();
+
+	ResourceCompressionMetrics(ResourceEncodingEnum theEncoding) {
+		myEncoding = theEncoding;
+	}
+
+	void recordCompress(int theUncompressedSize, int theCompressedSize, long theNanos) {
+		myCompressCount.increment();
+		myUncompressedSize.add(theUncompressedSize);
+		myCompressedSize.add(theCompressedSize);
+		myCompressNanos.add(theNanos);
+	}
+
+	void recordDecompress(long theNanos) {
+		myDecompressCount.increment();
+		myDecompressNanos.add(theNanos);
+	}
+
+	public ResourceEncodingEnum getEncoding() {
+		return myEncoding;
+	}
+
+	/**
+	 * Returns the number of resources which have been compressed
+	 */
+	public long getCompressCount() {
+		return myCompressCount.sum();
+	}
+
+	/**
+	 * Returns the total UTF-8 encoded size of the resource text which has been compressed, in bytes
+	 */
+	public long getUncompressedSize() {
+		return myUncompressedSize.sum();
+	}
+
+	/**
+	 * Returns the total size of the compressed content, in bytes
+	 */
+	public long getCompressedSize() {
+		return myCompressedSize.sum();
+	}
+
+	/**
+	 * Returns the compressed size divided by the uncompressed size (lower is better), or
+	 * 0 if nothing has been compressed
+	 */
+	public double getCompressionRatio() {
+		long uncompressed = getUncompressedSize();
+		if (uncompressed == 0) {
+			return 0;
+		}
+		return (double) getCompressedSize() / uncompressed;
+	}
+
+	/**
+	 * Returns the total time spent compressing, in milliseconds
+	 */
+	public long getCompressMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(myCompressNanos.sum());
+	}
+
+	/**
+	 * Returns the number of resources which have been decompressed
+	 */
+	public long getDecompressCount() {
+		return myDecompressCount.sum();
+	}
+
+	/**
+	 * Returns the total time spent decompressing, in milliseconds
+	 */
+	public long getDecompressMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(myDecompressNanos.sum());
+	}
+
+	/**
+	 * Resets all statistics to zero
+	 */
+	public void reset() {
+		myCompressCount.reset();
+		myUncompressedSize.reset();
+		myCompressedSize.reset();
+		myCompressNanos.reset();
+		myDecompressCount.reset();
+		myDecompressNanos.reset();
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+				.append("encoding", myEncoding)
+				.append("compressCount", getCompressCount())
+				.append("compressionRatio", String.format("%.3f", getCompressionRatio()))
+				.append("compressMillis", getCompressMillis())
+				.append("decompressCount", getDecompressCount())
+				.append("decompressMillis", getDecompressMillis())
+				.toString();
+	}
+}
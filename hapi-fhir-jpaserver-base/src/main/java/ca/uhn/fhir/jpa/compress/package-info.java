@@ -0,0 +1,34 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * This package contains the codecs used to compress resource bodies stored in the
+ * {@link ca.uhn.fhir.jpa.model.entity.ResourceHistoryTable} entity.
+ * <p>
+ * Each compressed {@link ca.uhn.fhir.jpa.model.entity.ResourceEncodingEnum} value is handled by an
+ * {@link ca.uhn.fhir.jpa.compress.IResourceCompressionCodec} registered with the
+ * {@link ca.uhn.fhir.jpa.compress.ResourceCompressionCodecRegistry}. The registry also collects
+ * metrics about the compression ratio and time for each codec. The Zstandard codec can use a
+ * dictionary trained for each resource type, see
+ * {@link ca.uhn.fhir.jpa.compress.IResourceCompressionDictionarySvc}.
+ *
+ * @since 7.6.0
+ */
+package ca.uhn.fhir.jpa.compress;
@@ -42,7 +42,12 @@ import ca.uhn.fhir.jpa.bulk.export.svc.BulkExportHelperService;
 import ca.uhn.fhir.jpa.bulk.imprt.api.IBulkDataImportSvc;
 import ca.uhn.fhir.jpa.bulk.imprt.svc.BulkDataImportSvcImpl;
 import ca.uhn.fhir.jpa.cache.IResourceVersionSvc;
+import ca.uhn.fhir.jpa.cache.ParsedResourceCacheSvc;
 import ca.uhn.fhir.jpa.cache.ResourceVersionSvcDaoImpl;
+import ca.uhn.fhir.jpa.cache.SearchIndexSnapshotSvc;
+import ca.uhn.fhir.jpa.compress.IResourceCompressionDictionarySvc;
+import ca.uhn.fhir.jpa.compress.ResourceCompressionCodecRegistry;
+import ca.uhn.fhir.jpa.compress.ResourceCompressionDictionarySvcImpl;
 import ca.uhn.fhir.jpa.dao.DaoSearchParamProvider;
 import ca.uhn.fhir.jpa.dao.HistoryBuilder;
 import ca.uhn.fhir.jpa.dao.HistoryBuilderFactory;
@@ -66,6 +71,7 @@ import ca.uhn.fhir.jpa.dao.expunge.ResourceTableFKProvider;
 import ca.uhn.fhir.jpa.dao.index.DaoResourceLinkResolver;
 import ca.uhn.fhir.jpa.dao.index.DaoSearchParamSynchronizer;
 import ca.uhn.fhir.jpa.dao.index.IdHelperService;
+import ca.uhn.fhir.jpa.dao.index.SearchIndexBulkInserter;
 import ca.uhn.fhir.jpa.dao.index.SearchParamWithInlineReferencesExtractor;
 import ca.uhn.fhir.jpa.dao.tx.HapiTransactionService;
 import ca.uhn.fhir.jpa.dao.validation.SearchParameterDaoValidator;
@@ -97,6 +103,7 @@ import ca.uhn.fhir.jpa.partition.RequestPartitionHelperSvc;
 import ca.uhn.fhir.jpa.provider.DiffProvider;
 import ca.uhn.fhir.jpa.provider.InstanceReindexProvider;
 import ca.uhn.fhir.jpa.provider.ProcessMessageProvider;
+import ca.uhn.fhir.jpa.provider.StreamingSearchProvider;
 import ca.uhn.fhir.jpa.provider.SubscriptionTriggeringProvider;
 import ca.uhn.fhir.jpa.provider.TerminologyUploaderProvider;
 import ca.uhn.fhir.jpa.provider.ValueSetOperationProvider;
@@ -108,10 +115,14 @@ import ca.uhn.fhir.jpa.search.PersistedJpaBundleProvider;
 import ca.uhn.fhir.jpa.search.PersistedJpaBundleProviderFactory;
 import ca.uhn.fhir.jpa.search.PersistedJpaSearchFirstPageBundleProvider;
 import ca.uhn.fhir.jpa.search.ResourceSearchUrlSvc;
+import ca.uhn.fhir.jpa.search.SearchCountCacheSvc;
 import ca.uhn.fhir.jpa.search.SearchStrategyFactory;
 import ca.uhn.fhir.jpa.search.SearchUrlJobMaintenanceSvcImpl;
+import ca.uhn.fhir.jpa.search.StreamingSearchSvc;
 import ca.uhn.fhir.jpa.search.SynchronousSearchSvcImpl;
 import ca.uhn.fhir.jpa.search.builder.QueryStack;
+import ca.uhn.fhir.jpa.search.builder.SearchParamStatisticsSvc;
+import ca.uhn.fhir.jpa.search.builder.SearchResultLoadExecutor;
 import ca.uhn.fhir.jpa.search.builder.predicate.ComboNonUniqueSearchParameterPredicateBuilder;
 import ca.uhn.fhir.jpa.search.builder.predicate.ComboUniqueSearchParameterPredicateBuilder;
 import ca.uhn.fhir.jpa.search.builder.predicate.CoordsPredicateBuilder;
@@ -254,6 +265,17 @@ public class JpaConfig {
 		return new ExternallyStoredResourceServiceRegistry();
 	}
 
+	@Bean
+	public IResourceCompressionDictionarySvc resourceCompressionDictionarySvc() {
+		return new ResourceCompressionDictionarySvcImpl();
+	}
+
+	@Bean
+	public ResourceCompressionCodecRegistry resourceCompressionCodecRegistry(
+			IResourceCompressionDictionarySvc theDictionarySvc) {
+		return new ResourceCompressionCodecRegistry(theDictionarySvc);
+	}
+
 	@Lazy
 	@Bean
 	public ThreadSafeResourceDeleterSvc safeDeleter(
@@ -456,6 +478,12 @@ public class JpaConfig {
 		return new DiffProvider();
 	}
 
+	@Bean
+	@Lazy
+	public StreamingSearchProvider streamingSearchProvider() {
+		return new StreamingSearchProvider();
+	}
+
 	@Bean
 	@Lazy
 	public IPartitionLookupSvc partitionConfigSvc() {
@@ -535,6 +563,21 @@ public class JpaConfig {
 		return new SearchBuilderFactory();
 	}
 
+	@Bean
+	public SearchResultLoadExecutor searchResultLoadExecutor() {
+		return new SearchResultLoadExecutor();
+	}
+
+	@Bean
+	public SearchParamStatisticsSvc searchParamStatisticsSvc() {
+		return new SearchParamStatisticsSvc();
+	}
+
+	@Bean
+	public SearchCountCacheSvc searchCountCacheSvc() {
+		return new SearchCountCacheSvc();
+	}
+
 	@Bean
 	public SqlObjectFactory sqlBuilderFactory() {
 		return new SqlObjectFactory();
@@ -555,6 +598,16 @@ public class JpaConfig {
 		return new ResourceVersionSvcDaoImpl();
 	}
 
+	@Bean
+	public ParsedResourceCacheSvc parsedResourceCacheSvc() {
+		return new ParsedResourceCacheSvc();
+	}
+
+	@Bean
+	public SearchIndexSnapshotSvc searchIndexSnapshotSvc() {
+		return new SearchIndexSnapshotSvc();
+	}
+
 	/* **************************************************************** *
 	 * Prototype Beans Below                                            *
 	 * **************************************************************** */
@@ -777,6 +830,11 @@ public class JpaConfig {
 		return new DaoSearchParamSynchronizer();
 	}
 
+	@Bean
+	public SearchIndexBulkInserter searchIndexBulkInserter() {
+		return new SearchIndexBulkInserter();
+	}
+
 	@Bean
 	public ResourceTableFKProvider resourceTableFKProvider() {
 		return new ResourceTableFKProvider();
@@ -808,6 +866,11 @@ public class JpaConfig {
 		return new SynchronousSearchSvcImpl();
 	}
 
+	@Bean
+	public StreamingSearchSvc streamingSearchSvc() {
+		return new StreamingSearchSvc();
+	}
+
 	@Bean
 	public VersionCanonicalizer versionCanonicalizer(FhirContext theFhirContext) {
 		return new VersionCanonicalizer(theFhirContext);
@@ -890,7 +953,10 @@ public class JpaConfig {
 
 	@Bean
 	public ResourceHistoryCalculator resourceHistoryCalculator(
-			FhirContext theFhirContext, HibernatePropertiesProvider theHibernatePropertiesProvider) {
-		return new ResourceHistoryCalculator(theFhirContext, theHibernatePropertiesProvider.isOracleDialect());
+			FhirContext theFhirContext,
+			HibernatePropertiesProvider theHibernatePropertiesProvider,
+			ResourceCompressionCodecRegistry theCompressionCodecRegistry) {
+		return new ResourceHistoryCalculator(
+				theFhirContext, theHibernatePropertiesProvider.isOracleDialect(), theCompressionCodecRegistry);
 	}
 }
@@ -68,6 +68,7 @@ import ca.uhn.fhir.jpa.model.search.ExtendedHSearchIndexData;
 import ca.uhn.fhir.jpa.model.search.StorageProcessingMessage;
 import ca.uhn.fhir.jpa.model.util.JpaConstants;
 import ca.uhn.fhir.jpa.partition.IPartitionLookupSvc;
+import ca.uhn.fhir.jpa.search.SearchCountCacheSvc;
 import ca.uhn.fhir.jpa.searchparam.extractor.LogicalReferenceHelper;
 import ca.uhn.fhir.jpa.searchparam.extractor.ResourceIndexedSearchParams;
 import ca.uhn.fhir.jpa.searchparam.matcher.InMemoryMatchResult;
@@ -251,6 +252,9 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 	@Autowired
 	private MemoryCacheService myMemoryCacheService;
 
+	@Autowired(required = false)
+	private SearchCountCacheSvc mySearchCountCacheSvc;
+
 	@Autowired(required = false)
 	private IFulltextSearchSvc myFulltextSearchSvc;
 
@@ -1097,7 +1101,21 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 							() -> new IdentityHashMap<>());
 			existingParams = existingSearchParams.get(entity);
 			if (existingParams == null) {
-				existingParams = ResourceIndexedSearchParams.withLists(entity);
+				if (isExistingIndexLoadingDeferrable(entity, theResource, thePerformIndexing)) {
+					/*
+					 * The existing index rows are only loaded for the index tables whose
+					 * fingerprint turns out to have changed, by DaoSearchParamSynchronizer.
+					 * Resource links are always loaded, since reference extraction reuses
+					 * their targets instead of resolving each reference again.
+					 */
+					existingParams = ResourceIndexedSearchParams.withDeferredLists(entity.getSearchIndexFingerprint());
+					if (entity.isHasLinks()) {
+						existingParams.myLinks.addAll(entity.getResourceLinks());
+					}
+				} else {
+					existingParams = ResourceIndexedSearchParams.withLists(entity);
+				}
+
 				/*
 				 * If we have lots of resource links, this proactively fetches the targets so
 				 * that we don't look them up one-by-one when comparing the new set to the
@@ -1194,6 +1212,12 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 			entity.markVersionUpdatedInCurrentTransaction();
 		}
 
+		// Set before the entity is saved so that new resources don't need a separate update
+		if (thePerformIndexing && newParams != null) {
+			entity.setSearchIndexFingerprint(
+					myDaoSearchParamSynchronizer.createSearchIndexFingerprint(newParams, entity));
+		}
+
 		/*
 		 * Save the resource itself
 		 */
@@ -1213,6 +1237,11 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 			postUpdate(entity, (T) theResource, theRequest);
 		}
 
+		// Any cached search totals for this resource type may now be wrong
+		if (mySearchCountCacheSvc != null) {
+			mySearchCountCacheSvc.invalidateResourceType(entity.getResourceType());
+		}
+
 		if (theCreateNewHistoryEntry) {
 			createHistoryEntry(theRequest, theResource, entity, changed);
 		}
@@ -1257,6 +1286,7 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 			if (newParams == null) {
 				myExpungeService.deleteAllSearchParams(JpaPid.fromId(entity.getId()));
 				entity.clearAllParamsPopulated();
+				entity.setSearchIndexFingerprint(null);
 			} else {
 
 				// Synchronize search param indexes
@@ -1294,6 +1324,21 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 		return entity;
 	}
 
+	/**
+	 * Returns <code>true</code> if the existing index rows for a resource being updated can be
+	 * summarized by its stored search index fingerprint instead of being loaded up front.
+	 * Reindexing always loads all of the existing rows, so that it can repair them.
+	 */
+	private boolean isExistingIndexLoadingDeferrable(
+			ResourceTable theEntity, IBaseResource theResource, boolean thePerformIndexing) {
+		return thePerformIndexing
+				&& myStorageSettings.isSearchIndexFingerprintEnabled()
+				&& theEntity.getId() != null
+				&& theEntity.getSearchIndexFingerprint() != null
+				&& theResource != null
+				&& !Boolean.TRUE.equals(CURRENTLY_REINDEXING.get(theResource));
+	}
+
 	/**
 	 * Make sure that the match URL was actually appropriate for the supplied
 	 * resource, if so configured, or do it only for first version, since technically it
@@ -1399,9 +1444,18 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 			ResourceEncodingEnum encoding = myStorageSettings.getResourceEncoding();
 			List<String> excludeElements = new ArrayList<>(8);
 			getExcludedElements(historyEntity.getResourceType(), excludeElements, theResource.getMeta());
-			String encodedResourceString =
-					myResourceHistoryCalculator.encodeResource(theResource, encoding, excludeElements);
-			byte[] resourceBinary = ResourceHistoryCalculator.getResourceBinary(encoding, encodedResourceString);
+			String encodedResourceString;
+			byte[] resourceBinary;
+			if (encoding.isBinary()) {
+				encodedResourceString = null;
+				resourceBinary =
+						myResourceHistoryCalculator.encodeResourceToBinary(theResource, encoding, excludeElements);
+			} else {
+				encodedResourceString =
+						myResourceHistoryCalculator.encodeResource(theResource, encoding, excludeElements);
+				resourceBinary = myResourceHistoryCalculator.getResourceBinary(
+						encoding, historyEntity.getResourceType(), encodedResourceString);
+			}
 			final boolean changed = myResourceHistoryCalculator.isResourceHistoryChanged(
 					historyEntity, resourceBinary, encodedResourceString);
 
@@ -1925,6 +1979,11 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 		return retVal.toString();
 	}
 
+	/**
+	 * Decodes resource text stored using {@link ResourceEncodingEnum#JSON} or {@link ResourceEncodingEnum#JSONC}.
+	 * Resources stored using other compressed encodings must be decoded using the codecs in the
+	 * {@link ca.uhn.fhir.jpa.compress.ResourceCompressionCodecRegistry}.
+	 */
 	public static String decodeResource(byte[] theResourceBytes, ResourceEncodingEnum theResourceEncoding) {
 		String resourceText = null;
 		switch (theResourceEncoding) {
@@ -1936,6 +1995,7 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 				break;
 			case DEL:
 			case ESR:
+			case CBOR:
 				break;
 		}
 		return resourceText;
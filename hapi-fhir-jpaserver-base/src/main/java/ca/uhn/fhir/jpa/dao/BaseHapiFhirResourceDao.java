@@ -1552,7 +1552,7 @@ public abstract class BaseHapiFhirResourceDao<T extends IBaseResource> extends B
 		BaseHasResource entity = readEntity(theId, true, theRequest, theRequestPartitionId);
 		validateResourceType(entity);
 
-		T retVal = myJpaStorageResourceParser.toResource(myResourceType, entity, null, false);
+		T retVal = myJpaStorageResourceParser.toResource(myResourceType, entity, null, false, theRequest);
 
 		if (!theDeletedOk) {
 			if (isDeleted(entity)) {
@@ -1706,11 +1706,22 @@ public abstract class BaseHapiFhirResourceDao<T extends IBaseResource> extends B
 
 	private void reindexOptimizeStorageHistoryEntity(ResourceTable entity, ResourceHistoryTable historyEntity) {
 		boolean changed = false;
-		if (historyEntity.getEncoding() == ResourceEncodingEnum.JSONC
-				|| historyEntity.getEncoding() == ResourceEncodingEnum.JSON) {
+		ResourceEncodingEnum encoding = historyEntity.getEncoding();
+		if (encoding == ResourceEncodingEnum.JSON || (encoding != null && encoding.isCompressed())) {
 			byte[] resourceBytes = historyEntity.getResource();
-			if (resourceBytes != null) {
-				String resourceText = decodeResource(resourceBytes, historyEntity.getEncoding());
+			ResourceEncodingEnum targetEncoding = myStorageSettings.getResourceEncoding();
+			if (myResourceHistoryCalculator.isAlwaysCompressed(targetEncoding)) {
+				// Migrate the resource to the configured codec, including resources stored as inline text
+				String resourceText = resourceBytes != null
+						? myResourceHistoryCalculator.decodeResource(resourceBytes, encoding)
+						: historyEntity.getResourceTextVc();
+				if (resourceText != null
+						&& myResourceHistoryCalculator.conditionallyCompressHistoryEntity(
+								entity, historyEntity, resourceText, targetEncoding)) {
+					changed = true;
+				}
+			} else if (resourceBytes != null) {
+				String resourceText = myResourceHistoryCalculator.decodeResource(resourceBytes, encoding);
 				if (myResourceHistoryCalculator.conditionallyAlterHistoryEntity(entity, historyEntity, resourceText)) {
 					changed = true;
 				}
@@ -2029,6 +2040,9 @@ public abstract class BaseHapiFhirResourceDao<T extends IBaseResource> extends B
 					Validate.inclusiveBetween(0, Integer.MAX_VALUE, offset, "Offset must be a positive integer");
 				}
 				theParams.setOffset(offset);
+				if (offset != null) {
+					theParams.setKeyset(RestfulServerUtils.extractKeysetParameter(theRequest));
+				}
 			}
 
 			Integer count = RestfulServerUtils.extractCountParameter(theRequest);
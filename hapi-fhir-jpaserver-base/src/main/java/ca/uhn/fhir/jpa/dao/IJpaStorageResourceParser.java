@@ -22,6 +22,7 @@ package ca.uhn.fhir.jpa.dao;
 import ca.uhn.fhir.jpa.model.entity.BaseTag;
 import ca.uhn.fhir.jpa.model.entity.IBaseResourceEntity;
 import ca.uhn.fhir.jpa.model.entity.ResourceTag;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
 import jakarta.annotation.Nullable;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 
@@ -39,6 +40,26 @@ public interface IJpaStorageResourceParser extends IStorageResourceParser {
 			Collection<ResourceTag> theTagList,
 			boolean theForHistoryOperation);
 
+	/**
+	 * Convert a storage entity into a FHIR resource model instance which is about to be returned
+	 * to the client by the given request. This method may return null if the entity is not
+	 * completely flushed, including the entities history entries.
+	 * <p>
+	 * Unlike {@link #toResource(Class, IBaseResourceEntity, Collection, boolean)}, this method
+	 * may attach the stored resource text for pass-through encoding (see
+	 * {@link ca.uhn.fhir.jpa.api.config.JpaStorageSettings#setResourcePassThroughEncodingEnabled(boolean)}),
+	 * so callers must not modify the returned resource.
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	<R extends IBaseResource> R toResource(
+			Class<R> theResourceType,
+			IBaseResourceEntity theEntity,
+			Collection<ResourceTag> theTagList,
+			boolean theForHistoryOperation,
+			@Nullable RequestDetails theRequest);
+
 	/**
 	 * Populate the metadata (Resource.meta.*) from a storage entity and other related
 	 * objects pulled from the database
@@ -23,9 +23,12 @@ import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.context.FhirVersionEnum;
 import ca.uhn.fhir.context.RuntimeResourceDefinition;
 import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.interceptor.api.IInterceptorBroadcaster;
+import ca.uhn.fhir.interceptor.api.Pointcut;
 import ca.uhn.fhir.interceptor.model.RequestPartitionId;
 import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
 import ca.uhn.fhir.jpa.api.dao.IDao;
+import ca.uhn.fhir.jpa.cache.ParsedResourceCacheSvc;
 import ca.uhn.fhir.jpa.dao.data.IResourceHistoryTableDao;
 import ca.uhn.fhir.jpa.entity.PartitionEntity;
 import ca.uhn.fhir.jpa.entity.ResourceSearchView;
@@ -51,10 +54,14 @@ import ca.uhn.fhir.model.base.composite.BaseCodingDt;
 import ca.uhn.fhir.model.primitive.IdDt;
 import ca.uhn.fhir.model.primitive.InstantDt;
 import ca.uhn.fhir.model.valueset.BundleEntryTransactionMethodEnum;
+import ca.uhn.fhir.parser.CborParser;
 import ca.uhn.fhir.parser.DataFormatException;
 import ca.uhn.fhir.parser.IParser;
 import ca.uhn.fhir.parser.LenientErrorHandler;
 import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.RestOperationTypeEnum;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.server.util.CompositeInterceptorBroadcaster;
 import ca.uhn.fhir.util.IMetaTagSorter;
 import ca.uhn.fhir.util.MetaUtil;
 import jakarta.annotation.Nullable;
@@ -73,15 +80,26 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
-import static ca.uhn.fhir.jpa.dao.BaseHapiFhirDao.decodeResource;
 import static java.util.Objects.nonNull;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
 public class JpaStorageResourceParser implements IJpaStorageResourceParser {
 	public static final LenientErrorHandler LENIENT_ERROR_HANDLER = new LenientErrorHandler(false).disableAllErrors();
 	private static final Logger ourLog = LoggerFactory.getLogger(JpaStorageResourceParser.class);
+	private static final Set<RestOperationTypeEnum> PASS_THROUGH_ENCODING_OPERATIONS =
+			Collections.unmodifiableSet(EnumSet.of(
+					RestOperationTypeEnum.READ,
+					RestOperationTypeEnum.VREAD,
+					RestOperationTypeEnum.SEARCH_TYPE,
+					RestOperationTypeEnum.SEARCH_SYSTEM,
+					RestOperationTypeEnum.GET_PAGE,
+					RestOperationTypeEnum.HISTORY_INSTANCE,
+					RestOperationTypeEnum.HISTORY_TYPE,
+					RestOperationTypeEnum.HISTORY_SYSTEM));
 
 	@Autowired
 	private FhirContext myFhirContext;
@@ -89,6 +107,9 @@ public class JpaStorageResourceParser implements IJpaStorageResourceParser {
 	@Autowired
 	private JpaStorageSettings myStorageSettings;
 
+	@Autowired
+	private IInterceptorBroadcaster myInterceptorBroadcaster;
+
 	@Autowired
 	private IResourceHistoryTableDao myResourceHistoryTableDao;
 
@@ -104,6 +125,12 @@ public class JpaStorageResourceParser implements IJpaStorageResourceParser {
 	@Autowired
 	IMetaTagSorter myMetaTagSorter;
 
+	@Autowired
+	private ResourceHistoryCalculator myResourceHistoryCalculator;
+
+	@Autowired
+	private ParsedResourceCacheSvc myParsedResourceCacheSvc;
+
 	@Override
 	public IBaseResource toResource(IBasePersistedResource theEntity, boolean theForHistoryOperation) {
 		RuntimeResourceDefinition type = myFhirContext.getResourceDefinition(theEntity.getResourceType());
@@ -117,6 +144,16 @@ public class JpaStorageResourceParser implements IJpaStorageResourceParser {
 			IBaseResourceEntity theEntity,
 			Collection<ResourceTag> theTagList,
 			boolean theForHistoryOperation) {
+		return toResource(theResourceType, theEntity, theTagList, theForHistoryOperation, null);
+	}
+
+	@Override
+	public <R extends IBaseResource> R toResource(
+			Class<R> theResourceType,
+			IBaseResourceEntity theEntity,
+			Collection<ResourceTag> theTagList,
+			boolean theForHistoryOperation,
+			@Nullable RequestDetails theRequest) {
 
 		// 1. get resource, it's encoding and the tags if any
 		byte[] resourceBytes;
@@ -217,14 +254,26 @@ public class JpaStorageResourceParser implements IJpaStorageResourceParser {
 			return null;
 		}
 
-		// 2. get The text
-		String decodedResourceText = decodedResourceText(resourceBytes, resourceText, resourceEncoding);
-
-		// 3. Use the appropriate custom type if one is specified in the context
+		// 2. Use the appropriate custom type if one is specified in the context
 		Class<R> resourceType = determineTypeToParse(theResourceType, tagList);
-
-		// 4. parse the text to FHIR
-		R retVal = parseResource(theEntity, resourceEncoding, decodedResourceText, resourceType);
+		boolean passThroughEncoding = isPassThroughEncodingApplicable(resourceEncoding, resourceType, theRequest);
+
+		// 3. get The text, which isn't needed for a cached resource unless it is used for pass-through encoding
+		String decodedResourceText =
+				passThroughEncoding ? decodedResourceText(resourceBytes, resourceText, resourceEncoding) : null;
+
+		// 4. parse the text to FHIR, or copy the already parsed resource if it is cached
+		R retVal = myParsedResourceCacheSvc.getOrParse(theEntity, resourceType, () -> {
+			String text = decodedResourceText != null
+					? decodedResourceText
+					: decodedResourceText(resourceBytes, resourceText, resourceEncoding);
+			return parseResource(theEntity, resourceEncoding, text, resourceBytes, resourceType);
+		});
+
+		// 4a. keep the stored text so that the JSON parser can write it directly
+		if (passThroughEncoding) {
+			retVal.setUserData(Constants.RESOURCE_PASS_THROUGH_JSON, decodedResourceText);
+		}
 
 		// 5. fill MetaData
 		retVal = populateResourceMetadata(theEntity, theForHistoryOperation, tagList, version, retVal);
@@ -241,6 +290,32 @@ public class JpaStorageResourceParser implements IJpaStorageResourceParser {
 		return retVal;
 	}
 
+	/**
+	 * See {@link JpaStorageSettings#setResourcePassThroughEncodingEnabled(boolean)}
+	 */
+	private boolean isPassThroughEncodingApplicable(
+			ResourceEncodingEnum theEncoding,
+			Class<? extends IBaseResource> theResourceType,
+			@Nullable RequestDetails theRequest) {
+		if (!myStorageSettings.isResourcePassThroughEncodingEnabled()) {
+			return false;
+		}
+		// Only operations which return stored resources as-is, since anything else may modify them first
+		if (theRequest == null || !PASS_THROUGH_ENCODING_OPERATIONS.contains(theRequest.getRestOperationType())) {
+			return false;
+		}
+		if (theEncoding != ResourceEncodingEnum.JSON && !theEncoding.isCompressed()) {
+			return false;
+		}
+		if (!IAnyResource.class.isAssignableFrom(theResourceType)) {
+			return false;
+		}
+		return !CompositeInterceptorBroadcaster.hasHooks(
+						Pointcut.STORAGE_PRESHOW_RESOURCES, myInterceptorBroadcaster, theRequest)
+				&& !CompositeInterceptorBroadcaster.hasHooks(
+						Pointcut.SERVER_OUTGOING_RESPONSE, myInterceptorBroadcaster, theRequest);
+	}
+
 	private <R extends IBaseResource> void populateResourcePartitionInformation(
 			IBaseResourceEntity theEntity, R retVal) {
 		if (myPartitionSettings.isPartitioningEnabled()) {
@@ -260,6 +335,7 @@ public class JpaStorageResourceParser implements IJpaStorageResourceParser {
 			IBaseResourceEntity theEntity,
 			ResourceEncodingEnum theResourceEncoding,
 			String theDecodedResourceText,
+			byte[] theResourceBytes,
 			Class<R> theResourceType) {
 		R retVal;
 		if (theResourceEncoding == ResourceEncodingEnum.ESR) {
@@ -276,11 +352,16 @@ public class JpaStorageResourceParser implements IJpaStorageResourceParser {
 
 		} else if (theResourceEncoding != ResourceEncodingEnum.DEL) {
 
-			IParser parser = new TolerantJsonParser(
-					getContext(theEntity.getFhirVersion()), LENIENT_ERROR_HANDLER, theEntity.getId());
-
 			try {
-				retVal = parser.parseResource(theResourceType, theDecodedResourceText);
+				if (theResourceEncoding == ResourceEncodingEnum.CBOR) {
+					CborParser parser = getContext(theEntity.getFhirVersion()).newCborParser();
+					parser.setParserErrorHandler(LENIENT_ERROR_HANDLER);
+					retVal = parser.parseResource(theResourceType, theResourceBytes);
+				} else {
+					IParser parser = new TolerantJsonParser(
+							getContext(theEntity.getFhirVersion()), LENIENT_ERROR_HANDLER, theEntity.getId());
+					retVal = parser.parseResource(theResourceType, theDecodedResourceText);
+				}
 			} catch (Exception e) {
 				StringBuilder b = new StringBuilder();
 				b.append("Failed to parse database resource[");
@@ -536,13 +617,13 @@ public class JpaStorageResourceParser implements IJpaStorageResourceParser {
 		return FhirContext.forCached(theVersion);
 	}
 
-	private static String decodedResourceText(
+	private String decodedResourceText(
 			byte[] resourceBytes, String resourceText, ResourceEncodingEnum resourceEncoding) {
 		String decodedResourceText;
 		if (resourceText != null) {
 			decodedResourceText = resourceText;
 		} else {
-			decodedResourceText = decodeResource(resourceBytes, resourceEncoding);
+			decodedResourceText = myResourceHistoryCalculator.decodeResource(resourceBytes, resourceEncoding);
 		}
 		return decodedResourceText;
 	}
@@ -20,10 +20,14 @@
 package ca.uhn.fhir.jpa.dao;
 
 import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.jpa.compress.ResourceCompressionCodecRegistry;
 import ca.uhn.fhir.jpa.model.entity.ResourceEncodingEnum;
 import ca.uhn.fhir.jpa.model.entity.ResourceHistoryTable;
 import ca.uhn.fhir.jpa.model.entity.ResourceTable;
 import ca.uhn.fhir.parser.IParser;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
 import com.google.common.hash.HashCode;
 import com.google.common.hash.HashFunction;
 import com.google.common.hash.Hashing;
@@ -32,6 +36,8 @@ import jakarta.annotation.Nullable;
 import org.apache.commons.lang3.StringUtils;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
@@ -47,21 +53,43 @@ public class ResourceHistoryCalculator {
 
 	private final FhirContext myFhirContext;
 	private final boolean myIsOracleDialect;
+	private final ResourceCompressionCodecRegistry myCompressionCodecRegistry;
 
 	public ResourceHistoryCalculator(FhirContext theFhirContext, boolean theIsOracleDialect) {
+		this(theFhirContext, theIsOracleDialect, new ResourceCompressionCodecRegistry());
+	}
+
+	public ResourceHistoryCalculator(
+			FhirContext theFhirContext,
+			boolean theIsOracleDialect,
+			ResourceCompressionCodecRegistry theCompressionCodecRegistry) {
 		myFhirContext = theFhirContext;
 		myIsOracleDialect = theIsOracleDialect;
+		myCompressionCodecRegistry = theCompressionCodecRegistry;
 	}
 
 	ResourceHistoryState calculateResourceHistoryState(
 			IBaseResource theResource, ResourceEncodingEnum theEncoding, List<String> theExcludeElements) {
+		if (theEncoding.isBinary()) {
+			// Binary encodings are stored as bytes on every platform
+			byte[] resourceBinary = encodeResourceToBinary(theResource, theEncoding, theExcludeElements);
+			return new ResourceHistoryState(null, resourceBinary, theEncoding, SHA_256.hashBytes(resourceBinary));
+		}
+
 		final String encodedResource = encodeResource(theResource, theEncoding, theExcludeElements);
 		final byte[] resourceBinary;
 		final String resourceText;
 		final ResourceEncodingEnum encoding;
 		final HashCode hashCode;
 
-		if (myIsOracleDialect) {
+		if (isAlwaysCompressed(theEncoding)) {
+			resourceText = null;
+			resourceBinary =
+					getResourceBinary(theEncoding, myFhirContext.getResourceType(theResource), encodedResource);
+			encoding = theEncoding;
+			// Compressed content can change for the same text (e.g. when a new dictionary is trained)
+			hashCode = SHA_256.hashUnencodedChars(encodedResource);
+		} else if (myIsOracleDialect) {
 			resourceText = null;
 			resourceBinary = getResourceBinary(theEncoding, encodedResource);
 			encoding = theEncoding;
@@ -92,11 +120,45 @@ public class ResourceHistoryCalculator {
 		return false;
 	}
 
+	/**
+	 * Compresses the history entity using the given {@link #isAlwaysCompressed(ResourceEncodingEnum) always compressed}
+	 * encoding, unless it already uses that encoding. This is used to migrate existing resources to a new codec when
+	 * storage is optimized during a reindex.
+	 */
+	boolean conditionallyCompressHistoryEntity(
+			ResourceTable theEntity,
+			ResourceHistoryTable theHistoryEntity,
+			String theResourceText,
+			ResourceEncodingEnum theTargetEncoding) {
+		if (theHistoryEntity.getEncoding() == theTargetEncoding && theHistoryEntity.getResource() != null) {
+			return false;
+		}
+
+		ourLog.debug(
+				"Storing text of resource {} version {} using encoding {}",
+				theEntity.getResourceId(),
+				theHistoryEntity.getVersion(),
+				theTargetEncoding);
+		theHistoryEntity.setResource(
+				getResourceBinary(theTargetEncoding, theEntity.getResourceType(), theResourceText));
+		theHistoryEntity.setResourceTextVc(null);
+		theHistoryEntity.setEncoding(theTargetEncoding);
+		return true;
+	}
+
 	boolean isResourceHistoryChanged(
 			ResourceHistoryTable theCurrentHistoryVersion,
 			@Nullable byte[] theResourceBinary,
 			@Nullable String resourceText) {
-		if (myIsOracleDialect) {
+		ResourceEncodingEnum currentEncoding = theCurrentHistoryVersion.getEncoding();
+		if (resourceText != null
+				&& currentEncoding != null
+				&& isAlwaysCompressed(currentEncoding)
+				&& theCurrentHistoryVersion.getResource() != null) {
+			// The same text doesn't always compress to the same bytes, so compare the text
+			return !resourceText.equals(decodeResource(theCurrentHistoryVersion.getResource(), currentEncoding));
+		}
+		if (myIsOracleDialect || resourceText == null) {
 			return !Arrays.equals(theCurrentHistoryVersion.getResource(), theResourceBinary);
 		}
 
@@ -105,9 +167,34 @@ public class ResourceHistoryCalculator {
 
 	String encodeResource(
 			IBaseResource theResource, ResourceEncodingEnum theEncoding, List<String> theExcludeElements) {
+		final IParser parser = newParserForStorage(theResource, theEncoding, theExcludeElements);
+		return parser.encodeResourceToString(theResource);
+	}
+
+	/**
+	 * Encodes the resource using a {@link ResourceEncodingEnum#isBinary() binary} encoding
+	 */
+	byte[] encodeResourceToBinary(
+			IBaseResource theResource, ResourceEncodingEnum theEncoding, List<String> theExcludeElements) {
+		final IParser parser = newParserForStorage(theResource, theEncoding, theExcludeElements);
+		ByteArrayOutputStream retVal = new ByteArrayOutputStream();
+		try {
+			parser.encodeResourceToOutputStream(theResource, retVal);
+		} catch (IOException e) {
+			throw new InternalErrorException(Msg.code(2576) + e.getMessage(), e);
+		}
+		return retVal.toByteArray();
+	}
+
+	private IParser newParserForStorage(
+			IBaseResource theResource, ResourceEncodingEnum theEncoding, List<String> theExcludeElements) {
+		// The resource is being stored, so any previously stored text no longer reflects it
+		if (theResource.getUserData(Constants.RESOURCE_PASS_THROUGH_JSON) != null) {
+			theResource.setUserData(Constants.RESOURCE_PASS_THROUGH_JSON, null);
+		}
 		final IParser parser = theEncoding.newParser(myFhirContext);
 		parser.setDontEncodeElements(theExcludeElements);
-		return parser.encodeResourceToString(theResource);
+		return parser;
 	}
 
 	/**
@@ -119,6 +206,7 @@ public class ResourceHistoryCalculator {
 	 */
 	@Nonnull
 	static byte[] getResourceBinary(ResourceEncodingEnum theEncoding, String theEncodedResource) {
+		// Compressed encodings other than JSONC are handled by the instance method below
 		switch (theEncoding) {
 			case JSON:
 				return theEncodedResource.getBytes(StandardCharsets.UTF_8);
@@ -129,12 +217,49 @@ public class ResourceHistoryCalculator {
 		}
 	}
 
+	/**
+	 * Returns the encoded byte array of the resource text, using the
+	 * {@link ResourceCompressionCodecRegistry registered codec} for compressed encodings
+	 *
+	 * @param theEncoding        the encoding to use
+	 * @param theResourceType    the resource type, which codecs may use to select a dictionary
+	 * @param theEncodedResource the resource text to encode
+	 */
+	@Nonnull
+	byte[] getResourceBinary(ResourceEncodingEnum theEncoding, String theResourceType, String theEncodedResource) {
+		if (theEncoding.isCompressed()) {
+			return myCompressionCodecRegistry.compress(theEncoding, theResourceType, theEncodedResource);
+		}
+		return getResourceBinary(theEncoding, theEncodedResource);
+	}
+
+	/**
+	 * Returns the resource text for a resource stored as bytes using the given encoding,
+	 * or <code>null</code> if the encoding does not store resource text
+	 */
+	@Nullable
+	String decodeResource(byte[] theResourceBytes, ResourceEncodingEnum theEncoding) {
+		if (theEncoding.isCompressed()) {
+			return myCompressionCodecRegistry.decompress(theEncoding, theResourceBytes);
+		}
+		return BaseHapiFhirDao.decodeResource(theResourceBytes, theEncoding);
+	}
+
+	/**
+	 * Returns <code>true</code> if resources using the given encoding are stored compressed regardless of
+	 * the database platform. This is the case for all compressed encodings except {@link ResourceEncodingEnum#JSONC},
+	 * which is only stored compressed on Oracle for backwards compatibility.
+	 */
+	boolean isAlwaysCompressed(ResourceEncodingEnum theEncoding) {
+		return theEncoding.isCompressed() && theEncoding != ResourceEncodingEnum.JSONC;
+	}
+
 	void populateEncodedResource(
 			EncodedResource theEncodedResource,
 			String theEncodedResourceString,
 			@Nullable byte[] theResourceBinary,
 			ResourceEncodingEnum theEncoding) {
-		if (myIsOracleDialect) {
+		if (myIsOracleDialect || theEncoding.isBinary() || isAlwaysCompressed(theEncoding)) {
 			populateEncodedResourceInner(theEncodedResource, null, theResourceBinary, theEncoding);
 		} else {
 			populateEncodedResourceInner(theEncodedResource, theEncodedResourceString, null, ResourceEncodingEnum.JSON);
@@ -27,8 +27,12 @@ import ca.uhn.fhir.jpa.api.dao.IFhirSystemDao;
 import ca.uhn.fhir.jpa.api.model.DaoMethodOutcome;
 import ca.uhn.fhir.jpa.api.svc.IIdHelperService;
 import ca.uhn.fhir.jpa.config.HapiFhirHibernateJpaDialect;
+import ca.uhn.fhir.jpa.dao.index.SearchIndexBulkInserter;
+import ca.uhn.fhir.jpa.model.cross.IResourceLookup;
 import ca.uhn.fhir.jpa.model.dao.JpaPid;
+import ca.uhn.fhir.jpa.model.entity.BaseResourceIndexedSearchParam;
 import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamToken;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamUri;
 import ca.uhn.fhir.jpa.model.entity.StorageSettings;
 import ca.uhn.fhir.jpa.partition.IRequestPartitionHelperSvc;
 import ca.uhn.fhir.jpa.searchparam.MatchUrlService;
@@ -38,11 +42,15 @@ import ca.uhn.fhir.model.api.IQueryParameterType;
 import ca.uhn.fhir.rest.api.server.RequestDetails;
 import ca.uhn.fhir.rest.api.server.storage.TransactionDetails;
 import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.param.UriParam;
+import ca.uhn.fhir.util.FhirTerser;
 import ca.uhn.fhir.util.ResourceReferenceInfo;
 import ca.uhn.fhir.util.StopWatch;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ListMultimap;
+import com.google.common.collect.MultimapBuilder;
+import com.google.common.collect.SetMultimap;
 import jakarta.annotation.Nullable;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
@@ -67,6 +75,7 @@ import org.springframework.context.ApplicationContext;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
 import java.util.List;
@@ -111,6 +120,9 @@ public class TransactionProcessor extends BaseTransactionProcessor {
 	@Autowired
 	private IRequestPartitionHelperSvc myRequestPartitionSvc;
 
+	@Autowired(required = false)
+	private SearchIndexBulkInserter mySearchIndexBulkInserter;
+
 	public void setEntityManagerForUnitTest(EntityManager theEntityManager) {
 		myEntityManager = theEntityManager;
 	}
@@ -182,6 +194,12 @@ public class TransactionProcessor extends BaseTransactionProcessor {
 		preFetchResourcesById(
 				theTransactionDetails, theEntries, theVersionAdapter, theRequestPartitionId, foundIds, idsToPreFetch);
 
+		/*
+		 * Pre-resolve the targets of any references to existing resources, so that
+		 * they don't need to be looked up one at a time when the references are indexed
+		 */
+		preFetchReferenceTargets(theTransactionDetails, theEntries, theVersionAdapter, theRequestPartitionId);
+
 		/*
 		 * Pre-resolve any conditional URLs we can
 		 */
@@ -233,6 +251,77 @@ public class TransactionProcessor extends BaseTransactionProcessor {
 		}
 	}
 
+	private void preFetchReferenceTargets(
+			TransactionDetails theTransactionDetails,
+			List<IBase> theEntries,
+			ITransactionProcessorVersionAdapter theVersionAdapter,
+			RequestPartitionId theRequestPartitionId) {
+		/*
+		 * With partitioning, each reference target is resolved in the partition determined
+		 * for that particular target, so we can't resolve them all in one go here
+		 */
+		if (myPartitionSettings.isPartitioningEnabled()) {
+			return;
+		}
+
+		Set<String> idsTargetedByEntries = new HashSet<>();
+		for (IBase nextEntry : theEntries) {
+			String verb = theVersionAdapter.getEntryRequestVerb(myFhirContext, nextEntry);
+			if ("DELETE".equals(verb)) {
+				/*
+				 * A resolved ID is trusted to be a valid (i.e. not deleted) reference target, and
+				 * a conditional delete could remove any of the targets
+				 */
+				return;
+			}
+			String requestUrl = theVersionAdapter.getEntryRequestUrl(nextEntry);
+			if (isNotBlank(requestUrl)) {
+				idsTargetedByEntries.add(requestUrl);
+			}
+		}
+
+		FhirTerser terser = myFhirContext.newTerser();
+		Map<String, IIdType> idsToPreResolve = new HashMap<>();
+		for (IBase nextEntry : theEntries) {
+			IBaseResource resource = theVersionAdapter.getResource(nextEntry);
+			if (resource == null) {
+				continue;
+			}
+			for (ResourceReferenceInfo nextReference : terser.getAllResourceReferences(resource)) {
+				IIdType referenceId = nextReference.getResourceReference().getReferenceElement();
+				if (referenceId == null
+						|| referenceId.isLocal()
+						|| referenceId.hasBaseUrl()
+						|| !referenceId.hasResourceType()
+						|| !referenceId.hasIdPart()
+						|| referenceId.getValue().contains("?")
+						|| !myFhirContext.getResourceTypes().contains(referenceId.getResourceType())) {
+					continue;
+				}
+				IIdType id = referenceId.toUnqualifiedVersionless();
+				if (!idsTargetedByEntries.contains(id.getValue()) && !theTransactionDetails.hasResolvedResourceId(id)) {
+					idsToPreResolve.put(id.getValue(), id);
+				}
+			}
+		}
+
+		if (idsToPreResolve.isEmpty()) {
+			return;
+		}
+
+		Map<String, IResourceLookup> outcome =
+				myIdHelperService.resolveResourceIdentities(theRequestPartitionId, idsToPreResolve.values());
+		for (Map.Entry<String, IResourceLookup> next : outcome.entrySet()) {
+			// Deleted targets are left to the link resolver, which reports them as invalid
+			if (next.getValue().getDeleted() == null) {
+				IIdType id = idsToPreResolve.get(next.getKey());
+				JpaPid pid = JpaPid.fromId(((JpaPid) next.getValue().getPersistentId()).getId());
+				pid.setAssociatedResourceId(id);
+				theTransactionDetails.addResolvedResourceId(id, pid);
+			}
+		}
+	}
+
 	private void preFetchConditionalUrls(
 			TransactionDetails theTransactionDetails,
 			List<IBase> theEntries,
@@ -277,7 +366,6 @@ public class TransactionProcessor extends BaseTransactionProcessor {
 		new QueryChunker<MatchUrlToResolve>()
 				.chunk(
 						searchParameterMapsToResolve,
-						100,
 						map -> preFetchSearchParameterMaps(
 								theTransactionDetails, theRequestPartitionId, map, idsToPreFetch));
 	}
@@ -297,6 +385,7 @@ public class TransactionProcessor extends BaseTransactionProcessor {
 			List<Long> theOutputPidsToLoadFully) {
 		Set<Long> systemAndValueHashes = new HashSet<>();
 		Set<Long> valueHashes = new HashSet<>();
+		Set<Long> uriHashes = new HashSet<>();
 		for (MatchUrlToResolve next : theInputParameters) {
 			Collection<List<List<IQueryParameterType>>> values = next.myMatchUrlSearchMap.values();
 			if (values.size() == 1) {
@@ -306,46 +395,48 @@ public class TransactionProcessor extends BaseTransactionProcessor {
 				if (param instanceof TokenParam) {
 					buildHashPredicateFromTokenParam(
 							(TokenParam) param, theRequestPartitionId, next, systemAndValueHashes, valueHashes);
+				} else if (param instanceof UriParam) {
+					buildHashPredicateFromUriParam((UriParam) param, theRequestPartitionId, next, uriHashes);
 				}
 			}
 		}
 
-		preFetchSearchParameterMapsToken(
+		preFetchSearchParameterMapsUsingHash(
+				ResourceIndexedSearchParamToken.class,
 				"myHashSystemAndValue",
 				systemAndValueHashes,
 				theTransactionDetails,
 				theRequestPartitionId,
 				theInputParameters,
 				theOutputPidsToLoadFully);
-		preFetchSearchParameterMapsToken(
+		preFetchSearchParameterMapsUsingHash(
+				ResourceIndexedSearchParamToken.class,
 				"myHashValue",
 				valueHashes,
 				theTransactionDetails,
 				theRequestPartitionId,
 				theInputParameters,
 				theOutputPidsToLoadFully);
-
-		// For each SP Map which did not return a result, tag it as not found.
-		if (!valueHashes.isEmpty() || !systemAndValueHashes.isEmpty()) {
-			theInputParameters.stream()
-					// No matches
-					.filter(match -> !match.myResolved)
-					.forEach(match -> {
-						ourLog.debug("Was unable to match url {} from database", match.myRequestUrl);
-						theTransactionDetails.addResolvedMatchUrl(
-								myFhirContext, match.myRequestUrl, TransactionDetails.NOT_FOUND);
-					});
-		}
+		preFetchSearchParameterMapsUsingHash(
+				ResourceIndexedSearchParamUri.class,
+				"myHashUri",
+				uriHashes,
+				theTransactionDetails,
+				theRequestPartitionId,
+				theInputParameters,
+				theOutputPidsToLoadFully);
 	}
 
 	/**
-	 * Here we do a select against the {@link ResourceIndexedSearchParamToken} table for any rows that have the
-	 * specific sys+val or val hashes we know we need to pre-fetch.
+	 * Here we do a select against the given index table (e.g. {@link ResourceIndexedSearchParamToken}) for
+	 * any rows that have the specific hashes we know we need to pre-fetch, so that all of the match URLs
+	 * sharing the same shape are resolved by a single query.
 	 * <p>
 	 * Note that we do a tuple query for only 2 columns in order to ensure that we can get by with only
 	 * the data in the index (ie no need to load the actual table rows).
 	 */
-	private void preFetchSearchParameterMapsToken(
+	private void preFetchSearchParameterMapsUsingHash(
+			Class<? extends BaseResourceIndexedSearchParam> theIndexEntityType,
 			String theIndexColumnName,
 			Set<Long> theHashesForIndexColumn,
 			TransactionDetails theTransactionDetails,
@@ -357,7 +448,7 @@ public class TransactionProcessor extends BaseTransactionProcessor {
 					buildHashToSearchMap(theInputParameters, theIndexColumnName);
 			CriteriaBuilder cb = myEntityManager.getCriteriaBuilder();
 			CriteriaQuery<Tuple> cq = cb.createTupleQuery();
-			Root<ResourceIndexedSearchParamToken> from = cq.from(ResourceIndexedSearchParamToken.class);
+			Root<? extends BaseResourceIndexedSearchParam> from = cq.from(theIndexEntityType);
 			cq.multiselect(from.get("myResourcePid"), from.get(theIndexColumnName));
 
 			Predicate masterPredicate;
@@ -397,14 +488,50 @@ public class TransactionProcessor extends BaseTransactionProcessor {
 			 * ensure that if someone uses a conditional URL that matches a million resources,
 			 * we don't do a super-expensive fetch.
 			 */
-			query.setMaxResults(theHashesForIndexColumn.size() + 1);
+			int maxResults = theHashesForIndexColumn.size() + 1;
+			query.setMaxResults(maxResults);
 
 			List<Tuple> results = query.getResultList();
 
+			/*
+			 * If the limit was reached, there may be rows we haven't seen for any of the
+			 * hashes (e.g. several versions of a ValueSet sharing the same canonical URL can
+			 * use up the limit), so only the hashes we've already seen matching more than one
+			 * resource can be acted on. The other match URLs are left for the regular match
+			 * URL resolution instead.
+			 */
+			boolean resultsTruncated = results.size() >= maxResults;
+
+			SetMultimap<Long, Long> hashToPids =
+					MultimapBuilder.hashKeys().linkedHashSetValues().build();
 			for (Tuple nextResult : results) {
 				Long nextResourcePid = nextResult.get(0, Long.class);
 				Long nextHash = nextResult.get(1, Long.class);
-				List<MatchUrlToResolve> matchedSearch = hashToSearchMap.get(nextHash);
+				hashToPids.put(nextHash, nextResourcePid);
+			}
+
+			for (Map.Entry<Long, Collection<Long>> nextEntry :
+					hashToPids.asMap().entrySet()) {
+				List<MatchUrlToResolve> matchedSearch = hashToSearchMap.get(nextEntry.getKey());
+				if (nextEntry.getValue().size() > 1) {
+					/*
+					 * The match URLs with this hash match more than one resource, which is an
+					 * error for a conditional operation. Adding the second resource for the
+					 * same URL fails with an HTTP 412, rather than resolving to either of them.
+					 */
+					for (MatchUrlToResolve matchUrl : matchedSearch) {
+						for (Long nextResourcePid : nextEntry.getValue()) {
+							theTransactionDetails.addResolvedMatchUrl(
+									myFhirContext, matchUrl.myRequestUrl, JpaPid.fromId(nextResourcePid));
+						}
+					}
+					continue;
+				}
+				if (resultsTruncated) {
+					continue;
+				}
+
+				Long nextResourcePid = nextEntry.getValue().iterator().next();
 				matchedSearch.forEach(matchUrl -> {
 					ourLog.debug("Matched url {} from database", matchUrl.myRequestUrl);
 					if (matchUrl.myShouldPreFetchResourceBody) {
@@ -420,6 +547,25 @@ public class TransactionProcessor extends BaseTransactionProcessor {
 					matchUrl.setResolved(true);
 				});
 			}
+
+			if (resultsTruncated) {
+				ourLog.debug(
+						"Pre-fetch of {} hashes on {} reached the result limit, not resolving them",
+						theHashesForIndexColumn.size(),
+						theIndexColumnName);
+				return;
+			}
+
+			// For each match URL which was part of this query but did not return a result, tag it as not found.
+			hashToSearchMap.entries().stream()
+					.filter(entry -> !hashToPids.containsKey(entry.getKey()))
+					.map(Map.Entry::getValue)
+					.filter(match -> !match.myResolved)
+					.forEach(match -> {
+						ourLog.debug("Was unable to match url {} from database", match.myRequestUrl);
+						theTransactionDetails.addResolvedMatchUrl(
+								myFhirContext, match.myRequestUrl, TransactionDetails.NOT_FOUND);
+					});
 		}
 	}
 
@@ -494,6 +640,26 @@ public class TransactionProcessor extends BaseTransactionProcessor {
 		}
 	}
 
+	/**
+	 * Given a URI parameter, build the query predicate based on its hash. Only exact matches (ie. no
+	 * {@literal :above} or {@literal :below} qualifier) can be pre-fetched this way.
+	 */
+	private void buildHashPredicateFromUriParam(
+			UriParam theUriParam,
+			RequestPartitionId theRequestPartitionId,
+			MatchUrlToResolve theMatchUrl,
+			Set<Long> theUriPredicates) {
+		if (isNotBlank(theUriParam.getValue()) && theUriParam.getQualifier() == null) {
+			theMatchUrl.myHashUri = ResourceIndexedSearchParamUri.calculateHashUri(
+					myPartitionSettings,
+					theRequestPartitionId,
+					theMatchUrl.myResourceDefinition.getName(),
+					theMatchUrl.myMatchUrlSearchMap.keySet().iterator().next(),
+					theUriParam.getValue());
+			theUriPredicates.add(theMatchUrl.myHashUri);
+		}
+	}
+
 	private ListMultimap<Long, MatchUrlToResolve> buildHashToSearchMap(
 			List<MatchUrlToResolve> searchParameterMapsToResolve, String theIndex) {
 		ListMultimap<Long, MatchUrlToResolve> hashToSearch = ArrayListMultimap.create();
@@ -505,6 +671,9 @@ public class TransactionProcessor extends BaseTransactionProcessor {
 			if (nextSearchParameterMap.myHashValue != null && theIndex.equals("myHashValue")) {
 				hashToSearch.put(nextSearchParameterMap.myHashValue, nextSearchParameterMap);
 			}
+			if (nextSearchParameterMap.myHashUri != null && theIndex.equals("myHashUri")) {
+				hashToSearch.put(nextSearchParameterMap.myHashUri, nextSearchParameterMap);
+			}
 		}
 		return hashToSearch;
 	}
@@ -530,6 +699,11 @@ public class TransactionProcessor extends BaseTransactionProcessor {
 					sw.getMillis(),
 					insertionCount,
 					updateCount);
+
+			// Conflict checks after the flush search the index tables, so any queued rows need to be there too
+			if (mySearchIndexBulkInserter != null) {
+				mySearchIndexBulkInserter.flushPendingRows();
+			}
 		} catch (PersistenceException e) {
 			if (myHapiFhirHibernateJpaDialect != null) {
 				List<String> types = theIdToPersistedOutcome.keySet().stream()
@@ -562,6 +736,7 @@ public class TransactionProcessor extends BaseTransactionProcessor {
 		public boolean myResolved;
 		private Long myHashValue;
 		private Long myHashSystemAndValue;
+		private Long myHashUri;
 
 		public MatchUrlToResolve(
 				String theRequestUrl,
@@ -0,0 +1,41 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.dao.data;
+
+import ca.uhn.fhir.jpa.entity.ResourceCompressionDictionaryEntity;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface IResourceCompressionDictionaryDao
+		extends JpaRepository<ResourceCompressionDictionaryEntity, Long>, IHapiFhirJpaRepository {
+
+	@Query(
+			"SELECT d FROM ResourceCompressionDictionaryEntity d WHERE d.myResourceType = :type ORDER BY d.myCreated DESC, d.myId DESC")
+	List<ResourceCompressionDictionaryEntity> findNewestForResourceType(
+			@Param("type") String theResourceType, Pageable thePageable);
+
+	@Query("SELECT d FROM ResourceCompressionDictionaryEntity d WHERE d.myDictionaryId = :id")
+	Optional<ResourceCompressionDictionaryEntity> findByDictionaryId(@Param("id") long theDictionaryId);
+}
@@ -36,6 +36,18 @@ public interface ISearchResultDao extends JpaRepository<SearchResult, Long>, IHa
 	@Query(value = "SELECT r.myResourcePid FROM SearchResult r WHERE r.mySearchPid = :search ORDER BY r.myOrder ASC")
 	Slice<Long> findWithSearchPid(@Param("search") Long theSearchPid, Pageable thePage);
 
+	/**
+	 * Returns the results with an order in the given range. The order of the results in a search is contiguous
+	 * and starts at 0, so this returns the same results as {@link #findWithSearchPid(Long, Pageable)} but seeks
+	 * directly to the first result using the unique (SEARCH_PID, SEARCH_ORDER) index instead of skipping over
+	 * every earlier result.
+	 */
+	@Query(
+			value =
+					"SELECT r.myResourcePid FROM SearchResult r WHERE r.mySearchPid = :search AND r.myOrder >= :fromOrder AND r.myOrder < :toOrder ORDER BY r.myOrder ASC")
+	List<Long> findWithSearchPidInOrderRange(
+			@Param("search") Long theSearchPid, @Param("fromOrder") int theFromOrder, @Param("toOrder") int theToOrder);
+
 	@Query(value = "SELECT r.myResourcePid FROM SearchResult r WHERE r.mySearchPid = :search")
 	List<Long> findWithSearchPidOrderIndependent(@Param("search") Long theSearchPid);
 
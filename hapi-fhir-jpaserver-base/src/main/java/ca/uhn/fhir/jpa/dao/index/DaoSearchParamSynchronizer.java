@@ -24,6 +24,7 @@ import ca.uhn.fhir.i18n.Msg;
 import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
 import ca.uhn.fhir.jpa.dao.BaseHapiFhirDao;
 import ca.uhn.fhir.jpa.dao.data.IResourceIndexedComboStringUniqueDao;
+import ca.uhn.fhir.jpa.dao.index.SearchIndexFingerprint.IndexTable;
 import ca.uhn.fhir.jpa.model.entity.BaseResourceIndex;
 import ca.uhn.fhir.jpa.model.entity.BaseResourceIndexedSearchParam;
 import ca.uhn.fhir.jpa.model.entity.ResourceIndexedComboStringUnique;
@@ -47,6 +48,7 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Supplier;
 
 @Service
 public class DaoSearchParamSynchronizer {
@@ -63,33 +65,79 @@ public class DaoSearchParamSynchronizer {
 	@Autowired
 	private FhirContext myFhirContext;
 
+	@Autowired(required = false)
+	private SearchIndexBulkInserter mySearchIndexBulkInserter;
+
 	public AddRemoveCount synchronizeSearchParamsToDatabase(
 			ResourceIndexedSearchParams theParams,
 			ResourceTable theEntity,
 			ResourceIndexedSearchParams existingParams) {
 		AddRemoveCount retVal = new AddRemoveCount();
+		boolean bulkInsert = mySearchIndexBulkInserter != null && mySearchIndexBulkInserter.isEnabled();
+		DeferredParamsLoader loader = new DeferredParamsLoader(theEntity, existingParams);
 
-		synchronize(theEntity, retVal, theParams.myStringParams, existingParams.myStringParams, null);
-		synchronize(theEntity, retVal, theParams.myTokenParams, existingParams.myTokenParams, null);
-		synchronize(theEntity, retVal, theParams.myNumberParams, existingParams.myNumberParams, null);
-		synchronize(theEntity, retVal, theParams.myQuantityParams, existingParams.myQuantityParams, null);
-		synchronize(
-				theEntity,
-				retVal,
-				theParams.myQuantityNormalizedParams,
+		if (loader.loadIfChanged(IndexTable.STRING, existingParams.myStringParams, theEntity::getParamsString)) {
+			synchronize(theEntity, retVal, theParams.myStringParams, existingParams.myStringParams, null, bulkInsert);
+		}
+		if (loader.loadIfChanged(IndexTable.TOKEN, existingParams.myTokenParams, theEntity::getParamsToken)) {
+			synchronize(theEntity, retVal, theParams.myTokenParams, existingParams.myTokenParams, null, bulkInsert);
+		}
+		if (loader.loadIfChanged(IndexTable.NUMBER, existingParams.myNumberParams, theEntity::getParamsNumber)) {
+			synchronize(theEntity, retVal, theParams.myNumberParams, existingParams.myNumberParams, null, bulkInsert);
+		}
+		if (loader.loadIfChanged(IndexTable.QUANTITY, existingParams.myQuantityParams, theEntity::getParamsQuantity)) {
+			synchronize(
+					theEntity, retVal, theParams.myQuantityParams, existingParams.myQuantityParams, null, bulkInsert);
+		}
+		if (loader.loadIfChanged(
+				IndexTable.QUANTITY_NORMALIZED,
 				existingParams.myQuantityNormalizedParams,
-				null);
-		synchronize(theEntity, retVal, theParams.myDateParams, existingParams.myDateParams, null);
-		synchronize(theEntity, retVal, theParams.myUriParams, existingParams.myUriParams, null);
-		synchronize(theEntity, retVal, theParams.myCoordsParams, existingParams.myCoordsParams, null);
-		synchronize(theEntity, retVal, theParams.myLinks, existingParams.myLinks, null);
-		synchronize(theEntity, retVal, theParams.myComboTokenNonUnique, existingParams.myComboTokenNonUnique, null);
-		synchronize(
-				theEntity,
-				retVal,
-				theParams.myComboStringUniques,
+				theEntity::getParamsQuantityNormalized)) {
+			synchronize(
+					theEntity,
+					retVal,
+					theParams.myQuantityNormalizedParams,
+					existingParams.myQuantityNormalizedParams,
+					null,
+					bulkInsert);
+		}
+		if (loader.loadIfChanged(IndexTable.DATE, existingParams.myDateParams, theEntity::getParamsDate)) {
+			synchronize(theEntity, retVal, theParams.myDateParams, existingParams.myDateParams, null, bulkInsert);
+		}
+		if (loader.loadIfChanged(IndexTable.URI, existingParams.myUriParams, theEntity::getParamsUri)) {
+			synchronize(theEntity, retVal, theParams.myUriParams, existingParams.myUriParams, null, bulkInsert);
+		}
+		if (loader.loadIfChanged(IndexTable.COORDS, existingParams.myCoordsParams, theEntity::getParamsCoords)) {
+			synchronize(theEntity, retVal, theParams.myCoordsParams, existingParams.myCoordsParams, null, bulkInsert);
+		}
+		if (loader.loadIfChanged(IndexTable.LINK, existingParams.myLinks, theEntity::getResourceLinks)) {
+			synchronize(theEntity, retVal, theParams.myLinks, existingParams.myLinks, null, bulkInsert);
+		}
+		if (loader.loadIfChanged(
+				IndexTable.COMBO_TOKEN_NON_UNIQUE,
+				existingParams.myComboTokenNonUnique,
+				theEntity::getmyParamsComboTokensNonUnique)) {
+			synchronize(
+					theEntity,
+					retVal,
+					theParams.myComboTokenNonUnique,
+					existingParams.myComboTokenNonUnique,
+					null,
+					bulkInsert);
+		}
+		if (loader.loadIfChanged(
+				IndexTable.COMBO_STRING_UNIQUE,
 				existingParams.myComboStringUniques,
-				new UniqueIndexPreExistenceChecker());
+				theEntity::getParamsComboStringUnique)) {
+			// Unique index conflicts need to be reported by the session, so these are never bulk inserted
+			synchronize(
+					theEntity,
+					retVal,
+					theParams.myComboStringUniques,
+					existingParams.myComboStringUniques,
+					new UniqueIndexPreExistenceChecker(),
+					false);
+		}
 
 		// make sure links are indexed
 		theEntity.setResourceLinks(theParams.myLinks);
@@ -97,6 +145,28 @@ public class DaoSearchParamSynchronizer {
 		return retVal;
 	}
 
+	/**
+	 * Calculates the search index fingerprint to store for a resource which is about to
+	 * be synchronized with the given index rows.
+	 *
+	 * @return Returns <code>null</code> if {@link JpaStorageSettings#isSearchIndexFingerprintEnabled()} is disabled
+	 * @see SearchIndexFingerprint
+	 */
+	@Nullable
+	public String createSearchIndexFingerprint(ResourceIndexedSearchParams theParams, ResourceTable theEntity) {
+		if (!myStorageSettings.isSearchIndexFingerprintEnabled()) {
+			return null;
+		}
+
+		for (IndexTable nextTable : IndexTable.values()) {
+			for (BaseResourceIndex next : SearchIndexFingerprint.getParams(nextTable, theParams)) {
+				next.setPartitionId(theEntity.getPartitionId());
+				next.calculateHashes();
+			}
+		}
+		return SearchIndexFingerprint.forParams(theParams).encode(myStorageSettings.isIndexStorageOptimized());
+	}
+
 	@VisibleForTesting
 	public void setEntityManager(EntityManager theEntityManager) {
 		myEntityManager = theEntityManager;
@@ -112,7 +182,8 @@ public class DaoSearchParamSynchronizer {
 			AddRemoveCount theAddRemoveCount,
 			Collection<T> theNewParams,
 			Collection<T> theExistingParams,
-			@Nullable IPreSaveHook<T> theAddParamPreSaveHook) {
+			@Nullable IPreSaveHook<T> theAddParamPreSaveHook,
+			boolean theBulkInsert) {
 		Collection<T> newParams = theNewParams;
 		for (T next : newParams) {
 			next.setPartitionId(theEntity.getPartitionId());
@@ -159,6 +230,15 @@ public class DaoSearchParamSynchronizer {
 		updateExistingParamsIfRequired(theExistingParams, paramsToAdd, newParams, paramsToRemove);
 
 		for (T next : paramsToRemove) {
+			if (theBulkInsert && mySearchIndexBulkInserter.removeFromQueue(next)) {
+				// Queued for insert earlier in this transaction, so there's nothing in the database yet
+				continue;
+			}
+			if (theBulkInsert && mySearchIndexBulkInserter.wasInserted(next)) {
+				// Inserted earlier in this transaction without being added to the session
+				myEntityManager.remove(myEntityManager.merge(next));
+				continue;
+			}
 			if (!myEntityManager.contains(next)) {
 				// If a resource is created and deleted in the same transaction, we can end up
 				// in a state where we're deleting entities that don't actually exist. Hibernate
@@ -169,7 +249,11 @@ public class DaoSearchParamSynchronizer {
 		}
 
 		for (T next : paramsToAdd) {
-			myEntityManager.merge(next);
+			if (theBulkInsert && next.getId() == null) {
+				mySearchIndexBulkInserter.queueForInsert(next);
+			} else {
+				myEntityManager.merge(next);
+			}
 		}
 
 		// TODO:  are there any unintended consequences to fixing this bug?
@@ -280,6 +364,48 @@ public class DaoSearchParamSynchronizer {
 		return retVal;
 	}
 
+	/**
+	 * When the existing index rows for a resource were not loaded up front (see
+	 * {@link ResourceIndexedSearchParams#withDeferredLists(String)}), this compares the
+	 * fingerprint of the existing rows with the fingerprint that was calculated for the new
+	 * rows, and only loads the index tables which have changed.
+	 */
+	private class DeferredParamsLoader {
+
+		private final boolean myDeferred;
+		private final SearchIndexFingerprint myExistingFingerprint;
+		private final SearchIndexFingerprint myNewFingerprint;
+
+		private DeferredParamsLoader(ResourceTable theEntity, ResourceIndexedSearchParams theExistingParams) {
+			boolean indexStorageOptimized = myStorageSettings.isIndexStorageOptimized();
+			myDeferred = theExistingParams.getDeferredFingerprint() != null;
+			myExistingFingerprint =
+					SearchIndexFingerprint.decode(theExistingParams.getDeferredFingerprint(), indexStorageOptimized);
+			myNewFingerprint =
+					SearchIndexFingerprint.decode(theEntity.getSearchIndexFingerprint(), indexStorageOptimized);
+		}
+
+		/**
+		 * @return Returns <code>false</code> if the index table has not changed and can be skipped
+		 */
+		private <T extends BaseResourceIndex> boolean loadIfChanged(
+				IndexTable theIndexTable, Collection<T> theExistingParams, Supplier<Collection<T>> theLoader) {
+			if (!myDeferred) {
+				return true;
+			}
+			if (myExistingFingerprint != null
+					&& myNewFingerprint != null
+					&& myExistingFingerprint.isUnchanged(theIndexTable, myNewFingerprint)) {
+				return false;
+			}
+			boolean knownToBeEmpty = myExistingFingerprint != null && myExistingFingerprint.isEmpty(theIndexTable);
+			if (!knownToBeEmpty && theExistingParams.isEmpty()) {
+				theExistingParams.addAll(theLoader.get());
+			}
+			return true;
+		}
+	}
+
 	private interface IPreSaveHook<T> {
 
 		void preSave(Collection<T> theParamsToRemove, Collection<T> theParamsToAdd);
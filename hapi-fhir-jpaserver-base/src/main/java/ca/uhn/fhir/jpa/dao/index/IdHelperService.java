@@ -357,13 +357,31 @@ public class IdHelperService implements IIdHelperService<JpaPid> {
 					continue;
 				}
 
+				if (nextId.hasResourceType() && isCachedAsNotFound(nextId.getResourceType(), nextId.getIdPart())) {
+					continue;
+				}
+
 				idsToCheck.add(nextId);
 			}
+
+			int firstResolvedIndex = retVal.size();
 			new QueryChunker<IIdType>()
 					.chunk(
 							idsToCheck,
 							SearchBuilder.getMaximumPageSize() / 2,
 							ids -> doResolvePersistentIds(theRequestPartitionId, ids, retVal));
+
+			if (isResourceIdNotFoundCacheEnabled() && retVal.size() - firstResolvedIndex < idsToCheck.size()) {
+				Set<String> resolvedIds = retVal.subList(firstResolvedIndex, retVal.size()).stream()
+						.map(t -> t.getAssociatedResourceId().getValue())
+						.collect(Collectors.toSet());
+				for (IIdType nextId : idsToCheck) {
+					if (nextId.hasResourceType()
+							&& !resolvedIds.contains(nextId.getResourceType() + "/" + nextId.getIdPart())) {
+						cacheAsNotFound(nextId.getResourceType(), nextId.getIdPart());
+					}
+				}
+			}
 		}
 
 		return retVal;
@@ -533,7 +551,8 @@ public class IdHelperService implements IIdHelperService<JpaPid> {
 		ListMultimap<String, String> typeToIds = organizeIdsByResourceType(theId);
 		for (Map.Entry<String, Collection<String>> nextEntry : typeToIds.asMap().entrySet()) {
 			String nextResourceType = nextEntry.getKey();
-			Collection<String> nextIds = nextEntry.getValue();
+			// Copied, since removing the last ID of a type would remove the type from the multimap
+			Collection<String> nextIds = new ArrayList<>(nextEntry.getValue());
 
 			if (!myStorageSettings.isDeleteEnabled()) {
 				for (Iterator<String> forcedIdIterator = nextIds.iterator(); forcedIdIterator.hasNext(); ) {
@@ -549,6 +568,15 @@ public class IdHelperService implements IIdHelperService<JpaPid> {
 				}
 			}
 
+			/*
+			 * Deleted resources are filtered out by the query below if theExcludeDeleted is set, so
+			 * we can only trust (and only record) IDs that aren't found when it isn't
+			 */
+			boolean useNotFoundCache = !theExcludeDeleted && isResourceIdNotFoundCacheEnabled();
+			if (useNotFoundCache) {
+				nextIds.removeIf(t -> isCachedAsNotFound(nextResourceType, t));
+			}
+
 			if (!nextIds.isEmpty()) {
 				Collection<Object[]> views;
 				assert isNotBlank(nextResourceType);
@@ -572,6 +600,7 @@ public class IdHelperService implements IIdHelperService<JpaPid> {
 					}
 				}
 
+				Set<String> foundIds = new HashSet<>();
 				for (Object[] next : views) {
 					String resourceType = (String) next[0];
 					Long resourcePid = (Long) next[1];
@@ -586,18 +615,85 @@ public class IdHelperService implements IIdHelperService<JpaPid> {
 							deletedAt,
 							PartitionablePartitionId.with(partitionId, partitionDate));
 					retVal.computeIfAbsent(forcedId, id -> new ArrayList<>()).add(lookup);
+					foundIds.add(forcedId);
 
 					if (!myStorageSettings.isDeleteEnabled()) {
 						String key = resourceType + "/" + forcedId;
 						myMemoryCacheService.putAfterCommit(MemoryCacheService.CacheEnum.RESOURCE_LOOKUP, key, lookup);
 					}
 				}
+
+				if (useNotFoundCache) {
+					for (String nextId : nextIds) {
+						if (!foundIds.contains(nextId)) {
+							cacheAsNotFound(nextResourceType, nextId);
+						}
+					}
+				}
 			}
 		}
 
 		return retVal;
 	}
 
+	/**
+	 * Resolves the given IDs with one query per resource type (per chunk of IDs), instead
+	 * of one query per ID as {@link #resolveResourceIdentity(RequestPartitionId, String, String)} would.
+	 */
+	@Override
+	@Nonnull
+	public Map<String, IResourceLookup> resolveResourceIdentities(
+			@Nonnull RequestPartitionId theRequestPartitionId, Collection<IIdType> theIds) {
+		assert myDontCheckActiveTransactionForUnitTest || TransactionSynchronizationManager.isSynchronizationActive()
+				: "no transaction active";
+		theIds.forEach(id ->
+				Validate.isTrue(id.hasResourceType() && id.hasIdPart(), "ID must have a type and ID part: %s", id));
+
+		Map<String, IResourceLookup> retVal = new HashMap<>();
+		new QueryChunker<IIdType>().chunk(theIds, ids -> {
+			Map<String, List<IResourceLookup<JpaPid>>> matches =
+					translateForcedIdToPids(theRequestPartitionId, ids, false);
+			for (IIdType nextId : ids) {
+				List<IResourceLookup<JpaPid>> candidates =
+						matches.getOrDefault(nextId.getIdPart(), Collections.emptyList()).stream()
+								.filter(t -> nextId.getResourceType().equals(t.getResourceType()))
+								.collect(Collectors.toList());
+
+				// Non-unique matches are left for resolveResourceIdentity(..) to report
+				if (candidates.size() == 1) {
+					retVal.put(nextId.getResourceType() + "/" + nextId.getIdPart(), candidates.get(0));
+				}
+			}
+		});
+		return retVal;
+	}
+
+	private boolean isResourceIdNotFoundCacheEnabled() {
+		return myStorageSettings.getResourceIdNotFoundCacheMillis() > 0 && !myPartitionSettings.isPartitioningEnabled();
+	}
+
+	/**
+	 * Returns <code>true</code> if the given ID was recently looked up and found not to exist
+	 *
+	 * @see JpaStorageSettings#getResourceIdNotFoundCacheMillis()
+	 */
+	private boolean isCachedAsNotFound(String theResourceType, String theId) {
+		if (!isResourceIdNotFoundCacheEnabled()) {
+			return false;
+		}
+		Long notFoundAt = myMemoryCacheService.getIfPresent(
+				MemoryCacheService.CacheEnum.RESOURCE_ID_NOT_FOUND, theResourceType + "/" + theId);
+		return notFoundAt != null
+				&& System.currentTimeMillis() - notFoundAt <= myStorageSettings.getResourceIdNotFoundCacheMillis();
+	}
+
+	private void cacheAsNotFound(String theResourceType, String theId) {
+		myMemoryCacheService.putAfterCommit(
+				MemoryCacheService.CacheEnum.RESOURCE_ID_NOT_FOUND,
+				theResourceType + "/" + theId,
+				System.currentTimeMillis());
+	}
+
 	public RequestPartitionId replaceDefault(RequestPartitionId theRequestPartitionId) {
 		if (myPartitionSettings.getDefaultPartitionId() != null) {
 			if (!theRequestPartitionId.isAllPartitions() && theRequestPartitionId.hasDefaultPartitionId()) {
@@ -718,6 +814,8 @@ public class IdHelperService implements IIdHelperService<JpaPid> {
 					Optional.of(theResourceType + "/" + theForcedId));
 			String key = toForcedIdToPidKey(theRequestPartitionId, theResourceType, theForcedId);
 			myMemoryCacheService.putAfterCommit(MemoryCacheService.CacheEnum.FORCED_ID_TO_PID, key, theJpaPid);
+			myMemoryCacheService.invalidateNowAndAfterCommit(
+					MemoryCacheService.CacheEnum.RESOURCE_ID_NOT_FOUND, theResourceType + "/" + theForcedId);
 		} else {
 			myMemoryCacheService.putAfterCommit(
 					MemoryCacheService.CacheEnum.PID_TO_FORCED_ID, theJpaPid.getId(), Optional.empty());
@@ -0,0 +1,249 @@
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.dao.index;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.model.entity.BaseResourceIndex;
+import ca.uhn.fhir.jpa.model.entity.BaseResourceIndexedSearchParam;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamToken;
+import ca.uhn.fhir.util.StopWatch;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.PersistenceContextType;
+import org.hibernate.Session;
+import org.hibernate.StatelessSession;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes new search index rows using batched JDBC inserts instead of adding them to the
+ * Hibernate session. This is only used when
+ * {@link JpaStorageSettings#getSearchIndexBulkInsertBatchSize()} is greater than 0.
+ * <p>
+ * Rows queued by {@link DaoSearchParamSynchronizer} are held for the current database
+ * transaction and written when {@link #flushPendingRows()} is called, which happens when a
+ * FHIR transaction flushes its session and just before the database transaction commits.
+ * The rows are written by a {@link StatelessSession} which shares the JDBC connection of the
+ * current transaction, so they are never tracked by the session.
+ * </p>
+ *
+ * @since 7.6.0
+ */
+public class SearchIndexBulkInserter {
+
+	private static final Logger ourLog = LoggerFactory.getLogger(SearchIndexBulkInserter.class);
+
+	@PersistenceContext(type = PersistenceContextType.TRANSACTION)
+	private EntityManager myEntityManager;
+
+	@Autowired
+	private JpaStorageSettings myStorageSettings;
+
+	private long myInsertedRowCount;
+
+	/**
+	 * Returns <code>true</code> if index rows written in the current thread should be
+	 * queued using {@link #queueForInsert(BaseResourceIndex)}
+	 */
+	public boolean isEnabled() {
+		return myStorageSettings.getSearchIndexBulkInsertBatchSize() > 0
+				&& TransactionSynchronizationManager.isSynchronizationActive()
+				&& TransactionSynchronizationManager.isActualTransactionActive();
+	}
+
+	/**
+	 * Queues a new index row to be inserted before the current transaction commits.
+	 * Queueing the same row more than once has no effect.
+	 */
+	public void queueForInsert(BaseResourceIndex theIndex) {
+		assert theIndex.getId() == null;
+		getPendingRows(true).queue(theIndex);
+	}
+
+	/**
+	 * Removes a row which was queued by {@link #queueForInsert(BaseResourceIndex)} but
+	 * not yet inserted, e.g. because the resource was updated or deleted again in the
+	 * same transaction.
+	 *
+	 * @return Returns <code>true</code> if the row was queued
+	 */
+	public boolean removeFromQueue(BaseResourceIndex theIndex) {
+		PendingRows pendingRows = getPendingRows(false);
+		return pendingRows != null && pendingRows.remove(theIndex);
+	}
+
+	/**
+	 * Returns <code>true</code> if the given row was inserted by this service in
+	 * the current transaction, meaning that the row exists in the database but is
+	 * not managed by the session.
+	 */
+	public boolean wasInserted(BaseResourceIndex theIndex) {
+		PendingRows pendingRows = getPendingRows(false);
+		return pendingRows != null && pendingRows.myInsertedRows.contains(theIndex);
+	}
+
+	/**
+	 * Flushes the session and then inserts any rows queued in the current transaction
+	 *
+	 * @return Returns the number of rows inserted
+	 */
+	public int flushPendingRows() {
+		PendingRows pendingRows = getPendingRows(false);
+		if (pendingRows == null || pendingRows.isEmpty()) {
+			return 0;
+		}
+
+		// Index rows have foreign keys to the resource rows, so those need to be written first
+		myEntityManager.flush();
+
+		List<BaseResourceIndex> rows = pendingRows.drain();
+		int batchSize = myStorageSettings.getSearchIndexBulkInsertBatchSize();
+		StopWatch sw = new StopWatch();
+		Session session = myEntityManager.unwrap(Session.class);
+		session.doWork(connection -> {
+			try (StatelessSession statelessSession = session.getSessionFactory()
+					.withStatelessOptions()
+					.connection(connection)
+					.openStatelessSession()) {
+				statelessSession.setJdbcBatchSize(batchSize);
+
+				/*
+				 * Hibernate only batches statements when its transaction is active. Beginning
+				 * it doesn't change anything on the connection since the connection is already
+				 * enlisted in the current transaction, and it is deliberately never committed
+				 * here: the rows are committed (or rolled back) along with that transaction.
+				 */
+				statelessSession.getTransaction().begin();
+				for (BaseResourceIndex next : rows) {
+					insert(statelessSession, next);
+				}
+				((SharedSessionContractImplementor) statelessSession)
+						.getJdbcCoordinator()
+						.executeBatch();
+			}
+		});
+		pendingRows.myInsertedRows.addAll(rows);
+
+		synchronized (this) {
+			myInsertedRowCount += rows.size();
+		}
+		ourLog.debug("Inserted {} search index rows in {}", rows.size(), sw);
+		return rows.size();
+	}
+
+	/**
+	 * A {@link StatelessSession} doesn't invoke JPA lifecycle callbacks, so the
+	 * <code>@PrePersist</code> steps which the session would otherwise run for index
+	 * rows are applied here. As with the session, the parameter name and resource type
+	 * are restored once the row values have been bound to the insert statement.
+	 */
+	private void insert(StatelessSession theStatelessSession, BaseResourceIndex theRow) {
+		if (theRow instanceof ResourceIndexedSearchParamToken) {
+			((ResourceIndexedSearchParamToken) theRow).truncateFieldsForDB();
+		}
+
+		if (myStorageSettings.isIndexStorageOptimized() && theRow instanceof BaseResourceIndexedSearchParam) {
+			BaseResourceIndexedSearchParam param = (BaseResourceIndexedSearchParam) theRow;
+			String paramName = param.getParamName();
+			String resourceType = param.getResourceType();
+			param.optimizeIndexStorage();
+			theStatelessSession.insert(param);
+			param.restoreParamName(paramName);
+			param.setResourceType(resourceType);
+		} else {
+			theStatelessSession.insert(theRow);
+		}
+	}
+
+	/**
+	 * Returns the total number of index rows inserted by this service since startup
+	 */
+	public synchronized long getInsertedRowCount() {
+		return myInsertedRowCount;
+	}
+
+	private PendingRows getPendingRows(boolean theCreateIfMissing) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			return null;
+		}
+		PendingRows pendingRows = (PendingRows) TransactionSynchronizationManager.getResource(this);
+		if (pendingRows == null && theCreateIfMissing) {
+			// Only register one synchronization per transaction, no matter how many resources it writes
+			pendingRows = new PendingRows();
+			TransactionSynchronizationManager.bindResource(this, pendingRows);
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void beforeCommit(boolean theReadOnly) {
+					flushPendingRows();
+				}
+
+				@Override
+				public void afterCompletion(int theStatus) {
+					TransactionSynchronizationManager.unbindResourceIfPossible(SearchIndexBulkInserter.this);
+				}
+			});
+		}
+		return pendingRows;
+	}
+
+	private static class PendingRows {
+
+		/**
+		 * Rows are grouped by entity type so that consecutive inserts can share a JDBC batch
+		 */
+		private final Map<Class<?>, Set<BaseResourceIndex>> myQueuedRows = new LinkedHashMap<>();
+
+		private final Set<BaseResourceIndex> myInsertedRows = Collections.newSetFromMap(new IdentityHashMap<>());
+
+		private void queue(BaseResourceIndex theIndex) {
+			myQueuedRows
+					.computeIfAbsent(theIndex.getClass(), t -> Collections.newSetFromMap(new IdentityHashMap<>()))
+					.add(theIndex);
+		}
+
+		private boolean remove(BaseResourceIndex theIndex) {
+			Set<BaseResourceIndex> rows = myQueuedRows.get(theIndex.getClass());
+			return rows != null && rows.remove(theIndex);
+		}
+
+		private boolean isEmpty() {
+			return myQueuedRows.values().stream().allMatch(Set::isEmpty);
+		}
+
+		private List<BaseResourceIndex> drain() {
+			List<BaseResourceIndex> retVal = new ArrayList<>();
+			myQueuedRows.values().forEach(retVal::addAll);
+			myQueuedRows.clear();
+			return retVal;
+		}
+	}
+}
@@ -0,0 +1,208 @@
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.dao.index;
+
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.jpa.model.entity.BaseResourceIndex;
+import ca.uhn.fhir.jpa.model.entity.ResourceTable;
+import ca.uhn.fhir.jpa.searchparam.extractor.ResourceIndexedSearchParams;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import jakarta.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * A compact summary of all of the search index rows for a resource, holding one hash
+ * per index table. The hash for a table is calculated from the sorted
+ * {@link BaseResourceIndex#getEqualityHash() equality hashes} of its rows, so two sets
+ * of rows which are equal always have the same fingerprint.
+ * <p>
+ * Fingerprints are stored in {@link ResourceTable#getSearchIndexFingerprint()} when
+ * {@link ca.uhn.fhir.jpa.api.config.JpaStorageSettings#isSearchIndexFingerprintEnabled()}
+ * is enabled, and are used by {@link DaoSearchParamSynchronizer} to avoid loading index
+ * tables which have not changed.
+ * </p>
+ *
+ * @since 7.6.0
+ */
+public class SearchIndexFingerprint {
+
+	/**
+	 * Change this if the way that the fingerprint is calculated changes, so that
+	 * previously stored fingerprints are no longer trusted
+	 */
+	private static final String VERSION = "1";
+
+	private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128(0);
+	private static final int HASH_LENGTH = 16;
+
+	private final long[] myTableHashes;
+
+	private SearchIndexFingerprint(long[] theTableHashes) {
+		myTableHashes = theTableHashes;
+	}
+
+	/**
+	 * Returns <code>true</code> if the rows for the given index table are the same in both fingerprints
+	 */
+	public boolean isUnchanged(IndexTable theIndexTable, SearchIndexFingerprint theOther) {
+		return myTableHashes[theIndexTable.ordinal()] == theOther.myTableHashes[theIndexTable.ordinal()];
+	}
+
+	/**
+	 * Returns <code>true</code> if there are no rows for the given index table
+	 */
+	public boolean isEmpty(IndexTable theIndexTable) {
+		return myTableHashes[theIndexTable.ordinal()] == 0;
+	}
+
+	/**
+	 * Encodes this fingerprint for storage. The encoding includes whether index storage
+	 * optimization was enabled, since the stored rows differ depending on that setting.
+	 */
+	public String encode(boolean theIndexStorageOptimized) {
+		StringBuilder b = new StringBuilder(prefix(theIndexStorageOptimized));
+		for (long next : myTableHashes) {
+			String hex = Long.toHexString(next);
+			b.append("0".repeat(HASH_LENGTH - hex.length())).append(hex);
+		}
+		return b.toString();
+	}
+
+	/**
+	 * Calculates a fingerprint for the given index rows. Hashes must already have been
+	 * calculated for all of the rows.
+	 */
+	public static SearchIndexFingerprint forParams(ResourceIndexedSearchParams theParams) {
+		IndexTable[] tables = IndexTable.values();
+		long[] tableHashes = new long[tables.length];
+		for (IndexTable next : tables) {
+			tableHashes[next.ordinal()] = hashRows(getParams(next, theParams));
+		}
+		return new SearchIndexFingerprint(tableHashes);
+	}
+
+	/**
+	 * Decodes a fingerprint which was created by {@link #encode(boolean)}
+	 *
+	 * @return Returns <code>null</code> if the value is <code>null</code>, or if it was created by a
+	 * different version of this class or using a different index storage optimization setting
+	 */
+	@Nullable
+	public static SearchIndexFingerprint decode(@Nullable String theEncoded, boolean theIndexStorageOptimized) {
+		String prefix = prefix(theIndexStorageOptimized);
+		int tableCount = IndexTable.values().length;
+		if (theEncoded == null
+				|| !theEncoded.startsWith(prefix)
+				|| theEncoded.length() != prefix.length() + (tableCount * HASH_LENGTH)) {
+			return null;
+		}
+
+		long[] tableHashes = new long[tableCount];
+		try {
+			for (int i = 0; i < tableCount; i++) {
+				int start = prefix.length() + (i * HASH_LENGTH);
+				tableHashes[i] = Long.parseUnsignedLong(theEncoded.substring(start, start + HASH_LENGTH), 16);
+			}
+		} catch (NumberFormatException e) {
+			return null;
+		}
+		return new SearchIndexFingerprint(tableHashes);
+	}
+
+	private static String prefix(boolean theIndexStorageOptimized) {
+		return VERSION + (theIndexStorageOptimized ? "O" : "F") + ":";
+	}
+
+	private static long hashRows(Collection<? extends BaseResourceIndex> theRows) {
+		if (theRows.isEmpty()) {
+			return 0;
+		}
+
+		// Rows are sorted so that the hash doesn't depend on the order they were extracted in
+		long[] rowHashes =
+				theRows.stream().mapToLong(BaseResourceIndex::getEqualityHash).toArray();
+		Arrays.sort(rowHashes);
+
+		Hasher hasher = HASH_FUNCTION.newHasher();
+		hasher.putInt(rowHashes.length);
+		for (long next : rowHashes) {
+			hasher.putLong(next);
+		}
+		long retVal = hasher.hash().asLong();
+
+		// Zero is reserved for empty tables
+		return retVal != 0 ? retVal : 1;
+	}
+
+	/**
+	 * The index tables which are included in a fingerprint. Don't change the order of these
+	 * without changing {@link #VERSION}.
+	 */
+	public enum IndexTable {
+		STRING,
+		TOKEN,
+		NUMBER,
+		QUANTITY,
+		QUANTITY_NORMALIZED,
+		DATE,
+		URI,
+		COORDS,
+		LINK,
+		COMBO_TOKEN_NON_UNIQUE,
+		COMBO_STRING_UNIQUE
+	}
+
+	/**
+	 * Returns the rows for the given index table
+	 */
+	static Collection<? extends BaseResourceIndex> getParams(
+			IndexTable theIndexTable, ResourceIndexedSearchParams theParams) {
+		switch (theIndexTable) {
+			case STRING:
+				return theParams.myStringParams;
+			case TOKEN:
+				return theParams.myTokenParams;
+			case NUMBER:
+				return theParams.myNumberParams;
+			case QUANTITY:
+				return theParams.myQuantityParams;
+			case QUANTITY_NORMALIZED:
+				return theParams.myQuantityNormalizedParams;
+			case DATE:
+				return theParams.myDateParams;
+			case URI:
+				return theParams.myUriParams;
+			case COORDS:
+				return theParams.myCoordsParams;
+			case LINK:
+				return theParams.myLinks;
+			case COMBO_TOKEN_NON_UNIQUE:
+				return theParams.myComboTokenNonUnique;
+			case COMBO_STRING_UNIQUE:
+				return theParams.myComboStringUniques;
+			default:
+				throw new IllegalStateException(Msg.code(2590) + "Unknown index table: " + theIndexTable);
+		}
+	}
+}
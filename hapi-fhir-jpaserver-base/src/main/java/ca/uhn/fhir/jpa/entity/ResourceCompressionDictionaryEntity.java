@@ -0,0 +1,108 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.entity;
+
+import ca.uhn.fhir.jpa.model.entity.ResourceTable;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import jakarta.persistence.Temporal;
+import jakarta.persistence.TemporalType;
+import jakarta.persistence.UniqueConstraint;
+import org.hibernate.Length;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * A compression dictionary trained for a resource type.
+ * See {@link ca.uhn.fhir.jpa.compress.IResourceCompressionDictionarySvc}.
+ *
+ * @since 7.6.0
+ */
+@Entity
+@Table(
+		name = "HFJ_RES_COMPRESS_DICT",
+		uniqueConstraints = {@UniqueConstraint(name = "IDX_RESCMPDICT_DICTID", columnNames = "DICT_ID")},
+		indexes = {@Index(name = "IDX_RESCMPDICT_RESTYPE", columnList = "RES_TYPE")})
+public class ResourceCompressionDictionaryEntity implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.AUTO, generator = "SEQ_RESCMPDICT_PID")
+	@SequenceGenerator(name = "SEQ_RESCMPDICT_PID", sequenceName = "SEQ_RESCMPDICT_PID")
+	@Column(name = "PID")
+	private Long myId;
+
+	@Column(name = "DICT_ID", nullable = false, updatable = false)
+	private long myDictionaryId;
+
+	@Column(name = "RES_TYPE", nullable = false, updatable = false, length = ResourceTable.RESTYPE_LEN)
+	private String myResourceType;
+
+	@Column(name = "DICT_CONTENTS", nullable = false, updatable = false, length = Length.LONG32)
+	private byte[] myContents;
+
+	@Temporal(TemporalType.TIMESTAMP)
+	@Column(name = "CREATED_TIME", nullable = false, updatable = false)
+	private Date myCreated;
+
+	public Long getId() {
+		return myId;
+	}
+
+	public long getDictionaryId() {
+		return myDictionaryId;
+	}
+
+	public void setDictionaryId(long theDictionaryId) {
+		myDictionaryId = theDictionaryId;
+	}
+
+	public String getResourceType() {
+		return myResourceType;
+	}
+
+	public void setResourceType(String theResourceType) {
+		myResourceType = theResourceType;
+	}
+
+	public byte[] getContents() {
+		return myContents;
+	}
+
+	public void setContents(byte[] theContents) {
+		myContents = theContents;
+	}
+
+	public Date getCreated() {
+		return myCreated;
+	}
+
+	public void setCreated(Date theCreated) {
+		myCreated = theCreated;
+	}
+}
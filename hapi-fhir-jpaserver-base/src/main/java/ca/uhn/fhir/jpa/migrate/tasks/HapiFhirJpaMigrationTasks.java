@@ -125,6 +125,39 @@ public class HapiFhirJpaMigrationTasks extends BaseMigrationTasks<VersionEnum> {
 		init700();
 		init720();
 		init740();
+		init760();
+	}
+
+	protected void init760() {
+		// Start of migrations from 7.4 to 7.6
+
+		final Builder version = forVersion(VersionEnum.V7_6_0);
+
+		// Compression dictionaries
+		{
+			Builder.BuilderAddTableByColumns dictTable =
+					version.addTableByColumns("20240801.1", "HFJ_RES_COMPRESS_DICT", "PID");
+			dictTable.addColumn("PID").nonNullable().type(ColumnTypeEnum.LONG);
+			dictTable.addColumn("DICT_ID").nonNullable().type(ColumnTypeEnum.LONG);
+			dictTable.addColumn("RES_TYPE").nonNullable().type(ColumnTypeEnum.STRING, 40);
+			dictTable.addColumn("DICT_CONTENTS").nonNullable().type(ColumnTypeEnum.BINARY);
+			dictTable.addColumn("CREATED_TIME").nonNullable().type(ColumnTypeEnum.DATE_TIMESTAMP);
+			dictTable
+					.addIndex("20240801.2", "IDX_RESCMPDICT_DICTID")
+					.unique(true)
+					.withColumns("DICT_ID");
+			dictTable
+					.addIndex("20240801.3", "IDX_RESCMPDICT_RESTYPE")
+					.unique(false)
+					.withColumns("RES_TYPE");
+			version.addIdGenerator("20240801.4", "SEQ_RESCMPDICT_PID");
+		}
+
+		// Search index fingerprint
+		version.onTable("HFJ_RESOURCE")
+				.addColumn("20240815.1", "SP_IDX_FINGERPRINT")
+				.nullable()
+				.type(ColumnTypeEnum.STRING, ResourceTable.MAX_SEARCH_INDEX_FINGERPRINT_LENGTH);
 	}
 
 	protected void init740() {
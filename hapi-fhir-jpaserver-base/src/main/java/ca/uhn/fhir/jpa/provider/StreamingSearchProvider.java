@@ -0,0 +1,119 @@
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.provider;
+
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.jpa.search.StreamingSearchSvc;
+import ca.uhn.fhir.model.api.annotation.Description;
+import ca.uhn.fhir.rest.annotation.Operation;
+import ca.uhn.fhir.rest.annotation.OperationParam;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.EncodingEnum;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import ca.uhn.fhir.rest.server.provider.ProviderConstants;
+import ca.uhn.fhir.rest.server.servlet.ServletRequestDetails;
+import jakarta.servlet.http.HttpServletResponse;
+import org.hl7.fhir.instance.model.api.IPrimitiveType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+/**
+ * This plain provider class can be registered with a JPA RestfulServer to provide the
+ * <code>$stream-search</code> operation, which writes all of the results of a search directly to
+ * the response without storing them in the search result cache or paging them.
+ *
+ * @see StreamingSearchSvc
+ * @since 7.6.0
+ */
+public class StreamingSearchProvider {
+	private static final Logger ourLog = LoggerFactory.getLogger(StreamingSearchProvider.class);
+
+	@Autowired
+	private StreamingSearchSvc myStreamingSearchSvc;
+
+	@Description(
+			value =
+					"Performs a search and streams every matching resource in a single response, either as NDJSON or as a searchset Bundle. Intended for clients which read large result sets once.",
+			shortDefinition = "Stream the results of a search")
+	@Operation(name = ProviderConstants.OPERATION_STREAM_SEARCH, manualResponse = true, idempotent = true)
+	public void streamSearch(
+			@Description(value = "The search URL", example = "Observation?code=http://loinc.org|789-8")
+					@OperationParam(
+							name = ProviderConstants.OPERATION_STREAM_SEARCH_PARAM_URL,
+							typeName = "string",
+							min = 1,
+							max = 1)
+					IPrimitiveType<String> theUrl,
+			@Description(
+							value =
+									"The output format, either application/fhir+ndjson (the default) or application/fhir+json for a searchset Bundle")
+					@OperationParam(
+							name = ProviderConstants.OPERATION_STREAM_SEARCH_PARAM_OUTPUT_FORMAT,
+							typeName = "string",
+							min = 0,
+							max = 1)
+					IPrimitiveType<String> theOutputFormat,
+			ServletRequestDetails theRequestDetails,
+			HttpServletResponse theServletResponse)
+			throws IOException {
+
+		EncodingEnum encoding = determineEncoding(theOutputFormat);
+		String url = theUrl != null ? theUrl.getValueAsString() : null;
+		StreamingSearchSvc.StreamingSearch search = myStreamingSearchSvc.createStreamingSearch(url, theRequestDetails);
+
+		theServletResponse.setStatus(200);
+		theServletResponse.setContentType(
+				encoding == EncodingEnum.NDJSON ? Constants.CT_FHIR_NDJSON : Constants.CT_FHIR_JSON_NEW);
+		theServletResponse.setCharacterEncoding(Constants.CHARSET_NAME_UTF8);
+		theRequestDetails.getServer().addHeadersToResponse(theServletResponse);
+
+		Writer writer = new BufferedWriter(
+				new OutputStreamWriter(theServletResponse.getOutputStream(), StandardCharsets.UTF_8));
+		try {
+			myStreamingSearchSvc.streamSearch(search, encoding, theRequestDetails, writer);
+			writer.close();
+		} catch (IOException e) {
+			// The client has most likely gone away, and the search has already been stopped
+			ourLog.info("Streaming search of {} aborted: {}", search.getResourceType(), e.toString());
+		}
+	}
+
+	private static EncodingEnum determineEncoding(IPrimitiveType<String> theOutputFormat) {
+		if (theOutputFormat == null || isBlank(theOutputFormat.getValueAsString())) {
+			return EncodingEnum.NDJSON;
+		}
+		EncodingEnum retVal = EncodingEnum.forContentType(theOutputFormat.getValueAsString());
+		if (retVal != EncodingEnum.NDJSON && retVal != EncodingEnum.JSON) {
+			throw new InvalidRequestException(Msg.code(2588) + "Unsupported "
+					+ ProviderConstants.OPERATION_STREAM_SEARCH_PARAM_OUTPUT_FORMAT + " for streaming search: "
+					+ theOutputFormat.getValueAsString());
+		}
+		return retVal;
+	}
+}
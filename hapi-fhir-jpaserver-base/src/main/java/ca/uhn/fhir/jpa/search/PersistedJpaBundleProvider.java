@@ -38,7 +38,6 @@ import ca.uhn.fhir.jpa.dao.tx.HapiTransactionService;
 import ca.uhn.fhir.jpa.entity.Search;
 import ca.uhn.fhir.jpa.entity.SearchTypeEnum;
 import ca.uhn.fhir.jpa.model.dao.JpaPid;
-import ca.uhn.fhir.jpa.model.entity.BaseHasResource;
 import ca.uhn.fhir.jpa.model.entity.ResourceHistoryTable;
 import ca.uhn.fhir.jpa.partition.IRequestPartitionHelperSvc;
 import ca.uhn.fhir.jpa.search.cache.ISearchCacheSvc;
@@ -183,10 +182,9 @@ public class PersistedJpaBundleProvider implements IBundleProvider {
 
 		List<IBaseResource> retVal = new ArrayList<>();
 		for (ResourceHistoryTable next : results) {
-			BaseHasResource resource;
-			resource = next;
-
-			retVal.add(myJpaStorageResourceParser.toResource(resource, true));
+			Class<? extends IBaseResource> resourceType =
+					myContext.getResourceDefinition(next.getResourceType()).getImplementingClass();
+			retVal.add(myJpaStorageResourceParser.toResource(resourceType, next, null, true, myRequest));
 		}
 
 		// Interceptor call: STORAGE_PREACCESS_RESOURCES
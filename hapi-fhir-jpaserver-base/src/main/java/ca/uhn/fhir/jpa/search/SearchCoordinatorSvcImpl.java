@@ -30,6 +30,7 @@ import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
 import ca.uhn.fhir.jpa.api.dao.IDao;
 import ca.uhn.fhir.jpa.api.dao.IFhirResourceDao;
 import ca.uhn.fhir.jpa.api.svc.ISearchCoordinatorSvc;
+import ca.uhn.fhir.jpa.cache.SearchIndexSnapshotSvc;
 import ca.uhn.fhir.jpa.config.SearchConfig;
 import ca.uhn.fhir.jpa.dao.BaseStorageDao;
 import ca.uhn.fhir.jpa.dao.ISearchBuilder;
@@ -69,6 +70,7 @@ import jakarta.annotation.Nullable;
 import org.apache.commons.lang3.time.DateUtils;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
@@ -111,10 +113,19 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc<JpaPid> {
 	private final ExceptionService myExceptionSvc;
 	private final BeanFactory myBeanFactory;
 	private ConcurrentHashMap<String, SearchTask> myIdToSearchTask = new ConcurrentHashMap<>();
+	/**
+	 * Searches which are currently running on this server and which may be shared with other
+	 * identical searches, keyed by resource type and stored query string
+	 */
+	private final ConcurrentHashMap<String, SearchTask> myQueryKeyToInFlightSearchTask = new ConcurrentHashMap<>();
 
 	private final Consumer<String> myOnRemoveSearchTask = myIdToSearchTask::remove;
 
 	private final StorageInterceptorHooksFacade myStorageInterceptorHooks;
+
+	@Autowired(required = false)
+	private SearchIndexSnapshotSvc mySearchIndexSnapshotSvc;
+
 	private Integer myLoadingThrottleForUnitTests = null;
 	private long myMaxMillisToWaitForRemoteResults = DateUtils.MILLIS_PER_MINUTE;
 	private boolean myNeverUseLocalSearchForUnitTests;
@@ -381,6 +392,16 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc<JpaPid> {
 		final Integer loadSynchronousUpTo = getLoadSynchronousUpToOrNull(theCacheControlDirective);
 		boolean isOffsetQuery = theParams.isOffsetQuery();
 
+		if (mySearchIndexSnapshotSvc != null
+				&& (theCacheControlDirective == null || !theCacheControlDirective.isNoCache())) {
+			IBundleProvider snapshotResult =
+					mySearchIndexSnapshotSvc.search(theResourceType, theParams, loadSynchronousUpTo, theRequestDetails);
+			if (snapshotResult != null) {
+				callSearchReusingCachedHook(theParams, theRequestDetails);
+				return snapshotResult;
+			}
+		}
+
 		// todo someday - not today.
 		//		SearchStrategyFactory.ISearchStrategy searchStrategy = mySearchStrategyFactory.pickStrategy(theResourceType,
 		// theParams, theRequestDetails);
@@ -416,21 +437,46 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc<JpaPid> {
 			cacheStatus = SearchCacheStatusEnum.NOT_TRIED;
 		}
 
+		String inFlightSearchKey = null;
 		if (cacheStatus != SearchCacheStatusEnum.NOT_TRIED) {
 			if (theParams.getEverythingMode() == null) {
-				if (myStorageSettings.getReuseCachedSearchResultsForMillis() != null) {
+				if (myStorageSettings.getReuseCachedSearchResultsForMillis() != null
+						&& isCachedSearchPermitted(theParams, theRequestDetails)) {
 					PersistedJpaBundleProvider foundSearchProvider = findCachedQuery(
 							theParams, theResourceType, theRequestDetails, queryString, theRequestPartitionId);
 					if (foundSearchProvider != null) {
 						foundSearchProvider.setCacheStatus(SearchCacheStatusEnum.HIT);
 						return foundSearchProvider;
 					}
+					inFlightSearchKey = theResourceType + " "
+							+ Search.createSearchQueryStringForStorage(queryString, theRequestPartitionId);
 				}
 			}
 		}
 
-		PersistedJpaSearchFirstPageBundleProvider retVal = submitSearch(
-				theCallingDao, theParams, theResourceType, theRequestDetails, sb, theRequestPartitionId, search);
+		SearchTask task = newSearchTask(
+				theCallingDao, theParams, theResourceType, theRequestDetails, theRequestPartitionId, search);
+
+		/*
+		 * Identical searches which arrive at the same time (e.g. many clients polling the
+		 * same worklist) can all miss the cache before any of them has been stored. Only
+		 * the first one actually runs, and the others wait for its first page.
+		 */
+		if (inFlightSearchKey != null) {
+			SearchTask inFlightTask = myQueryKeyToInFlightSearchTask.putIfAbsent(inFlightSearchKey, task);
+			if (inFlightTask != null) {
+				PersistedJpaBundleProvider inFlightSearchProvider =
+						attachToInFlightSearch(inFlightTask, theParams, theRequestDetails);
+				if (inFlightSearchProvider != null) {
+					inFlightSearchProvider.setCacheStatus(SearchCacheStatusEnum.HIT);
+					return inFlightSearchProvider;
+				}
+				inFlightSearchKey = null;
+			}
+		}
+
+		PersistedJpaSearchFirstPageBundleProvider retVal =
+				submitSearch(task, sb, theRequestDetails, theRequestPartitionId, inFlightSearchKey);
 		retVal.setCacheStatus(cacheStatus);
 		return retVal;
 	}
@@ -551,16 +597,13 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc<JpaPid> {
 	}
 
 	@Nonnull
-	private PersistedJpaSearchFirstPageBundleProvider submitSearch(
+	private SearchTask newSearchTask(
 			IDao theCallingDao,
 			SearchParameterMap theParams,
 			String theResourceType,
 			RequestDetails theRequestDetails,
-			ISearchBuilder<JpaPid> theSb,
 			RequestPartitionId theRequestPartitionId,
 			Search theSearch) {
-		StopWatch w = new StopWatch();
-
 		SearchTaskParameters stp = new SearchTaskParameters(
 				theSearch,
 				theCallingDao,
@@ -571,12 +614,33 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc<JpaPid> {
 				myOnRemoveSearchTask,
 				mySyncSize);
 		stp.setLoadingThrottleForUnitTests(myLoadingThrottleForUnitTests);
-		SearchTask task = (SearchTask) myBeanFactory.getBean(SearchConfig.SEARCH_TASK, stp);
-		myIdToSearchTask.put(theSearch.getUuid(), task);
-		task.call();
+		return (SearchTask) myBeanFactory.getBean(SearchConfig.SEARCH_TASK, stp);
+	}
+
+	/**
+	 * @param theInFlightSearchKey If not null, the task has been registered as in-flight under this key,
+	 *                             and is unregistered once it has completed its first pass
+	 */
+	@Nonnull
+	private PersistedJpaSearchFirstPageBundleProvider submitSearch(
+			SearchTask theTask,
+			ISearchBuilder<JpaPid> theSb,
+			RequestDetails theRequestDetails,
+			RequestPartitionId theRequestPartitionId,
+			@Nullable String theInFlightSearchKey) {
+		StopWatch w = new StopWatch();
+
+		myIdToSearchTask.put(theTask.getSearch().getUuid(), theTask);
+		try {
+			theTask.call();
+		} finally {
+			if (theInFlightSearchKey != null) {
+				myQueryKeyToInFlightSearchTask.remove(theInFlightSearchKey, theTask);
+			}
+		}
 
 		PersistedJpaSearchFirstPageBundleProvider retVal = myPersistedJpaBundleProviderFactory.newInstanceFirstPage(
-				theRequestDetails, task, theSb, theRequestPartitionId);
+				theRequestDetails, theTask, theSb, theRequestPartitionId);
 
 		ourLog.debug("Search initial phase completed in {}ms", w.getMillis());
 		return retVal;
@@ -595,20 +659,6 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc<JpaPid> {
 				.withRequestPartitionId(theRequestPartitionId)
 				.execute(() -> {
 
-					// Interceptor call: STORAGE_PRECHECK_FOR_CACHED_SEARCH
-					HookParams params = new HookParams()
-							.add(SearchParameterMap.class, theParams)
-							.add(RequestDetails.class, theRequestDetails)
-							.addIfMatchesType(ServletRequestDetails.class, theRequestDetails);
-					Object outcome = CompositeInterceptorBroadcaster.doCallHooksAndReturnObject(
-							myInterceptorBroadcaster,
-							theRequestDetails,
-							Pointcut.STORAGE_PRECHECK_FOR_CACHED_SEARCH,
-							params);
-					if (Boolean.FALSE.equals(outcome)) {
-						return null;
-					}
-
 					// Check for a search matching the given hash
 					Search searchToUse = findSearchToUseOrNull(theQueryString, theResourceType, theRequestPartitionId);
 					if (searchToUse == null) {
@@ -616,21 +666,55 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc<JpaPid> {
 					}
 
 					ourLog.debug("Reusing search {} from cache", searchToUse.getUuid());
-					// Interceptor call: JPA_PERFTRACE_SEARCH_REUSING_CACHED
-					params = new HookParams()
-							.add(SearchParameterMap.class, theParams)
-							.add(RequestDetails.class, theRequestDetails)
-							.addIfMatchesType(ServletRequestDetails.class, theRequestDetails);
-					CompositeInterceptorBroadcaster.doCallHooks(
-							myInterceptorBroadcaster,
-							theRequestDetails,
-							Pointcut.JPA_PERFTRACE_SEARCH_REUSING_CACHED,
-							params);
+					callSearchReusingCachedHook(theParams, theRequestDetails);
 
 					return myPersistedJpaBundleProviderFactory.newInstance(theRequestDetails, searchToUse.getUuid());
 				});
 	}
 
+	/**
+	 * Waits for a search which is being loaded by another thread on this server to
+	 * return its first page, and then returns a provider which reads from that search.
+	 * Returns <code>null</code> if the search failed, in which case the caller should
+	 * run its own search.
+	 */
+	@Nullable
+	private PersistedJpaBundleProvider attachToInFlightSearch(
+			SearchTask theInFlightTask, SearchParameterMap theParams, RequestDetails theRequestDetails) {
+		theInFlightTask.awaitInitialSync();
+
+		Search inFlightSearch = theInFlightTask.getSearch();
+		if (inFlightSearch.getStatus() == SearchStatusEnum.FAILED) {
+			return null;
+		}
+
+		ourLog.debug("Attaching to in-flight search {}", inFlightSearch.getUuid());
+		callSearchReusingCachedHook(theParams, theRequestDetails);
+
+		return myPersistedJpaBundleProviderFactory.newInstance(theRequestDetails, inFlightSearch.getUuid());
+	}
+
+	private boolean isCachedSearchPermitted(SearchParameterMap theParams, RequestDetails theRequestDetails) {
+		// Interceptor call: STORAGE_PRECHECK_FOR_CACHED_SEARCH
+		HookParams params = new HookParams()
+				.add(SearchParameterMap.class, theParams)
+				.add(RequestDetails.class, theRequestDetails)
+				.addIfMatchesType(ServletRequestDetails.class, theRequestDetails);
+		Object outcome = CompositeInterceptorBroadcaster.doCallHooksAndReturnObject(
+				myInterceptorBroadcaster, theRequestDetails, Pointcut.STORAGE_PRECHECK_FOR_CACHED_SEARCH, params);
+		return !Boolean.FALSE.equals(outcome);
+	}
+
+	private void callSearchReusingCachedHook(SearchParameterMap theParams, RequestDetails theRequestDetails) {
+		// Interceptor call: JPA_PERFTRACE_SEARCH_REUSING_CACHED
+		HookParams params = new HookParams()
+				.add(SearchParameterMap.class, theParams)
+				.add(RequestDetails.class, theRequestDetails)
+				.addIfMatchesType(ServletRequestDetails.class, theRequestDetails);
+		CompositeInterceptorBroadcaster.doCallHooks(
+				myInterceptorBroadcaster, theRequestDetails, Pointcut.JPA_PERFTRACE_SEARCH_REUSING_CACHED, params);
+	}
+
 	@Nullable
 	private Search findSearchToUseOrNull(
 			String theQueryString, String theResourceType, RequestPartitionId theRequestPartitionId) {
@@ -0,0 +1,172 @@
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.search;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.util.MemoryCacheService;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the totals calculated for searches, when
+ * {@link JpaStorageSettings#getSearchCountCacheMillis()} is greater than 0.
+ * <p>
+ * Totals are keyed by resource type, partition and normalized search URL. Each resource
+ * type also has a generation number which is part of the key, and which is incremented
+ * whenever a resource of that type is written. This means that writes invalidate every
+ * cached total for their resource type without needing to find the affected entries,
+ * which are simply left to expire.
+ * </p>
+ *
+ * @since 7.6.0
+ */
+public class SearchCountCacheSvc {
+
+	private final ConcurrentHashMap<String, AtomicLong> myGenerations = new ConcurrentHashMap<>();
+
+	@Autowired
+	private JpaStorageSettings myStorageSettings;
+
+	@Autowired
+	private MemoryCacheService myMemoryCacheService;
+
+	@Autowired
+	private FhirContext myFhirContext;
+
+	public boolean isEnabled() {
+		return myStorageSettings.getSearchCountCacheMillis() > 0;
+	}
+
+	/**
+	 * Creates the key for a search. The key must be created before the count is
+	 * performed, so that a write which happens during the count invalidates it.
+	 */
+	@Nonnull
+	public String createKey(String theResourceType, SearchParameterMap theParams, RequestPartitionId thePartitionId) {
+		long generation = getGeneration(theResourceType).get();
+		String partition = thePartitionId != null ? thePartitionId.toJson() : "";
+
+		// Paging, sorting, includes and the total mode don't affect the total
+		SearchParameterMap params = theParams.clone();
+		params.setCount(null);
+		params.setOffset(null);
+		params.setKeyset(null);
+		params.setSort(null);
+		params.setSummaryMode(null);
+		params.setSearchTotalMode(null);
+		params.setIncludes(new HashSet<>());
+		params.setRevIncludes(new HashSet<>());
+
+		return theResourceType + "|" + generation + "|" + partition + "|"
+				+ params.toNormalizedQueryString(myFhirContext);
+	}
+
+	/**
+	 * Returns the cached total for the given key, or <code>null</code> if there is no
+	 * total which is recent enough
+	 */
+	@Nullable
+	public Long getCachedCount(String theKey) {
+		if (!isEnabled()) {
+			return null;
+		}
+		CachedCount cached = myMemoryCacheService.getIfPresent(MemoryCacheService.CacheEnum.SEARCH_COUNT, theKey);
+		if (cached == null) {
+			return null;
+		}
+		if (System.currentTimeMillis() - cached.getCountedAt() > myStorageSettings.getSearchCountCacheMillis()) {
+			return null;
+		}
+		return cached.getCount();
+	}
+
+	public void putCount(String theKey, long theCount) {
+		if (isEnabled()) {
+			CachedCount value = new CachedCount(theCount, System.currentTimeMillis());
+			myMemoryCacheService.put(MemoryCacheService.CacheEnum.SEARCH_COUNT, theKey, value);
+		}
+	}
+
+	/**
+	 * Invalidates all cached totals for the given resource type. This should be called
+	 * whenever a resource of that type is created, updated or deleted. If a transaction
+	 * is active, the totals are invalidated again after it commits, so that a total
+	 * counted before the commit can't be cached under the new generation.
+	 */
+	public void invalidateResourceType(String theResourceType) {
+		if (!isEnabled()) {
+			return;
+		}
+		getGeneration(theResourceType).incrementAndGet();
+
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			// Only register one synchronization per transaction, no matter how many resources it writes
+			@SuppressWarnings("unchecked")
+			Set<String> pending = (Set<String>) TransactionSynchronizationManager.getResource(this);
+			if (pending == null) {
+				Set<String> resourceTypes = new HashSet<>();
+				TransactionSynchronizationManager.bindResource(this, resourceTypes);
+				TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+					@Override
+					public void afterCompletion(int theStatus) {
+						TransactionSynchronizationManager.unbindResourceIfPossible(SearchCountCacheSvc.this);
+						resourceTypes.forEach(t -> getGeneration(t).incrementAndGet());
+					}
+				});
+				pending = resourceTypes;
+			}
+			pending.add(theResourceType);
+		}
+	}
+
+	private AtomicLong getGeneration(String theResourceType) {
+		return myGenerations.computeIfAbsent(theResourceType, t -> new AtomicLong());
+	}
+
+	private static class CachedCount {
+
+		private final long myCount;
+		private final long myCountedAt;
+
+		private CachedCount(long theCount, long theCountedAt) {
+			myCount = theCount;
+			myCountedAt = theCountedAt;
+		}
+
+		long getCount() {
+			return myCount;
+		}
+
+		long getCountedAt() {
+			return myCountedAt;
+		}
+	}
+}
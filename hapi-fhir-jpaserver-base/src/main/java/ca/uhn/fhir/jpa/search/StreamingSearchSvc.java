@@ -0,0 +1,516 @@
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.search;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.RuntimeResourceDefinition;
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.interceptor.api.HookParams;
+import ca.uhn.fhir.interceptor.api.IInterceptorBroadcaster;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
+import ca.uhn.fhir.jpa.api.dao.IFhirResourceDao;
+import ca.uhn.fhir.jpa.dao.ISearchBuilder;
+import ca.uhn.fhir.jpa.dao.SearchBuilderFactory;
+import ca.uhn.fhir.jpa.dao.tx.HapiTransactionService;
+import ca.uhn.fhir.jpa.entity.Search;
+import ca.uhn.fhir.jpa.interceptor.JpaPreResourceAccessDetails;
+import ca.uhn.fhir.jpa.model.dao.JpaPid;
+import ca.uhn.fhir.jpa.model.search.SearchRuntimeDetails;
+import ca.uhn.fhir.jpa.model.search.SearchStatusEnum;
+import ca.uhn.fhir.jpa.partition.IRequestPartitionHelperSvc;
+import ca.uhn.fhir.jpa.search.builder.StorageInterceptorHooksFacade;
+import ca.uhn.fhir.jpa.searchparam.MatchUrlService;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.util.QueryParameterUtils;
+import ca.uhn.fhir.parser.IParser;
+import ca.uhn.fhir.rest.api.EncodingEnum;
+import ca.uhn.fhir.rest.api.server.IPreResourceAccessDetails;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import ca.uhn.fhir.rest.server.interceptor.ServerInterceptorUtil;
+import ca.uhn.fhir.rest.server.servlet.ServletRequestDetails;
+import ca.uhn.fhir.rest.server.util.CompositeInterceptorBroadcaster;
+import ca.uhn.fhir.util.OperationOutcomeUtil;
+import ca.uhn.fhir.util.StopWatch;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.PostConstruct;
+import org.apache.commons.lang3.Validate;
+import org.hl7.fhir.instance.model.api.IBaseOperationOutcome;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+/**
+ * Executes a search and writes every matching resource directly to a response as the database
+ * cursor is read, instead of storing the matching IDs in the search result cache
+ * (<code>HFJ_SEARCH_RESULT</code>) and returning them a page at a time. This is intended for clients
+ * which read a large result set exactly once (e.g. ETL processes).
+ * <p>
+ * Resources are loaded and written in batches of
+ * {@link JpaStorageSettings#getStreamingSearchBatchSize()}, and the writer is flushed after each
+ * batch. Because the next batch is only read from the cursor once the previous batch has been
+ * written, a slow client naturally slows down the database reads and memory use is bounded. The
+ * {@link Pointcut#STORAGE_PRESEARCH_REGISTERED} hook is invoked when the search is created, and the
+ * {@link Pointcut#STORAGE_PREACCESS_RESOURCES} and {@link Pointcut#STORAGE_PRESHOW_RESOURCES}
+ * hooks are invoked for each batch.
+ * </p>
+ * <p>
+ * The cursor is always closed when streaming finishes, when the client disconnects, and when
+ * {@link JpaStorageSettings#getStreamingSearchTimeoutMillis()} is exceeded. Since the response
+ * has already started when a timeout or a failure occurs, an <code>OperationOutcome</code>
+ * describing it is written as the last resource in the response.
+ * </p>
+ *
+ * @since 7.6.0
+ */
+public class StreamingSearchSvc {
+	private static final Logger ourLog = LoggerFactory.getLogger(StreamingSearchSvc.class);
+
+	@Autowired
+	private FhirContext myContext;
+
+	@Autowired
+	private JpaStorageSettings myStorageSettings;
+
+	@Autowired
+	private DaoRegistry myDaoRegistry;
+
+	@Autowired
+	private MatchUrlService myMatchUrlService;
+
+	@Autowired
+	private SearchBuilderFactory<JpaPid> mySearchBuilderFactory;
+
+	@Autowired
+	private HapiTransactionService myTxService;
+
+	@Autowired
+	private IInterceptorBroadcaster myInterceptorBroadcaster;
+
+	@Autowired
+	private IRequestPartitionHelperSvc myRequestPartitionHelperSvc;
+
+	private StorageInterceptorHooksFacade myStorageInterceptorHooks;
+
+	private final AtomicInteger myActiveStreamCount = new AtomicInteger();
+	private final AtomicLong myCompletedStreamCount = new AtomicLong();
+	private final AtomicLong myStreamedResourceCount = new AtomicLong();
+	private final AtomicLong myStreamingMillis = new AtomicLong();
+
+	@PostConstruct
+	public void start() {
+		myStorageInterceptorHooks = new StorageInterceptorHooksFacade(myInterceptorBroadcaster);
+	}
+
+	/**
+	 * Parses and validates a search URL (e.g. <code>Patient?active=true</code>). This is done before
+	 * the response is started, so that invalid requests can be rejected with a normal error response.
+	 *
+	 * @throws InvalidRequestException If the URL is not a valid search, or uses features which can not be streamed
+	 */
+	@Nonnull
+	public StreamingSearch createStreamingSearch(String theUrl, RequestDetails theRequestDetails) {
+		if (isBlank(theUrl) || !theUrl.contains("?")) {
+			throw new InvalidRequestException(Msg.code(2586)
+					+ "A search URL in the form [resourceType]?[parameters] is required, got: " + theUrl);
+		}
+
+		RuntimeResourceDefinition resourceDefinition = myContext.getResourceDefinition(
+				theUrl.substring(0, theUrl.indexOf('?')).trim());
+		SearchParameterMap params =
+				myMatchUrlService.translateMatchUrl(theUrl, resourceDefinition, MatchUrlService.processIncludes());
+		if (!params.getIncludes().isEmpty() || !params.getRevIncludes().isEmpty()) {
+			throw new InvalidRequestException(
+					Msg.code(2587) + "_include and _revinclude are not supported by streaming searches");
+		}
+		params.setLoadSynchronous(true);
+
+		String resourceType = resourceDefinition.getName();
+		IFhirResourceDao<?> dao = myDaoRegistry.getResourceDao(resourceType);
+		RequestPartitionId requestPartitionId =
+				myRequestPartitionHelperSvc.determineReadPartitionForRequestForSearchType(
+						theRequestDetails, resourceType, params, null);
+
+		// Interceptor call: STORAGE_PRESEARCH_REGISTERED
+		// This is called before the response is started, so that interceptors can
+		// modify or reject the search
+		String searchUuid = UUID.randomUUID().toString();
+		Search search = new Search();
+		QueryParameterUtils.populateSearchEntity(
+				params,
+				resourceType,
+				searchUuid,
+				params.toNormalizedQueryString(myContext),
+				search,
+				requestPartitionId);
+		myStorageInterceptorHooks.callStoragePresearchRegistered(theRequestDetails, params, search, requestPartitionId);
+
+		return new StreamingSearch(searchUuid, resourceType, dao, params, requestPartitionId);
+	}
+
+	/**
+	 * Executes the search and writes the results to the given writer
+	 *
+	 * @param theSearch   The search, from {@link #createStreamingSearch(String, RequestDetails)}
+	 * @param theEncoding {@link EncodingEnum#NDJSON} to write one resource per line, or {@link EncodingEnum#JSON} to
+	 *                    write a single <code>searchset</code> Bundle
+	 * @return The number of resources written, not including any <code>OperationOutcome</code>
+	 * @throws IOException If the response can not be written, e.g. because the client has disconnected
+	 */
+	public long streamSearch(
+			StreamingSearch theSearch, EncodingEnum theEncoding, RequestDetails theRequestDetails, Writer theWriter)
+			throws IOException {
+		Validate.isTrue(
+				theEncoding == EncodingEnum.NDJSON || theEncoding == EncodingEnum.JSON,
+				"Unsupported encoding: %s",
+				theEncoding);
+
+		SearchRuntimeDetails searchRuntimeDetails =
+				new SearchRuntimeDetails(theRequestDetails, theSearch.getSearchUuid());
+		searchRuntimeDetails.setLoadSynchronous(true);
+		searchRuntimeDetails.setQueryString(theSearch.getParams().toNormalizedQueryString(myContext));
+
+		StopWatch sw = new StopWatch();
+		long deadline = sw.getStartedDate().getTime() + myStorageSettings.getStreamingSearchTimeoutMillis();
+		ResultWriter writer = new ResultWriter(theEncoding, theRequestDetails, theWriter, deadline);
+		myActiveStreamCount.incrementAndGet();
+		try {
+			writer.start();
+			try {
+				myTxService
+						.withRequest(theRequestDetails)
+						.withRequestPartitionId(theSearch.getRequestPartitionId())
+						.readOnly()
+						.execute(() -> doStreamSearch(theSearch, theRequestDetails, searchRuntimeDetails, writer));
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			} catch (RuntimeException e) {
+				// The response has already started, so the best we can do is to report the failure within it
+				ourLog.error("Failure during streaming search of {}", theSearch.getResourceType(), e);
+				searchRuntimeDetails.setSearchStatus(SearchStatusEnum.FAILED);
+				writer.writeOutcome("error", "exception", "Search failed: " + e.getMessage());
+			}
+			writer.finish();
+		} finally {
+			myActiveStreamCount.decrementAndGet();
+			recordCompletedStream(theSearch, writer.getResourceCount(), sw);
+		}
+
+		HookParams params = new HookParams()
+				.add(RequestDetails.class, theRequestDetails)
+				.addIfMatchesType(ServletRequestDetails.class, theRequestDetails)
+				.add(SearchRuntimeDetails.class, searchRuntimeDetails);
+		CompositeInterceptorBroadcaster.doCallHooks(
+				myInterceptorBroadcaster, theRequestDetails, Pointcut.JPA_PERFTRACE_SEARCH_COMPLETE, params);
+
+		return writer.getResourceCount();
+	}
+
+	private void doStreamSearch(
+			StreamingSearch theSearch,
+			RequestDetails theRequestDetails,
+			SearchRuntimeDetails theSearchRuntimeDetails,
+			ResultWriter theWriter) {
+		IFhirResourceDao<?> dao = theSearch.getDao();
+		ISearchBuilder<JpaPid> searchBuilder =
+				mySearchBuilderFactory.newSearchBuilder(dao, theSearch.getResourceType(), dao.getResourceType());
+		int batchSize = myStorageSettings.getStreamingSearchBatchSize();
+
+		try (Stream<JpaPid> pidStream = searchBuilder.createQueryStream(
+				theSearch.getParams(), theSearchRuntimeDetails, theRequestDetails, theSearch.getRequestPartitionId())) {
+			Iterator<JpaPid> pidIterator = pidStream.iterator();
+			while (pidIterator.hasNext()) {
+				if (theWriter.isPastDeadline()) {
+					writeTimeout(theSearch, theSearchRuntimeDetails, theWriter);
+					return;
+				}
+
+				List<JpaPid> pids = new ArrayList<>(batchSize);
+				while (pids.size() < batchSize && pidIterator.hasNext()) {
+					pids.add(pidIterator.next());
+				}
+				theSearchRuntimeDetails.setFoundMatchesCount(
+						theSearchRuntimeDetails.getFoundMatchesCount() + pids.size());
+
+				List<IBaseResource> resources = loadBatch(searchBuilder, pids, theRequestDetails);
+				if (!theWriter.writeResources(resources)) {
+					writeTimeout(theSearch, theSearchRuntimeDetails, theWriter);
+					return;
+				}
+			}
+			theSearchRuntimeDetails.setSearchStatus(SearchStatusEnum.FINISHED);
+		}
+	}
+
+	private void writeTimeout(
+			StreamingSearch theSearch, SearchRuntimeDetails theSearchRuntimeDetails, ResultWriter theWriter) {
+		long timeoutMillis = myStorageSettings.getStreamingSearchTimeoutMillis();
+		ourLog.warn(
+				"Streaming search of {} exceeded the timeout of {}ms after {} resources, closing cursor",
+				theSearch.getResourceType(),
+				timeoutMillis,
+				theWriter.getResourceCount());
+		theSearchRuntimeDetails.setSearchStatus(SearchStatusEnum.FAILED);
+		try {
+			theWriter.writeOutcome(
+					"error",
+					"timeout",
+					"Streaming search exceeded the maximum duration of " + timeoutMillis
+							+ "ms, results are incomplete");
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private List<IBaseResource> loadBatch(
+			ISearchBuilder<JpaPid> theSearchBuilder, List<JpaPid> thePids, RequestDetails theRequestDetails) {
+		// Interceptor call: STORAGE_PREACCESS_RESOURCES
+		JpaPreResourceAccessDetails accessDetails = new JpaPreResourceAccessDetails(thePids, () -> theSearchBuilder);
+		HookParams params = new HookParams()
+				.add(IPreResourceAccessDetails.class, accessDetails)
+				.add(RequestDetails.class, theRequestDetails)
+				.addIfMatchesType(ServletRequestDetails.class, theRequestDetails);
+		CompositeInterceptorBroadcaster.doCallHooks(
+				myInterceptorBroadcaster, theRequestDetails, Pointcut.STORAGE_PREACCESS_RESOURCES, params);
+		for (int i = thePids.size() - 1; i >= 0; i--) {
+			if (accessDetails.isDontReturnResourceAtIndex(i)) {
+				thePids.remove(i);
+			}
+		}
+
+		List<IBaseResource> resources = new ArrayList<>(thePids.size());
+		theSearchBuilder.loadResourcesByPid(thePids, List.of(), resources, false, theRequestDetails);
+
+		// Interceptor call: STORAGE_PRESHOW_RESOURCES
+		return ServerInterceptorUtil.fireStoragePreshowResource(resources, theRequestDetails, myInterceptorBroadcaster);
+	}
+
+	private void recordCompletedStream(StreamingSearch theSearch, long theResourceCount, StopWatch theStopWatch) {
+		long millis = theStopWatch.getMillis();
+		myCompletedStreamCount.incrementAndGet();
+		myStreamedResourceCount.addAndGet(theResourceCount);
+		myStreamingMillis.addAndGet(millis);
+		ourLog.info(
+				"Streamed {} {} resources in {} ({}/sec)",
+				theResourceCount,
+				theSearch.getResourceType(),
+				theStopWatch,
+				theStopWatch.formatThroughput(theResourceCount, TimeUnit.SECONDS));
+	}
+
+	/**
+	 * Returns the number of streaming searches which are currently writing results
+	 */
+	public int getActiveStreamCount() {
+		return myActiveStreamCount.get();
+	}
+
+	/**
+	 * Returns the number of streaming searches which have finished (successfully or not)
+	 */
+	public long getCompletedStreamCount() {
+		return myCompletedStreamCount.get();
+	}
+
+	/**
+	 * Returns the total number of resources written by finished streaming searches
+	 */
+	public long getStreamedResourceCount() {
+		return myStreamedResourceCount.get();
+	}
+
+	/**
+	 * Returns the average number of resources written per second by finished streaming searches,
+	 * or 0 if no streaming searches have finished
+	 */
+	public double getStreamedResourcesPerSecond() {
+		long millis = myStreamingMillis.get();
+		if (millis == 0) {
+			return 0;
+		}
+		return myStreamedResourceCount.get() * 1000.0 / millis;
+	}
+
+	/**
+	 * A validated streaming search, see {@link #createStreamingSearch(String, RequestDetails)}
+	 */
+	public static class StreamingSearch {
+		private final String mySearchUuid;
+		private final String myResourceType;
+		private final IFhirResourceDao<?> myDao;
+		private final SearchParameterMap myParams;
+		private final RequestPartitionId myRequestPartitionId;
+
+		StreamingSearch(
+				String theSearchUuid,
+				String theResourceType,
+				IFhirResourceDao<?> theDao,
+				SearchParameterMap theParams,
+				RequestPartitionId thePartitionId) {
+			mySearchUuid = theSearchUuid;
+			myResourceType = theResourceType;
+			myDao = theDao;
+			myParams = theParams;
+			myRequestPartitionId = thePartitionId;
+		}
+
+		String getSearchUuid() {
+			return mySearchUuid;
+		}
+
+		IFhirResourceDao<?> getDao() {
+			return myDao;
+		}
+
+		SearchParameterMap getParams() {
+			return myParams;
+		}
+
+		RequestPartitionId getRequestPartitionId() {
+			return myRequestPartitionId;
+		}
+
+		public String getResourceType() {
+			return myResourceType;
+		}
+	}
+
+	/**
+	 * Writes resources either as NDJSON, or as the entries of a searchset Bundle. The
+	 * Bundle is written by hand so that it never needs to be held in memory.
+	 */
+	private class ResultWriter {
+		private final EncodingEnum myEncoding;
+		private final RequestDetails myRequestDetails;
+		private final Writer myWriter;
+		private final IParser myParser;
+		private final long myDeadline;
+		private long myResourceCount;
+		private boolean myFirstEntry = true;
+
+		ResultWriter(EncodingEnum theEncoding, RequestDetails theRequestDetails, Writer theWriter, long theDeadline) {
+			myEncoding = theEncoding;
+			myRequestDetails = theRequestDetails;
+			myWriter = theWriter;
+			myDeadline = theDeadline;
+			myParser = myContext.newJsonParser();
+		}
+
+		boolean isPastDeadline() {
+			return System.currentTimeMillis() > myDeadline;
+		}
+
+		long getResourceCount() {
+			return myResourceCount;
+		}
+
+		void start() throws IOException {
+			if (myEncoding == EncodingEnum.JSON) {
+				myWriter.write("{\"resourceType\":\"Bundle\",\"type\":\"searchset\",\"entry\":[");
+			}
+		}
+
+		void finish() throws IOException {
+			if (myEncoding == EncodingEnum.JSON) {
+				myWriter.write("]}");
+			}
+			myWriter.flush();
+		}
+
+		/**
+		 * Writes are checked against the deadline too, since a slow client can hold
+		 * the cursor open just as long as a slow query
+		 *
+		 * @return Returns <code>false</code> if the deadline passed before all of the resources were written
+		 */
+		boolean writeResources(List<IBaseResource> theResources) {
+			try {
+				for (IBaseResource next : theResources) {
+					if (isPastDeadline()) {
+						return false;
+					}
+					write(next, "match");
+					myResourceCount++;
+				}
+				myWriter.flush();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return true;
+		}
+
+		void writeOutcome(String theSeverity, String theCode, String theMessage) throws IOException {
+			IBaseOperationOutcome outcome = OperationOutcomeUtil.newInstance(myContext);
+			OperationOutcomeUtil.addIssue(myContext, outcome, theSeverity, theMessage, null, theCode);
+			write(outcome, "outcome");
+		}
+
+		private void write(IBaseResource theResource, String theSearchMode) throws IOException {
+			String encoded = myParser.encodeResourceToString(theResource);
+			if (myEncoding == EncodingEnum.NDJSON) {
+				myWriter.write(encoded);
+				myWriter.write('\n');
+				return;
+			}
+
+			if (!myFirstEntry) {
+				myWriter.write(',');
+			}
+			myFirstEntry = false;
+			myWriter.write('{');
+			if (!theResource.getIdElement().isEmpty()) {
+				String fullUrl = theResource
+						.getIdElement()
+						.withServerBase(
+								myRequestDetails.getFhirServerBase(),
+								theResource.getIdElement().getResourceType())
+						.toVersionless()
+						.getValue();
+				myWriter.write("\"fullUrl\":\"");
+				myWriter.write(JsonStringEncoder.getInstance().quoteAsString(fullUrl));
+				myWriter.write("\",");
+			}
+			myWriter.write("\"resource\":");
+			myWriter.write(encoded);
+			myWriter.write(",\"search\":{\"mode\":\"");
+			myWriter.write(theSearchMode);
+			myWriter.write("\"}}");
+		}
+	}
+}
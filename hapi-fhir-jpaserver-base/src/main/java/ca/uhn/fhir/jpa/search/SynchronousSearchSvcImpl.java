@@ -39,6 +39,7 @@ import ca.uhn.fhir.jpa.partition.IRequestPartitionHelperSvc;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
 import ca.uhn.fhir.model.api.IQueryParameterType;
 import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.SearchTotalModeEnum;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
 import ca.uhn.fhir.rest.api.server.IPreResourceAccessDetails;
 import ca.uhn.fhir.rest.api.server.RequestDetails;
@@ -60,6 +61,7 @@ import java.util.UUID;
 import static ca.uhn.fhir.jpa.util.SearchParameterMapCalculator.isWantCount;
 import static ca.uhn.fhir.jpa.util.SearchParameterMapCalculator.isWantOnlyCount;
 import static java.util.Objects.nonNull;
+import static org.apache.commons.lang3.ObjectUtils.defaultIfNull;
 
 public class SynchronousSearchSvcImpl implements ISynchronousSearchSvc {
 
@@ -106,6 +108,10 @@ public class SynchronousSearchSvcImpl implements ISynchronousSearchSvc {
 				? isWantCount(theParams)
 				: isWantCount(myStorageSettings.getDefaultTotalMode());
 		boolean wantCount = theParamWantOnlyCount || theParamOrConfigWantCount;
+		SearchTotalModeEnum totalMode = nonNull(theParams.getSearchTotalMode())
+				? theParams.getSearchTotalMode()
+				: myStorageSettings.getDefaultTotalMode();
+		boolean wantEstimatedCount = !wantCount && totalMode == SearchTotalModeEnum.ESTIMATED;
 
 		// Execute the query and make sure we return distinct results
 		return myTxService
@@ -139,6 +145,12 @@ public class SynchronousSearchSvcImpl implements ISynchronousSearchSvc {
 						ourLog.trace("Got count {}", count);
 					}
 
+					Long estimatedCount = null;
+					if (wantEstimatedCount) {
+						estimatedCount = theSb.createEstimatedCountQuery(
+								theParams, theSearchUuid, theRequestDetails, theRequestPartitionId);
+					}
+
 					if (theParamWantOnlyCount) {
 						SimpleBundleProvider bundleProvider = new SimpleBundleProvider();
 						bundleProvider.setSize(count.intValue());
@@ -173,11 +185,17 @@ public class SynchronousSearchSvcImpl implements ISynchronousSearchSvc {
 
 					// truncate the list we retrieved - if needed
 					int receivedResourceCount = -1;
+					String nextPageKeyset = null;
 					if (hasACount) {
 						// we want the accurate received resource count
 						receivedResourceCount = pids.size();
 						int resourcesToReturn = Math.min(theParams.getCount(), pids.size());
 						pids = pids.subList(0, resourcesToReturn);
+
+						// if there is another page and we're using keyset paging, find where it starts
+						if (receivedResourceCount > resourcesToReturn && !pids.isEmpty() && theParams.isOffsetQuery()) {
+							nextPageKeyset = theSb.createNextPageKeyset(pids.get(pids.size() - 1));
+						}
 					}
 
 					JpaPreResourceAccessDetails accessDetails = new JpaPreResourceAccessDetails(pids, () -> theSb);
@@ -252,6 +270,7 @@ public class SynchronousSearchSvcImpl implements ISynchronousSearchSvc {
 					if (theParams.isOffsetQuery()) {
 						bundleProvider.setCurrentPageOffset(theParams.getOffset());
 						bundleProvider.setCurrentPageSize(theParams.getCount());
+						bundleProvider.setNextPageKeyset(nextPageKeyset);
 					}
 
 					if (wantCount) {
@@ -261,6 +280,11 @@ public class SynchronousSearchSvcImpl implements ISynchronousSearchSvc {
 						if (queryCount == null || queryCount > resources.size()) {
 							// No limit, last page or everything was fetched within the limit
 							bundleProvider.setSize(getTotalCount(queryCount, theParams.getOffset(), resources.size()));
+						} else if (estimatedCount != null
+								&& estimatedCount >= defaultIfNull(theParams.getOffset(), 0) + resources.size() + 1) {
+							// The size also drives paging, so an estimate is only used if it can't
+							// be lower than the number of results we already know exist
+							bundleProvider.setSize(estimatedCount.intValue());
 						} else {
 							bundleProvider.setSize(null);
 						}
@@ -0,0 +1,117 @@
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.search.builder;
+
+import ca.uhn.fhir.jpa.model.dao.JpaPid;
+import ca.uhn.fhir.jpa.util.LongHashSet;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A set of {@link JpaPid} used by the {@link SearchBuilder} to track which resources have
+ * already been returned or included. Unversioned PIDs (which is nearly all of them) are
+ * stored as primitive longs in a {@link LongHashSet}, so no <code>JpaPid</code> needs to
+ * be allocated or retained for them. PIDs carrying a specific version are kept in a
+ * separate regular set, which preserves the {@link JpaPid#equals(Object)} semantics.
+ *
+ * @since 7.6.0
+ */
+public class JpaPidSet {
+
+	private final LongHashSet myUnversionedIds;
+	private Set<JpaPid> myVersionedPids;
+
+	public JpaPidSet() {
+		myUnversionedIds = new LongHashSet();
+	}
+
+	public JpaPidSet(Collection<JpaPid> thePids) {
+		myUnversionedIds = new LongHashSet(thePids.size());
+		for (JpaPid next : thePids) {
+			add(next);
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if the PID was not already present in the set
+	 */
+	public boolean add(JpaPid thePid) {
+		if (thePid.getVersion() == null) {
+			return myUnversionedIds.add(thePid.getId());
+		}
+		if (myVersionedPids == null) {
+			myVersionedPids = new HashSet<>();
+		}
+		return myVersionedPids.add(thePid);
+	}
+
+	/**
+	 * Adds an unversioned PID without requiring a {@link JpaPid} to be created
+	 *
+	 * @return <code>true</code> if the PID was not already present in the set
+	 */
+	public boolean add(long theId) {
+		return myUnversionedIds.add(theId);
+	}
+
+	public boolean contains(JpaPid thePid) {
+		if (thePid.getVersion() == null) {
+			return myUnversionedIds.contains(thePid.getId());
+		}
+		return myVersionedPids != null && myVersionedPids.contains(thePid);
+	}
+
+	public int size() {
+		return myUnversionedIds.size() + (myVersionedPids != null ? myVersionedPids.size() : 0);
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * @return The raw resource IDs in this set, ignoring any versions
+	 */
+	public List<Long> toIdList() {
+		List<Long> retVal = new ArrayList<>(size());
+		myUnversionedIds.forEach(retVal::add);
+		if (myVersionedPids != null) {
+			myVersionedPids.forEach(t -> retVal.add(t.getId()));
+		}
+		return retVal;
+	}
+
+	/**
+	 * Creates a {@link JpaPid} for every member of this set. This should only be
+	 * used where a <code>JpaPid</code> collection is needed by an API.
+	 */
+	public List<JpaPid> toJpaPidList() {
+		List<JpaPid> retVal = new ArrayList<>(size());
+		myUnversionedIds.forEach(t -> retVal.add(JpaPid.fromId(t)));
+		if (myVersionedPids != null) {
+			retVal.addAll(myVersionedPids);
+		}
+		return retVal;
+	}
+}
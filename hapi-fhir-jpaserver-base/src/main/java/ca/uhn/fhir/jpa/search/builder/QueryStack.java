@@ -94,6 +94,7 @@ import com.healthmarketscience.sqlbuilder.ComboCondition;
 import com.healthmarketscience.sqlbuilder.Condition;
 import com.healthmarketscience.sqlbuilder.Expression;
 import com.healthmarketscience.sqlbuilder.InCondition;
+import com.healthmarketscience.sqlbuilder.OrderObject;
 import com.healthmarketscience.sqlbuilder.SelectQuery;
 import com.healthmarketscience.sqlbuilder.SetOperationQuery;
 import com.healthmarketscience.sqlbuilder.Subquery;
@@ -250,6 +251,57 @@ public class QueryStack {
 		mySqlBuilder.addSortDate(resourceTablePredicateBuilder.getColumnLastUpdated(), theAscending, myUseAggregate);
 	}
 
+	/**
+	 * Adds the ordering used for keyset paging, and if the position of the last result in the
+	 * previous page is known, a predicate which seeks directly to the results following it.
+	 * Results are ordered by their last updated time (if requested) and then by their PID.
+	 *
+	 * @param theAfter             The last result in the previous page, or <code>null</code> for the first page
+	 * @param theSortOnLastUpdated Should results be sorted by <code>_lastUpdated</code> first
+	 * @param theAscending         Sort direction
+	 * @since 7.6.0
+	 */
+	public void addKeysetPaging(@Nullable SearchKeyset theAfter, boolean theSortOnLastUpdated, boolean theAscending) {
+		BaseJoiningPredicateBuilder firstPredicateBuilder = mySqlBuilder.getOrCreateFirstPredicateBuilder();
+		DbColumn resourceIdColumn = firstPredicateBuilder.getResourceIdColumn();
+
+		DbColumn lastUpdatedColumn = null;
+		if (theSortOnLastUpdated) {
+			ResourceTablePredicateBuilder resourceTablePredicateBuilder;
+			if (firstPredicateBuilder instanceof ResourceTablePredicateBuilder) {
+				resourceTablePredicateBuilder = (ResourceTablePredicateBuilder) firstPredicateBuilder;
+			} else {
+				resourceTablePredicateBuilder = mySqlBuilder.addResourceTablePredicateBuilder(resourceIdColumn);
+			}
+			lastUpdatedColumn = resourceTablePredicateBuilder.getColumnLastUpdated();
+			mySqlBuilder.addSortDate(lastUpdatedColumn, theAscending, myUseAggregate);
+		}
+		mySqlBuilder
+				.getSelect()
+				.addOrdering(resourceIdColumn, theAscending ? OrderObject.Dir.ASCENDING : OrderObject.Dir.DESCENDING);
+
+		if (theAfter != null) {
+			String pidPlaceholder = mySqlBuilder.generatePlaceholder(theAfter.getResourcePid());
+			Condition afterPid = theAscending
+					? BinaryCondition.greaterThan(resourceIdColumn, pidPlaceholder)
+					: BinaryCondition.lessThan(resourceIdColumn, pidPlaceholder);
+			if (lastUpdatedColumn == null) {
+				mySqlBuilder.addPredicate(afterPid);
+			} else {
+				// Row value comparisons, i.e. (a, b) > (?, ?), aren't supported by all databases
+				Condition afterLastUpdated = theAscending
+						? BinaryCondition.greaterThan(
+								lastUpdatedColumn, mySqlBuilder.generatePlaceholder(theAfter.getLastUpdated()))
+						: BinaryCondition.lessThan(
+								lastUpdatedColumn, mySqlBuilder.generatePlaceholder(theAfter.getLastUpdated()));
+				Condition sameLastUpdated = BinaryCondition.equalTo(
+						lastUpdatedColumn, mySqlBuilder.generatePlaceholder(theAfter.getLastUpdated()));
+				mySqlBuilder.addPredicate(
+						ComboCondition.or(afterLastUpdated, ComboCondition.and(sameLastUpdated, afterPid)));
+			}
+		}
+	}
+
 	public void addSortOnNumber(String theResourceName, String theParamName, boolean theAscending) {
 		BaseJoiningPredicateBuilder firstPredicateBuilder = mySqlBuilder.getOrCreateFirstPredicateBuilder();
 		NumberPredicateBuilder numberPredicateBuilder = mySqlBuilder.createNumberPredicateBuilder();
@@ -1224,13 +1276,23 @@ public class QueryStack {
 			Condition pathPredicate = toEqualToOrInPredicate(
 					resourceLinkTableJoin.getColumnSourcePath(), mySqlBuilder.generatePlaceholders(paths));
 
-			Condition linkedPredicate =
-					searchForIdsWithAndOr(with().setSourceJoinColumn(resourceLinkTableJoin.getColumnSrcResourceId())
-							.setResourceName(targetResourceType)
-							.setParamName(parameterName)
-							.setAndOrParams(Collections.singletonList(orValues))
-							.setRequest(theRequest)
-							.setRequestPartitionId(theRequestPartitionId));
+			List<List<IQueryParameterType>> linkedAndOrParams = Collections.singletonList(orValues);
+			Condition linkedPredicate = resourceLinkTableJoin.createPredicateForPreResolvedLink(
+					resourceLinkTableJoin.getColumnSrcResourceId(),
+					targetResourceType,
+					parameterName,
+					linkedAndOrParams,
+					theRequest,
+					theRequestPartitionId);
+			if (linkedPredicate == null) {
+				linkedPredicate =
+						searchForIdsWithAndOr(with().setSourceJoinColumn(resourceLinkTableJoin.getColumnSrcResourceId())
+								.setResourceName(targetResourceType)
+								.setParamName(parameterName)
+								.setAndOrParams(linkedAndOrParams)
+								.setRequest(theRequest)
+								.setRequestPartitionId(theRequestPartitionId));
+			}
 
 			andPredicates.add(toAndPredicate(partitionPredicate, pathPredicate, typePredicate, linkedPredicate));
 		}
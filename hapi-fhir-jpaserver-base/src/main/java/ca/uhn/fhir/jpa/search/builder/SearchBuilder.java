@@ -57,6 +57,7 @@ import ca.uhn.fhir.jpa.model.search.SearchBuilderLoadIncludesParameters;
 import ca.uhn.fhir.jpa.model.search.SearchRuntimeDetails;
 import ca.uhn.fhir.jpa.model.search.StorageProcessingMessage;
 import ca.uhn.fhir.jpa.search.SearchConstants;
+import ca.uhn.fhir.jpa.search.SearchCountCacheSvc;
 import ca.uhn.fhir.jpa.search.builder.models.ResolvedSearchQueryExecutor;
 import ca.uhn.fhir.jpa.search.builder.sql.GeneratedSql;
 import ca.uhn.fhir.jpa.search.builder.sql.SearchQueryBuilder;
@@ -122,12 +123,14 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.SingleColumnRowMapper;
+import org.springframework.transaction.support.TransactionSynchronization;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -135,6 +138,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 import static ca.uhn.fhir.jpa.model.util.JpaConstants.UNDESIRED_RESOURCE_LINKAGES_FOR_EVERYTHING_ON_PATIENT_INSTANCE;
@@ -196,9 +200,12 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 	private String mySearchUuid;
 	private int myFetchSize;
 	private Integer myMaxResultsToFetch;
-	private Set<JpaPid> myPidSet;
+	private JpaPidSet myPidSet;
 	private boolean myHasNextIteratorQuery = false;
 	private RequestPartitionId myRequestPartitionId;
+	private boolean myKeysetPaging;
+	private boolean myKeysetPagingOnLastUpdated;
+	private SearchKeyset myKeysetPagingAfter;
 
 	@Autowired(required = false)
 	private IFulltextSearchSvc myFulltextSearchSvc;
@@ -209,6 +216,15 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 	@Autowired
 	private IJpaStorageResourceParser myJpaStorageResourceParser;
 
+	@Autowired(required = false)
+	private SearchResultLoadExecutor mySearchResultLoadExecutor;
+
+	@Autowired(required = false)
+	private SearchParamStatisticsSvc mySearchParamStatisticsSvc;
+
+	@Autowired(required = false)
+	private SearchCountCacheSvc mySearchCountCacheSvc;
+
 	/**
 	 * Constructor
 	 */
@@ -282,6 +298,11 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 				.filter(t -> !t.equals(IAnyResource.SP_RES_ID))
 				.filter(t -> !t.equals(Constants.PARAM_TAG))
 				.collect(Collectors.toList());
+		if (myStorageSettings.isCostBasedPredicateOrderingEnabled()
+				&& mySearchParamStatisticsSvc != null
+				&& paramNames.size() > 1) {
+			orderParamNamesByEstimatedCardinality(paramNames, theRequest);
+		}
 		if (myParams.containsKey(IAnyResource.SP_RES_ID)) {
 			paramNames.add(IAnyResource.SP_RES_ID);
 		}
@@ -308,6 +329,33 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 		}
 	}
 
+	/**
+	 * Sorts the parameter names so that the parameters expected to match the fewest resources
+	 * come first. The first parameter becomes the table the query is rooted on, and the rest
+	 * are joined to it. Parameters with no estimate keep their relative order, after the others.
+	 */
+	private void orderParamNamesByEstimatedCardinality(List<String> theParamNames, RequestDetails theRequest) {
+		Map<String, Long> estimates = new HashMap<>();
+		for (String nextParamName : theParamNames) {
+			Long estimate = mySearchParamStatisticsSvc.estimateCardinality(
+					myResourceName, nextParamName, myParams.get(nextParamName), myRequestPartitionId);
+			estimates.put(nextParamName, estimate);
+		}
+
+		theParamNames.sort(Comparator.comparing(estimates::get, Comparator.nullsLast(Comparator.naturalOrder())));
+
+		String order = theParamNames.stream()
+				.map(t -> {
+					Long estimate = estimates.get(t);
+					if (estimate == null) {
+						return t + "(unknown)";
+					}
+					return t + "(" + estimate + (estimate >= SearchParamStatisticsSvc.SAMPLE_LIMIT ? "+" : "") + ")";
+				})
+				.collect(Collectors.joining(", "));
+		firePerformanceInfo(theRequest, "Search predicate order by estimated cardinality: " + order);
+	}
+
 	/**
 	 * A search is a candidate for Composite Unique SP if unique indexes are enabled, there is no EverythingMode, and the
 	 * parameters all have no modifiers.
@@ -329,16 +377,64 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 
 		init(theParams, theSearchUuid, theRequestPartitionId);
 
-		if (checkUseHibernateSearch()) {
-			return myFulltextSearchSvc.count(myResourceName, theParams.clone());
+		String countCacheKey = null;
+		if (mySearchCountCacheSvc != null && mySearchCountCacheSvc.isEnabled()) {
+			countCacheKey = mySearchCountCacheSvc.createKey(myResourceName, theParams, theRequestPartitionId);
+			Long cachedCount = mySearchCountCacheSvc.getCachedCount(countCacheKey);
+			if (cachedCount != null) {
+				firePerformanceInfo(theRequest, "Using cached search total: " + cachedCount);
+				return cachedCount;
+			}
 		}
 
-		List<ISearchQueryExecutor> queries = createQuery(theParams.clone(), null, null, null, true, theRequest, null);
-		if (queries.isEmpty()) {
-			return 0L;
+		Long retVal;
+		if (checkUseHibernateSearch()) {
+			retVal = myFulltextSearchSvc.count(myResourceName, theParams.clone());
 		} else {
-			return queries.get(0).next();
+			List<ISearchQueryExecutor> queries =
+					createQuery(theParams.clone(), null, null, null, true, theRequest, null);
+			if (queries.isEmpty()) {
+				retVal = 0L;
+			} else {
+				retVal = queries.get(0).next();
+			}
+		}
+
+		if (countCacheKey != null && retVal != null) {
+			mySearchCountCacheSvc.putCount(countCacheKey, retVal);
 		}
+		return retVal;
+	}
+
+	@Nullable
+	@Override
+	public Long createEstimatedCountQuery(
+			SearchParameterMap theParams,
+			String theSearchUuid,
+			RequestDetails theRequest,
+			@Nonnull RequestPartitionId theRequestPartitionId) {
+		init(theParams, theSearchUuid, theRequestPartitionId);
+
+		// An exact total counted recently is the best estimate there is
+		if (mySearchCountCacheSvc != null && mySearchCountCacheSvc.isEnabled()) {
+			String key = mySearchCountCacheSvc.createKey(myResourceName, theParams, theRequestPartitionId);
+			Long cachedCount = mySearchCountCacheSvc.getCachedCount(key);
+			if (cachedCount != null) {
+				firePerformanceInfo(theRequest, "Using cached search total as estimate: " + cachedCount);
+				return cachedCount;
+			}
+		}
+
+		if (mySearchParamStatisticsSvc != null) {
+			Long estimate =
+					mySearchParamStatisticsSvc.estimateSearchCount(myResourceName, theParams, theRequestPartitionId);
+			if (estimate != null) {
+				firePerformanceInfo(theRequest, "Using sampled statistics for search total estimate: " + estimate);
+				return estimate;
+			}
+		}
+
+		return null;
 	}
 
 	/**
@@ -346,7 +442,7 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 	 */
 	@Override
 	public void setPreviouslyAddedResourcePids(@Nonnull List<JpaPid> thePidSet) {
-		myPidSet = new HashSet<>(thePidSet);
+		myPidSet = new JpaPidSet(thePidSet);
 	}
 
 	@SuppressWarnings("ConstantConditions")
@@ -362,7 +458,7 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 		init(theParams, theSearchRuntimeDetails.getSearchUuid(), theRequestPartitionId);
 
 		if (myPidSet == null) {
-			myPidSet = new HashSet<>();
+			myPidSet = new JpaPidSet();
 		}
 
 		return new QueryIterator(theSearchRuntimeDetails, theRequest);
@@ -387,7 +483,12 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 
 		ArrayList<ISearchQueryExecutor> queries = new ArrayList<>();
 
-		if (checkUseHibernateSearch()) {
+		boolean useHibernateSearch = checkUseHibernateSearch();
+		if (!theCountOnlyFlag) {
+			initializeKeysetPaging(theParams, sort, useHibernateSearch);
+		}
+
+		if (useHibernateSearch) {
 			// we're going to run at least part of the search against the Fulltext service.
 
 			// Ugh - we have two different return types for now
@@ -627,6 +728,50 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 		}
 	}
 
+	/**
+	 * Determines whether this query can use keyset paging, see
+	 * {@link JpaStorageSettings#setKeysetPagingEnabled(boolean)}
+	 */
+	private void initializeKeysetPaging(SearchParameterMap theParams, SortSpec theSort, boolean theUseHibernateSearch) {
+		myKeysetPaging = false;
+		myKeysetPagingOnLastUpdated = false;
+		myKeysetPagingAfter = null;
+		if (!myStorageSettings.isKeysetPagingEnabled()
+				|| !theParams.isOffsetQuery()
+				|| theUseHibernateSearch
+				|| theParams.getEverythingMode() != null
+				|| theParams.isLastN()
+				|| theParams.getNearDistanceParam() != null) {
+			return;
+		}
+		if (theSort != null) {
+			if (theSort.getChain() != null || !Constants.PARAM_LASTUPDATED.equals(theSort.getParamName())) {
+				return;
+			}
+			myKeysetPagingOnLastUpdated = true;
+		}
+		myKeysetPaging = true;
+		if (isNotBlank(theParams.getKeyset())) {
+			myKeysetPagingAfter = SearchKeyset.fromParameterValue(theParams.getKeyset(), myKeysetPagingOnLastUpdated);
+		}
+	}
+
+	@Nullable
+	@Override
+	public String createNextPageKeyset(JpaPid theLastResult) {
+		if (!myKeysetPaging) {
+			return null;
+		}
+		Date lastUpdated = null;
+		if (myKeysetPagingOnLastUpdated) {
+			lastUpdated = myEntityManager
+					.createQuery("SELECT r.myUpdated FROM ResourceTable r WHERE r.myId = :id", Date.class)
+					.setParameter("id", theLastResult.getId())
+					.getSingleResult();
+		}
+		return new SearchKeyset(lastUpdated, theLastResult.getId()).toParameterValue();
+	}
+
 	private void createChunkedQueryNormalSearch(
 			SearchParameterMap theParams,
 			SortSpec sort,
@@ -710,7 +855,7 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 		 */
 		if (myHasNextIteratorQuery) {
 			if (myPidSet.size() + sqlBuilder.countBindVariables() < 900) {
-				sqlBuilder.excludeResourceIdsPredicate(myPidSet);
+				sqlBuilder.excludeResourceIdsPredicate(myPidSet.toIdList());
 			}
 		}
 
@@ -723,12 +868,24 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 		}
 
 		/*
-		 * Sort
-		 *
-		 * If we have a sort, we wrap the criteria search (the search that actually
-		 * finds the appropriate resources) in an outer search which is then sorted
+		 * Keyset paging seeks to the results after the previous page using
+		 * a predicate instead of an offset
 		 */
-		if (sort != null) {
+		Integer offset = theOffset;
+		if (myKeysetPaging && !theCountOnlyFlag) {
+			boolean ascending = sort == null || sort.getOrder() == null || sort.getOrder() == SortOrderEnum.ASC;
+			queryStack3.addKeysetPaging(myKeysetPagingAfter, myKeysetPagingOnLastUpdated, ascending);
+			if (myKeysetPagingAfter != null) {
+				offset = null;
+			}
+		} else if (sort != null) {
+
+			/*
+			 * Sort
+			 *
+			 * If we have a sort, we wrap the criteria search (the search that actually
+			 * finds the appropriate resources) in an outer search which is then sorted
+			 */
 			assert !theCountOnlyFlag;
 
 			createSort(queryStack3, sort, theParams);
@@ -737,7 +894,7 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 		/*
 		 * Now perform the search
 		 */
-		executeSearch(theOffset, theSearchQueryExecutors, sqlBuilder);
+		executeSearch(offset, theSearchQueryExecutors, sqlBuilder);
 	}
 
 	private void executeSearch(
@@ -1113,7 +1270,9 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 			Collection<JpaPid> theIncludedPids,
 			List<IBaseResource> theResourceListToPopulate,
 			boolean theForHistoryOperation,
-			Map<JpaPid, Integer> thePosition) {
+			Map<JpaPid, Integer> thePosition,
+			@Nullable List<Future<List<TransactionSynchronization>>> theParseTasks,
+			RequestDetails theRequest) {
 
 		Map<Long, Long> resourcePidToVersion = null;
 		for (JpaPid next : thePids) {
@@ -1137,6 +1296,7 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 		// -- preload all tags with tag definition if any
 		Map<Long, Collection<ResourceTag>> tagMap = getResourceTagMap(resourceSearchViewList);
 
+		List<Runnable> deferredParses = new ArrayList<>();
 		for (IBaseResourceEntity next : resourceSearchViewList) {
 			if (next.getDeleted() != null) {
 				continue;
@@ -1164,38 +1324,80 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 				}
 			}
 
-			IBaseResource resource = null;
-			if (next != null) {
-				resource = myJpaStorageResourceParser.toResource(
-						resourceType, next, tagMap.get(next.getId()), theForHistoryOperation);
-			}
-			if (resource == null) {
-				if (next != null) {
-					ourLog.warn(
-							"Unable to find resource {}/{}/_history/{} in database",
-							next.getResourceType(),
-							next.getIdDt().getIdPart(),
-							next.getVersion());
-				} else {
-					ourLog.warn("Unable to find resource in database.");
-				}
-				continue;
+			IBaseResourceEntity entity = next;
+			Runnable parse = () -> parseLoadedResource(
+					resourceType,
+					entity,
+					entity != null ? tagMap.get(entity.getId()) : null,
+					resourceId,
+					theIncludedPids,
+					theResourceListToPopulate,
+					theForHistoryOperation,
+					thePosition,
+					theRequest);
+
+			/*
+			 * Only rows from the search view can be parsed on another thread, since entities
+			 * loaded by readEntity(..) lazy-load their tags and provenance from the current
+			 * session.
+			 */
+			if (theParseTasks != null && entity instanceof ResourceSearchView) {
+				deferredParses.add(parse);
+			} else {
+				parse.run();
 			}
+		}
 
-			Integer index = thePosition.get(resourceId);
-			if (index == null) {
-				ourLog.warn("Got back unexpected resource PID {}", resourceId);
-				continue;
+		if (!deferredParses.isEmpty()) {
+			int sliceSize = (deferredParses.size() + mySearchResultLoadExecutor.getThreadCount() - 1)
+					/ mySearchResultLoadExecutor.getThreadCount();
+			for (List<Runnable> nextSlice : Lists.partition(deferredParses, sliceSize)) {
+				theParseTasks.add(mySearchResultLoadExecutor.submit(() -> nextSlice.forEach(Runnable::run)));
 			}
+		}
+	}
 
-			if (theIncludedPids.contains(resourceId)) {
-				ResourceMetadataKeyEnum.ENTRY_SEARCH_MODE.put(resource, BundleEntrySearchModeEnum.INCLUDE);
+	private void parseLoadedResource(
+			Class<? extends IBaseResource> theResourceType,
+			@Nullable IBaseResourceEntity theEntity,
+			@Nullable Collection<ResourceTag> theTags,
+			JpaPid theResourceId,
+			Collection<JpaPid> theIncludedPids,
+			List<IBaseResource> theResourceListToPopulate,
+			boolean theForHistoryOperation,
+			Map<JpaPid, Integer> thePosition,
+			RequestDetails theRequest) {
+		IBaseResource resource = null;
+		if (theEntity != null) {
+			resource = myJpaStorageResourceParser.toResource(
+					theResourceType, theEntity, theTags, theForHistoryOperation, theRequest);
+		}
+		if (resource == null) {
+			if (theEntity != null) {
+				ourLog.warn(
+						"Unable to find resource {}/{}/_history/{} in database",
+						theEntity.getResourceType(),
+						theEntity.getIdDt().getIdPart(),
+						theEntity.getVersion());
 			} else {
-				ResourceMetadataKeyEnum.ENTRY_SEARCH_MODE.put(resource, BundleEntrySearchModeEnum.MATCH);
+				ourLog.warn("Unable to find resource in database.");
 			}
+			return;
+		}
+
+		Integer index = thePosition.get(theResourceId);
+		if (index == null) {
+			ourLog.warn("Got back unexpected resource PID {}", theResourceId);
+			return;
+		}
 
-			theResourceListToPopulate.set(index, resource);
+		if (theIncludedPids.contains(theResourceId)) {
+			ResourceMetadataKeyEnum.ENTRY_SEARCH_MODE.put(resource, BundleEntrySearchModeEnum.INCLUDE);
+		} else {
+			ResourceMetadataKeyEnum.ENTRY_SEARCH_MODE.put(resource, BundleEntrySearchModeEnum.MATCH);
 		}
+
+		theResourceListToPopulate.set(index, resource);
 	}
 
 	private Map<Long, Collection<ResourceTag>> getResourceTagMap(
@@ -1274,12 +1476,39 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 			}
 		}
 
-		// We only chunk because some jdbc drivers can't handle long param lists.
-		new QueryChunker<JpaPid>()
-				.chunk(
-						thePids,
-						t -> doLoadPids(
-								t, theIncludedPids, theResourceListToPopulate, theForHistoryOperation, position));
+		/*
+		 * If parallel loading is enabled, each chunk is parsed on the load executor while
+		 * the next chunk is being fetched from the database
+		 */
+		List<Future<List<TransactionSynchronization>>> parseTasks = null;
+		if (mySearchResultLoadExecutor != null && mySearchResultLoadExecutor.getThreadCount() > 1) {
+			parseTasks = new ArrayList<>();
+		}
+		List<Future<List<TransactionSynchronization>>> finalParseTasks = parseTasks;
+
+		try {
+			// We only chunk because some jdbc drivers can't handle long param lists.
+			new QueryChunker<JpaPid>()
+					.chunk(
+							thePids,
+							t -> doLoadPids(
+									t,
+									theIncludedPids,
+									theResourceListToPopulate,
+									theForHistoryOperation,
+									position,
+									finalParseTasks,
+									theDetails));
+		} catch (RuntimeException e) {
+			if (parseTasks != null) {
+				parseTasks.forEach(t -> t.cancel(false));
+			}
+			throw e;
+		}
+
+		if (parseTasks != null) {
+			mySearchResultLoadExecutor.awaitAll(parseTasks);
+		}
 	}
 
 	/**
@@ -1380,7 +1609,7 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 
 		List<JpaPid> nextRoundMatches = new ArrayList<>(matches);
 		HashSet<JpaPid> allAdded = new HashSet<>();
-		HashSet<JpaPid> original = new HashSet<>(matches);
+		JpaPidSet original = new JpaPidSet(matches);
 		ArrayList<Include> includes = new ArrayList<>(currentIncludes);
 
 		int roundCounts = 0;
@@ -1455,7 +1684,7 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 
 		} while (!includes.isEmpty() && !nextRoundMatches.isEmpty() && addedSomeThisRound);
 
-		allAdded.removeAll(original);
+		allAdded.removeIf(original::contains);
 
 		ourLog.info(
 				"Loaded {} {} in {} rounds and {} ms for search {}",
@@ -2193,12 +2422,12 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 	public class IncludesIterator extends BaseIterator<JpaPid> implements Iterator<JpaPid> {
 
 		private final RequestDetails myRequest;
-		private final Set<JpaPid> myCurrentPids;
+		private final List<JpaPid> myCurrentPids;
 		private Iterator<JpaPid> myCurrentIterator;
 		private JpaPid myNext;
 
-		IncludesIterator(Set<JpaPid> thePidSet, RequestDetails theRequest) {
-			myCurrentPids = new HashSet<>(thePidSet);
+		IncludesIterator(JpaPidSet thePidSet, RequestDetails theRequest) {
+			myCurrentPids = thePidSet.toJpaPidList();
 			myCurrentIterator = null;
 			myRequest = theRequest;
 		}
@@ -2360,9 +2589,9 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 						}
 
 						if (nextLong != null) {
-							JpaPid next = JpaPid.fromId(nextLong);
-							if (myPidSet.add(next) && doNotSkipNextPidForEverything()) {
-								myNext = next;
+							// Only allocate a JpaPid once we know this PID hasn't already been seen
+							if (myPidSet.add(nextLong.longValue()) && doNotSkipNextPidForEverything()) {
+								myNext = JpaPid.fromId(nextLong);
 								myNonSkipCount++;
 								break;
 							} else {
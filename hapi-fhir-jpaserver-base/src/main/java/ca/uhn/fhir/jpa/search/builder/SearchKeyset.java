@@ -0,0 +1,105 @@
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.search.builder;
+
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Date;
+
+/**
+ * The position of the last result in a page of search results, used for keyset paging (see
+ * {@link ca.uhn.fhir.jpa.api.config.JpaStorageSettings#setKeysetPagingEnabled(boolean)}).
+ * The position is the internal ID of the resource, plus its last updated time if the search
+ * is sorted by <code>_lastUpdated</code>.
+ * <p>
+ * The position is passed to clients as the value of the <code>_keyset</code> parameter in
+ * paging links. It does not grant access to anything, since the search criteria (and any
+ * authorization applied to them) are re-evaluated for each page.
+ * </p>
+ *
+ * @since 7.6.0
+ */
+public class SearchKeyset {
+
+	private static final char SEPARATOR = '-';
+
+	private final Date myLastUpdated;
+	private final long myResourcePid;
+
+	public SearchKeyset(@Nullable Date theLastUpdated, long theResourcePid) {
+		myLastUpdated = theLastUpdated;
+		myResourcePid = theResourcePid;
+	}
+
+	/**
+	 * Returns the last updated time of the last result, or <code>null</code> if the search
+	 * is not sorted by <code>_lastUpdated</code>
+	 */
+	@Nullable
+	public Date getLastUpdated() {
+		return myLastUpdated;
+	}
+
+	public long getResourcePid() {
+		return myResourcePid;
+	}
+
+	/**
+	 * Returns the value to be used in the <code>_keyset</code> parameter
+	 */
+	@Nonnull
+	public String toParameterValue() {
+		if (myLastUpdated == null) {
+			return Long.toString(myResourcePid);
+		}
+		return Long.toString(myLastUpdated.getTime()) + SEPARATOR + myResourcePid;
+	}
+
+	/**
+	 * Parses a <code>_keyset</code> parameter value
+	 *
+	 * @param theValue                 The parameter value
+	 * @param theSortedByLastUpdated   Is the search sorted by <code>_lastUpdated</code>
+	 * @throws InvalidRequestException If the value is not valid for the search
+	 */
+	@Nonnull
+	public static SearchKeyset fromParameterValue(@Nonnull String theValue, boolean theSortedByLastUpdated) {
+		try {
+			if (!theSortedByLastUpdated) {
+				return new SearchKeyset(null, Long.parseLong(theValue));
+			}
+			int separatorIndex = theValue.indexOf(SEPARATOR, 1);
+			if (separatorIndex != -1) {
+				long lastUpdated = Long.parseLong(theValue.substring(0, separatorIndex));
+				long resourcePid = Long.parseLong(theValue.substring(separatorIndex + 1));
+				return new SearchKeyset(new Date(lastUpdated), resourcePid);
+			}
+		} catch (NumberFormatException e) {
+			// handled below
+		}
+		throw new InvalidRequestException(Msg.code(2585) + "Invalid " + Constants.PARAM_KEYSET + " value: "
+				+ StringUtils.abbreviate(theValue, 100));
+	}
+}
@@ -0,0 +1,361 @@
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.search.builder;
+
+import ca.uhn.fhir.context.RuntimeSearchParam;
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.model.config.PartitionSettings;
+import ca.uhn.fhir.jpa.model.entity.BaseResourceIndexedSearchParam;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamString;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamToken;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.util.MemoryCacheService;
+import ca.uhn.fhir.model.api.IQueryParameterType;
+import ca.uhn.fhir.rest.param.ReferenceParam;
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.param.TokenParamModifier;
+import ca.uhn.fhir.rest.server.util.ISearchParamRegistry;
+import ca.uhn.fhir.util.StringUtil;
+import ca.uhn.fhir.util.UrlUtil;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.PersistenceContextType;
+import jakarta.persistence.TypedQuery;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static ca.uhn.fhir.jpa.search.builder.predicate.BaseJoiningPredicateBuilder.replaceDefaultPartitionIdIfNonNull;
+import static org.apache.commons.lang3.StringUtils.isBlank;
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
+
+/**
+ * Estimates how many rows a search parameter will match, so that the {@link SearchBuilder}
+ * can apply the most selective parameters first when
+ * {@link JpaStorageSettings#isCostBasedPredicateOrderingEnabled()} is enabled.
+ * <p>
+ * Estimates are made by sampling the search index tables (and <code>HFJ_RES_LINK</code>
+ * for references) for the hash the predicate will be matching on. At most
+ * {@link #SAMPLE_LIMIT} rows are read for any one hash, so the cost of a sample is
+ * bounded no matter how common a value is. Samples are cached in the
+ * {@link MemoryCacheService.CacheEnum#SEARCH_PARAM_CARDINALITY} cache, and are refreshed
+ * when they expire from it.
+ * </p>
+ *
+ * @since 7.6.0
+ */
+public class SearchParamStatisticsSvc {
+
+	/**
+	 * The maximum number of index rows which are read when sampling a single hash. Any
+	 * hash matching this many rows is considered to be unselective.
+	 */
+	public static final int SAMPLE_LIMIT = 10000;
+
+	@PersistenceContext(type = PersistenceContextType.TRANSACTION)
+	private EntityManager myEntityManager;
+
+	@Autowired
+	private ISearchParamRegistry mySearchParamRegistry;
+
+	@Autowired
+	private PartitionSettings myPartitionSettings;
+
+	@Autowired
+	private JpaStorageSettings myStorageSettings;
+
+	@Autowired
+	private MemoryCacheService myMemoryCacheService;
+
+	/**
+	 * Returns the estimated number of resources matched by a search parameter, capped at
+	 * {@link #SAMPLE_LIMIT}, or <code>null</code> if no estimate can be made for this
+	 * kind of parameter (e.g. chains, <code>_has</code> and composites). Values within an OR
+	 * list are added together, and the most selective AND list is used.
+	 */
+	@Nullable
+	public Long estimateCardinality(
+			String theResourceType,
+			String theParamName,
+			List<List<IQueryParameterType>> theAndOrParams,
+			RequestPartitionId theRequestPartitionId) {
+		// Special parameters such as _tag and _has aren't stored in the search index tables
+		if (theParamName.startsWith("_")) {
+			return null;
+		}
+		RuntimeSearchParam searchParam = mySearchParamRegistry.getActiveSearchParam(theResourceType, theParamName);
+		if (searchParam == null || theAndOrParams == null) {
+			return null;
+		}
+
+		Long retVal = null;
+		for (List<IQueryParameterType> nextOrList : theAndOrParams) {
+			Long orListEstimate = 0L;
+			for (IQueryParameterType nextOr : nextOrList) {
+				Long estimate = estimateCardinality(theResourceType, searchParam, nextOr, theRequestPartitionId);
+				if (estimate == null) {
+					orListEstimate = null;
+					break;
+				}
+				orListEstimate = Math.min(SAMPLE_LIMIT, orListEstimate + estimate);
+			}
+			if (orListEstimate != null && (retVal == null || orListEstimate < retVal)) {
+				retVal = orListEstimate;
+			}
+		}
+		return retVal;
+	}
+
+	/**
+	 * Returns an estimate of the number of resources matched by a search, for
+	 * <code>_total=estimated</code>. Every parameter in the search must be able to be
+	 * estimated, and the estimate is the estimate for the most selective parameter. Since
+	 * each matching resource has at least one index row, this is an upper bound. Returns
+	 * <code>null</code> if no useful estimate can be made, including when the most
+	 * selective parameter reached the {@link #SAMPLE_LIMIT}.
+	 */
+	@Nullable
+	public Long estimateSearchCount(
+			String theResourceType, SearchParameterMap theParams, RequestPartitionId theRequestPartitionId) {
+		if (theParams.isEmpty() || theParams.getEverythingMode() != null) {
+			return null;
+		}
+
+		long retVal = Long.MAX_VALUE;
+		for (String nextParamName : theParams.keySet()) {
+			Long estimate = estimateCardinality(
+					theResourceType, nextParamName, theParams.get(nextParamName), theRequestPartitionId);
+			if (estimate == null) {
+				return null;
+			}
+			retVal = Math.min(retVal, estimate);
+		}
+
+		if (retVal >= SAMPLE_LIMIT) {
+			return null;
+		}
+		return retVal;
+	}
+
+	@Nullable
+	private Long estimateCardinality(
+			String theResourceType,
+			RuntimeSearchParam theSearchParam,
+			IQueryParameterType theParam,
+			RequestPartitionId theRequestPartitionId) {
+		if (theParam.getMissing() != null) {
+			return null;
+		}
+		if (myPartitionSettings.isPartitioningEnabled()
+				&& myPartitionSettings.isIncludePartitionInSearchHashes()
+				&& (theRequestPartitionId == null || theRequestPartitionId.isAllPartitions())) {
+			return null;
+		}
+
+		String paramName = theSearchParam.getName();
+		switch (theSearchParam.getParamType()) {
+			case TOKEN:
+				if (theParam instanceof TokenParam) {
+					TokenParam param = (TokenParam) theParam;
+					// Negated tokens also match resources with no index rows for the parameter
+					if (param.getModifier() == TokenParamModifier.NOT
+							|| param.getModifier() == TokenParamModifier.NOT_IN) {
+						return null;
+					}
+					if (param.getModifier() == null && isNotBlank(param.getValue())) {
+						if (isNotBlank(param.getSystem())) {
+							long hash = ResourceIndexedSearchParamToken.calculateHashSystemAndValue(
+									myPartitionSettings,
+									theRequestPartitionId,
+									theResourceType,
+									paramName,
+									param.getSystem(),
+									param.getValue());
+							return sampleHash("ResourceIndexedSearchParamToken", "myHashSystemAndValue", hash);
+						}
+						long hash = ResourceIndexedSearchParamToken.calculateHashValue(
+								myPartitionSettings,
+								theRequestPartitionId,
+								theResourceType,
+								paramName,
+								param.getValue());
+						return sampleHash("ResourceIndexedSearchParamToken", "myHashValue", hash);
+					}
+				}
+				return sampleHashIdentity(
+						"ResourceIndexedSearchParamToken", theResourceType, paramName, theRequestPartitionId);
+			case STRING:
+				if (theParam instanceof StringParam) {
+					StringParam param = (StringParam) theParam;
+					if (isBlank(param.getValue())) {
+						return null;
+					}
+					if (param.isExact()) {
+						long hash = ResourceIndexedSearchParamString.calculateHashExact(
+								myPartitionSettings,
+								theRequestPartitionId,
+								theResourceType,
+								paramName,
+								param.getValue());
+						return sampleHash("ResourceIndexedSearchParamString", "myHashExact", hash);
+					}
+					if (!param.isContains()) {
+						String normalized = StringUtil.normalizeStringForSearchIndexing(param.getValue());
+						long hash = ResourceIndexedSearchParamString.calculateHashNormalized(
+								myPartitionSettings,
+								theRequestPartitionId,
+								myStorageSettings,
+								theResourceType,
+								paramName,
+								normalized);
+						return sampleHash("ResourceIndexedSearchParamString", "myHashNormalizedPrefix", hash);
+					}
+				}
+				return sampleHashIdentity(
+						"ResourceIndexedSearchParamString", theResourceType, paramName, theRequestPartitionId);
+			case DATE:
+				return sampleHashIdentity(
+						"ResourceIndexedSearchParamDate", theResourceType, paramName, theRequestPartitionId);
+			case NUMBER:
+				return sampleHashIdentity(
+						"ResourceIndexedSearchParamNumber", theResourceType, paramName, theRequestPartitionId);
+			case QUANTITY:
+				return sampleHashIdentity(
+						"ResourceIndexedSearchParamQuantity", theResourceType, paramName, theRequestPartitionId);
+			case URI:
+				return sampleHashIdentity(
+						"ResourceIndexedSearchParamUri", theResourceType, paramName, theRequestPartitionId);
+			case REFERENCE:
+				if (theParam instanceof ReferenceParam) {
+					return sampleReference(
+							theResourceType, theSearchParam, (ReferenceParam) theParam, theRequestPartitionId);
+				}
+				return null;
+			case COMPOSITE:
+			case HAS:
+			case SPECIAL:
+			default:
+				return null;
+		}
+	}
+
+	/**
+	 * References are sampled by the ID of the resource they point to, restricted to the
+	 * paths of the search parameter and to the request partition. Chained references,
+	 * modifiers and absolute URLs can't be sampled this way.
+	 */
+	@Nullable
+	private Long sampleReference(
+			String theResourceType,
+			RuntimeSearchParam theSearchParam,
+			ReferenceParam theParam,
+			RequestPartitionId theRequestPartitionId) {
+		if (isNotBlank(theParam.getChain())
+				|| isNotBlank(theParam.getQueryParameterQualifier())
+				|| isBlank(theParam.getIdPart())
+				|| UrlUtil.isAbsolute(theParam.getValue())) {
+			return null;
+		}
+		List<String> paths = theSearchParam.getPathsSplitForResourceType(theResourceType).stream()
+				.map(String::trim)
+				.collect(Collectors.toList());
+		if (paths.isEmpty()) {
+			return null;
+		}
+
+		RequestPartitionId partitionId = null;
+		if (myPartitionSettings.isPartitioningEnabled()
+				&& theRequestPartitionId != null
+				&& !theRequestPartitionId.isAllPartitions()) {
+			partitionId = theRequestPartitionId;
+		}
+		boolean defaultPartitionIsNull = myPartitionSettings.getDefaultPartitionId() == null;
+		boolean includeNullPartition =
+				partitionId != null && partitionId.hasDefaultPartitionId() && defaultPartitionIsNull;
+		List<Integer> partitionIds = null;
+		if (partitionId != null) {
+			partitionIds = defaultPartitionIsNull
+					? partitionId.getPartitionIdsWithoutDefault()
+					: replaceDefaultPartitionIdIfNonNull(myPartitionSettings, partitionId.getPartitionIds());
+		}
+
+		String targetType = theParam.getResourceType();
+		String key = "HFJ_RES_LINK:" + theResourceType + ":" + paths + ":" + targetType + "/" + theParam.getIdPart()
+				+ ":" + (includeNullPartition ? "null," : "") + partitionIds;
+		List<Integer> finalPartitionIds = partitionIds;
+		return myMemoryCacheService.get(MemoryCacheService.CacheEnum.SEARCH_PARAM_CARDINALITY, key, k -> {
+			String sql = "SELECT l.myId FROM ResourceLink l WHERE l.mySourceResourceType = :source_type"
+					+ " AND l.mySourcePath IN (:source_paths)"
+					+ " AND l.myTargetResource.myFhirId = :target_id";
+			if (targetType != null) {
+				sql += " AND l.myTargetResourceType = :target_type";
+			}
+			if (finalPartitionIds != null) {
+				if (finalPartitionIds.isEmpty()) {
+					sql += " AND l.myPartitionIdValue IS NULL";
+				} else if (includeNullPartition) {
+					sql += " AND (l.myPartitionIdValue IS NULL OR l.myPartitionIdValue IN (:partition_ids))";
+				} else {
+					sql += " AND l.myPartitionIdValue IN (:partition_ids)";
+				}
+			}
+			TypedQuery<Long> query = myEntityManager.createQuery(sql, Long.class);
+			query.setParameter("source_type", theResourceType);
+			query.setParameter("source_paths", paths);
+			query.setParameter("target_id", theParam.getIdPart());
+			if (targetType != null) {
+				query.setParameter("target_type", targetType);
+			}
+			if (finalPartitionIds != null && !finalPartitionIds.isEmpty()) {
+				query.setParameter("partition_ids", finalPartitionIds);
+			}
+			return count(query);
+		});
+	}
+
+	@Nonnull
+	private Long sampleHashIdentity(
+			String theEntityName, String theResourceType, String theParamName, RequestPartitionId thePartitionId) {
+		long hash = BaseResourceIndexedSearchParam.calculateHashIdentity(
+				myPartitionSettings, thePartitionId, theResourceType, theParamName);
+		return sampleHash(theEntityName, "myHashIdentity", hash);
+	}
+
+	@Nonnull
+	private Long sampleHash(String theEntityName, String theHashField, long theHash) {
+		String key = theEntityName + ":" + theHashField + ":" + theHash;
+		return myMemoryCacheService.get(MemoryCacheService.CacheEnum.SEARCH_PARAM_CARDINALITY, key, k -> {
+			TypedQuery<Long> query = myEntityManager.createQuery(
+					"SELECT t.myId FROM " + theEntityName + " t WHERE t." + theHashField + " = :hash", Long.class);
+			query.setParameter("hash", theHash);
+			return count(query);
+		});
+	}
+
+	private static Long count(TypedQuery<Long> theQuery) {
+		theQuery.setMaxResults(SAMPLE_LIMIT);
+		return (long) theQuery.getResultList().size();
+	}
+}
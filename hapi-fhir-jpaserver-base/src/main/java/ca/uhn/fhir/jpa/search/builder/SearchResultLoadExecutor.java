@@ -0,0 +1,133 @@
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.search.builder;
+
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import ca.uhn.fhir.util.ThreadPoolUtil;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Thread pool used by the {@link SearchBuilder} to parse the resources in a page of search
+ * results in parallel, when {@link JpaStorageSettings#getSearchResultLoadThreadCount()} is
+ * greater than 1. The pool is shared by all searches, and is created the first time it is needed.
+ *
+ * @since 7.6.0
+ */
+public class SearchResultLoadExecutor {
+
+	/**
+	 * Number of tasks which may be waiting for a thread before callers block
+	 */
+	private static final int QUEUE_CAPACITY = 1000;
+
+	@Autowired
+	private JpaStorageSettings myStorageSettings;
+
+	private ThreadPoolTaskExecutor myExecutor;
+
+	/**
+	 * Returns the number of threads resources should be parsed on, or 1 if resources should
+	 * be parsed on the calling thread
+	 */
+	public int getThreadCount() {
+		return Math.max(1, myStorageSettings.getSearchResultLoadThreadCount());
+	}
+
+	/**
+	 * Submits a task to the pool.
+	 * <p>
+	 * If the calling thread has transaction synchronization active, the task runs with its
+	 * own synchronization, and any {@link TransactionSynchronization synchronizations} it
+	 * registers (e.g. by {@link ca.uhn.fhir.jpa.util.MemoryCacheService#putAfterCommit}) are
+	 * returned by the future. They are registered with the calling thread's transaction by
+	 * {@link #awaitAll(List)}, so that they only run when that transaction commits.
+	 * </p>
+	 */
+	@Nonnull
+	public Future<List<TransactionSynchronization>> submit(@Nonnull Runnable theTask) {
+		boolean synchronizationActive = TransactionSynchronizationManager.isSynchronizationActive();
+		return getExecutor().submit(() -> {
+			if (!synchronizationActive) {
+				theTask.run();
+				return List.of();
+			}
+			TransactionSynchronizationManager.initSynchronization();
+			try {
+				theTask.run();
+				return TransactionSynchronizationManager.getSynchronizations();
+			} finally {
+				TransactionSynchronizationManager.clearSynchronization();
+			}
+		});
+	}
+
+	/**
+	 * Waits for all of the given tasks to complete, rethrowing the first failure. This must
+	 * be called on the thread which submitted the tasks.
+	 */
+	public void awaitAll(@Nonnull List<Future<List<TransactionSynchronization>>> theTasks) {
+		List<Future<List<TransactionSynchronization>>> tasks = new ArrayList<>(theTasks);
+		try {
+			for (Future<List<TransactionSynchronization>> next : tasks) {
+				for (TransactionSynchronization nextSynchronization : next.get()) {
+					TransactionSynchronizationManager.registerSynchronization(nextSynchronization);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InternalErrorException(Msg.code(2583) + e.getMessage(), e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new InternalErrorException(Msg.code(2584) + e.getMessage(), e);
+		} finally {
+			tasks.forEach(t -> t.cancel(false));
+		}
+	}
+
+	private synchronized ThreadPoolTaskExecutor getExecutor() {
+		if (myExecutor == null) {
+			int threadCount = getThreadCount();
+			myExecutor = ThreadPoolUtil.newThreadPool(threadCount, threadCount, "search-result-load-", QUEUE_CAPACITY);
+		}
+		return myExecutor;
+	}
+
+	@PreDestroy
+	public synchronized void shutdown() {
+		if (myExecutor != null) {
+			myExecutor.shutdown();
+			myExecutor = null;
+		}
+	}
+}
@@ -36,15 +36,21 @@ import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
 import ca.uhn.fhir.jpa.api.dao.IDao;
 import ca.uhn.fhir.jpa.api.svc.IIdHelperService;
 import ca.uhn.fhir.jpa.dao.BaseStorageDao;
+import ca.uhn.fhir.jpa.dao.IResultIterator;
+import ca.uhn.fhir.jpa.dao.ISearchBuilder;
+import ca.uhn.fhir.jpa.dao.SearchBuilderFactory;
 import ca.uhn.fhir.jpa.dao.predicate.SearchFilterParser;
 import ca.uhn.fhir.jpa.model.dao.JpaPid;
+import ca.uhn.fhir.jpa.model.search.SearchRuntimeDetails;
 import ca.uhn.fhir.jpa.model.search.StorageProcessingMessage;
 import ca.uhn.fhir.jpa.search.SearchCoordinatorSvcImpl;
 import ca.uhn.fhir.jpa.search.builder.QueryStack;
+import ca.uhn.fhir.jpa.search.builder.SearchParamStatisticsSvc;
 import ca.uhn.fhir.jpa.search.builder.models.MissingQueryParameterPredicateParams;
 import ca.uhn.fhir.jpa.search.builder.sql.SearchQueryBuilder;
 import ca.uhn.fhir.jpa.searchparam.MatchUrlService;
 import ca.uhn.fhir.jpa.searchparam.ResourceMetaParams;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
 import ca.uhn.fhir.jpa.util.QueryParameterUtils;
 import ca.uhn.fhir.model.api.IQueryParameterType;
 import ca.uhn.fhir.model.primitive.IdDt;
@@ -77,6 +83,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -86,6 +93,8 @@ import java.util.List;
 import java.util.ListIterator;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -126,6 +135,12 @@ public class ResourceLinkPredicateBuilder extends BaseJoiningPredicateBuilder im
 	@Autowired
 	private MatchUrlService myMatchUrlService;
 
+	@Autowired
+	private SearchBuilderFactory<JpaPid> mySearchBuilderFactory;
+
+	@Autowired(required = false)
+	private SearchParamStatisticsSvc mySearchParamStatisticsSvc;
+
 	/**
 	 * Constructor
 	 */
@@ -508,13 +523,26 @@ public class ResourceLinkPredicateBuilder extends BaseJoiningPredicateBuilder im
 			List<Condition> andPredicates = new ArrayList<>();
 
 			List<List<IQueryParameterType>> chainParamValues = Collections.singletonList(orValues);
-			andPredicates.add(
-					childQueryFactory.searchForIdsWithAndOr(with().setSourceJoinColumn(myColumnTargetResourceId)
-							.setResourceName(subResourceName)
-							.setParamName(chain)
-							.setAndOrParams(chainParamValues)
-							.setRequest(theRequest)
-							.setRequestPartitionId(theRequestPartitionId)));
+			Condition linkPredicate = null;
+			if (!paramInverted) {
+				linkPredicate = createPredicateForPreResolvedLink(
+						myColumnTargetResourceId,
+						subResourceName,
+						chain,
+						chainParamValues,
+						theRequest,
+						theRequestPartitionId);
+			}
+			if (linkPredicate == null) {
+				linkPredicate =
+						childQueryFactory.searchForIdsWithAndOr(with().setSourceJoinColumn(myColumnTargetResourceId)
+								.setResourceName(subResourceName)
+								.setParamName(chain)
+								.setAndOrParams(chainParamValues)
+								.setRequest(theRequest)
+								.setRequestPartitionId(theRequestPartitionId));
+			}
+			andPredicates.add(linkPredicate);
 
 			orPredicates.add(QueryParameterUtils.toAndPredicate(andPredicates));
 		}
@@ -546,6 +574,84 @@ public class ResourceLinkPredicateBuilder extends BaseJoiningPredicateBuilder im
 		return QueryParameterUtils.toAndPredicate(pathPredicate, multiTypePredicate);
 	}
 
+	/**
+	 * Resolves one link of a chained or <code>_has</code> search to the PIDs of the resources it
+	 * matches using a separate query, if {@link JpaStorageSettings#getChainedSearchPreResolutionThreshold()}
+	 * is enabled. The separate query is a regular search of the linked resource type, so any deeper
+	 * links in the chain are resolved the same way first.
+	 *
+	 * @param theJoinColumn   The column which would have been joined to the linked resources
+	 * @param theResourceType The linked resource type
+	 * @param theParamName    The parameter to search for on the linked resource type
+	 * @param theAndOrParams  The parameter values
+	 * @return A predicate matching the column against the resolved PIDs, or <code>null</code> if the link
+	 * 	should be joined instead (because it matches no resources, or more than the threshold)
+	 */
+	@Nullable
+	public Condition createPredicateForPreResolvedLink(
+			DbColumn theJoinColumn,
+			String theResourceType,
+			String theParamName,
+			List<List<IQueryParameterType>> theAndOrParams,
+			RequestDetails theRequest,
+			RequestPartitionId theRequestPartitionId) {
+		int threshold = myStorageSettings.getChainedSearchPreResolutionThreshold();
+		if (threshold <= 0 || theRequestPartitionId == null) {
+			return null;
+		}
+
+		if (myStorageSettings.isCostBasedPredicateOrderingEnabled() && mySearchParamStatisticsSvc != null) {
+			Long estimate = mySearchParamStatisticsSvc.estimateCardinality(
+					theResourceType, theParamName, theAndOrParams, theRequestPartitionId);
+			if (estimate != null && estimate > threshold) {
+				ourLog.debug(
+						"Joining {}:{} since it is estimated to match {} resources",
+						theResourceType,
+						theParamName,
+						estimate);
+				return null;
+			}
+		}
+
+		SearchParameterMap map = new SearchParameterMap();
+		map.put(theParamName, theAndOrParams);
+
+		IDao dao = myDaoRegistry.getResourceDao(theResourceType);
+		Class<? extends IBaseResource> resourceType =
+				getFhirContext().getResourceDefinition(theResourceType).getImplementingClass();
+		ISearchBuilder<JpaPid> searchBuilder =
+				mySearchBuilderFactory.newSearchBuilder(dao, theResourceType, resourceType);
+		searchBuilder.setMaxResultsToFetch(threshold + 1);
+
+		Set<Long> pids = new TreeSet<>();
+		SearchRuntimeDetails searchRuntimeDetails =
+				new SearchRuntimeDetails(theRequest, UUID.randomUUID().toString());
+		try (IResultIterator<JpaPid> iterator =
+				searchBuilder.createQuery(map, searchRuntimeDetails, theRequest, theRequestPartitionId)) {
+			while (iterator.hasNext()) {
+				pids.add(iterator.next().getId());
+				if (pids.size() > threshold) {
+					ourLog.debug(
+							"Joining {}:{} since it matches more than {} resources",
+							theResourceType,
+							theParamName,
+							threshold);
+					return null;
+				}
+			}
+		} catch (IOException e) {
+			ourLog.error("IO failure during database access", e);
+			throw new InternalErrorException(Msg.code(2589) + e);
+		}
+
+		if (pids.isEmpty()) {
+			return null;
+		}
+
+		ourLog.debug("Resolved {}:{} to {} resources", theResourceType, theParamName, pids.size());
+		return QueryParameterUtils.toEqualToOrInPredicate(theJoinColumn, generatePlaceholders(pids));
+	}
+
 	@Nonnull
 	private List<String> determineCandidateResourceTypesForChain(
 			String theResourceName, String theParamName, ReferenceParam theReferenceParam) {
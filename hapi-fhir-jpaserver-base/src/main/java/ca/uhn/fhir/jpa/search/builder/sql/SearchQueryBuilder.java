@@ -770,12 +770,18 @@ public class SearchQueryBuilder {
 		// Do  nothing if it's empty
 		if (theExistingPidSetToExclude == null || theExistingPidSetToExclude.isEmpty()) return;
 
-		List<Long> excludePids = JpaPid.toLongList(theExistingPidSetToExclude);
+		excludeResourceIdsPredicate(JpaPid.toLongList(theExistingPidSetToExclude));
+	}
+
+	public void excludeResourceIdsPredicate(List<Long> theExcludePids) {
+
+		// Do  nothing if it's empty
+		if (theExcludePids == null || theExcludePids.isEmpty()) return;
 
-		ourLog.trace("excludePids = {}", excludePids);
+		ourLog.trace("excludePids = {}", theExcludePids);
 
 		DbColumn resourceIdColumn = getOrCreateFirstPredicateBuilder().getResourceIdColumn();
-		InCondition predicate = new InCondition(resourceIdColumn, generatePlaceholders(excludePids));
+		InCondition predicate = new InCondition(resourceIdColumn, generatePlaceholders(theExcludePids));
 		predicate.setNegate(true);
 		addPredicate(predicate);
 	}
@@ -41,6 +41,7 @@ import ca.uhn.fhir.jpa.search.cache.ISearchResultCacheSvc;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
 import ca.uhn.fhir.jpa.util.QueryParameterUtils;
 import ca.uhn.fhir.jpa.util.SearchParameterMapCalculator;
+import ca.uhn.fhir.rest.api.SearchTotalModeEnum;
 import ca.uhn.fhir.rest.api.server.IPreResourceAccessDetails;
 import ca.uhn.fhir.rest.api.server.RequestDetails;
 import ca.uhn.fhir.rest.server.IPagingProvider;
@@ -366,6 +367,7 @@ public class SearchTask implements Callable<Void> {
 
 					mySearch.setNumFound(myCountSavedTotal);
 					mySearch.setNumBlocked(mySearch.getNumBlocked() + countBlocked);
+					clearEstimatedTotalCountIfExceeded();
 
 					int numSynced;
 					synchronized (mySyncedPids) {
@@ -564,6 +566,8 @@ public class SearchTask implements Callable<Void> {
 			if (myParamWantOnlyCount) {
 				return;
 			}
+		} else if (isTotalCountEstimated()) {
+			doEstimatedCountQuery();
 		}
 
 		ourLog.trace("Done count");
@@ -691,6 +695,57 @@ public class SearchTask implements Callable<Void> {
 		}
 	}
 
+	/**
+	 * Stores an estimated total for the search, if one can be made cheaply. The total is
+	 * replaced with the real one once the search has completed.
+	 */
+	private void doEstimatedCountQuery() {
+		@SuppressWarnings("rawtypes")
+		ISearchBuilder sb = newSearchBuilder();
+
+		Long estimate =
+				sb.createEstimatedCountQuery(myParams.clone(), mySearch.getUuid(), myRequest, myRequestPartitionId);
+
+		ourLog.trace("Got estimated count {}", estimate);
+
+		if (estimate != null) {
+			myTxService
+					.withRequest(myRequest)
+					.withRequestPartitionId(myRequestPartitionId)
+					.execute(() -> {
+						mySearch.setTotalCount(estimate.intValue());
+						doSaveSearch();
+					});
+		}
+	}
+
+	/**
+	 * The total count of a search is also used to decide whether there is a next page, so
+	 * an estimated total is discarded once the search has found at least as many results as
+	 * the estimate while it still has more to fetch.
+	 */
+	private void clearEstimatedTotalCountIfExceeded() {
+		Integer totalCount = mySearch.getTotalCount();
+		if (totalCount != null
+				&& mySearch.getStatus() != SearchStatusEnum.FINISHED
+				&& totalCount <= myCountSavedTotal
+				&& isTotalCountEstimated()) {
+			ourLog.debug(
+					"Search {} has found {} results, discarding estimated total of {}",
+					mySearch.getUuid(),
+					myCountSavedTotal,
+					totalCount);
+			mySearch.setTotalCount(null);
+		}
+	}
+
+	private boolean isTotalCountEstimated() {
+		SearchTotalModeEnum totalMode = nonNull(myParams.getSearchTotalMode())
+				? myParams.getSearchTotalMode()
+				: myStorageSettings.getDefaultTotalMode();
+		return totalMode == SearchTotalModeEnum.ESTIMATED;
+	}
+
 	/**
 	 * Does the query but only for the count.
 	 * @param theParamWantOnlyCount - if count query is wanted only
@@ -30,13 +30,10 @@ import com.google.common.collect.Lists;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Pageable;
 
 import java.util.Collections;
 import java.util.List;
 
-import static ca.uhn.fhir.jpa.search.SearchCoordinatorSvcImpl.toPage;
-
 public class DatabaseSearchResultCacheSvcImpl implements ISearchResultCacheSvc {
 	private static final Logger ourLog = LoggerFactory.getLogger(DatabaseSearchResultCacheSvcImpl.class);
 
@@ -57,14 +54,12 @@ public class DatabaseSearchResultCacheSvcImpl implements ISearchResultCacheSvc {
 				.withRequest(theRequestDetails)
 				.withRequestPartitionId(theRequestPartitionId)
 				.execute(() -> {
-					final Pageable page = toPage(theFrom, theTo);
-					if (page == null) {
+					if (theTo <= theFrom) {
 						return Collections.emptyList();
 					}
 
-					List<Long> retVal = mySearchResultDao
-							.findWithSearchPid(theSearch.getId(), page)
-							.getContent();
+					List<Long> retVal =
+							mySearchResultDao.findWithSearchPidInOrderRange(theSearch.getId(), theFrom, theTo);
 
 					ourLog.debug("fetchResultPids for range {}-{} returned {} pids", theFrom, theTo, retVal.size());
 
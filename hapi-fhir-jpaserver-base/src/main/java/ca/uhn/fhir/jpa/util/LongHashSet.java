@@ -0,0 +1,192 @@
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.util;
+
+import org.apache.commons.lang3.Validate;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * A set of primitive <code>long</code> values, backed by a single open-addressing
+ * (linear probing) table. This is used for tracking large numbers of resource PIDs
+ * during searches, where a <code>HashSet&lt;JpaPid&gt;</code> costs a boxed
+ * <code>Long</code>, a <code>JpaPid</code> and a hash map node for every entry.
+ * <p>
+ * This class is not thread safe.
+ * </p>
+ *
+ * @since 7.6.0
+ */
+public class LongHashSet {
+
+	private static final int MIN_CAPACITY = 16;
+	private static final long EMPTY = 0L;
+
+	private long[] myTable;
+	private int myMask;
+	private int mySize;
+	private int myResizeThreshold;
+	/**
+	 * The table uses 0 as its empty slot marker, so that value is tracked separately
+	 */
+	private boolean myContainsEmptyMarker;
+
+	public LongHashSet() {
+		this(MIN_CAPACITY);
+	}
+
+	/**
+	 * @param theExpectedSize The number of values the set should be able to hold without resizing
+	 */
+	public LongHashSet(int theExpectedSize) {
+		allocate(tableSizeFor(theExpectedSize));
+	}
+
+	/**
+	 * @return <code>true</code> if the value was not already present in the set
+	 */
+	public boolean add(long theValue) {
+		if (theValue == EMPTY) {
+			if (myContainsEmptyMarker) {
+				return false;
+			}
+			myContainsEmptyMarker = true;
+			mySize++;
+			return true;
+		}
+
+		int index = indexFor(theValue);
+		while (true) {
+			long existing = myTable[index];
+			if (existing == EMPTY) {
+				myTable[index] = theValue;
+				mySize++;
+				if (mySize > myResizeThreshold) {
+					resize(myTable.length << 1);
+				}
+				return true;
+			}
+			if (existing == theValue) {
+				return false;
+			}
+			index = (index + 1) & myMask;
+		}
+	}
+
+	public boolean contains(long theValue) {
+		if (theValue == EMPTY) {
+			return myContainsEmptyMarker;
+		}
+
+		int index = indexFor(theValue);
+		while (true) {
+			long existing = myTable[index];
+			if (existing == EMPTY) {
+				return false;
+			}
+			if (existing == theValue) {
+				return true;
+			}
+			index = (index + 1) & myMask;
+		}
+	}
+
+	public int size() {
+		return mySize;
+	}
+
+	public boolean isEmpty() {
+		return mySize == 0;
+	}
+
+	public void clear() {
+		Arrays.fill(myTable, EMPTY);
+		myContainsEmptyMarker = false;
+		mySize = 0;
+	}
+
+	/**
+	 * Invokes the given consumer for every value in the set. Iteration order is not defined.
+	 */
+	public void forEach(LongConsumer theConsumer) {
+		if (myContainsEmptyMarker) {
+			theConsumer.accept(EMPTY);
+		}
+		for (long next : myTable) {
+			if (next != EMPTY) {
+				theConsumer.accept(next);
+			}
+		}
+	}
+
+	/**
+	 * @return A newly allocated array containing every value in the set. Order is not defined.
+	 */
+	public long[] toArray() {
+		long[] retVal = new long[mySize];
+		int index = 0;
+		if (myContainsEmptyMarker) {
+			retVal[index++] = EMPTY;
+		}
+		for (long next : myTable) {
+			if (next != EMPTY) {
+				retVal[index++] = next;
+			}
+		}
+		return retVal;
+	}
+
+	private int indexFor(long theValue) {
+		// Fibonacci hashing spreads sequential PIDs across the table
+		long hash = theValue * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32)) & myMask;
+	}
+
+	private void resize(int theNewCapacity) {
+		long[] oldTable = myTable;
+		allocate(theNewCapacity);
+		for (long next : oldTable) {
+			if (next != EMPTY) {
+				int index = indexFor(next);
+				while (myTable[index] != EMPTY) {
+					index = (index + 1) & myMask;
+				}
+				myTable[index] = next;
+			}
+		}
+	}
+
+	private void allocate(int theCapacity) {
+		myTable = new long[theCapacity];
+		myMask = theCapacity - 1;
+		// Keep the load factor at or below 0.5 so that probe sequences stay short
+		myResizeThreshold = theCapacity >>> 1;
+	}
+
+	private static int tableSizeFor(int theExpectedSize) {
+		Validate.isTrue(theExpectedSize >= 0, "Expected size must not be negative");
+		long wanted = Math.max(MIN_CAPACITY, (long) theExpectedSize * 2);
+		if (wanted > (1 << 30)) {
+			return 1 << 30;
+		}
+		return Integer.highestOneBit((int) (wanted - 1)) << 1;
+	}
+}
@@ -0,0 +1,218 @@
+package ca.uhn.fhir.jpa.compress;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.jpa.model.entity.ResourceEncodingEnum;
+import ca.uhn.fhir.parser.DataFormatException;
+import ca.uhn.fhir.parser.IParser;
+import ca.uhn.fhir.util.StopWatch;
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictTrainer;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Quantity;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class ResourceCompressionCodecRegistryTest {
+	private static final Logger ourLog = LoggerFactory.getLogger(ResourceCompressionCodecRegistryTest.class);
+	private static final FhirContext ourCtx = FhirContext.forR4Cached();
+
+	@ParameterizedTest
+	@EnumSource(value = ResourceEncodingEnum.class, names = {"JSONC", "JZSTD", "JLZ4"})
+	void testRoundTrip(ResourceEncodingEnum theEncoding) {
+		ResourceCompressionCodecRegistry registry = new ResourceCompressionCodecRegistry();
+		String encoded = encode(createObservation(1));
+
+		byte[] compressed = registry.compress(theEncoding, "Observation", encoded);
+		String decompressed = registry.decompress(theEncoding, compressed);
+
+		assertEquals(encoded, decompressed);
+		assertThat(compressed.length).isLessThan(encoded.length());
+		ResourceCompressionMetrics metrics = registry.getMetrics(theEncoding);
+		assertEquals(1, metrics.getCompressCount());
+		assertEquals(1, metrics.getDecompressCount());
+		assertEquals(encoded.getBytes(StandardCharsets.UTF_8).length, metrics.getUncompressedSize());
+		assertEquals(compressed.length, metrics.getCompressedSize());
+		assertThat(metrics.getCompressionRatio()).isBetween(0.0, 1.0);
+	}
+
+	@Test
+	void testRoundTripNonAscii() {
+		ResourceCompressionCodecRegistry registry = new ResourceCompressionCodecRegistry();
+		Patient patient = new Patient();
+		patient.addName().setFamily("Ñandú 中文 😀");
+		String encoded = encode(patient);
+
+		for (ResourceEncodingEnum next : List.of(ResourceEncodingEnum.JZSTD, ResourceEncodingEnum.JLZ4)) {
+			assertEquals(encoded, registry.decompress(next, registry.compress(next, "Patient", encoded)));
+			assertEquals(encoded.getBytes(StandardCharsets.UTF_8).length, registry.getMetrics(next).getUncompressedSize());
+		}
+	}
+
+	@Test
+	void testRegisterCodecRejectsUncompressedEncoding() {
+		ResourceCompressionCodecRegistry registry = new ResourceCompressionCodecRegistry();
+		IResourceCompressionCodec codec = new GZipResourceCompressionCodec() {
+			@Nonnull
+			@Override
+			public ResourceEncodingEnum getEncoding() {
+				return ResourceEncodingEnum.JSON;
+			}
+		};
+
+		assertThatThrownBy(() -> registry.registerCodec(codec))
+			.isInstanceOf(IllegalArgumentException.class)
+			.hasMessageContaining("JSON");
+	}
+
+	@Test
+	void testZstdWithDictionary() {
+		List<byte[]> samples = new ArrayList<>();
+		for (int i = 0; i < 500; i++) {
+			samples.add(encode(createObservation(i)).getBytes(StandardCharsets.UTF_8));
+		}
+		ZstdDictTrainer trainer = new ZstdDictTrainer(samples.stream().mapToInt(t -> t.length).sum(), 4096);
+		samples.forEach(trainer::addSample);
+		byte[] dictionaryContents = trainer.trainSamples();
+		ResourceCompressionDictionary dictionary = new ResourceCompressionDictionary(
+			Zstd.getDictIdFromDict(dictionaryContents), "Observation", dictionaryContents);
+		StubDictionarySvc dictionarySvc = new StubDictionarySvc(dictionary);
+
+		ZstdResourceCompressionCodec withDictionary = new ZstdResourceCompressionCodec(ZstdResourceCompressionCodec.DEFAULT_COMPRESSION_LEVEL, dictionarySvc);
+		ZstdResourceCompressionCodec withoutDictionary = new ZstdResourceCompressionCodec();
+		String encoded = encode(createObservation(1000));
+
+		byte[] compressedWithDictionary = withDictionary.compress("Observation", encoded);
+		byte[] compressedWithoutDictionary = withoutDictionary.compress("Observation", encoded);
+		ourLog.info("Uncompressed: {} - Zstd: {} - Zstd with dictionary: {}", encoded.length(), compressedWithoutDictionary.length, compressedWithDictionary.length);
+		assertThat(compressedWithDictionary.length).isLessThan(compressedWithoutDictionary.length);
+		assertEquals(dictionary.getDictionaryId(), Zstd.getDictIdFromFrame(compressedWithDictionary));
+
+		// Other resource types don't use the dictionary
+		assertEquals(0, Zstd.getDictIdFromFrame(withDictionary.compress("Patient", encoded)));
+
+		// Content compressed with or without a dictionary can always be read
+		assertEquals(encoded, withDictionary.decompress(compressedWithDictionary));
+		assertEquals(encoded, withDictionary.decompress(compressedWithoutDictionary));
+
+		// ...but not if the dictionary is unknown
+		assertThatThrownBy(() -> withoutDictionary.decompress(compressedWithDictionary))
+			.isInstanceOf(DataFormatException.class)
+			.hasMessageContaining(Msg.code(2580));
+	}
+
+	@ParameterizedTest
+	@EnumSource(value = ResourceEncodingEnum.class, names = {"JSONC", "JZSTD", "JLZ4"})
+	void testDecompressInvalidContent(ResourceEncodingEnum theEncoding) {
+		ResourceCompressionCodecRegistry registry = new ResourceCompressionCodecRegistry();
+		byte[] invalid = "this is not compressed".getBytes(StandardCharsets.UTF_8);
+
+		assertThatThrownBy(() -> registry.decompress(theEncoding, invalid))
+			.isInstanceOf(DataFormatException.class);
+	}
+
+	/**
+	 * Compares the codecs on small resources, which is the typical case for stored resources
+	 */
+	@Test
+	@Disabled
+	void testTimingsCodecs() {
+		int count = 20000;
+		List<String> resources = new ArrayList<>(count);
+		List<byte[]> samples = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			String encoded = encode(createObservation(i));
+			resources.add(encoded);
+			if (i < 1000) {
+				samples.add(encoded.getBytes(StandardCharsets.UTF_8));
+			}
+		}
+		ZstdDictTrainer trainer = new ZstdDictTrainer(samples.stream().mapToInt(t -> t.length).sum(), 32 * 1024);
+		samples.forEach(trainer::addSample);
+		byte[] dictionaryContents = trainer.trainSamples();
+		ResourceCompressionDictionary dictionary = new ResourceCompressionDictionary(
+			Zstd.getDictIdFromDict(dictionaryContents), "Observation", dictionaryContents);
+
+		ResourceCompressionCodecRegistry registry = new ResourceCompressionCodecRegistry();
+		ResourceCompressionCodecRegistry dictionaryRegistry = new ResourceCompressionCodecRegistry(new StubDictionarySvc(dictionary));
+
+		for (int round = 0; round < 3; round++) {
+			for (ResourceEncodingEnum next : List.of(ResourceEncodingEnum.JSONC, ResourceEncodingEnum.JZSTD, ResourceEncodingEnum.JLZ4)) {
+				timeCodec(registry, next, resources, next.name());
+			}
+			timeCodec(dictionaryRegistry, ResourceEncodingEnum.JZSTD, resources, "JZSTD with dictionary");
+		}
+	}
+
+	private static void timeCodec(ResourceCompressionCodecRegistry theRegistry, ResourceEncodingEnum theEncoding, List<String> theResources, String theName) {
+		theRegistry.getMetrics(theEncoding).reset();
+		List<byte[]> compressed = new ArrayList<>(theResources.size());
+		StopWatch sw = new StopWatch();
+		for (String next : theResources) {
+			compressed.add(theRegistry.compress(theEncoding, "Observation", next));
+		}
+		long compressMillis = sw.getMillis();
+		sw.restart();
+		for (byte[] next : compressed) {
+			theRegistry.decompress(theEncoding, next);
+		}
+		ourLog.info("{}: compress {}ms - decompress {}ms - {}", theName, compressMillis, sw.getMillis(), theRegistry.getMetrics(theEncoding));
+	}
+
+	private static String encode(org.hl7.fhir.r4.model.Resource theResource) {
+		IParser parser = ourCtx.newJsonParser();
+		return parser.encodeResourceToString(theResource);
+	}
+
+	private static Observation createObservation(int theIndex) {
+		Observation obs = new Observation();
+		obs.setStatus(Observation.ObservationStatus.FINAL);
+		obs.getCode().addCoding().setSystem("http://loinc.org").setCode("789-8").setDisplay("Erythrocytes [#/volume] in Blood by Automated count");
+		obs.getSubject().setReference("Patient/" + theIndex);
+		obs.addIdentifier().setSystem("http://acme.org/observations").setValue("obs-" + theIndex);
+		obs.setValue(new Quantity().setSystem("http://unitsofmeasure.org").setCode("10*12/L").setUnit("10*12/L").setValue(4 + (theIndex % 100) / 100.0));
+		return obs;
+	}
+
+	private static class StubDictionarySvc implements IResourceCompressionDictionarySvc {
+		private final ResourceCompressionDictionary myDictionary;
+
+		private StubDictionarySvc(ResourceCompressionDictionary theDictionary) {
+			myDictionary = theDictionary;
+		}
+
+		@Nullable
+		@Override
+		public ResourceCompressionDictionary getActiveDictionary(@Nonnull String theResourceType) {
+			return theResourceType.equals(myDictionary.getResourceType()) ? myDictionary : null;
+		}
+
+		@Nullable
+		@Override
+		public ResourceCompressionDictionary getDictionary(long theDictionaryId) {
+			return theDictionaryId == myDictionary.getDictionaryId() ? myDictionary : null;
+		}
+
+		@Nonnull
+		@Override
+		public ResourceCompressionDictionary trainDictionary(@Nonnull String theResourceType, int theMaxSamples) {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package ca.uhn.fhir.jpa.search.builder;
+
+import ca.uhn.fhir.jpa.model.dao.JpaPid;
+import ca.uhn.fhir.util.StopWatch;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JpaPidSetTest {
+	private static final Logger ourLog = LoggerFactory.getLogger(JpaPidSetTest.class);
+
+	@Test
+	public void testVersionedPidsAreDistinctFromUnversioned() {
+		JpaPidSet set = new JpaPidSet(List.of(JpaPid.fromId(1L), JpaPid.fromIdAndVersion(1L, 2L)));
+
+		assertTrue(set.contains(JpaPid.fromId(1L)));
+		assertTrue(set.contains(JpaPid.fromIdAndVersion(1L, 2L)));
+		assertFalse(set.contains(JpaPid.fromIdAndVersion(1L, 3L)));
+		assertFalse(set.add(1L));
+		assertFalse(set.add(JpaPid.fromIdAndResourceType(1L, "Patient")));
+		assertTrue(set.add(JpaPid.fromIdAndVersion(1L, 3L)));
+		assertTrue(set.add(2L));
+
+		assertEquals(4, set.size());
+		assertThat(set.toIdList()).containsExactlyInAnyOrder(1L, 1L, 1L, 2L);
+		assertThat(set.toJpaPidList()).containsExactlyInAnyOrder(
+			JpaPid.fromId(1L), JpaPid.fromId(2L), JpaPid.fromIdAndVersion(1L, 2L), JpaPid.fromIdAndVersion(1L, 3L));
+	}
+
+	@Test
+	public void testEmpty() {
+		JpaPidSet set = new JpaPidSet();
+		assertTrue(set.isEmpty());
+		assertFalse(set.contains(JpaPid.fromId(1L)));
+		assertFalse(set.contains(JpaPid.fromIdAndVersion(1L, 1L)));
+		assertThat(set.toJpaPidList()).isEmpty();
+	}
+
+	/**
+	 * Compares the heap allocated while deduplicating the PIDs of a large
+	 * <code>$everything</code> result, where every row fetched from the database is
+	 * checked against the set of PIDs already returned.
+	 */
+	@Test
+	@Disabled
+	public void testAllocationsForMillionPids() {
+		int count = 1_000_000;
+		com.sun.management.ThreadMXBean threadBean =
+			(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+
+		for (int round = 0; round < 3; round++) {
+			long before = threadBean.getThreadAllocatedBytes(threadId);
+			StopWatch sw = new StopWatch();
+			Set<JpaPid> hashSet = new HashSet<>();
+			for (long i = 0; i < count * 2L; i++) {
+				Long nextLong = i % count;
+				JpaPid next = JpaPid.fromId(nextLong);
+				hashSet.add(next);
+			}
+			long hashSetBytes = threadBean.getThreadAllocatedBytes(threadId) - before;
+			ourLog.info("HashSet<JpaPid>: {} PIDs, {} MB allocated in {}", hashSet.size(), hashSetBytes / (1024 * 1024), sw);
+
+			before = threadBean.getThreadAllocatedBytes(threadId);
+			sw = new StopWatch();
+			JpaPidSet pidSet = new JpaPidSet();
+			for (long i = 0; i < count * 2L; i++) {
+				Long nextLong = i % count;
+				if (pidSet.add(nextLong.longValue())) {
+					JpaPid.fromId(nextLong);
+				}
+			}
+			long pidSetBytes = threadBean.getThreadAllocatedBytes(threadId) - before;
+			ourLog.info("JpaPidSet: {} PIDs, {} MB allocated in {}", pidSet.size(), pidSetBytes / (1024 * 1024), sw);
+
+			assertEquals(hashSet.size(), pidSet.size());
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package ca.uhn.fhir.jpa.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LongHashSetTest {
+
+	@Test
+	public void testAddAndContains() {
+		LongHashSet set = new LongHashSet();
+		assertTrue(set.isEmpty());
+
+		assertTrue(set.add(5L));
+		assertTrue(set.add(-3L));
+		assertFalse(set.add(5L));
+
+		assertEquals(2, set.size());
+		assertTrue(set.contains(5L));
+		assertTrue(set.contains(-3L));
+		assertFalse(set.contains(6L));
+	}
+
+	@Test
+	public void testZeroIsTrackedSeparately() {
+		LongHashSet set = new LongHashSet();
+		assertFalse(set.contains(0L));
+
+		assertTrue(set.add(0L));
+		assertFalse(set.add(0L));
+		set.add(1L);
+
+		assertTrue(set.contains(0L));
+		assertEquals(2, set.size());
+		assertThat(set.toArray()).containsExactlyInAnyOrder(0L, 1L);
+
+		set.clear();
+		assertTrue(set.isEmpty());
+		assertFalse(set.contains(0L));
+		assertFalse(set.contains(1L));
+	}
+
+	@Test
+	public void testGrowsAndMatchesHashSet() {
+		LongHashSet set = new LongHashSet(2);
+		Set<Long> expected = new HashSet<>();
+		Random random = new Random(123);
+
+		for (int i = 0; i < 50_000; i++) {
+			// Mix sequential values (like PIDs) with random ones to exercise collisions
+			long next = i % 2 == 0 ? i : random.nextInt(100_000);
+			assertEquals(expected.add(next), set.add(next));
+		}
+
+		assertEquals(expected.size(), set.size());
+		for (long i = -10; i < 100_010; i++) {
+			assertEquals(expected.contains(i), set.contains(i));
+		}
+
+		Set<Long> iterated = new HashSet<>();
+		set.forEach(iterated::add);
+		assertEquals(expected, iterated);
+		assertEquals(expected, Arrays.stream(set.toArray()).boxed().collect(Collectors.toSet()));
+	}
+}
@@ -19,6 +19,9 @@
  */
 package ca.uhn.fhir.jpa.model.entity;
 
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import jakarta.persistence.MappedSuperclass;
 import org.apache.commons.lang3.ObjectUtils;
 
@@ -27,6 +30,8 @@ import java.io.Serializable;
 @MappedSuperclass
 public abstract class BaseResourceIndex extends BasePartitionable implements Serializable {
 
+	private static final HashFunction EQUALITY_HASH_FUNCTION = Hashing.murmur3_128(0);
+
 	public abstract Long getId();
 
 	public abstract void setId(Long theId);
@@ -55,6 +60,15 @@ public abstract class BaseResourceIndex extends BasePartitionable implements Ser
 	@Override
 	public abstract boolean equals(Object obj);
 
+	/**
+	 * Subclasses must implement this to return a 64-bit hash of the same values that are
+	 * compared by {@link #equals(Object)}, so that equal index rows always have the same
+	 * hash. This is used to fingerprint all of the index rows for a resource.
+	 *
+	 * @since 7.6.0
+	 */
+	public abstract long getEqualityHash();
+
 	public abstract <T extends BaseResourceIndex> void copyMutableValuesFrom(T theSource);
 
 	/**
@@ -66,4 +80,18 @@ public abstract class BaseResourceIndex extends BasePartitionable implements Ser
 	public void setPlaceholderHashesIfMissing() {
 		// nothing by default
 	}
+
+	protected static long hashEqualityValues(Object... theValues) {
+		Hasher hasher = EQUALITY_HASH_FUNCTION.newHasher();
+		for (Object next : theValues) {
+			if (next == null) {
+				hasher.putByte((byte) 0);
+			} else {
+				hasher.putByte((byte) 1);
+				hasher.putUnencodedChars(next.toString());
+			}
+			hasher.putByte((byte) '|');
+		}
+		return hasher.hash().asLong();
+	}
 }
@@ -49,9 +49,59 @@ public enum ResourceEncodingEnum {
 	 * Externally stored resource - Resource text is a reference to an external storage location,
 	 * which will be stored in {@link ResourceHistoryTable#getResourceTextVc()}
 	 */
-	ESR;
+	ESR,
+
+	/**
+	 * CBOR - The FHIR JSON structure in a binary encoding, which is always stored in
+	 * {@link ResourceHistoryTable#getResource()} regardless of the database platform.
+	 * Stored resources are larger than with {@link #JSONC}, but do not need to be
+	 * decompressed and decoded into text before they are parsed.
+	 *
+	 * @since 7.6.0
+	 */
+	CBOR,
+
+	/**
+	 * Json compressed using Zstandard, optionally using a dictionary trained for the resource type.
+	 * Unlike {@link #JSONC}, resources using this encoding are always stored compressed in
+	 * {@link ResourceHistoryTable#getResource()} regardless of the database platform.
+	 *
+	 * @since 7.6.0
+	 */
+	JZSTD,
+
+	/**
+	 * Json compressed using LZ4. Unlike {@link #JSONC}, resources using this encoding are always
+	 * stored compressed in {@link ResourceHistoryTable#getResource()} regardless of the database platform.
+	 *
+	 * @since 7.6.0
+	 */
+	JLZ4;
 
 	public IParser newParser(FhirContext theContext) {
+		if (this == CBOR) {
+			return theContext.newCborParser();
+		}
 		return theContext.newJsonParser();
 	}
+
+	/**
+	 * Returns <code>true</code> if resources stored using this encoding are binary, meaning that
+	 * they are never stored as text
+	 *
+	 * @since 7.6.0
+	 */
+	public boolean isBinary() {
+		return this == CBOR;
+	}
+
+	/**
+	 * Returns <code>true</code> if resources stored using this encoding are JSON text which
+	 * has been compressed
+	 *
+	 * @since 7.6.0
+	 */
+	public boolean isCompressed() {
+		return this == JSONC || this == JZSTD || this == JLZ4;
+	}
 }
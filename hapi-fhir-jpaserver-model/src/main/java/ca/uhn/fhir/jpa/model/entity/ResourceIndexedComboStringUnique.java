@@ -178,6 +178,11 @@ public class ResourceIndexedComboStringUnique extends BaseResourceIndexedCombo
 		return b.isEquals();
 	}
 
+	@Override
+	public long getEqualityHash() {
+		return hashEqualityValues(myHashComplete, myHashComplete2);
+	}
+
 	@Override
 	public <T extends BaseResourceIndex> void copyMutableValuesFrom(T theSource) {
 		ResourceIndexedComboStringUnique source = (ResourceIndexedComboStringUnique) theSource;
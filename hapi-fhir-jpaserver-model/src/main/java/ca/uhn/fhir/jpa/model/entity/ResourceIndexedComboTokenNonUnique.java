@@ -119,6 +119,12 @@ public class ResourceIndexedComboTokenNonUnique extends BaseResourceIndexedCombo
 		return b.isEquals();
 	}
 
+	@Override
+	public long getEqualityHash() {
+		calculateHashes();
+		return hashEqualityValues(getHashComplete());
+	}
+
 	@Override
 	public <T extends BaseResourceIndex> void copyMutableValuesFrom(T theSource) {
 		ResourceIndexedComboTokenNonUnique source = (ResourceIndexedComboTokenNonUnique) theSource;
@@ -135,6 +135,11 @@ public class ResourceIndexedSearchParamCoords extends BaseResourceIndexedSearchP
 		return b.isEquals();
 	}
 
+	@Override
+	public long getEqualityHash() {
+		return hashEqualityValues(getHashIdentity(), getLatitude(), getLongitude(), isMissing());
+	}
+
 	@Override
 	public <T extends BaseResourceIndex> void copyMutableValuesFrom(T theSource) {
 		super.copyMutableValuesFrom(theSource);
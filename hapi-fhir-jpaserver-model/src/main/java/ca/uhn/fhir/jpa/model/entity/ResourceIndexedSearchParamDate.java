@@ -268,6 +268,17 @@ public class ResourceIndexedSearchParamDate extends BaseResourceIndexedSearchPar
 		return b.isEquals();
 	}
 
+	@Override
+	public long getEqualityHash() {
+		return hashEqualityValues(
+				getHashIdentity(),
+				getTimeFromDate(getValueHigh()),
+				getTimeFromDate(getValueLow()),
+				getValueLowDateOrdinal(),
+				getValueHighDateOrdinal(),
+				isMissing());
+	}
+
 	@Override
 	public Long getId() {
 		return myId;
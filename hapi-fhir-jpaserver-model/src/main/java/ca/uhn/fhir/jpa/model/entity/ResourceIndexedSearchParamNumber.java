@@ -137,6 +137,11 @@ public class ResourceIndexedSearchParamNumber extends BaseResourceIndexedSearchP
 		return b.isEquals();
 	}
 
+	@Override
+	public long getEqualityHash() {
+		return hashEqualityValues(getHashIdentity(), normalizeForEqualityComparison(getValue()), isMissing());
+	}
+
 	private Double normalizeForEqualityComparison(BigDecimal theValue) {
 		if (theValue == null) {
 			return null;
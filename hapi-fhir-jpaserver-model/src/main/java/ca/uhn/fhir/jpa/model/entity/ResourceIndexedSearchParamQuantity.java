@@ -185,6 +185,12 @@ public class ResourceIndexedSearchParamQuantity extends BaseResourceIndexedSearc
 		return b.isEquals();
 	}
 
+	@Override
+	public long getEqualityHash() {
+		return hashEqualityValues(
+				getHashIdentity(), getHashIdentityAndUnits(), getHashIdentitySystemAndUnits(), isMissing(), getValue());
+	}
+
 	@Override
 	public int hashCode() {
 		HashCodeBuilder b = new HashCodeBuilder();
@@ -201,6 +201,12 @@ public class ResourceIndexedSearchParamQuantityNormalized extends BaseResourceIn
 		return b.isEquals();
 	}
 
+	@Override
+	public long getEqualityHash() {
+		return hashEqualityValues(
+				getHashIdentity(), getHashIdentityAndUnits(), getHashIdentitySystemAndUnits(), isMissing(), getValue());
+	}
+
 	@Override
 	public int hashCode() {
 		HashCodeBuilder b = new HashCodeBuilder();
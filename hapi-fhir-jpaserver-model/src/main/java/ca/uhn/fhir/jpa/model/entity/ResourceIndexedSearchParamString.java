@@ -188,6 +188,17 @@ public class ResourceIndexedSearchParamString extends BaseResourceIndexedSearchP
 		return b.isEquals();
 	}
 
+	@Override
+	public long getEqualityHash() {
+		return hashEqualityValues(
+				getValueExact(),
+				getHashIdentity(),
+				getHashExact(),
+				getHashNormalizedPrefix(),
+				getValueNormalized(),
+				isMissing());
+	}
+
 	public Long getHashExact() {
 		return myHashExact;
 	}
@@ -224,6 +224,12 @@ public class ResourceIndexedSearchParamToken extends BaseResourceIndexedSearchPa
 		return b.isEquals();
 	}
 
+	@Override
+	public long getEqualityHash() {
+		return hashEqualityValues(
+				getHashIdentity(), getHashSystem(), getHashValue(), getHashSystemAndValue(), isMissing());
+	}
+
 	public Long getHashSystem() {
 		return myHashSystem;
 	}
@@ -164,6 +164,11 @@ public class ResourceIndexedSearchParamUri extends BaseResourceIndexedSearchPara
 		return b.isEquals();
 	}
 
+	@Override
+	public long getEqualityHash() {
+		return hashEqualityValues(getUri(), getHashUri(), getHashIdentity(), isMissing());
+	}
+
 	public Long getHashUri() {
 		return myHashUri;
 	}
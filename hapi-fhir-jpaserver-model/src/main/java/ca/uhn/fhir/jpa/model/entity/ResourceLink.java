@@ -184,6 +184,14 @@ public class ResourceLink extends BaseResourceIndex {
 		return b.isEquals();
 	}
 
+	@Override
+	public long getEqualityHash() {
+		// Mirrors equals(), which only falls back to the target resource id when there is no target pid
+		Object target = getTargetResourcePid() != null ? getTargetResourcePid() : getTargetResourceId();
+		return hashEqualityValues(
+				mySourcePath, myTargetResourceUrl, myTargetResourceType, myTargetResourceVersion, target);
+	}
+
 	@Override
 	public <T extends BaseResourceIndex> void copyMutableValuesFrom(T theSource) {
 		ResourceLink source = (ResourceLink) theSource;
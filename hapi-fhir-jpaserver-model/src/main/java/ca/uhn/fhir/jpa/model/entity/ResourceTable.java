@@ -105,6 +105,7 @@ public class ResourceTable extends BaseHasResource implements Serializable, IBas
 	private static final long serialVersionUID = 1L;
 	public static final int MAX_FORCED_ID_LENGTH = 100;
 	public static final String IDX_RES_TYPE_FHIR_ID = "IDX_RES_TYPE_FHIR_ID";
+	public static final int MAX_SEARCH_INDEX_FINGERPRINT_LENGTH = 200;
 
 	/**
 	 * Holds the narrative text only - Used for Fulltext searching but not directly stored in the DB
@@ -373,6 +374,17 @@ public class ResourceTable extends BaseHasResource implements Serializable, IBas
 	@Column(name = "SEARCH_URL_PRESENT", nullable = true)
 	private Boolean mySearchUrlPresent = false;
 
+	/**
+	 * A compact fingerprint of the search index rows for this resource, which
+	 * is used to skip loading the index rows when they have not changed. This
+	 * is only populated when the search index fingerprint is enabled.
+	 *
+	 * @since 7.6.0
+	 */
+	@OptimisticLock(excluded = true)
+	@Column(name = "SP_IDX_FINGERPRINT", length = MAX_SEARCH_INDEX_FINGERPRINT_LENGTH, nullable = true)
+	private String mySearchIndexFingerprint;
+
 	@Version
 	@Column(name = "RES_VER", nullable = false)
 	private long myVersion;
@@ -829,6 +841,20 @@ public class ResourceTable extends BaseHasResource implements Serializable, IBas
 		mySearchUrlPresent = theSearchUrlPresent;
 	}
 
+	/**
+	 * @since 7.6.0
+	 */
+	public String getSearchIndexFingerprint() {
+		return mySearchIndexFingerprint;
+	}
+
+	/**
+	 * @since 7.6.0
+	 */
+	public void setSearchIndexFingerprint(String theSearchIndexFingerprint) {
+		mySearchIndexFingerprint = theSearchIndexFingerprint;
+	}
+
 	/**
 	 * This method creates a new history entity, or might reuse the current one if we've
 	 * already created one in the current transaction. This is because we can only increment
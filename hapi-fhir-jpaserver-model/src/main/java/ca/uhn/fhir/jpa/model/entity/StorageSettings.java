@@ -95,6 +95,11 @@ public class StorageSettings {
 	private boolean myAutoCreatePlaceholderReferenceTargets;
 	private Integer myBundleBatchPoolSize = DEFAULT_BUNDLE_BATCH_POOL_SIZE;
 	private Integer myBundleBatchMaxPoolSize = DEFAULT_BUNDLE_BATCH_MAX_POOL_SIZE;
+	/**
+	 * @since 7.6.0
+	 */
+	private int myTransactionIndexingPoolSize = 1;
+
 	private boolean myMassIngestionMode;
 	private Integer myMaximumTransactionBundleSize = DEFAULT_MAXIMUM_TRANSACTION_BUNDLE_SIZE;
 	private boolean myNormalizeTerminologyForBulkExportJobs = false;
@@ -239,6 +244,41 @@ public class StorageSettings {
 		this.myBundleBatchMaxPoolSize = theBundleBatchMaxPoolSize;
 	}
 
+	/**
+	 * If this is set to a value greater than 1, the search index values of independent entries in a
+	 * FHIR transaction bundle are extracted in parallel using a thread pool of this size, before the
+	 * entries are written to the database one at a time as usual. Entries are independent unless
+	 * they contain references which are auto-versioned or which use an inline conditional (match URL)
+	 * reference, since these can only be indexed once the entries they depend on have been written.
+	 * All database writes still happen in the single database transaction of the bundle.
+	 * <p>
+	 * The default is 1, meaning that all entries are indexed on the request thread.
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public int getTransactionIndexingPoolSize() {
+		return myTransactionIndexingPoolSize;
+	}
+
+	/**
+	 * If this is set to a value greater than 1, the search index values of independent entries in a
+	 * FHIR transaction bundle are extracted in parallel using a thread pool of this size, before the
+	 * entries are written to the database one at a time as usual. Entries are independent unless
+	 * they contain references which are auto-versioned or which use an inline conditional (match URL)
+	 * reference, since these can only be indexed once the entries they depend on have been written.
+	 * All database writes still happen in the single database transaction of the bundle.
+	 * <p>
+	 * The default is 1, meaning that all entries are indexed on the request thread.
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public void setTransactionIndexingPoolSize(int theTransactionIndexingPoolSize) {
+		Validate.isTrue(theTransactionIndexingPoolSize >= 1, "Transaction indexing pool size must be at least 1");
+		myTransactionIndexingPoolSize = theTransactionIndexingPoolSize;
+	}
+
 	/**
 	 * If set to {@link IndexEnabledEnum#DISABLED} (default is {@link IndexEnabledEnum#DISABLED})
 	 * the server will not create search indexes for search parameters with no values in resources.
@@ -71,6 +71,7 @@ public class SearchParameterMap implements Serializable {
 	private final HashMap<String, List<List<IQueryParameterType>>> mySearchParameterMap = new LinkedHashMap<>();
 	private Integer myCount;
 	private Integer myOffset;
+	private String myKeyset;
 	private EverythingModeEnum myEverythingMode = null;
 	private Set<Include> myIncludes;
 	private DateRangeParam myLastUpdated;
@@ -122,6 +123,7 @@ public class SearchParameterMap implements Serializable {
 		map.setNearDistanceParam(getNearDistanceParam());
 		map.setLoadSynchronousUpTo(getLoadSynchronousUpTo());
 		map.setOffset(getOffset());
+		map.setKeyset(getKeyset());
 		map.setSearchContainedMode(getSearchContainedMode());
 
 		for (Map.Entry<String, List<List<IQueryParameterType>>> entry : mySearchParameterMap.entrySet()) {
@@ -277,6 +279,27 @@ public class SearchParameterMap implements Serializable {
 		myOffset = theOffset;
 	}
 
+	/**
+	 * For an {@link #isOffsetQuery() offset query} using keyset paging, returns the opaque value
+	 * (supplied by the server in the <code>_keyset</code> parameter of the previous page's
+	 * <code>next</code> link) which identifies the last result in the previous page.
+	 *
+	 * @since 7.6.0
+	 */
+	public String getKeyset() {
+		return myKeyset;
+	}
+
+	/**
+	 * For an {@link #isOffsetQuery() offset query} using keyset paging, sets the opaque value
+	 * which identifies the last result in the previous page.
+	 *
+	 * @since 7.6.0
+	 */
+	public void setKeyset(String theKeyset) {
+		myKeyset = theKeyset;
+	}
+
 	public EverythingModeEnum getEverythingMode() {
 		return myEverythingMode;
 	}
@@ -528,6 +551,13 @@ public class SearchParameterMap implements Serializable {
 			b.append(getOffset());
 		}
 
+		if (isNotBlank(getKeyset())) {
+			addUrlParamSeparator(b);
+			b.append(Constants.PARAM_KEYSET);
+			b.append('=');
+			b.append(UrlUtil.escapeUrlParam(getKeyset()));
+		}
+
 		// Summary mode (_summary)
 		if (getSummaryMode() != null) {
 			addUrlParamSeparator(b);
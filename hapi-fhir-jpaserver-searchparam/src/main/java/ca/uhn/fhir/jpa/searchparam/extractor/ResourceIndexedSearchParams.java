@@ -48,6 +48,7 @@ import ca.uhn.fhir.rest.param.QuantityParam;
 import ca.uhn.fhir.rest.param.ReferenceParam;
 import ca.uhn.fhir.rest.server.util.ResourceSearchParams;
 import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
 import org.apache.commons.lang3.StringUtils;
 
 import java.util.ArrayList;
@@ -78,6 +79,7 @@ public final class ResourceIndexedSearchParams {
 	public final Collection<SearchParamPresentEntity> mySearchParamPresentEntities;
 	public final Collection<ResourceIndexedSearchParamComposite> myCompositeParams;
 	public final Set<String> myPopulatedResourceLinkParameters = new HashSet<>();
+	private String myDeferredFingerprint;
 
 	/**
 	 * TODO: Remove this - Currently used by CDR though
@@ -143,6 +145,18 @@ public final class ResourceIndexedSearchParams {
 		}
 	}
 
+	/**
+	 * If this instance was created using {@link #withDeferredLists(String)}, returns the
+	 * fingerprint of the existing indexes that it stands in for. Otherwise returns
+	 * <code>null</code>.
+	 *
+	 * @since 7.6.0
+	 */
+	@Nullable
+	public String getDeferredFingerprint() {
+		return myDeferredFingerprint;
+	}
+
 	public Collection<ResourceLink> getResourceLinks() {
 		return myLinks;
 	}
@@ -654,6 +668,20 @@ public final class ResourceIndexedSearchParams {
 		return new ResourceIndexedSearchParams(theResourceTable, Mode.LIST);
 	}
 
+	/**
+	 * Create a new instance with empty lists which stands in for the existing indexes
+	 * of a resource before they have been loaded. The existing indexes are only known
+	 * through the given fingerprint, and the caller is responsible for populating the
+	 * lists it needs before comparing them with new indexes.
+	 *
+	 * @since 7.6.0
+	 */
+	public static ResourceIndexedSearchParams withDeferredLists(String theFingerprint) {
+		ResourceIndexedSearchParams retVal = new ResourceIndexedSearchParams(Mode.LIST);
+		retVal.myDeferredFingerprint = theFingerprint;
+		return retVal;
+	}
+
 	private enum Mode {
 		LIST {
 			@Override
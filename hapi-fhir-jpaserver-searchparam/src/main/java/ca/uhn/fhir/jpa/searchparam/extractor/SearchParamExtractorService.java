@@ -66,6 +66,7 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -79,6 +80,8 @@ import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
 public class SearchParamExtractorService {
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(SearchParamExtractorService.class);
+	private static final String XACT_USERDATA_KEY_PRE_EXTRACTED_PARAMS =
+			SearchParamExtractorService.class.getName() + "_PRE_EXTRACTED_PARAMS";
 
 	@Autowired
 	private ISearchParamExtractor mySearchParamExtractor;
@@ -125,9 +128,15 @@ public class SearchParamExtractorService {
 			boolean theFailOnInvalidReference,
 			@Nonnull ISearchParamExtractor.ISearchParamFilter theSearchParamFilter) {
 		// All search parameter types except Reference
-		ResourceIndexedSearchParams normalParams = ResourceIndexedSearchParams.withSets();
-		getExtractionUtil()
-				.extractSearchIndexParameters(theRequestDetails, normalParams, theResource, theSearchParamFilter);
+		ResourceIndexedSearchParams normalParams = null;
+		if (theSearchParamFilter == ISearchParamExtractor.ALL_PARAMS) {
+			normalParams = takePreExtractedSearchIndexParameters(theTransactionDetails, theResource);
+		}
+		if (normalParams == null) {
+			normalParams = ResourceIndexedSearchParams.withSets();
+			getExtractionUtil()
+					.extractSearchIndexParameters(theRequestDetails, normalParams, theResource, theSearchParamFilter);
+		}
 		mergeParams(normalParams, theNewParams);
 
 		boolean indexOnContainedResources = myStorageSettings.isIndexOnContainedResources();
@@ -211,6 +220,58 @@ public class SearchParamExtractorService {
 		theNewParams.setUpdatedTime(theTransactionDetails.getTransactionDate());
 	}
 
+	/**
+	 * Extracts the search index parameters of all types except Reference for the given resource. These don't
+	 * depend on the database or on the entity being written, so unlike
+	 * {@link #extractFromResource(RequestPartitionId, RequestDetails, ResourceIndexedSearchParams, ResourceIndexedSearchParams, ResourceTable, IBaseResource, TransactionDetails, boolean, ISearchParamExtractor.ISearchParamFilter) extractFromResource}
+	 * this method may be called from a thread other than the one which owns the database transaction, as long as
+	 * no other thread is modifying the resource at the same time.
+	 * <p>
+	 * The result can be passed to {@link #addPreExtractedSearchIndexParameters(TransactionDetails, IBaseResource, ResourceIndexedSearchParams)}
+	 * so that it is used instead of extracting the same parameters again when the resource is indexed.
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public ResourceIndexedSearchParams preExtractSearchIndexParameters(
+			RequestDetails theRequestDetails, IBaseResource theResource) {
+		ResourceIndexedSearchParams retVal = ResourceIndexedSearchParams.withSets();
+		getExtractionUtil()
+				.extractSearchIndexParameters(theRequestDetails, retVal, theResource, ISearchParamExtractor.ALL_PARAMS);
+		return retVal;
+	}
+
+	/**
+	 * Stores parameters returned by {@link #preExtractSearchIndexParameters(RequestDetails, IBaseResource)} in the
+	 * transaction details, where they are used (once) the next time that the given resource instance is indexed within
+	 * the same transaction. The caller is responsible for making sure that the resource isn't modified in between in a
+	 * way that would change these parameters.
+	 *
+	 * @since 7.6.0
+	 */
+	public static void addPreExtractedSearchIndexParameters(
+			TransactionDetails theTransactionDetails,
+			IBaseResource theResource,
+			ResourceIndexedSearchParams theParams) {
+		IdentityHashMap<IBaseResource, ResourceIndexedSearchParams> preExtractedParams =
+				theTransactionDetails.getOrCreateUserData(XACT_USERDATA_KEY_PRE_EXTRACTED_PARAMS, IdentityHashMap::new);
+		preExtractedParams.put(theResource, theParams);
+	}
+
+	@Nullable
+	private static ResourceIndexedSearchParams takePreExtractedSearchIndexParameters(
+			@Nullable TransactionDetails theTransactionDetails, IBaseResource theResource) {
+		if (theTransactionDetails == null) {
+			return null;
+		}
+		IdentityHashMap<IBaseResource, ResourceIndexedSearchParams> preExtractedParams =
+				theTransactionDetails.getUserData(XACT_USERDATA_KEY_PRE_EXTRACTED_PARAMS);
+		if (preExtractedParams == null) {
+			return null;
+		}
+		return preExtractedParams.remove(theResource);
+	}
+
 	private SearchParamExtractionUtil getExtractionUtil() {
 		if (mySearchParamExtractionUtil == null) {
 			mySearchParamExtractionUtil = new SearchParamExtractionUtil(
@@ -0,0 +1,52 @@
+package ca.uhn.fhir.jpa.cache;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.dao.dstu2.BaseJpaDstu2Test;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.model.dstu2.resource.Patient;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
+import ca.uhn.fhir.rest.param.StringParam;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class SearchIndexSnapshotSvcDstu2Test extends BaseJpaDstu2Test {
+
+	@Autowired
+	private SearchIndexSnapshotSvc mySearchIndexSnapshotSvc;
+
+	@BeforeEach
+	public void beforeEach() {
+		myStorageSettings.setSearchIndexSnapshotResourceTypes(Set.of("Patient"));
+		mySearchIndexSnapshotSvc.invalidateAll();
+	}
+
+	@AfterEach
+	public void afterEach() {
+		myStorageSettings.setSearchIndexSnapshotResourceTypes(new JpaStorageSettings().getSearchIndexSnapshotResourceTypes());
+		mySearchIndexSnapshotSvc.invalidateAll();
+	}
+
+	@Test
+	public void testSearchFallsBackToDatabase() {
+		Patient patient = new Patient();
+		patient.addName().addFamily("Smith");
+		IIdType id = myPatientDao.create(patient, mySrd).getId().toUnqualifiedVersionless();
+
+		IBundleProvider outcome = myPatientDao.search(
+			SearchParameterMap.newSynchronous(Patient.SP_FAMILY, new StringParam("smith")), new SystemRequestDetails());
+
+		assertThat(toUnqualifiedVersionlessIdValues(outcome)).containsExactly(id.getValue());
+		assertEquals(0, mySearchIndexSnapshotSvc.getAnsweredCount());
+		assertEquals(1, mySearchIndexSnapshotSvc.getFallbackCount());
+		assertEquals(-1, mySearchIndexSnapshotSvc.getSnapshotSize("Patient"));
+	}
+}
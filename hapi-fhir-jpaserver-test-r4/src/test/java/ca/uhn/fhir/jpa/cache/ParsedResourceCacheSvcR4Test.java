@@ -0,0 +1,194 @@
+package ca.uhn.fhir.jpa.cache;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.test.BaseJpaR4Test;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.util.StopWatch;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.Meta;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Practitioner;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ParsedResourceCacheSvcR4Test extends BaseJpaR4Test {
+	private static final Logger ourLog = LoggerFactory.getLogger(ParsedResourceCacheSvcR4Test.class);
+
+	@Autowired
+	private ParsedResourceCacheSvc myParsedResourceCacheSvc;
+
+	@BeforeEach
+	public void beforeEach() {
+		myStorageSettings.setParsedResourceCacheResourceTypes(Set.of("Practitioner"));
+		myParsedResourceCacheSvc.invalidateAll();
+	}
+
+	@AfterEach
+	public void afterEach() {
+		myStorageSettings.setParsedResourceCacheResourceTypes(new JpaStorageSettings().getParsedResourceCacheResourceTypes());
+		myParsedResourceCacheSvc.unregisterListener();
+		myParsedResourceCacheSvc.invalidateAll();
+	}
+
+	@Test
+	public void testIncludedResourceIsParsedOnce() {
+		IIdType practitionerId = createPractitioner("Smith");
+		for (int i = 0; i < 5; i++) {
+			createObservation(withObservationCode("http://loinc.org", "789-8"), withReference("performer", practitionerId.toUnqualifiedVersionless()));
+		}
+
+		List<IBaseResource> resources = searchObservationsWithPerformer();
+		assertThat(resources).hasSize(6);
+		assertEquals(0, myParsedResourceCacheSvc.getHitCount());
+		assertEquals(1, myParsedResourceCacheSvc.getMissCount());
+
+		// Modifying a returned resource must not modify the cached copy
+		Practitioner practitioner = findPractitioner(resources);
+		practitioner.getNameFirstRep().setFamily("Jones");
+
+		resources = searchObservationsWithPerformer();
+		assertEquals(1, myParsedResourceCacheSvc.getHitCount());
+		assertEquals(1, myParsedResourceCacheSvc.getMissCount());
+		practitioner = findPractitioner(resources);
+		assertEquals("Smith", practitioner.getNameFirstRep().getFamily());
+		assertEquals(practitionerId.withVersion("1").getValue(), practitioner.getIdElement().toUnqualified().getValue());
+
+		// Reads use the cache too
+		assertEquals("Smith", myPractitionerDao.read(practitionerId, mySrd).getNameFirstRep().getFamily());
+		assertEquals(2, myParsedResourceCacheSvc.getHitCount());
+
+		// Only cached types are counted
+		assertEquals(1, myParsedResourceCacheSvc.getMissCount());
+	}
+
+	@Test
+	public void testNewVersionIsNotServedFromCache() {
+		IIdType practitionerId = createPractitioner("Smith");
+		assertEquals("Smith", myPractitionerDao.read(practitionerId, mySrd).getNameFirstRep().getFamily());
+
+		Practitioner practitioner = new Practitioner();
+		practitioner.setId(practitionerId.toUnqualifiedVersionless());
+		practitioner.addName().setFamily("Jones");
+		myPractitionerDao.update(practitioner, mySrd);
+
+		Practitioner read = myPractitionerDao.read(practitionerId.toUnqualifiedVersionless(), mySrd);
+		assertEquals("Jones", read.getNameFirstRep().getFamily());
+		assertEquals("2", read.getIdElement().getVersionIdPart());
+		assertEquals("Smith", myPractitionerDao.read(practitionerId.withVersion("1"), mySrd).getNameFirstRep().getFamily());
+	}
+
+	@Test
+	public void testMetadataIsNotCached() {
+		IIdType practitionerId = createPractitioner("Smith");
+		assertThat(myPractitionerDao.read(practitionerId, mySrd).getMeta().getTag()).isEmpty();
+
+		Meta meta = new Meta();
+		meta.addTag("http://foo", "bar", null);
+		myPractitionerDao.metaAddOperation(practitionerId.toUnqualifiedVersionless(), meta, mySrd);
+
+		Practitioner read = myPractitionerDao.read(practitionerId.toUnqualifiedVersionless(), mySrd);
+		assertEquals("Smith", read.getNameFirstRep().getFamily());
+		assertThat(read.getMeta().getTag()).hasSize(1);
+		assertThat(myParsedResourceCacheSvc.getHitCount()).isGreaterThan(0);
+	}
+
+	@Test
+	public void testChangeEventInvalidatesEntry() {
+		IIdType practitionerId = createPractitioner("Smith");
+		myPractitionerDao.read(practitionerId, mySrd);
+		assertEquals(1, myParsedResourceCacheSvc.getEstimatedSize());
+
+		myParsedResourceCacheSvc.handleChange(ResourceChangeEvent.fromCreatedUpdatedDeletedResourceIds(List.of(), List.of(practitionerId), List.of()));
+		assertEquals(0, myParsedResourceCacheSvc.getEstimatedSize());
+
+		myPractitionerDao.read(practitionerId, mySrd);
+		assertEquals(0, myParsedResourceCacheSvc.getHitCount());
+		assertEquals(2, myParsedResourceCacheSvc.getMissCount());
+	}
+
+	@Test
+	public void testTypesNotConfiguredAreNotCached() {
+		myStorageSettings.setParsedResourceCacheResourceTypes(Set.of());
+		IIdType practitionerId = createPractitioner("Smith");
+		myPractitionerDao.read(practitionerId, mySrd);
+		myPractitionerDao.read(practitionerId, mySrd);
+
+		assertEquals(0, myParsedResourceCacheSvc.getHitCount());
+		assertEquals(0, myParsedResourceCacheSvc.getMissCount());
+		assertEquals(0, myParsedResourceCacheSvc.getEstimatedSize());
+	}
+
+	/**
+	 * Compares loading pages where every result includes one of a small number of practitioners
+	 */
+	@Test
+	@Disabled
+	public void testTimingsIncludeHeavySearch() {
+		myStorageSettings.setParsedResourceCacheResourceTypes(Set.of("Practitioner"));
+		IIdType[] practitionerIds = new IIdType[10];
+		for (int i = 0; i < practitionerIds.length; i++) {
+			Practitioner practitioner = new Practitioner();
+			practitioner.addName().setFamily("Family" + i).addGiven("Given" + i);
+			practitioner.addIdentifier().setSystem("http://npi").setValue("NPI" + i);
+			practitioner.addQualification().getCode().addCoding().setSystem("http://qual").setCode("MD").setDisplay("Doctor of Medicine");
+			practitioner.addTelecom().setValue("555-555-555" + i);
+			practitioner.addAddress().addLine("123 Main St").setCity("Springfield").setState("IL").setPostalCode("62701");
+			practitionerIds[i] = myPractitionerDao.create(practitioner, mySrd).getId().toUnqualifiedVersionless();
+		}
+		for (int i = 0; i < 200; i++) {
+			Observation obs = new Observation();
+			obs.getCode().addCoding().setSystem("http://loinc.org").setCode("789-8");
+			for (IIdType next : practitionerIds) {
+				obs.addPerformer().setReferenceElement(next);
+			}
+			myObservationDao.create(obs, mySrd);
+		}
+
+		for (int round = 0; round < 3; round++) {
+			for (Set<String> types : List.of(Set.<String>of(), Set.of("Practitioner"))) {
+				myStorageSettings.setParsedResourceCacheResourceTypes(types);
+				myParsedResourceCacheSvc.invalidateAll();
+				StopWatch sw = new StopWatch();
+				for (int i = 0; i < 100; i++) {
+					searchObservationsWithPerformer();
+				}
+				ourLog.info("Cached types {}: 100 searches in {} - hits {} misses {}", types, sw, myParsedResourceCacheSvc.getHitCount(), myParsedResourceCacheSvc.getMissCount());
+			}
+		}
+	}
+
+	private IIdType createPractitioner(String theFamily) {
+		Practitioner practitioner = new Practitioner();
+		practitioner.addName().setFamily(theFamily);
+		return myPractitionerDao.create(practitioner, mySrd).getId().toUnqualified();
+	}
+
+	private List<IBaseResource> searchObservationsWithPerformer() {
+		SearchParameterMap map = SearchParameterMap.newSynchronous();
+		map.addInclude(Observation.INCLUDE_PERFORMER);
+		IBundleProvider outcome = myObservationDao.search(map, mySrd);
+		return outcome.getResources(0, 1000);
+	}
+
+	private static Practitioner findPractitioner(List<IBaseResource> theResources) {
+		return theResources
+			.stream()
+			.filter(t -> t instanceof Practitioner)
+			.map(t -> (Practitioner) t)
+			.findFirst()
+			.orElseThrow();
+	}
+}
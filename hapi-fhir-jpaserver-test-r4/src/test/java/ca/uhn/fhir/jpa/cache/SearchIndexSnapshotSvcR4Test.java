@@ -0,0 +1,121 @@
+package ca.uhn.fhir.jpa.cache;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.test.BaseJpaR4Test;
+import ca.uhn.fhir.rest.api.SortSpec;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
+import ca.uhn.fhir.rest.param.StringParam;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.Practitioner;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class SearchIndexSnapshotSvcR4Test extends BaseJpaR4Test {
+
+	@Autowired
+	private SearchIndexSnapshotSvc mySearchIndexSnapshotSvc;
+
+	@BeforeEach
+	public void beforeEach() {
+		myStorageSettings.setSearchIndexSnapshotResourceTypes(Set.of("Practitioner"));
+		mySearchIndexSnapshotSvc.invalidateAll();
+	}
+
+	@AfterEach
+	public void afterEach() {
+		myStorageSettings.setSearchIndexSnapshotResourceTypes(new JpaStorageSettings().getSearchIndexSnapshotResourceTypes());
+		mySearchIndexSnapshotSvc.invalidateAll();
+	}
+
+	@Test
+	public void testSearchIsAnsweredFromSnapshot() {
+		IIdType smith1 = createPractitioner("Smith");
+		createPractitioner("Jones");
+		IIdType smith2 = createPractitioner("Smith");
+		mySearchIndexSnapshotSvc.refreshSnapshot("Practitioner");
+		assertEquals(3, mySearchIndexSnapshotSvc.getSnapshotSize("Practitioner"));
+		assertThat(mySearchIndexSnapshotSvc.getMillisSinceLastRefresh("Practitioner")).isBetween(0L, 60000L);
+
+		myCaptureQueriesListener.clear();
+		IBundleProvider outcome = myPractitionerDao.search(SearchParameterMap.newSynchronous("family", new StringParam("smi")), new SystemRequestDetails());
+		assertThat(toUnqualifiedVersionlessIdValues(outcome)).containsExactly(smith1.getValue(), smith2.getValue());
+		assertEquals(2, outcome.size());
+		assertEquals(0, myCaptureQueriesListener.countSelectQueries());
+
+		// Returned resources are copies
+		Practitioner practitioner = (Practitioner) outcome.getResources(0, 1).get(0);
+		practitioner.getNameFirstRep().setFamily("Changed");
+		outcome = myPractitionerDao.search(SearchParameterMap.newSynchronous("family", new StringParam("smith")), new SystemRequestDetails());
+		assertEquals("Smith", ((Practitioner) outcome.getResources(0, 1).get(0)).getNameFirstRep().getFamily());
+		assertEquals(smith1.withVersion("1").getValue(), outcome.getResources(0, 1).get(0).getIdElement().toUnqualified().getValue());
+
+		// Paged searches are answered too as long as all results fit on the first page
+		myCaptureQueriesListener.clear();
+		SearchParameterMap map = new SearchParameterMap("family", new StringParam("jones"));
+		map.setCount(10);
+		assertThat(toUnqualifiedVersionlessIdValues(myPractitionerDao.search(map, new SystemRequestDetails()))).hasSize(1);
+		assertEquals(0, myCaptureQueriesListener.countSelectQueries());
+
+		assertEquals(3, mySearchIndexSnapshotSvc.getAnsweredCount());
+		assertEquals(0, mySearchIndexSnapshotSvc.getFallbackCount());
+	}
+
+	@Test
+	public void testLocalWritesAreVisibleToNextSearch() {
+		IIdType id = createPractitioner("Smith");
+		mySearchIndexSnapshotSvc.refreshSnapshot("Practitioner");
+		assertThat(searchForFamily("smith")).containsExactly(id.getValue());
+
+		Practitioner practitioner = new Practitioner();
+		practitioner.setId(id);
+		practitioner.addName().setFamily("Jones");
+		myPractitionerDao.update(practitioner, new SystemRequestDetails());
+		assertThat(searchForFamily("smith")).isEmpty();
+		assertThat(searchForFamily("jones")).containsExactly(id.getValue());
+
+		IIdType id2 = createPractitioner("Jones");
+		assertThat(searchForFamily("jones")).containsExactly(id.getValue(), id2.getValue());
+
+		myPractitionerDao.delete(id, new SystemRequestDetails());
+		assertThat(searchForFamily("jones")).containsExactly(id2.getValue());
+		assertEquals(1, mySearchIndexSnapshotSvc.getSnapshotSize("Practitioner"));
+		assertEquals(0, mySearchIndexSnapshotSvc.getFallbackCount());
+	}
+
+	@Test
+	public void testUnsupportedSearchUsesDatabase() {
+		IIdType id1 = createPractitioner("Smith");
+		IIdType id2 = createPractitioner("Jones");
+		mySearchIndexSnapshotSvc.refreshSnapshot("Practitioner");
+
+		myCaptureQueriesListener.clear();
+		SearchParameterMap map = SearchParameterMap.newSynchronous();
+		map.setSort(new SortSpec("family"));
+		assertThat(toUnqualifiedVersionlessIdValues(myPractitionerDao.search(map, new SystemRequestDetails()))).containsExactly(id2.getValue(), id1.getValue());
+		assertThat(myCaptureQueriesListener.countSelectQueries()).isGreaterThan(0);
+
+		assertEquals(0, mySearchIndexSnapshotSvc.getAnsweredCount());
+		assertEquals(1, mySearchIndexSnapshotSvc.getFallbackCount());
+	}
+
+	private List<String> searchForFamily(String theFamily) {
+		SearchParameterMap map = SearchParameterMap.newSynchronous("family", new StringParam(theFamily));
+		return toUnqualifiedVersionlessIdValues(myPractitionerDao.search(map, new SystemRequestDetails()));
+	}
+
+	private IIdType createPractitioner(String theFamily) {
+		Practitioner practitioner = new Practitioner();
+		practitioner.addName().setFamily(theFamily);
+		return myPractitionerDao.create(practitioner, new SystemRequestDetails()).getId().toUnqualifiedVersionless();
+	}
+}
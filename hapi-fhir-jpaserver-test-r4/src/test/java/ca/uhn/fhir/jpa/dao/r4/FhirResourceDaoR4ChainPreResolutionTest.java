@@ -0,0 +1,117 @@
+package ca.uhn.fhir.jpa.dao.r4;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.test.BaseJpaR4Test;
+import ca.uhn.fhir.util.StopWatch;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs a set of representative chained and <code>_has</code> searches with and without
+ * {@link JpaStorageSettings#getChainedSearchPreResolutionThreshold()}, and checks that the
+ * results are the same
+ */
+public class FhirResourceDaoR4ChainPreResolutionTest extends BaseJpaR4Test {
+
+	private static final Logger ourLog = LoggerFactory.getLogger(FhirResourceDaoR4ChainPreResolutionTest.class);
+
+	@BeforeEach
+	public void beforeCreateResources() {
+		IIdType acme = createOrganization(withId("acme"), withName("Acme"));
+		IIdType other = createOrganization(withId("other"), withName("Other"));
+		IIdType smith1 = createPatient(withId("smith1"), withFamily("Smith"), withOrganization(acme));
+		IIdType jones = createPatient(withId("jones"), withFamily("Jones"), withOrganization(acme));
+		IIdType smith2 = createPatient(withId("smith2"), withFamily("Smith"), withOrganization(other));
+		createObservation(withId("obs1"), withSubject(smith1), withObservationCode("http://loinc.org", "1234"));
+		createObservation(withId("obs2"), withSubject(jones), withObservationCode("http://loinc.org", "1234"));
+		createObservation(withId("obs3"), withSubject(smith2), withObservationCode("http://loinc.org", "5678"));
+	}
+
+	@AfterEach
+	public void after() {
+		myStorageSettings.setChainedSearchPreResolutionThreshold(new JpaStorageSettings().getChainedSearchPreResolutionThreshold());
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {
+		"Observation?subject:Patient.name=smith",
+		"Observation?subject.name=smith",
+		"Observation?subject:Patient.name=smith,jones",
+		"Observation?subject:Patient.name=nobody",
+		"Observation?subject:Patient.name=smith&code=http://loinc.org|1234",
+		"Observation?subject:Patient.organization:Organization.name=acme",
+		"Observation?subject:Patient.organization:Organization._id=other",
+		"Patient?_has:Observation:subject:code=http://loinc.org|1234",
+		"Patient?_has:Observation:subject:code=http://loinc.org|1234&organization.name=acme",
+		"Organization?_has:Patient:organization:_has:Observation:subject:code=http://loinc.org|5678",
+		"Observation?subject:Patient._has:Observation:subject:code=http://loinc.org|5678"
+	})
+	public void testPreResolvedChainMatchesJoinedChain(String theQueryUrl) {
+		myStorageSettings.setChainedSearchPreResolutionThreshold(0);
+		StopWatch sw = new StopWatch();
+		List<String> joined = myTestDaoSearch.searchForIds(theQueryUrl);
+		long joinedMillis = sw.getMillisAndRestart();
+
+		myStorageSettings.setChainedSearchPreResolutionThreshold(100);
+		List<String> preResolved = myTestDaoSearch.searchForIds(theQueryUrl);
+		long preResolvedMillis = sw.getMillis();
+
+		ourLog.info("{} - Joined: {}ms - Pre-resolved: {}ms", theQueryUrl, joinedMillis, preResolvedMillis);
+		assertThat(preResolved).containsExactlyInAnyOrderElementsOf(joined);
+	}
+
+	@Test
+	public void testChainIsMatchedByPid() {
+		myStorageSettings.setChainedSearchPreResolutionThreshold(100);
+
+		myCaptureQueriesListener.clear();
+		List<String> ids = myTestDaoSearch.searchForIds("Observation?subject:Patient.name=smith");
+		assertThat(ids).containsExactlyInAnyOrder("obs1", "obs3");
+
+		// One query resolves the patients, and the next one matches the observations linked to them
+		myCaptureQueriesListener.logSelectQueriesForCurrentThread();
+		List<String> sql = myCaptureQueriesListener.getSelectQueriesForCurrentThread().stream()
+				.map(t -> t.getSql(false, false))
+				.toList();
+		assertThat(sql.get(0)).contains("HFJ_SPIDX_STRING");
+		assertThat(sql.get(1)).contains("HFJ_RES_LINK").contains("TARGET_RESOURCE_ID IN").doesNotContain("HFJ_SPIDX_STRING");
+	}
+
+	@Test
+	public void testChainAboveThresholdIsJoined() {
+		myStorageSettings.setChainedSearchPreResolutionThreshold(1);
+
+		myCaptureQueriesListener.clear();
+		List<String> ids = myTestDaoSearch.searchForIds("Observation?subject:Patient.name=smith");
+		assertThat(ids).containsExactlyInAnyOrder("obs1", "obs3");
+
+		myCaptureQueriesListener.logSelectQueriesForCurrentThread();
+		List<String> sql = myCaptureQueriesListener.getSelectQueriesForCurrentThread().stream()
+				.map(t -> t.getSql(false, false))
+				.toList();
+		assertThat(sql.get(1)).contains("HFJ_RES_LINK").contains("HFJ_SPIDX_STRING");
+	}
+
+	@Test
+	public void testHasIsMatchedByPid() {
+		myStorageSettings.setChainedSearchPreResolutionThreshold(100);
+
+		myCaptureQueriesListener.clear();
+		List<String> ids = myTestDaoSearch.searchForIds("Patient?_has:Observation:subject:code=http://loinc.org|1234");
+		assertThat(ids).containsExactlyInAnyOrder("smith1", "jones");
+
+		myCaptureQueriesListener.logSelectQueriesForCurrentThread();
+		String sql = myCaptureQueriesListener.getSelectQueriesForCurrentThread().get(1).getSql(false, false);
+		assertThat(sql).contains("HFJ_RES_LINK").contains("SRC_RESOURCE_ID IN").doesNotContain("HFJ_SPIDX_TOKEN");
+	}
+}
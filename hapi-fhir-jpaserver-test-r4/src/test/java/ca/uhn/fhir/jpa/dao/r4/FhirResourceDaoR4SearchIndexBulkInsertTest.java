@@ -0,0 +1,233 @@
+package ca.uhn.fhir.jpa.dao.r4;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.dao.index.SearchIndexBulkInserter;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamString;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamToken;
+import ca.uhn.fhir.jpa.test.BaseJpaR4Test;
+import ca.uhn.fhir.jpa.util.SqlQuery;
+import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
+import ca.uhn.fhir.util.BundleBuilder;
+import ca.uhn.fhir.util.StopWatch;
+import org.apache.commons.lang3.StringUtils;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.IdType;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Reference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests for {@link JpaStorageSettings#getSearchIndexBulkInsertBatchSize()}
+ */
+public class FhirResourceDaoR4SearchIndexBulkInsertTest extends BaseJpaR4Test {
+
+	private static final Logger ourLog = LoggerFactory.getLogger(FhirResourceDaoR4SearchIndexBulkInsertTest.class);
+
+	@Autowired
+	private SearchIndexBulkInserter mySearchIndexBulkInserter;
+
+	@AfterEach
+	public void after() {
+		myStorageSettings.setSearchIndexBulkInsertBatchSize(new JpaStorageSettings().getSearchIndexBulkInsertBatchSize());
+		myStorageSettings.setIndexStorageOptimized(new JpaStorageSettings().isIndexStorageOptimized());
+	}
+
+	@Test
+	public void testTransaction_CreatesSameIndexRowsAsSession() {
+		int patientCount = 50;
+
+		// Warm up so that the timings below are comparable
+		myStorageSettings.setSearchIndexBulkInsertBatchSize(0);
+		mySystemDao.transaction(mySrd, createTransaction("warmup", patientCount));
+
+		long[] sessionCounts = countIndexRows();
+		StopWatch sw = new StopWatch();
+		mySystemDao.transaction(mySrd, createTransaction("session", patientCount));
+		long sessionMillis = sw.getMillisAndRestart();
+		long[] afterSession = countIndexRows();
+		long bulkInsertedBefore = mySearchIndexBulkInserter.getInsertedRowCount();
+
+		myStorageSettings.setSearchIndexBulkInsertBatchSize(100);
+		myCaptureQueriesListener.clear();
+		sw.restart();
+		mySystemDao.transaction(mySrd, createTransaction("bulk", patientCount));
+		long bulkMillis = sw.getMillis();
+		long[] afterBulk = countIndexRows();
+
+		// Rows of each index table are inserted in JDBC batches
+		List<SqlQuery> stringInserts = myCaptureQueriesListener.getInsertQueries().stream()
+			.filter(t -> t.getSql(false, false).startsWith("insert into HFJ_SPIDX_STRING"))
+			.toList();
+		assertThat(stringInserts).isNotEmpty();
+		assertEquals(100, stringInserts.get(0).getSize());
+		assertEquals(afterBulk[0] - afterSession[0], stringInserts.stream().mapToInt(SqlQuery::getSize).sum());
+
+		ourLog.info("Ingested {} resources - Session: {}ms - Bulk insert: {}ms", patientCount * 2, sessionMillis, bulkMillis);
+		for (int i = 0; i < sessionCounts.length; i++) {
+			assertEquals(afterSession[i] - sessionCounts[i], afterBulk[i] - afterSession[i]);
+		}
+		assertThat(mySearchIndexBulkInserter.getInsertedRowCount() - bulkInsertedBefore).isGreaterThan(patientCount * 2L);
+
+		assertThat(myTestDaoSearch.searchForIds("Patient?family=bulk")).hasSize(patientCount);
+		assertThat(myTestDaoSearch.searchForIds("Observation?subject.family=bulk&code=http://loinc.org|bulk")).hasSize(patientCount);
+	}
+
+	@Test
+	public void testUpdate_ReplacesBulkInsertedRows() {
+		myStorageSettings.setSearchIndexBulkInsertBatchSize(100);
+		IIdType id = createPatient(withFamily("Before"));
+		long stringRows = countStringRows(id);
+
+		Patient patient = new Patient();
+		patient.setId(id.toUnqualifiedVersionless());
+		patient.addName().setFamily("After");
+		myPatientDao.update(patient, mySrd);
+
+		assertThat(myTestDaoSearch.searchForIds("Patient?family=before")).isEmpty();
+		assertThat(myTestDaoSearch.searchForIds("Patient?family=after")).containsExactly(id.getIdPart());
+		assertEquals(stringRows, countStringRows(id));
+	}
+
+	@Test
+	public void testCreateAndUpdateInSameTransaction() {
+		myStorageSettings.setSearchIndexBulkInsertBatchSize(100);
+
+		IIdType id = runInTransaction(() -> {
+			IIdType created = createAndUpdatePatient();
+			// Nothing is written until the transaction commits
+			assertThat(myResourceIndexedSearchParamStringDao.findAll()).isEmpty();
+			return created;
+		});
+
+		assertThat(myTestDaoSearch.searchForIds("Patient?family=before")).isEmpty();
+		assertThat(myTestDaoSearch.searchForIds("Patient?family=after")).containsExactly(id.getIdPart());
+	}
+
+	@Test
+	public void testCreateAndUpdateInSameTransaction_RowsFlushedInBetween() {
+		myStorageSettings.setSearchIndexBulkInsertBatchSize(100);
+
+		IIdType id = runInTransaction(() -> {
+			Patient patient = new Patient();
+			patient.addName().setFamily("Before");
+			IIdType created = myPatientDao.create(patient, new SystemRequestDetails()).getId();
+			assertThat(mySearchIndexBulkInserter.flushPendingRows()).isGreaterThan(0);
+
+			patient.setId(created.toUnqualifiedVersionless());
+			patient.getNameFirstRep().setFamily("After");
+			myPatientDao.update(patient, new SystemRequestDetails());
+			return created;
+		});
+
+		assertThat(myTestDaoSearch.searchForIds("Patient?family=before")).isEmpty();
+		assertThat(myTestDaoSearch.searchForIds("Patient?family=after")).containsExactly(id.getIdPart());
+	}
+
+	@Test
+	public void testConditionalCreateInTransaction_MatchesBulkInsertedRows() {
+		myStorageSettings.setSearchIndexBulkInsertBatchSize(100);
+
+		BundleBuilder bb = new BundleBuilder(myFhirContext);
+		Patient patient = new Patient();
+		patient.addIdentifier().setSystem("http://foo").setValue("123");
+		bb.addTransactionCreateEntry(patient).conditional("Patient?identifier=http://foo|123");
+		Bundle first = mySystemDao.transaction(mySrd, (Bundle) bb.getBundle());
+		Bundle second = mySystemDao.transaction(mySrd, (Bundle) bb.getBundle());
+
+		assertThat(first.getEntry().get(0).getResponse().getStatus()).startsWith("201");
+		assertThat(second.getEntry().get(0).getResponse().getStatus()).startsWith("200");
+		assertThat(myTestDaoSearch.searchForIds("Patient?identifier=http://foo|123")).hasSize(1);
+	}
+
+	@Test
+	public void testCreate_LongTokenValueIsTruncated() {
+		myStorageSettings.setSearchIndexBulkInsertBatchSize(100);
+		String value = StringUtils.repeat("a", ResourceIndexedSearchParamToken.MAX_LENGTH + 100);
+
+		Patient patient = new Patient();
+		patient.addIdentifier().setSystem("http://foo").setValue(value);
+		IIdType id = myPatientDao.create(patient, mySrd).getId().toUnqualifiedVersionless();
+
+		List<String> storedValues = runInTransaction(() -> myResourceIndexedSearchParamTokenDao.findAll().stream()
+			.filter(t -> t.getResourcePid().equals(id.getIdPartAsLong()))
+			.filter(t -> "identifier".equals(t.getParamName()))
+			.map(ResourceIndexedSearchParamToken::getValue)
+			.toList());
+		assertThat(storedValues).containsExactly(value.substring(0, ResourceIndexedSearchParamToken.MAX_LENGTH));
+		// Hashes are calculated on the full value
+		assertThat(myTestDaoSearch.searchForIds("Patient?identifier=http://foo|" + value)).containsExactly(id.getIdPart());
+	}
+
+	@Test
+	public void testCreate_IndexStorageOptimized() {
+		myStorageSettings.setSearchIndexBulkInsertBatchSize(100);
+		myStorageSettings.setIndexStorageOptimized(true);
+
+		IIdType id = createPatient(withFamily("Optimized"));
+
+		runInTransaction(() -> {
+			List<?> unoptimized = myEntityManager.createQuery("SELECT i FROM ResourceIndexedSearchParamString i WHERE i.myResourcePid = "
+				+ id.getIdPartAsLong() + " AND (i.myParamName IS NOT NULL OR i.myResourceType IS NOT NULL OR i.myUpdated IS NOT NULL)").getResultList();
+			assertThat(unoptimized).isEmpty();
+		});
+		assertThat(countStringRows(id)).isGreaterThan(0);
+		assertThat(myTestDaoSearch.searchForIds("Patient?family=optimized")).containsExactly(id.getIdPart());
+	}
+
+	private IIdType createAndUpdatePatient() {
+		Patient patient = new Patient();
+		patient.addName().setFamily("Before");
+		IIdType created = myPatientDao.create(patient, new SystemRequestDetails()).getId();
+
+		patient.setId(created.toUnqualifiedVersionless());
+		patient.getNameFirstRep().setFamily("After");
+		myPatientDao.update(patient, new SystemRequestDetails());
+		return created;
+	}
+
+	private Bundle createTransaction(String theFamily, int thePatientCount) {
+		BundleBuilder bb = new BundleBuilder(myFhirContext);
+		for (int i = 0; i < thePatientCount; i++) {
+			Patient patient = new Patient();
+			patient.setId(IdType.newRandomUuid());
+			patient.addIdentifier().setSystem("http://" + theFamily).setValue(Integer.toString(i));
+			patient.addName().setFamily(theFamily).addGiven("Given" + i);
+			patient.setActive(true);
+			bb.addTransactionCreateEntry(patient);
+
+			Observation observation = new Observation();
+			observation.setSubject(new Reference(patient.getIdElement().getValue()));
+			observation.getCode().addCoding().setSystem("http://loinc.org").setCode(theFamily);
+			observation.setStatus(Observation.ObservationStatus.FINAL);
+			bb.addTransactionCreateEntry(observation);
+		}
+		return (Bundle) bb.getBundle();
+	}
+
+	private long[] countIndexRows() {
+		return runInTransaction(() -> new long[] {
+			myResourceIndexedSearchParamStringDao.count(),
+			myResourceIndexedSearchParamTokenDao.count(),
+			myResourceLinkDao.count()
+		});
+	}
+
+	private long countStringRows(IIdType theId) {
+		Long pid = runInTransaction(() -> myResourceTableDao.findByTypeAndFhirId("Patient", theId.getIdPart()).orElseThrow().getId());
+		return runInTransaction(() -> {
+			List<ResourceIndexedSearchParamString> rows = myResourceIndexedSearchParamStringDao.findAll();
+			return rows.stream().filter(t -> t.getResourcePid().equals(pid)).count();
+		});
+	}
+}
@@ -0,0 +1,224 @@
+package ca.uhn.fhir.jpa.dao.r4;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.model.entity.BaseResourceIndex;
+import ca.uhn.fhir.jpa.model.entity.ResourceTable;
+import ca.uhn.fhir.jpa.test.BaseJpaR4Test;
+import ca.uhn.fhir.jpa.test.config.TestHSearchAddInConfig;
+import ca.uhn.fhir.util.StopWatch;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.DateType;
+import org.hl7.fhir.r4.model.ListResource;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Reference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests for {@link JpaStorageSettings#isSearchIndexFingerprintEnabled()}. Resource links are always loaded
+ * on update, so only the other index tables are checked for reads.
+ */
+@ContextConfiguration(classes = {TestHSearchAddInConfig.NoFT.class})
+public class FhirResourceDaoR4SearchIndexFingerprintTest extends BaseJpaR4Test {
+
+	private static final Logger ourLog = LoggerFactory.getLogger(FhirResourceDaoR4SearchIndexFingerprintTest.class);
+	private IIdType myOrgId;
+
+	@BeforeEach
+	public void beforeCreateOrganization() {
+		myOrgId = createOrganization(withName("Acme"));
+	}
+
+	@AfterEach
+	public void after() {
+		myStorageSettings.setSearchIndexFingerprintEnabled(new JpaStorageSettings().isSearchIndexFingerprintEnabled());
+	}
+
+	@Test
+	public void testUpdate_NoIndexedValuesChanged_IndexTablesNotRead() {
+		myStorageSettings.setSearchIndexFingerprintEnabled(true);
+		Patient patient = buildPatient("Smith", 5);
+		IIdType id = myPatientDao.create(patient, mySrd).getId().toUnqualifiedVersionless();
+		assertNotNull(getFingerprint(id));
+
+		patient.setId(id);
+		patient.getMaritalStatus().setText("Married");
+		myCaptureQueriesListener.clear();
+		myPatientDao.update(patient, mySrd);
+
+		assertThat(getIndexTableSelects()).isEmpty();
+		assertThat(myTestDaoSearch.searchForIds("Patient?family=smith&identifier=http://foo|3&organization=" + myOrgId.getIdPart()))
+			.containsExactly(id.getIdPart());
+	}
+
+	@Test
+	public void testUpdate_OneIndexedValueChanged_OnlyThatIndexTableRead() {
+		myStorageSettings.setSearchIndexFingerprintEnabled(true);
+		Patient patient = buildPatient("Smith", 5);
+		IIdType id = myPatientDao.create(patient, mySrd).getId().toUnqualifiedVersionless();
+		String fingerprint = getFingerprint(id);
+
+		patient.setId(id);
+		patient.getNameFirstRep().setFamily("Jones");
+		myCaptureQueriesListener.clear();
+		myPatientDao.update(patient, mySrd);
+
+		List<String> selects = getIndexTableSelects();
+		assertThat(selects).isNotEmpty();
+		assertThat(selects).allMatch(t -> t.contains("HFJ_SPIDX_STRING"));
+		assertThat(getFingerprint(id)).isNotEqualTo(fingerprint);
+		assertThat(myTestDaoSearch.searchForIds("Patient?family=smith")).isEmpty();
+		assertThat(myTestDaoSearch.searchForIds("Patient?family=jones&identifier=http://foo|3")).containsExactly(id.getIdPart());
+	}
+
+	@Test
+	public void testUpdate_ManyReferencesUnchanged_TargetsNotResolvedIndividually() {
+		myStorageSettings.setSearchIndexFingerprintEnabled(true);
+		ListResource list = new ListResource();
+		list.setStatus(ListResource.ListStatus.CURRENT);
+		list.setMode(ListResource.ListMode.WORKING);
+		for (int i = 0; i < 12; i++) {
+			list.addEntry().setItem(new Reference(createPatient(withFamily("Family" + i))));
+		}
+		IIdType id = myListDao.create(list, mySrd).getId().toUnqualifiedVersionless();
+
+		list.setId(id);
+		list.setTitle("Title");
+		myCaptureQueriesListener.clear();
+		myListDao.update(list, mySrd);
+
+		myCaptureQueriesListener.logSelectQueriesForCurrentThread();
+		assertEquals(4, myCaptureQueriesListener.countSelectQueriesForCurrentThread());
+		assertThat(getIndexTableSelects()).isEmpty();
+	}
+
+	@Test
+	public void testUpdates_SameIndexRowsAsWithoutFingerprint() {
+		List<Consumer<Patient>> updates = List.of(
+			p -> p.getMaritalStatus().setText("Married"),
+			p -> p.getNameFirstRep().setFamily("Jones"),
+			p -> p.addIdentifier().setSystem("http://foo").setValue("new"),
+			p -> p.setManagingOrganization(null),
+			p -> p.getIdentifier().remove(0),
+			p -> p.setBirthDateElement(new DateType("1999-01-01")),
+			p -> p.setManagingOrganization(new Reference(myOrgId))
+		);
+
+		myStorageSettings.setSearchIndexFingerprintEnabled(false);
+		IIdType withoutFingerprint = createAndUpdate(updates);
+		myStorageSettings.setSearchIndexFingerprintEnabled(true);
+		IIdType withFingerprint = createAndUpdate(updates);
+
+		runInTransaction(() -> {
+			ResourceTable expected = myResourceTableDao.findById(withoutFingerprint.getIdPartAsLong()).orElseThrow();
+			ResourceTable actual = myResourceTableDao.findById(withFingerprint.getIdPartAsLong()).orElseThrow();
+			assertNull(expected.getSearchIndexFingerprint());
+			assertNotNull(actual.getSearchIndexFingerprint());
+			assertThat(equalityHashes(actual.getParamsString())).containsExactlyInAnyOrderElementsOf(equalityHashes(expected.getParamsString()));
+			assertThat(equalityHashes(actual.getParamsToken())).containsExactlyInAnyOrderElementsOf(equalityHashes(expected.getParamsToken()));
+			assertThat(equalityHashes(actual.getParamsDate())).containsExactlyInAnyOrderElementsOf(equalityHashes(expected.getParamsDate()));
+			assertThat(equalityHashes(actual.getResourceLinks())).containsExactlyInAnyOrderElementsOf(equalityHashes(expected.getResourceLinks()));
+		});
+	}
+
+	@Test
+	public void testDisable_FingerprintCleared() {
+		myStorageSettings.setSearchIndexFingerprintEnabled(true);
+		Patient patient = buildPatient("Smith", 1);
+		IIdType id = myPatientDao.create(patient, mySrd).getId().toUnqualifiedVersionless();
+		assertNotNull(getFingerprint(id));
+
+		myStorageSettings.setSearchIndexFingerprintEnabled(false);
+		patient.setId(id);
+		patient.getNameFirstRep().setFamily("Jones");
+		myPatientDao.update(patient, mySrd);
+		assertNull(getFingerprint(id));
+
+		// Without a stored fingerprint, all of the existing rows are loaded again
+		myStorageSettings.setSearchIndexFingerprintEnabled(true);
+		patient.getNameFirstRep().setFamily("Brown");
+		myCaptureQueriesListener.clear();
+		myPatientDao.update(patient, mySrd);
+		assertThat(getIndexTableSelects()).anyMatch(t -> t.contains("HFJ_SPIDX_TOKEN"));
+		assertNotNull(getFingerprint(id));
+		assertThat(myTestDaoSearch.searchForIds("Patient?family=brown")).containsExactly(id.getIdPart());
+	}
+
+	@Test
+	@Disabled
+	public void testUpdateTimings() {
+		int identifierCount = 200;
+		for (boolean enabled : new boolean[] {false, true}) {
+			myStorageSettings.setSearchIndexFingerprintEnabled(enabled);
+			Patient patient = buildPatient("Smith", identifierCount);
+			IIdType id = myPatientDao.create(patient, mySrd).getId().toUnqualifiedVersionless();
+			patient.setId(id);
+
+			StopWatch sw = new StopWatch();
+			for (int i = 0; i < 10; i++) {
+				patient.getMaritalStatus().setText("Status " + i);
+				myPatientDao.update(patient, mySrd);
+			}
+			long noOpMillis = sw.getMillisAndRestart();
+			for (int i = 0; i < 10; i++) {
+				patient.getNameFirstRep().setFamily("Family" + i);
+				myPatientDao.update(patient, mySrd);
+			}
+			long oneFieldMillis = sw.getMillis();
+
+			ourLog.info("Fingerprint enabled: {} - 10 updates with {} identifiers - No index change: {}ms - One field changed: {}ms", enabled, identifierCount, noOpMillis, oneFieldMillis);
+			assertThat(myTestDaoSearch.searchForIds("Patient?family=family9&identifier=http://foo|" + (identifierCount - 1))).contains(id.getIdPart());
+		}
+	}
+
+	private IIdType createAndUpdate(List<Consumer<Patient>> theUpdates) {
+		Patient patient = buildPatient("Smith", 3);
+		IIdType id = myPatientDao.create(patient, mySrd).getId().toUnqualifiedVersionless();
+		patient.setId(id);
+		for (Consumer<Patient> next : theUpdates) {
+			next.accept(patient);
+			myPatientDao.update(patient, mySrd);
+		}
+		return id;
+	}
+
+	private Patient buildPatient(String theFamily, int theIdentifierCount) {
+		Patient patient = new Patient();
+		patient.addName().setFamily(theFamily).addGiven("John");
+		patient.setBirthDateElement(new DateType("1980-01-01"));
+		patient.setManagingOrganization(new Reference(myOrgId));
+		for (int i = 0; i < theIdentifierCount; i++) {
+			patient.addIdentifier().setSystem("http://foo").setValue(Integer.toString(i));
+		}
+		return patient;
+	}
+
+	private String getFingerprint(IIdType theId) {
+		return runInTransaction(() -> myResourceTableDao.findById(theId.getIdPartAsLong()).orElseThrow().getSearchIndexFingerprint());
+	}
+
+	private List<String> getIndexTableSelects() {
+		return myCaptureQueriesListener.getSelectQueriesForCurrentThread().stream()
+			.map(t -> t.getSql(false, false))
+			.filter(t -> t.contains("HFJ_SPIDX_") || t.contains("HFJ_IDX_CMP"))
+			.toList();
+	}
+
+	private static List<Long> equalityHashes(Collection<? extends BaseResourceIndex> theRows) {
+		return theRows.stream().map(BaseResourceIndex::getEqualityHash).toList();
+	}
+}
@@ -60,8 +60,10 @@ import org.springframework.scheduling.concurrent.ThreadPoolExecutorFactoryBean;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
@@ -735,6 +737,44 @@ public class FhirResourceDaoR4SearchOptimizedTest extends BaseJpaR4Test {
 		executor.shutdownNow();
 	}
 
+	@Test
+	public void testConcurrentIdenticalSearchesShareOneSearch() throws Exception {
+		create200Patients();
+
+		mySearchCoordinatorSvcImpl.setLoadingThrottleForUnitTests(25);
+		mySearchCoordinatorSvcImpl.setSyncSizeForUnitTests(5);
+		myStorageSettings.setSearchPreFetchThresholds(Arrays.asList(20, -1));
+
+		ThreadPoolExecutorFactoryBean executorFactory = new ThreadPoolExecutorFactoryBean();
+		executorFactory.setCorePoolSize(10);
+		executorFactory.setMaxPoolSize(10);
+		executorFactory.afterPropertiesSet();
+		ExecutorService executor = executorFactory.getObject();
+
+		List<Future<String>> futures = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			futures.add(executor.submit(() -> {
+				SearchParameterMap params = new SearchParameterMap();
+				params.setSort(new SortSpec(Patient.SP_NAME));
+				IBundleProvider results = myPatientDao.search(params);
+				List<String> ids = toUnqualifiedVersionlessIdValues(results, 0, 10, false);
+				assertEquals("Patient/PT00000", ids.get(0));
+				assertEquals("Patient/PT00009", ids.get(9));
+				return results.getUuid();
+			}));
+		}
+
+		Set<String> uuids = new HashSet<>();
+		for (Future<String> next : futures) {
+			uuids.add(next.get());
+		}
+		executor.shutdownNow();
+
+		// Only one of the searches should have actually been executed
+		assertThat(uuids).hasSize(1);
+		runInTransaction(() -> assertEquals(1, mySearchEntityDao.count()));
+	}
+
 	@Test
 	public void testSearchThatOnlyReturnsASmallResult() {
 		create200Patients();
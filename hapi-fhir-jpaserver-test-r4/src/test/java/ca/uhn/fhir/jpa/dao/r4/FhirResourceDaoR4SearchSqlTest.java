@@ -1,7 +1,10 @@
 package ca.uhn.fhir.jpa.dao.r4;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import ca.uhn.fhir.interceptor.api.IAnonymousInterceptor;
+import ca.uhn.fhir.interceptor.api.Pointcut;
 import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.model.search.StorageProcessingMessage;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
 import ca.uhn.fhir.jpa.test.BaseJpaR4Test;
 import ca.uhn.fhir.rest.api.Constants;
@@ -17,6 +20,8 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -70,6 +75,46 @@ public class FhirResourceDaoR4SearchSqlTest extends BaseJpaR4Test {
 
 	}
 
+	/**
+	 * With cost based ordering, the more selective parameter is applied first even
+	 * though it was specified second
+	 */
+	@Test
+	public void testTwoRegularSearchParams_CostBasedPredicateOrdering() {
+		for (int i = 0; i < 5; i++) {
+			Patient p = new Patient();
+			p.addName().setFamily("SMITH");
+			p.addIdentifier().setSystem("http://foo").setValue("ID" + i);
+			myPatientDao.create(p, mySrd);
+		}
+		myStorageSettings.setCostBasedPredicateOrderingEnabled(true);
+		myMemoryCacheService.invalidateAllCaches();
+
+		List<String> messages = new ArrayList<>();
+		IAnonymousInterceptor interceptor = (thePointcut, theArgs) ->
+			messages.add(theArgs.get(StorageProcessingMessage.class).getMessage());
+		myInterceptorRegistry.registerAnonymousInterceptor(Pointcut.JPA_PERFTRACE_INFO, interceptor);
+		try {
+			myCaptureQueriesListener.clear();
+			SearchParameterMap map = SearchParameterMap.newSynchronous()
+				.add(Patient.SP_FAMILY, new StringParam("SMITH"))
+				.add(Patient.SP_IDENTIFIER, new TokenParam("http://foo", "ID3"));
+			IBundleProvider outcome = myPatientDao.search(map, mySrd);
+			assertEquals(1, outcome.sizeOrThrowNpe());
+
+			String sql = myCaptureQueriesListener.getSelectQueriesForCurrentThread().stream()
+				.map(t -> t.getSql(false, false))
+				.filter(t -> t.startsWith("SELECT t1.RES_ID FROM HFJ_RESOURCE"))
+				.findFirst()
+				.orElseThrow();
+			assertEquals("SELECT t1.RES_ID FROM HFJ_RESOURCE t1 INNER JOIN HFJ_SPIDX_TOKEN t0 ON (t1.RES_ID = t0.RES_ID) INNER JOIN HFJ_SPIDX_STRING t2 ON (t1.RES_ID = t2.RES_ID) WHERE ((t0.HASH_SYS_AND_VALUE = ?) AND ((t2.HASH_NORM_PREFIX = ?) AND (t2.SP_VALUE_NORMALIZED LIKE ?)))", sql);
+			assertThat(messages).contains("Search predicate order by estimated cardinality: identifier(1), family(5)");
+		} finally {
+			myInterceptorRegistry.unregisterInterceptor(interceptor);
+			myStorageSettings.setCostBasedPredicateOrderingEnabled(new JpaStorageSettings().isCostBasedPredicateOrderingEnabled());
+		}
+	}
+
 	@Test
 	public void testSearchByProfile_VersionedMode() {
 
@@ -0,0 +1,208 @@
+package ca.uhn.fhir.jpa.dao.r4;
+
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.dao.SearchBuilderFactory;
+import ca.uhn.fhir.jpa.model.dao.JpaPid;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.test.BaseJpaR4Test;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.SearchTotalModeEnum;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.param.ReferenceParam;
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.param.TokenParamModifier;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class FhirResourceDaoR4SearchTotalTest extends BaseJpaR4Test {
+
+	@Autowired
+	private SearchBuilderFactory<JpaPid> mySearchBuilderFactory;
+
+	@BeforeEach
+	public void beforeCreatePatients() {
+		createPatient("SMITH", "male");
+		createPatient("SMITH", "female");
+		createPatient("SMITH", "male");
+		createPatient("JONES", "male");
+		myMemoryCacheService.invalidateAllCaches();
+	}
+
+	@AfterEach
+	public void afterResetSettings() {
+		JpaStorageSettings defaults = new JpaStorageSettings();
+		myStorageSettings.setSearchCountCacheMillis(defaults.getSearchCountCacheMillis());
+	}
+
+	@Test
+	public void testEstimatedTotalUsesSampledStatistics() {
+		SearchParameterMap map = SearchParameterMap.newSynchronous(Patient.SP_FAMILY, new StringParam("SMITH"));
+		map.setCount(1);
+		map.setSearchTotalMode(SearchTotalModeEnum.ESTIMATED);
+
+		IBundleProvider outcome = myPatientDao.search(map, mySrd);
+
+		assertEquals(1, outcome.getResources(0, 10).size());
+		assertEquals(3, outcome.size());
+	}
+
+	@Test
+	public void testEstimatedTotalNotUsedWhenLowerThanResultsFound() {
+		SearchParameterMap map = SearchParameterMap.newSynchronous(Patient.SP_FAMILY, new StringParam("SMITH"));
+		map.setSearchTotalMode(SearchTotalModeEnum.ESTIMATED);
+		assertEquals(3, myPatientDao.search(map, mySrd).size());
+
+		// The sampled statistics are cached, so the estimate is now too low
+		createPatient("SMITH", "female");
+		createPatient("SMITH", "female");
+
+		map = SearchParameterMap.newSynchronous(Patient.SP_FAMILY, new StringParam("SMITH"));
+		map.setCount(4);
+		map.setSearchTotalMode(SearchTotalModeEnum.ESTIMATED);
+		IBundleProvider outcome = myPatientDao.search(map, mySrd);
+
+		assertEquals(4, outcome.getResources(0, 10).size());
+		assertNull(outcome.size());
+	}
+
+	@Test
+	public void testEstimatedTotalUsesMostSelectiveParameter() {
+		SearchParameterMap map = SearchParameterMap.newSynchronous()
+			.add(Patient.SP_FAMILY, new StringParam("SMITH"))
+			.add(Patient.SP_GENDER, new TokenParam("female"));
+		map.setSearchTotalMode(SearchTotalModeEnum.ESTIMATED);
+
+		Long estimate = runInTransaction(() -> mySearchBuilderFactory
+			.newSearchBuilder(myPatientDao, "Patient", Patient.class)
+			.createEstimatedCountQuery(map, "test", mySrd, RequestPartitionId.allPartitions()));
+
+		assertEquals(1, estimate);
+	}
+
+	@Test
+	public void testEstimatedTotalNotAvailableForNegatedToken() {
+		// Resources with no gender at all also match :not, so the index rows aren't an upper bound
+		SearchParameterMap map = SearchParameterMap.newSynchronous(
+			Patient.SP_GENDER, new TokenParam("male").setModifier(TokenParamModifier.NOT));
+		map.setSearchTotalMode(SearchTotalModeEnum.ESTIMATED);
+
+		Long estimate = runInTransaction(() -> mySearchBuilderFactory
+			.newSearchBuilder(myPatientDao, "Patient", Patient.class)
+			.createEstimatedCountQuery(map, "test", mySrd, RequestPartitionId.allPartitions()));
+
+		assertNull(estimate);
+	}
+
+	@Test
+	public void testEstimatedTotalForReferenceUsesSearchParameterPath() {
+		Patient patient = new Patient();
+		patient.setId("Patient/A");
+		myPatientDao.update(patient, mySrd);
+		createObservation("Patient/A", null);
+		for (int i = 0; i < 3; i++) {
+			createObservation(null, "Patient/A");
+		}
+
+		SearchParameterMap map = SearchParameterMap.newSynchronous(Observation.SP_SUBJECT, new ReferenceParam("Patient/A"));
+		map.setSearchTotalMode(SearchTotalModeEnum.ESTIMATED);
+		Long estimate = runInTransaction(() -> mySearchBuilderFactory
+			.newSearchBuilder(myObservationDao, "Observation", Observation.class)
+			.createEstimatedCountQuery(map, "test", mySrd, RequestPartitionId.allPartitions()));
+
+		assertEquals(1, estimate);
+	}
+
+	@Test
+	public void testEstimatedTotalNotAvailableForSpecialParameters() {
+		SearchParameterMap map = SearchParameterMap.newSynchronous(Constants.PARAM_TAG, new TokenParam("http://foo", "bar"));
+		map.add(Patient.SP_FAMILY, new StringParam("SMITH"));
+		map.setCount(1);
+		map.setSearchTotalMode(SearchTotalModeEnum.ESTIMATED);
+
+		IBundleProvider outcome = myPatientDao.search(map, mySrd);
+
+		assertNull(outcome.size());
+	}
+
+	@Test
+	public void testAccurateTotalIsCachedUntilResourceTypeChanges() {
+		myStorageSettings.setSearchCountCacheMillis(60000);
+
+		assertEquals(3, countSmiths());
+
+		myCaptureQueriesListener.clear();
+		assertEquals(3, countSmiths());
+		assertEquals(0, countCountQueries());
+
+		// A write to the resource type discards the cached total
+		createPatient("SMITH", "female");
+		myCaptureQueriesListener.clear();
+		assertEquals(4, countSmiths());
+		assertEquals(1, countCountQueries());
+	}
+
+	@Test
+	public void testAccurateTotalNotCachedByDefault() {
+		assertEquals(3, countSmiths());
+
+		myCaptureQueriesListener.clear();
+		assertEquals(3, countSmiths());
+		assertEquals(1, countCountQueries());
+	}
+
+	@Test
+	public void testCachedTotalUsedForEstimatedTotal() {
+		myStorageSettings.setSearchCountCacheMillis(60000);
+		assertEquals(3, countSmiths());
+
+		SearchParameterMap map = SearchParameterMap.newSynchronous(Patient.SP_FAMILY, new StringParam("SMITH"));
+		map.setSearchTotalMode(SearchTotalModeEnum.ESTIMATED);
+		myCaptureQueriesListener.clear();
+		Long estimate = runInTransaction(() -> mySearchBuilderFactory
+			.newSearchBuilder(myPatientDao, "Patient", Patient.class)
+			.createEstimatedCountQuery(map, "test", mySrd, RequestPartitionId.allPartitions()));
+
+		assertEquals(3, estimate);
+		assertEquals(0, myCaptureQueriesListener.countSelectQueries());
+	}
+
+	private Integer countSmiths() {
+		SearchParameterMap map = SearchParameterMap.newSynchronous(Patient.SP_FAMILY, new StringParam("SMITH"));
+		map.setSearchTotalMode(SearchTotalModeEnum.ACCURATE);
+		return myPatientDao.search(map, mySrd).size();
+	}
+
+	private long countCountQueries() {
+		return myCaptureQueriesListener.getSelectQueries().stream()
+			.filter(t -> t.getSql(false, false).toLowerCase().contains("count("))
+			.count();
+	}
+
+	private void createObservation(String theSubject, String thePerformer) {
+		Observation obs = new Observation();
+		if (theSubject != null) {
+			obs.getSubject().setReference(theSubject);
+		}
+		if (thePerformer != null) {
+			obs.addPerformer().setReference(thePerformer);
+		}
+		myObservationDao.create(obs, mySrd);
+	}
+
+	private void createPatient(String theFamily, String theGender) {
+		Patient p = new Patient();
+		p.addName().setFamily(theFamily);
+		p.getGenderElement().setValueAsString(theGender);
+		p.getMeta().addTag("http://foo", "bar", null);
+		myPatientDao.create(p, mySrd);
+	}
+}
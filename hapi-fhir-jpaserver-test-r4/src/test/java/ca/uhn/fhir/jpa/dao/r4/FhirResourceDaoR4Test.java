@@ -7,6 +7,9 @@ import ca.uhn.fhir.jpa.api.dao.IFhirResourceDao;
 import ca.uhn.fhir.jpa.api.dao.IFhirSystemDao;
 import ca.uhn.fhir.jpa.api.model.HistoryCountModeEnum;
 import ca.uhn.fhir.jpa.api.pid.StreamTemplate;
+import ca.uhn.fhir.jpa.compress.IResourceCompressionDictionarySvc;
+import ca.uhn.fhir.jpa.compress.ResourceCompressionDictionary;
+import ca.uhn.fhir.jpa.compress.ResourceCompressionDictionarySvcImpl;
 import ca.uhn.fhir.jpa.dao.BaseHapiFhirDao;
 import ca.uhn.fhir.jpa.dao.BaseStorageDao;
 import ca.uhn.fhir.jpa.dao.JpaResourceDao;
@@ -57,6 +60,7 @@ import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
 import ca.uhn.fhir.rest.server.exceptions.ResourceVersionConflictException;
 import ca.uhn.fhir.rest.server.exceptions.UnprocessableEntityException;
 import ca.uhn.fhir.util.ClasspathUtil;
+import com.github.luben.zstd.Zstd;
 import com.google.common.collect.Lists;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.RandomStringUtils;
@@ -124,6 +128,7 @@ import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
 import org.junit.jupiter.params.provider.ValueSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.transaction.TransactionDefinition;
@@ -166,6 +171,8 @@ public class FhirResourceDaoR4Test extends BaseJpaR4Test {
 
 	@Autowired
 	IHapiTransactionService myHapiTransactionService;
+	@Autowired
+	private IResourceCompressionDictionarySvc myResourceCompressionDictionarySvc;
 
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(FhirResourceDaoR4Test.class);
 
@@ -180,6 +187,7 @@ public class FhirResourceDaoR4Test extends BaseJpaR4Test {
 		myStorageSettings.setNormalizedQuantitySearchLevel(NormalizedQuantitySearchLevel.NORMALIZED_QUANTITY_SEARCH_NOT_SUPPORTED);
 		myStorageSettings.setHistoryCountMode(JpaStorageSettings.DEFAULT_HISTORY_COUNT_MODE);
 		myStorageSettings.setMassIngestionMode(false);
+		myStorageSettings.setResourceEncoding(new JpaStorageSettings().getResourceEncoding());
 	}
 
 	@BeforeEach
@@ -2939,6 +2947,104 @@ public class FhirResourceDaoR4Test extends BaseJpaR4Test {
 
 	}
 
+	@Test
+	public void testStoreAndReadWithCborEncoding() {
+		myStorageSettings.setResourceEncoding(ResourceEncodingEnum.CBOR);
+
+		Patient p = new Patient();
+		p.setActive(true);
+		p.addName().setFamily("Simpson").addGiven("Homer");
+		p.setBirthDateElement(new DateType("1956-05-12"));
+		IIdType id = myPatientDao.create(p, mySrd).getId().toUnqualifiedVersionless();
+
+		p.setId(id);
+		p.getNameFirstRep().addGiven("Jay");
+		myPatientDao.update(p, mySrd);
+
+		// An update with no changes should be detected by comparing the stored bytes
+		myPatientDao.update(p, mySrd);
+
+		runInTransaction(() -> {
+			ResourceHistoryTable table = myResourceHistoryTableDao.findForIdAndVersionAndFetchProvenance(id.getIdPartAsLong(), 2L);
+			assertEquals(ResourceEncodingEnum.CBOR, table.getEncoding());
+			assertNull(table.getResourceTextVc());
+			assertNotNull(table.getResource());
+			assertNull(myResourceHistoryTableDao.findForIdAndVersionAndFetchProvenance(id.getIdPartAsLong(), 3L));
+		});
+
+		Patient read = myPatientDao.read(id, mySrd);
+		assertEquals("2", read.getIdElement().getVersionIdPart());
+		assertTrue(read.getActive());
+		assertEquals("Homer Jay", read.getNameFirstRep().getGivenAsSingleString());
+		assertEquals("1956-05-12", read.getBirthDateElement().getValueAsString());
+
+		Patient first = myPatientDao.read(id.withVersion("1"), mySrd);
+		assertEquals("Homer", first.getNameFirstRep().getGivenAsSingleString());
+	}
+
+	@ParameterizedTest
+	@EnumSource(value = ResourceEncodingEnum.class, names = {"JZSTD", "JLZ4"})
+	public void testStoreAndReadWithCompressionCodec(ResourceEncodingEnum theEncoding) {
+		IIdType jsoncId = createPatient(withFamily("Simpson"));
+		myStorageSettings.setResourceEncoding(theEncoding);
+
+		Patient p = new Patient();
+		p.setActive(true);
+		p.addName().setFamily("Simpson").addGiven("Homer");
+		IIdType id = myPatientDao.create(p, mySrd).getId().toUnqualifiedVersionless();
+
+		p.setId(id);
+		p.getNameFirstRep().addGiven("Jay");
+		myPatientDao.update(p, mySrd);
+
+		// An update with no changes should be detected by comparing the decompressed text
+		myPatientDao.update(p, mySrd);
+
+		runInTransaction(() -> {
+			ResourceHistoryTable table = myResourceHistoryTableDao.findForIdAndVersionAndFetchProvenance(id.getIdPartAsLong(), 2L);
+			assertEquals(theEncoding, table.getEncoding());
+			assertNull(table.getResourceTextVc());
+			assertNotNull(table.getResource());
+			assertNull(myResourceHistoryTableDao.findForIdAndVersionAndFetchProvenance(id.getIdPartAsLong(), 3L));
+		});
+
+		Patient read = myPatientDao.read(id, mySrd);
+		assertEquals("2", read.getIdElement().getVersionIdPart());
+		assertEquals("Homer Jay", read.getNameFirstRep().getGivenAsSingleString());
+		assertEquals("Homer", myPatientDao.read(id.withVersion("1"), mySrd).getNameFirstRep().getGivenAsSingleString());
+
+		// Resources stored before the encoding was changed can still be read
+		assertEquals("Simpson", myPatientDao.read(jsoncId, mySrd).getNameFirstRep().getFamily());
+	}
+
+	@Test
+	public void testStoreAndReadWithZstdDictionary() {
+		myStorageSettings.setResourceEncoding(ResourceEncodingEnum.JZSTD);
+		IIdType beforeTrainingId = createPatient(withFamily("Simpson"), withGiven("Homer"));
+		for (int i = 0; i < 200; i++) {
+			createPatient(withFamily("Family" + i), withGiven("Given" + i), withBirthdate("1980-01-" + String.format("%02d", i % 28 + 1)), withIdentifier("http://acme.org/mrn", "MRN" + i));
+		}
+
+		((ResourceCompressionDictionarySvcImpl) myResourceCompressionDictionarySvc).setDictionarySize(4096);
+		ResourceCompressionDictionary dictionary;
+		try {
+			dictionary = myResourceCompressionDictionarySvc.trainDictionary("Patient", 200);
+		} finally {
+			((ResourceCompressionDictionarySvcImpl) myResourceCompressionDictionarySvc).setDictionarySize(ResourceCompressionDictionarySvcImpl.DEFAULT_DICTIONARY_SIZE);
+		}
+		assertEquals(dictionary.getDictionaryId(), myResourceCompressionDictionarySvc.getActiveDictionary("Patient").getDictionaryId());
+
+		IIdType afterTrainingId = createPatient(withFamily("Flanders"), withGiven("Ned"), withIdentifier("http://acme.org/mrn", "MRN999"));
+		runInTransaction(() -> {
+			ResourceHistoryTable table = myResourceHistoryTableDao.findForIdAndVersionAndFetchProvenance(afterTrainingId.getIdPartAsLong(), 1L);
+			assertEquals(ResourceEncodingEnum.JZSTD, table.getEncoding());
+			assertEquals(dictionary.getDictionaryId(), Zstd.getDictIdFromFrame(table.getResource()));
+		});
+
+		assertEquals("Simpson", myPatientDao.read(beforeTrainingId, mySrd).getNameFirstRep().getFamily());
+		assertEquals("Flanders", myPatientDao.read(afterTrainingId, mySrd).getNameFirstRep().getFamily());
+	}
+
 	/**
 	 * Can we handle content that was previously saved containing vocabulary that
 	 * is no longer valid
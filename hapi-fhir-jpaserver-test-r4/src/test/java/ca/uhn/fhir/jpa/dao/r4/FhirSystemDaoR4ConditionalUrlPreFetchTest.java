@@ -0,0 +1,187 @@
+package ca.uhn.fhir.jpa.dao.r4;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.util.SqlQuery;
+import ca.uhn.fhir.rest.server.exceptions.PreconditionFailedException;
+import ca.uhn.fhir.util.BundleBuilder;
+import ca.uhn.fhir.util.StopWatch;
+import org.apache.commons.lang3.time.DateUtils;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Enumerations;
+import org.hl7.fhir.r4.model.IdType;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.ValueSet;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Date;
+import java.util.List;
+import java.util.function.IntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests for the batched resolution of conditional URLs in
+ * {@link ca.uhn.fhir.jpa.dao.TransactionProcessor}
+ */
+public class FhirSystemDaoR4ConditionalUrlPreFetchTest extends BaseJpaR4SystemTest {
+
+	private static final Logger ourLog = LoggerFactory.getLogger(FhirSystemDaoR4ConditionalUrlPreFetchTest.class);
+
+	@AfterEach
+	public void after() {
+		myStorageSettings.setMatchUrlCacheEnabled(new JpaStorageSettings().isMatchUrlCacheEnabled());
+
+		// The purge deletes these by ID, which is more parameters than a single statement is allowed to have
+		runInTransaction(() -> myResourceSearchUrlDao.deleteAllWhereCreatedBefore(DateUtils.addDays(new Date(), 1)));
+	}
+
+	@Test
+	public void testConditionalCreates_ResolvedWithBatchedQuery() {
+		int count = 1000;
+		mySystemDao.transaction(mySrd, createConditionalPatientBundle(count / 2, i -> "Patient?identifier=http://mrn|" + i));
+
+		myCaptureQueriesListener.clear();
+		Bundle outcome = mySystemDao.transaction(mySrd, createConditionalPatientBundle(count, i -> "Patient?identifier=http://mrn|" + i));
+
+		assertThat(outcome.getEntry().subList(0, count / 2)).allMatch(t -> t.getResponse().getStatus().startsWith("200"));
+		assertThat(outcome.getEntry().subList(count / 2, count)).allMatch(t -> t.getResponse().getStatus().startsWith("201"));
+		// 1000 match URLs are resolved in chunks of 800
+		assertEquals(2, countHashSelectsOnTable("HFJ_SPIDX_TOKEN"));
+		assertThat(myTestDaoSearch.searchForIds("Patient?identifier=http://mrn|")).hasSize(count);
+	}
+
+	@Test
+	public void testConditionalUpdates_UriParameter_ResolvedWithBatchedQuery() {
+		int count = 20;
+		mySystemDao.transaction(mySrd, createConditionalValueSetBundle(count));
+
+		myCaptureQueriesListener.clear();
+		Bundle outcome = mySystemDao.transaction(mySrd, createConditionalValueSetBundle(count + 1));
+
+		assertThat(outcome.getEntry().subList(0, count)).allMatch(t -> t.getResponse().getStatus().startsWith("200"));
+		assertThat(outcome.getEntry().get(count).getResponse().getStatus()).startsWith("201");
+		assertEquals(1, countHashSelectsOnTable("HFJ_SPIDX_URI"));
+		assertThat(myTestDaoSearch.searchForIds("ValueSet?status=active")).hasSize(count + 1);
+	}
+
+	@Test
+	public void testConditionalCreate_UriParameterMatchesMultipleResources() {
+		for (int i = 0; i < 2; i++) {
+			ValueSet valueSet = new ValueSet();
+			valueSet.setUrl("http://example.com/ValueSet/shared");
+			valueSet.setVersion(Integer.toString(i));
+			myValueSetDao.create(valueSet, mySrd);
+		}
+
+		BundleBuilder bb = new BundleBuilder(myFhirContext);
+		for (String url : List.of("http://example.com/ValueSet/shared", "http://example.com/ValueSet/other")) {
+			ValueSet valueSet = new ValueSet();
+			valueSet.setUrl(url);
+			bb.addTransactionCreateEntry(valueSet).conditional("ValueSet?url=" + url);
+		}
+
+		// The ambiguous match URL is rejected instead of matching either resource
+		assertThatThrownBy(() -> mySystemDao.transaction(mySrd, (Bundle) bb.getBundle()))
+				.isInstanceOf(PreconditionFailedException.class)
+				.hasMessageContaining("Multiple resources match this search");
+		assertThat(myTestDaoSearch.searchForIds("ValueSet?url=http://example.com/ValueSet/shared")).hasSize(2);
+		assertThat(myTestDaoSearch.searchForIds("ValueSet?url=http://example.com/ValueSet/other")).isEmpty();
+	}
+
+	@Test
+	public void testConditionalCreates_ResultLimitReached() {
+		// Three index rows with the same value hash, for one resource
+		Patient first = new Patient();
+		first.addIdentifier().setSystem("http://a").setValue("1");
+		first.addIdentifier().setSystem("http://b").setValue("1");
+		first.addIdentifier().setSystem("http://c").setValue("1");
+		IIdType firstId = myPatientDao.create(first, mySrd).getId().toUnqualifiedVersionless();
+		Patient second = new Patient();
+		second.addIdentifier().setSystem("http://a").setValue("2");
+		IIdType secondId = myPatientDao.create(second, mySrd).getId().toUnqualifiedVersionless();
+
+		Bundle outcome = mySystemDao.transaction(mySrd, createConditionalPatientBundle(2, i -> "Patient?identifier=" + (i + 1)));
+
+		// The rows of the first resource fill up the limit of the pre-fetch query, so the
+		// second match URL must not be treated as matching nothing
+		assertThat(outcome.getEntry()).allMatch(t -> t.getResponse().getStatus().startsWith("200"));
+		assertThat(myTestDaoSearch.searchForIds("Patient?identifier=1")).containsExactly(firstId.getIdPart());
+		assertThat(myTestDaoSearch.searchForIds("Patient?identifier=2")).containsExactly(secondId.getIdPart());
+	}
+
+	@Test
+	public void testConditionalCreates_Timings() {
+		myStorageSettings.setMatchUrlCacheEnabled(false);
+		int count = 200;
+		mySystemDao.transaction(mySrd, createConditionalPatientBundle(count, i -> "Patient?identifier=http://mrn|" + i));
+		// Warm up, so that both timed runs find the versions of the matched resources in the cache
+		mySystemDao.transaction(mySrd, createConditionalPatientBundle(count, i -> "Patient?identifier=http://mrn|" + i));
+
+		// Single token parameter, resolved with one batched query
+		myCaptureQueriesListener.clear();
+		StopWatch sw = new StopWatch();
+		mySystemDao.transaction(mySrd, createConditionalPatientBundle(count, i -> "Patient?identifier=http://mrn|" + i));
+		long batchedMillis = sw.getMillis();
+		int batchedSelects = myCaptureQueriesListener.countSelectQueries();
+
+		// Same resources, but a URL shape which is resolved one search at a time
+		myCaptureQueriesListener.clear();
+		sw.restart();
+		mySystemDao.transaction(
+				mySrd, createConditionalPatientBundle(count, i -> "Patient?identifier=http://mrn|" + i + "&active=true"));
+		long unbatchedMillis = sw.getMillis();
+		int unbatchedSelects = myCaptureQueriesListener.countSelectQueries();
+
+		ourLog.info(
+				"Resolved {} conditional creates with {} selects in {}ms when batched, and with {} selects in {}ms when not",
+				count,
+				batchedSelects,
+				batchedMillis,
+				unbatchedSelects,
+				unbatchedMillis);
+		assertThat(batchedSelects).isLessThan(count / 10);
+		assertThat(unbatchedSelects).isGreaterThanOrEqualTo(count);
+	}
+
+	/**
+	 * Counts the selects on the given index table which look up rows by hash, as opposed to
+	 * loading the existing index rows of a resource being updated
+	 */
+	private long countHashSelectsOnTable(String theTableName) {
+		List<SqlQuery> queries = myCaptureQueriesListener.getSelectQueriesForCurrentThread();
+		return queries.stream()
+				.map(t -> t.getSql(false, false))
+				.filter(t -> t.contains(" " + theTableName + " "))
+				.filter(t -> t.substring(t.indexOf(" where ")).contains(".HASH_"))
+				.count();
+	}
+
+	private Bundle createConditionalPatientBundle(int theCount, IntFunction<String> theConditionalUrl) {
+		BundleBuilder bb = new BundleBuilder(myFhirContext);
+		for (int i = 0; i < theCount; i++) {
+			Patient patient = new Patient();
+			patient.setId(IdType.newRandomUuid());
+			patient.setActive(true);
+			patient.addIdentifier().setSystem("http://mrn").setValue(Integer.toString(i));
+			bb.addTransactionCreateEntry(patient).conditional(theConditionalUrl.apply(i));
+		}
+		return (Bundle) bb.getBundle();
+	}
+
+	private Bundle createConditionalValueSetBundle(int theCount) {
+		BundleBuilder bb = new BundleBuilder(myFhirContext);
+		for (int i = 0; i < theCount; i++) {
+			ValueSet valueSet = new ValueSet();
+			valueSet.setUrl("http://example.com/ValueSet/vs" + i);
+			valueSet.setStatus(Enumerations.PublicationStatus.ACTIVE);
+			bb.addTransactionUpdateEntry(valueSet).conditional("ValueSet?url=" + valueSet.getUrl());
+		}
+		return (Bundle) bb.getBundle();
+	}
+}
@@ -0,0 +1,186 @@
+package ca.uhn.fhir.jpa.dao.r4;
+
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.util.MemoryCacheService;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import ca.uhn.fhir.util.BundleBuilder;
+import ca.uhn.fhir.util.StopWatch;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.IdType;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Reference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests for the caching of resource IDs which don't exist in
+ * {@link ca.uhn.fhir.jpa.dao.index.IdHelperService}, and for the
+ * resolution of transaction reference targets in bulk
+ */
+public class FhirSystemDaoR4ResourceIdResolutionTest extends BaseJpaR4SystemTest {
+
+	private static final Logger ourLog = LoggerFactory.getLogger(FhirSystemDaoR4ResourceIdResolutionTest.class);
+
+	@AfterEach
+	public void after() {
+		myStorageSettings.setResourceIdNotFoundCacheMillis(
+				new JpaStorageSettings().getResourceIdNotFoundCacheMillis());
+		myMemoryCacheService.resetStatistics();
+	}
+
+	@Test
+	public void testNotFoundCache_DisabledByDefault() {
+		assertEquals(0, resolveAndCountSelects("Patient/A"));
+		assertEquals(1, myCaptureQueriesListener.countSelectQueries());
+		assertEquals(0, resolveAndCountSelects("Patient/A"));
+		assertEquals(1, myCaptureQueriesListener.countSelectQueries());
+	}
+
+	@Test
+	public void testNotFoundCache_Enabled() {
+		myStorageSettings.setResourceIdNotFoundCacheMillis(60000);
+
+		assertEquals(0, resolveAndCountSelects("Patient/A"));
+		assertEquals(1, myCaptureQueriesListener.countSelectQueries());
+		assertEquals(0, resolveAndCountSelects("Patient/A"));
+		assertEquals(0, myCaptureQueriesListener.countSelectQueries());
+
+		myCaptureQueriesListener.clear();
+		assertThatThrownBy(() -> runInTransaction(() ->
+						myIdHelperService.resolveResourceIdentity(RequestPartitionId.allPartitions(), "Patient", "A")))
+				.hasMessageContaining("HAPI-2001");
+		assertEquals(0, myCaptureQueriesListener.countSelectQueries());
+
+		assertThat(myMemoryCacheService
+						.getStatistics(MemoryCacheService.CacheEnum.RESOURCE_ID_NOT_FOUND)
+						.getHitCount())
+				.isGreaterThanOrEqualTo(2);
+	}
+
+	@Test
+	public void testNotFoundCache_InvalidatedWhenResourceIsCreated() {
+		myStorageSettings.setResourceIdNotFoundCacheMillis(60000);
+		assertEquals(0, resolveAndCountSelects("Patient/A"));
+
+		Patient patient = new Patient();
+		patient.setId("Patient/A");
+		myPatientDao.update(patient, mySrd);
+
+		assertEquals(1, resolveAndCountSelects("Patient/A"));
+		myObservationDao.create(newObservation("Patient/A"), mySrd);
+	}
+
+	@Test
+	public void testNotFoundCache_EntriesExpire() {
+		myStorageSettings.setResourceIdNotFoundCacheMillis(1000);
+		myMemoryCacheService.put(
+				MemoryCacheService.CacheEnum.RESOURCE_ID_NOT_FOUND, "Patient/A", System.currentTimeMillis() - 2000);
+
+		assertEquals(0, resolveAndCountSelects("Patient/A"));
+		assertEquals(1, myCaptureQueriesListener.countSelectQueries());
+	}
+
+	@Test
+	public void testTransaction_ReferenceTargetsResolvedInBulk() {
+		int count = 50;
+		createPatients(count);
+
+		myCaptureQueriesListener.clear();
+		StopWatch sw = new StopWatch();
+		Bundle outcome = mySystemDao.transaction(mySrd, createObservationBundle(count));
+		long bulkMillis = sw.getMillis();
+		long bulkSelects = countIdSelectsOnResourceTable();
+
+		assertThat(outcome.getEntry()).allMatch(t -> t.getResponse().getStatus().startsWith("201"));
+		assertEquals(1, bulkSelects);
+		assertThat(myTestDaoSearch.searchForIds("Observation?subject=Patient/p-0")).hasSize(1);
+
+		// The same references, resolved one at a time
+		myCaptureQueriesListener.clear();
+		sw.restart();
+		for (int i = 0; i < count; i++) {
+			myObservationDao.create(newObservation("Patient/p-" + i), mySrd);
+		}
+		long singleMillis = sw.getMillis();
+		long singleSelects = countIdSelectsOnResourceTable();
+
+		ourLog.info(
+				"Resolved {} reference targets with {} selects in {}ms in bulk, and with {} selects in {}ms one at a time",
+				count,
+				bulkSelects,
+				bulkMillis,
+				singleSelects,
+				singleMillis);
+		assertThat(singleSelects).isGreaterThanOrEqualTo(count);
+	}
+
+	@Test
+	public void testTransaction_DeletedReferenceTargetIsRejected() {
+		createPatients(2);
+		myPatientDao.delete(new IdType("Patient/p-1"), mySrd);
+
+		assertThatThrownBy(() -> mySystemDao.transaction(mySrd, createObservationBundle(2)))
+				.isInstanceOf(InvalidRequestException.class)
+				.hasMessageContaining("HAPI-1096");
+	}
+
+	/**
+	 * Resolves the given ID, returning the number of persistent IDs found. The
+	 * captured queries are cleared first.
+	 */
+	private int resolveAndCountSelects(String theId) {
+		myCaptureQueriesListener.clear();
+		List<IIdType> ids = List.of(new IdType(theId));
+		return runInTransaction(() -> myIdHelperService
+				.resolveResourcePersistentIdsWithCache(RequestPartitionId.allPartitions(), ids)
+				.size());
+	}
+
+	/**
+	 * Counts the selects which resolve client assigned IDs on the resource table
+	 */
+	private long countIdSelectsOnResourceTable() {
+		return myCaptureQueriesListener.getSelectQueriesForCurrentThread().stream()
+				.map(t -> t.getSql(false, false))
+				.filter(t -> t.contains(" HFJ_RESOURCE "))
+				.filter(t -> t.substring(t.indexOf(" where ")).contains(".FHIR_ID"))
+				.count();
+	}
+
+	private void createPatients(int theCount) {
+		BundleBuilder bb = new BundleBuilder(myFhirContext);
+		for (int i = 0; i < theCount; i++) {
+			Patient patient = new Patient();
+			patient.setId("Patient/p-" + i);
+			patient.setActive(true);
+			bb.addTransactionUpdateEntry(patient);
+		}
+		mySystemDao.transaction(mySrd, (Bundle) bb.getBundle());
+	}
+
+	private Bundle createObservationBundle(int theCount) {
+		BundleBuilder bb = new BundleBuilder(myFhirContext);
+		for (int i = 0; i < theCount; i++) {
+			bb.addTransactionCreateEntry(newObservation("Patient/p-" + i));
+		}
+		return (Bundle) bb.getBundle();
+	}
+
+	private Observation newObservation(String theSubject) {
+		Observation observation = new Observation();
+		observation.setStatus(Observation.ObservationStatus.FINAL);
+		observation.setSubject(new Reference(theSubject));
+		return observation;
+	}
+}
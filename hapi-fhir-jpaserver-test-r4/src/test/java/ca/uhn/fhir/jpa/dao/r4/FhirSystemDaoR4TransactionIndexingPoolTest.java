@@ -0,0 +1,219 @@
+package ca.uhn.fhir.jpa.dao.r4;
+
+import ca.uhn.fhir.interceptor.api.Hook;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.jpa.dao.data.IResourceIndexedSearchParamTokenDao;
+import ca.uhn.fhir.jpa.model.entity.BaseResourceIndex;
+import ca.uhn.fhir.jpa.model.entity.StorageSettings;
+import ca.uhn.fhir.util.StopWatch;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Condition;
+import org.hl7.fhir.r4.model.DateTimeType;
+import org.hl7.fhir.r4.model.DateType;
+import org.hl7.fhir.r4.model.Encounter;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Quantity;
+import org.hl7.fhir.r4.model.Reference;
+import org.hl7.fhir.r4.model.Resource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests for {@link StorageSettings#getTransactionIndexingPoolSize()}
+ */
+public class FhirSystemDaoR4TransactionIndexingPoolTest extends BaseJpaR4SystemTest {
+
+	private static final Logger ourLog = LoggerFactory.getLogger(FhirSystemDaoR4TransactionIndexingPoolTest.class);
+
+	@Autowired
+	private IResourceIndexedSearchParamTokenDao myResourceIndexedSearchParamTokenDao;
+
+	@AfterEach
+	public void after() {
+		myStorageSettings.setTransactionIndexingPoolSize(new StorageSettings().getTransactionIndexingPoolSize());
+	}
+
+	@Test
+	public void testTransaction_SameIndexesAsWithoutPool() {
+		createExistingPatient();
+		Map<Long, Integer> initialRows = getIndexRowCounts();
+		long initialLinkCount = myResourceLinkDao.count();
+
+		myStorageSettings.setTransactionIndexingPoolSize(1);
+		mySystemDao.transaction(mySrd, createSyntheticBundle(5, 10));
+		Map<Long, Integer> serialRows = getIndexRowCounts();
+		long serialLinkCount = myResourceLinkDao.count();
+
+		myStorageSettings.setTransactionIndexingPoolSize(4);
+		Bundle outcome = mySystemDao.transaction(mySrd, createSyntheticBundle(5, 10));
+		assertThat(outcome.getEntry()).allMatch(t -> t.getResponse().getStatus().startsWith("201"));
+		Map<Long, Integer> parallelRows = getIndexRowCounts();
+		long parallelLinkCount = myResourceLinkDao.count();
+
+		// Both bundles have the same content, so they should have created exactly the same index rows
+		Map<Long, Integer> createdBySerial = subtract(serialRows, initialRows);
+		Map<Long, Integer> createdByParallel = subtract(parallelRows, serialRows);
+		assertThat(createdBySerial).isNotEmpty();
+		assertEquals(createdBySerial, createdByParallel);
+		assertEquals(serialLinkCount - initialLinkCount, parallelLinkCount - serialLinkCount);
+
+		assertThat(myTestDaoSearch.searchForIds("Observation?code=http://loinc.org|8867-4&value-quantity=gt65")).hasSize(40);
+		assertThat(myTestDaoSearch.searchForIds("Observation?subject.identifier=http://mrn|existing")).hasSize(10);
+		assertThat(myTestDaoSearch.searchForIds("Condition?onset-date=ge2020-01-01")).hasSize(20);
+	}
+
+	@Test
+	public void testTransaction_UpdateHookModifiesResource() {
+		List<IIdType> ids = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			ids.add(createPatient(withFamily("Original")));
+		}
+
+		Object interceptor = new Object() {
+			@Hook(Pointcut.STORAGE_PRESTORAGE_RESOURCE_UPDATED)
+			public void preStorage(IBaseResource theOldResource, IBaseResource theNewResource) {
+				if (theNewResource instanceof Patient patient) {
+					patient.getNameFirstRep().setFamily("Hooked");
+				}
+			}
+		};
+		myInterceptorRegistry.registerInterceptor(interceptor);
+		try {
+			myStorageSettings.setTransactionIndexingPoolSize(4);
+			Bundle bundle = new Bundle();
+			bundle.setType(Bundle.BundleType.TRANSACTION);
+			for (IIdType next : ids) {
+				Patient patient = new Patient();
+				patient.setId(next);
+				patient.addName().setFamily("Updated");
+				bundle.addEntry().setResource(patient).getRequest().setMethod(Bundle.HTTPVerb.PUT).setUrl(next.getValue());
+			}
+			mySystemDao.transaction(mySrd, bundle);
+		} finally {
+			myInterceptorRegistry.unregisterInterceptor(interceptor);
+		}
+
+		assertThat(myTestDaoSearch.searchForIds("Patient?family=hooked")).hasSize(3);
+		assertThat(myTestDaoSearch.searchForIds("Patient?family=updated")).isEmpty();
+	}
+
+	/**
+	 * Not a strict performance assertion, this logs the time taken to process large synthetic
+	 * patient record bundles with and without the pool
+	 */
+	@Test
+	@Disabled
+	public void testTransactionTimings() {
+		createExistingPatient();
+		for (int poolSize : new int[] {1, 4, 1, 4}) {
+			myStorageSettings.setTransactionIndexingPoolSize(poolSize);
+			Bundle bundle = createSyntheticBundle(5, 40);
+			StopWatch sw = new StopWatch();
+			mySystemDao.transaction(mySrd, bundle);
+			ourLog.info("Transaction indexing pool size {} - {} entries - {}ms", poolSize, bundle.getEntry().size(), sw.getMillis());
+		}
+	}
+
+	/**
+	 * Builds a bundle which looks a bit like a Synthea patient record export: each patient has a number
+	 * of encounters, each with a few observations and a condition, all linked using placeholder ids.
+	 * One observation per patient references a pre-existing patient using an inline conditional reference.
+	 */
+	private Bundle createSyntheticBundle(int thePatientCount, int theEncountersPerPatient) {
+		Bundle bundle = new Bundle();
+		bundle.setType(Bundle.BundleType.TRANSACTION);
+		for (int p = 0; p < thePatientCount; p++) {
+			Patient patient = new Patient();
+			patient.addIdentifier().setSystem("http://synthea").setValue("P" + p);
+			patient.addName().setFamily("Family" + p).addGiven("Given" + p);
+			patient.setBirthDateElement(new DateType("1970-01-0" + (1 + p % 9)));
+			String patientId = addCreate(bundle, patient);
+
+			for (int e = 0; e < theEncountersPerPatient; e++) {
+				Encounter encounter = new Encounter();
+				encounter.setStatus(Encounter.EncounterStatus.FINISHED);
+				encounter.getClass_().setSystem("http://terminology.hl7.org/CodeSystem/v3-ActCode").setCode("AMB");
+				encounter.setSubject(new Reference(patientId));
+				encounter.getPeriod().setStartElement(new DateTimeType("2020-01-01T10:00:00Z"));
+				String encounterId = addCreate(bundle, encounter);
+
+				Observation heartRate = new Observation();
+				heartRate.setStatus(Observation.ObservationStatus.FINAL);
+				heartRate.getCode().addCoding().setSystem("http://loinc.org").setCode("8867-4").setDisplay("Heart rate");
+				heartRate.setValue(new Quantity().setValue(60 + e % 40).setSystem("http://unitsofmeasure.org").setCode("/min"));
+				heartRate.setEffective(new DateTimeType("2020-01-01T10:0" + (e % 10) + ":00Z"));
+				heartRate.setSubject(new Reference(e == 0 ? "Patient?identifier=http://mrn|existing" : patientId));
+				heartRate.setEncounter(new Reference(encounterId));
+				addCreate(bundle, heartRate);
+
+				Condition condition = new Condition();
+				condition.getCode().addCoding().setSystem("http://snomed.info/sct").setCode("44054006");
+				condition.setSubject(new Reference(patientId));
+				condition.setEncounter(new Reference(encounterId));
+				condition.setOnset(new DateTimeType("2020-01-0" + (1 + e % 9)));
+				if (e % 5 == 0) {
+					addCreate(bundle, condition);
+				}
+			}
+		}
+		return bundle;
+	}
+
+	private void createExistingPatient() {
+		Patient existing = new Patient();
+		existing.addIdentifier().setSystem("http://mrn").setValue("existing");
+		myPatientDao.create(existing, mySrd);
+	}
+
+	private Map<Long, Integer> getIndexRowCounts() {
+		return runInTransaction(() -> {
+			Map<Long, Integer> retVal = new HashMap<>();
+			countEqualityHashes(retVal, myResourceIndexedSearchParamStringDao.findAll());
+			countEqualityHashes(retVal, myResourceIndexedSearchParamTokenDao.findAll());
+			countEqualityHashes(retVal, myResourceIndexedSearchParamDateDao.findAll());
+			countEqualityHashes(retVal, myResourceIndexedSearchParamQuantityDao.findAll());
+			return retVal;
+		});
+	}
+
+	private static void countEqualityHashes(Map<Long, Integer> theCounts, Collection<? extends BaseResourceIndex> theRows) {
+		for (BaseResourceIndex next : theRows) {
+			theCounts.merge(next.getEqualityHash(), 1, Integer::sum);
+		}
+	}
+
+	private static Map<Long, Integer> subtract(Map<Long, Integer> theCounts, Map<Long, Integer> theCountsToSubtract) {
+		Map<Long, Integer> retVal = new HashMap<>(theCounts);
+		theCountsToSubtract.forEach((hash, count) -> retVal.merge(hash, -count, Integer::sum));
+		retVal.values().removeIf(t -> t == 0);
+		return retVal;
+	}
+
+	private static String addCreate(Bundle theBundle, Resource theResource) {
+		String id = "urn:uuid:" + UUID.randomUUID();
+		theBundle.addEntry()
+			.setFullUrl(id)
+			.setResource(theResource)
+			.getRequest()
+			.setMethod(Bundle.HTTPVerb.POST)
+			.setUrl(theResource.fhirType());
+		return id;
+	}
+}
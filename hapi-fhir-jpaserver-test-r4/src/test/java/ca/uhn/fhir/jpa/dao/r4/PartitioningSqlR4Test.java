@@ -28,6 +28,7 @@ import ca.uhn.fhir.jpa.model.entity.ResourceTable;
 import ca.uhn.fhir.jpa.model.entity.ResourceTag;
 import ca.uhn.fhir.jpa.model.entity.SearchParamPresentEntity;
 import ca.uhn.fhir.jpa.model.util.JpaConstants;
+import ca.uhn.fhir.jpa.search.builder.SearchParamStatisticsSvc;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
 import ca.uhn.fhir.jpa.util.SqlQuery;
 import ca.uhn.fhir.rest.api.Constants;
@@ -109,6 +110,9 @@ public class PartitioningSqlR4Test extends BasePartitioningR4Test {
 	@Autowired
 	private IJobCoordinator myJobCoordinator;
 
+	@Autowired
+	private SearchParamStatisticsSvc mySearchParamStatisticsSvc;
+
 	@BeforeEach
 	public void disableAdvanceIndexing() {
 		myStorageSettings.setAdvancedHSearchIndexing(false);
@@ -2731,6 +2735,24 @@ public class PartitioningSqlR4Test extends BasePartitioningR4Test {
 
 	}
 
+	@Test
+	public void testEstimatedCount_RefParam_UsesRequestPartition() {
+		IIdType patientId = createPatient(withPartition(myPartitionId), withGender("male"));
+		createObservation(withPartition(myPartitionId), withSubject(patientId));
+
+		SearchParameterMap map = new SearchParameterMap();
+		map.add(Observation.SP_SUBJECT, new ReferenceParam(patientId));
+
+		assertEquals(1, runInTransaction(() -> mySearchParamStatisticsSvc.estimateSearchCount(
+			"Observation", map, RequestPartitionId.fromPartitionId(myPartitionId))));
+		assertEquals(0, runInTransaction(() -> mySearchParamStatisticsSvc.estimateSearchCount(
+			"Observation", map, RequestPartitionId.fromPartitionId(myPartitionId2))));
+		assertEquals(0, runInTransaction(() -> mySearchParamStatisticsSvc.estimateSearchCount(
+			"Observation", map, RequestPartitionId.defaultPartition())));
+		assertEquals(1, runInTransaction(() -> mySearchParamStatisticsSvc.estimateSearchCount(
+			"Observation", map, RequestPartitionId.fromPartitionIds(null, myPartitionId))));
+	}
+
 	@Test
 	public void testSearch_RefParam_TargetForcedId_SearchOnePartition() {
 		createUniqueComboSp();
@@ -2969,7 +2991,7 @@ public class PartitioningSqlR4Test extends BasePartitioningR4Test {
 		Bundle output = mySystemDao.transaction(requestDetails, input);
 		myCaptureQueriesListener.logSelectQueries();
 
-		assertEquals(17, myCaptureQueriesListener.countSelectQueriesForCurrentThread());
+		assertEquals(4, myCaptureQueriesListener.countSelectQueriesForCurrentThread());
 		assertEquals(6189, myCaptureQueriesListener.countInsertQueriesForCurrentThread());
 		assertEquals(418, myCaptureQueriesListener.countUpdateQueriesForCurrentThread());
 		assertEquals(0, myCaptureQueriesListener.countDeleteQueriesForCurrentThread());
@@ -0,0 +1,190 @@
+package ca.uhn.fhir.jpa.provider.r4;
+
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.provider.BaseResourceProviderR4Test;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import ca.uhn.fhir.util.StopWatch;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class ResourceProviderR4KeysetPagingTest extends BaseResourceProviderR4Test {
+	private static final Logger ourLog = LoggerFactory.getLogger(ResourceProviderR4KeysetPagingTest.class);
+
+	@Override
+	@BeforeEach
+	public void before() throws Exception {
+		super.before();
+		myStorageSettings.setKeysetPagingEnabled(true);
+	}
+
+	@Override
+	@AfterEach
+	public void after() throws Exception {
+		super.after();
+		myStorageSettings.setKeysetPagingEnabled(new JpaStorageSettings().isKeysetPagingEnabled());
+	}
+
+	@Test
+	public void testSearchUnsorted() {
+		List<String> expected = new ArrayList<>();
+		for (int i = 0; i < 12; i++) {
+			expected.add(createPatient(withActiveTrue()).toUnqualifiedVersionless().getValue());
+		}
+		createPatient(withActiveFalse());
+
+		Bundle outcome = myClient
+			.search()
+			.forResource("Patient")
+			.where(Patient.ACTIVE.exactly().code("true"))
+			.offset(0)
+			.count(5)
+			.returnBundle(Bundle.class)
+			.execute();
+		List<String> actual = new ArrayList<>(toUnqualifiedVersionlessIdValues(outcome));
+		assertThat(outcome.getLink("next").getUrl()).contains("_offset=5", Constants.PARAM_KEYSET + "=");
+
+		myCaptureQueriesListener.clear();
+		outcome = myClient.loadPage().next(outcome).execute();
+		actual.addAll(toUnqualifiedVersionlessIdValues(outcome));
+		String sql = myCaptureQueriesListener.getSelectQueries().get(0).getSql(true, false);
+		assertThat(sql).contains(".RES_ID > '");
+		assertThat(sql).doesNotContain("offset '");
+		assertThat(outcome.getLink("next").getUrl()).contains("_offset=10", Constants.PARAM_KEYSET + "=");
+		assertThat(outcome.getLink("previous").getUrl()).contains("_offset=0").doesNotContain(Constants.PARAM_KEYSET);
+
+		outcome = myClient.loadPage().next(outcome).execute();
+		actual.addAll(toUnqualifiedVersionlessIdValues(outcome));
+		assertNull(outcome.getLink("next"));
+
+		// Results are returned in the order they were created, since they are sorted by PID
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	public void testSearchSortedByLastUpdated() {
+		List<IIdType> ids = new ArrayList<>();
+		for (int i = 0; i < 12; i++) {
+			ids.add(createPatient(withActiveTrue()).toUnqualifiedVersionless());
+		}
+		// Move a few resources to the end
+		for (int i = 0; i < 3; i++) {
+			Patient patient = myPatientDao.read(ids.get(i), mySrd);
+			patient.addName().setFamily("Updated");
+			myPatientDao.update(patient, mySrd);
+		}
+
+		Bundle all = myClient
+			.search()
+			.forResource("Patient")
+			.sort().descending(Constants.PARAM_LASTUPDATED)
+			.offset(0)
+			.count(100)
+			.returnBundle(Bundle.class)
+			.execute();
+		List<String> expected = toUnqualifiedVersionlessIdValues(all);
+		assertThat(expected).hasSize(12);
+		assertThat(expected.subList(0, 3)).containsExactlyInAnyOrder(ids.get(0).getValue(), ids.get(1).getValue(), ids.get(2).getValue());
+
+		Bundle outcome = myClient
+			.search()
+			.forResource("Patient")
+			.sort().descending(Constants.PARAM_LASTUPDATED)
+			.offset(0)
+			.count(5)
+			.returnBundle(Bundle.class)
+			.execute();
+		List<String> actual = new ArrayList<>(toUnqualifiedVersionlessIdValues(outcome));
+		while (outcome.getLink("next") != null) {
+			assertThat(outcome.getLink("next").getUrl()).contains(Constants.PARAM_KEYSET + "=");
+			outcome = myClient.loadPage().next(outcome).execute();
+			actual.addAll(toUnqualifiedVersionlessIdValues(outcome));
+		}
+
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	public void testSearchWithOtherSortUsesOffset() {
+		for (int i = 0; i < 7; i++) {
+			createPatient(withActiveTrue(), withFamily("Family" + i));
+		}
+
+		Bundle outcome = myClient
+			.search()
+			.forResource("Patient")
+			.sort().ascending(Patient.FAMILY)
+			.offset(0)
+			.count(5)
+			.returnBundle(Bundle.class)
+			.execute();
+
+		assertThat(outcome.getLink("next").getUrl()).contains("_offset=5").doesNotContain(Constants.PARAM_KEYSET);
+	}
+
+	@Test
+	public void testSearchWithInvalidKeyset() {
+		assertThatThrownBy(() -> myClient
+			.search()
+			.byUrl("Patient?_offset=5&_count=5&" + Constants.PARAM_KEYSET + "=foo")
+			.returnBundle(Bundle.class)
+			.execute())
+			.isInstanceOf(InvalidRequestException.class)
+			.hasMessageContaining(Msg.code(2585));
+	}
+
+	/**
+	 * Compares the time taken to fetch pages at increasing depths using an SQL
+	 * offset and using keyset paging
+	 */
+	@Test
+	@Disabled
+	public void testTimingsDeepPaging() {
+		List<Long> pids = new ArrayList<>();
+		for (int i = 0; i < 10000; i++) {
+			Patient patient = new Patient();
+			patient.setActive(true);
+			patient.addName().setFamily("Family" + i);
+			pids.add(myPatientDao.create(patient, mySrd).getId().getIdPartAsLong());
+		}
+
+		int pageSize = 50;
+		for (int round = 0; round < 2; round++) {
+			for (int depth : new int[] {0, 2500, 5000, 9900}) {
+				for (boolean keyset : new boolean[] {false, true}) {
+					myStorageSettings.setKeysetPagingEnabled(keyset);
+					StopWatch sw = new StopWatch();
+					for (int i = 0; i < 20; i++) {
+						SearchParameterMap map = SearchParameterMap.newSynchronous("active", new TokenParam("true"));
+						map.setOffset(depth);
+						map.setCount(pageSize);
+						if (keyset && depth > 0) {
+							map.setKeyset(Long.toString(pids.get(depth - 1)));
+						}
+						// No request details, since the offset would otherwise be taken from the request
+						assertThat(myPatientDao.search(map, null).getResources(0, Integer.MAX_VALUE)).hasSize(pageSize);
+					}
+					ourLog.info("Depth {} - Keyset {}: {}ms per page", depth, keyset, sw.getMillis() / 20);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,193 @@
+package ca.uhn.fhir.jpa.provider.r4;
+
+import ca.uhn.fhir.interceptor.api.IAnonymousInterceptor;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.interceptor.executor.InterceptorService;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.provider.BaseResourceProviderR4Test;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.MethodOutcome;
+import ca.uhn.fhir.rest.api.RestOperationTypeEnum;
+import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.CodeType;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Parameters;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.StringType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class ResourceProviderR4PassThroughEncodingTest extends BaseResourceProviderR4Test {
+
+	@Override
+	@BeforeEach
+	public void before() throws Exception {
+		super.before();
+		myStorageSettings.setResourcePassThroughEncodingEnabled(true);
+	}
+
+	@Override
+	@AfterEach
+	public void after() throws Exception {
+		super.after();
+		myStorageSettings.setResourcePassThroughEncodingEnabled(new JpaStorageSettings().isResourcePassThroughEncodingEnabled());
+	}
+
+	@Test
+	public void testReadAttachesStoredText() {
+		IIdType id = createPatientWithTags();
+
+		Patient patient = myPatientDao.read(id, newRequest(RestOperationTypeEnum.READ));
+
+		String storedText = (String) patient.getUserData(Constants.RESOURCE_PASS_THROUGH_JSON);
+		assertNotNull(storedText);
+		assertThat(storedText).contains("\"family\":\"Simpson\"");
+		assertThat(storedText).doesNotContain("versionId");
+	}
+
+	@Test
+	public void testReadNotAttachedWhenDisabled() {
+		IIdType id = createPatientWithTags();
+		myStorageSettings.setResourcePassThroughEncodingEnabled(false);
+
+		Patient patient = myPatientDao.read(id, newRequest(RestOperationTypeEnum.READ));
+
+		assertNull(patient.getUserData(Constants.RESOURCE_PASS_THROUGH_JSON));
+	}
+
+	@Test
+	public void testReadNotAttachedWhenPreShowInterceptorRegistered() {
+		IIdType id = createPatientWithTags();
+		IAnonymousInterceptor interceptor = (thePointcut, theArgs) -> {};
+		myInterceptorRegistry.registerAnonymousInterceptor(Pointcut.STORAGE_PRESHOW_RESOURCES, interceptor);
+		try {
+			Patient patient = myPatientDao.read(id, newRequest(RestOperationTypeEnum.READ));
+			assertNull(patient.getUserData(Constants.RESOURCE_PASS_THROUGH_JSON));
+		} finally {
+			myInterceptorRegistry.unregisterInterceptor(interceptor);
+		}
+	}
+
+	@Test
+	public void testReadNotAttachedWhenRequestInterceptorRegistered() {
+		IIdType id = createPatientWithTags();
+		InterceptorService requestInterceptors = new InterceptorService();
+		requestInterceptors.registerAnonymousInterceptor(
+			Pointcut.SERVER_OUTGOING_RESPONSE, (thePointcut, theArgs) -> {});
+		SystemRequestDetails request = new SystemRequestDetails(requestInterceptors);
+		request.setRestOperationType(RestOperationTypeEnum.READ);
+
+		Patient patient = myPatientDao.read(id, request);
+
+		assertNull(patient.getUserData(Constants.RESOURCE_PASS_THROUGH_JSON));
+	}
+
+	@Test
+	public void testReadNotAttachedForOtherOperations() {
+		IIdType id = createPatientWithTags();
+
+		// e.g. a custom operation which reads a resource, modifies it and returns it
+		Patient patient = myPatientDao.read(id, newRequest(RestOperationTypeEnum.EXTENDED_OPERATION_INSTANCE));
+		assertNull(patient.getUserData(Constants.RESOURCE_PASS_THROUGH_JSON));
+
+		patient = myPatientDao.read(id, new SystemRequestDetails());
+		assertNull(patient.getUserData(Constants.RESOURCE_PASS_THROUGH_JSON));
+	}
+
+	@Test
+	public void testReadAndSearchOutputMatchesEncodedOutput() throws IOException {
+		IIdType id = createPatientWithTags();
+		Observation obs = new Observation();
+		obs.setStatus(Observation.ObservationStatus.FINAL);
+		obs.getSubject().setReference(id.getValue());
+		obs.getValueQuantity().setValue(1.50000000000000000001).setUnit("mg");
+		myObservationDao.create(obs, mySrd);
+
+		String[] urls = new String[]{
+			myServerBase + "/" + id.getValue(),
+			myServerBase + "/Patient?_id=" + id.getIdPart(),
+			myServerBase + "/Observation?subject=" + id.getValue() + "&_include=Observation:subject"
+		};
+		for (String url : urls) {
+			String passThrough = get(url);
+			myStorageSettings.setResourcePassThroughEncodingEnabled(false);
+			String encoded = get(url);
+			myStorageSettings.setResourcePassThroughEncodingEnabled(true);
+
+			assertThat(passThrough).contains("\"family\":\"Simpson\"");
+			assertEquals(stripVolatileElements(encoded), stripVolatileElements(passThrough), url);
+		}
+	}
+
+	@Test
+	public void testPatchResponseReflectsChange() {
+		IIdType id = createPatientWithTags();
+
+		Parameters patch = new Parameters();
+		Parameters.ParametersParameterComponent operation = patch.addParameter();
+		operation.setName("operation");
+		operation.addPart().setName("type").setValue(new CodeType("replace"));
+		operation.addPart().setName("path").setValue(new StringType("Patient.active"));
+		operation.addPart().setName("value").setValue(new org.hl7.fhir.r4.model.BooleanType(false));
+
+		MethodOutcome outcome = myClient.patch().withFhirPatch(patch).withId(id).execute();
+		assertEquals(false, ((Patient) outcome.getResource()).getActive());
+
+		Patient read = myClient.read().resource(Patient.class).withId(id.toUnqualifiedVersionless()).execute();
+		assertEquals(false, read.getActive());
+		assertEquals("3", read.getIdElement().getVersionIdPart());
+	}
+
+	private IIdType createPatientWithTags() {
+		Patient patient = new Patient();
+		patient.getMeta().addTag("http://tags", "tag0", null);
+		patient.getMeta().addProfile("http://profile");
+		patient.setActive(true);
+		patient.addName().setFamily("Simpson").addGiven("Homer");
+		patient.getBirthDateElement().setValueAsString("1956-05-12");
+		patient.getBirthDateElement().addExtension("http://foo", new StringType("bar"));
+		IIdType id = myPatientDao.create(patient, mySrd).getId();
+
+		// Create a second version so that the version and tag handling is exercised
+		patient.setId(id.toUnqualifiedVersionless());
+		patient.addName().setFamily("Simpson").addGiven("Marge");
+		return myPatientDao.update(patient, mySrd).getId().toUnqualifiedVersionless();
+	}
+
+	private static SystemRequestDetails newRequest(RestOperationTypeEnum theOperationType) {
+		SystemRequestDetails retVal = new SystemRequestDetails();
+		retVal.setRestOperationType(theOperationType);
+		return retVal;
+	}
+
+	private String get(String theUrl) throws IOException {
+		HttpGet get = new HttpGet(theUrl);
+		get.addHeader(Constants.HEADER_ACCEPT, Constants.CT_FHIR_JSON_NEW);
+		try (CloseableHttpResponse resp = ourHttpClient.execute(get)) {
+			assertEquals(200, resp.getStatusLine().getStatusCode());
+			return IOUtils.toString(resp.getEntity().getContent(), StandardCharsets.UTF_8);
+		}
+	}
+
+	/**
+	 * Search bundles have a generated ID and timestamp
+	 */
+	private static String stripVolatileElements(String theBundle) {
+		return theBundle
+			.replaceAll("\"id\":\"[0-9a-f-]{36}\"", "")
+			.replaceAll("\"lastUpdated\":\"[^\"]+\",\"type\":\"searchset\"", "");
+	}
+}
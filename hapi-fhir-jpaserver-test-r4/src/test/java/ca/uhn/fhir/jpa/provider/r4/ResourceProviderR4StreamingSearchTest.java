@@ -0,0 +1,207 @@
+package ca.uhn.fhir.jpa.provider.r4;
+
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.interceptor.api.IAnonymousInterceptor;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.provider.BaseResourceProviderR4Test;
+import ca.uhn.fhir.jpa.search.StreamingSearchSvc;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.EncodingEnum;
+import ca.uhn.fhir.rest.api.server.IPreResourceAccessDetails;
+import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
+import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.server.provider.ProviderConstants;
+import ca.uhn.fhir.util.UrlUtil;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.hl7.fhir.instance.model.api.IAnyResource;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.OperationOutcome;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static ca.uhn.fhir.util.TestUtil.sleepAtLeast;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ResourceProviderR4StreamingSearchTest extends BaseResourceProviderR4Test {
+
+	@Autowired
+	private StreamingSearchSvc myStreamingSearchSvc;
+
+	@Override
+	@BeforeEach
+	public void before() throws Exception {
+		super.before();
+		myStorageSettings.setStreamingSearchBatchSize(5);
+	}
+
+	@Override
+	@AfterEach
+	public void after() throws Exception {
+		super.after();
+		myStorageSettings.setStreamingSearchBatchSize(new JpaStorageSettings().getStreamingSearchBatchSize());
+		myStorageSettings.setStreamingSearchTimeoutMillis(new JpaStorageSettings().getStreamingSearchTimeoutMillis());
+		myInterceptorRegistry.unregisterAllAnonymousInterceptors();
+	}
+
+	@Test
+	public void testStreamNdJson() throws IOException {
+		List<String> expected = createActivePatients(12);
+		createPatient(withActiveFalse());
+		long completedStreams = myStreamingSearchSvc.getCompletedStreamCount();
+
+		String response = executeStreamingSearch("Patient?active=true", null, 200);
+
+		List<IBaseResource> resources = parseNdJson(response);
+		assertEquals(expected, toUnqualifiedVersionlessIdValues(resources));
+
+		// Results are not stored in the search cache
+		assertEquals(0, mySearchEntityDao.count());
+		assertEquals(0, mySearchResultDao.count());
+
+		assertEquals(completedStreams + 1, myStreamingSearchSvc.getCompletedStreamCount());
+		assertThat(myStreamingSearchSvc.getStreamedResourceCount()).isGreaterThanOrEqualTo(12);
+		assertEquals(0, myStreamingSearchSvc.getActiveStreamCount());
+	}
+
+	@Test
+	public void testStreamBundle() throws IOException {
+		List<String> expected = createActivePatients(7);
+
+		String response = executeStreamingSearch("Patient?active=true", Constants.CT_FHIR_JSON_NEW, 200);
+
+		Bundle bundle = myFhirContext.newJsonParser().parseResource(Bundle.class, response);
+		assertEquals(Bundle.BundleType.SEARCHSET, bundle.getType());
+		assertEquals(expected, toUnqualifiedVersionlessIdValues(bundle));
+		assertThat(bundle.getEntry().get(0).getFullUrl()).isEqualTo(myServerBase + "/" + expected.get(0));
+		assertEquals(Bundle.SearchEntryMode.MATCH, bundle.getEntry().get(0).getSearch().getMode());
+	}
+
+	@Test
+	public void testStreamEmptyBundle() throws IOException {
+		String response = executeStreamingSearch("Patient?active=true", Constants.CT_FHIR_JSON_NEW, 200);
+
+		Bundle bundle = myFhirContext.newJsonParser().parseResource(Bundle.class, response);
+		assertThat(bundle.getEntry()).isEmpty();
+	}
+
+	@Test
+	public void testStreamAppliesPreAccessInterceptor() throws IOException {
+		createActivePatients(12);
+		IAnonymousInterceptor interceptor = (thePointcut, theArgs) ->
+				theArgs.get(IPreResourceAccessDetails.class).setDontReturnResourceAtIndex(0);
+		myInterceptorRegistry.registerAnonymousInterceptor(Pointcut.STORAGE_PREACCESS_RESOURCES, interceptor);
+
+		String response = executeStreamingSearch("Patient?active=true", null, 200);
+
+		// The first resource in each of the 3 batches is blocked
+		assertThat(parseNdJson(response)).hasSize(9);
+	}
+
+	@Test
+	public void testStreamAppliesPreSearchRegisteredInterceptor() throws IOException {
+		List<String> ids = createActivePatients(3);
+		IAnonymousInterceptor interceptor = (thePointcut, theArgs) ->
+				theArgs.get(SearchParameterMap.class).add(IAnyResource.SP_RES_ID, new TokenParam(ids.get(1)));
+		myInterceptorRegistry.registerAnonymousInterceptor(Pointcut.STORAGE_PRESEARCH_REGISTERED, interceptor);
+
+		String response = executeStreamingSearch("Patient?active=true", null, 200);
+
+		assertEquals(List.of(ids.get(1)), toUnqualifiedVersionlessIdValues(parseNdJson(response)));
+	}
+
+	@Test
+	public void testStreamTimeout() throws IOException {
+		createActivePatients(12);
+		myStorageSettings.setStreamingSearchTimeoutMillis(1);
+		IAnonymousInterceptor interceptor = (thePointcut, theArgs) -> sleepAtLeast(10);
+		myInterceptorRegistry.registerAnonymousInterceptor(Pointcut.STORAGE_PREACCESS_RESOURCES, interceptor);
+
+		String response = executeStreamingSearch("Patient?active=true", null, 200);
+
+		List<IBaseResource> resources = parseNdJson(response);
+		assertThat(resources.size()).isLessThan(12);
+		OperationOutcome outcome = (OperationOutcome) resources.get(resources.size() - 1);
+		assertEquals(OperationOutcome.IssueType.TIMEOUT, outcome.getIssueFirstRep().getCode());
+		assertThat(outcome.getIssueFirstRep().getDiagnostics()).contains("results are incomplete");
+	}
+
+	@Test
+	public void testStreamTimeoutCheckedForSlowClient() throws IOException {
+		createActivePatients(5);
+		myStorageSettings.setStreamingSearchTimeoutMillis(50);
+		SystemRequestDetails request = new SystemRequestDetails();
+		StreamingSearchSvc.StreamingSearch search = myStreamingSearchSvc.createStreamingSearch("Patient?active=true", request);
+
+		// Every write is slow, as if the client was reading the response slowly
+		StringWriter output = new StringWriter();
+		Writer slowWriter = new FilterWriter(output) {
+			@Override
+			public void write(String theString, int theOffset, int theLength) throws IOException {
+				sleepAtLeast(20);
+				super.write(theString, theOffset, theLength);
+			}
+		};
+		long count = myStreamingSearchSvc.streamSearch(search, EncodingEnum.NDJSON, request, slowWriter);
+
+		// The timeout is reached within the first batch of 5
+		assertThat(count).isLessThan(5);
+		List<IBaseResource> resources = parseNdJson(output.toString());
+		OperationOutcome outcome = (OperationOutcome) resources.get(resources.size() - 1);
+		assertEquals(OperationOutcome.IssueType.TIMEOUT, outcome.getIssueFirstRep().getCode());
+	}
+
+	@Test
+	public void testInvalidRequests() throws IOException {
+		assertThat(executeStreamingSearch("Patient?_include=Patient:organization", null, 400)).contains(Msg.code(2587));
+		assertThat(executeStreamingSearch("Patient", null, 400)).contains(Msg.code(2586));
+		assertThat(executeStreamingSearch("Patient?active=true", "application/fhir+xml", 400)).contains(Msg.code(2588));
+	}
+
+	private List<String> createActivePatients(int theCount) {
+		List<String> retVal = new ArrayList<>();
+		for (int i = 0; i < theCount; i++) {
+			retVal.add(createPatient(withActiveTrue()).toUnqualifiedVersionless().getValue());
+		}
+		return retVal;
+	}
+
+	private List<IBaseResource> parseNdJson(String theResponse) {
+		List<IBaseResource> retVal = new ArrayList<>();
+		for (String next : theResponse.split("\n")) {
+			if (!next.isBlank()) {
+				retVal.add(myFhirContext.newJsonParser().parseResource(next));
+			}
+		}
+		return retVal;
+	}
+
+	private String executeStreamingSearch(String theUrl, String theOutputFormat, int theExpectedStatus) throws IOException {
+		String url = myServerBase + "/" + ProviderConstants.OPERATION_STREAM_SEARCH + "?"
+				+ ProviderConstants.OPERATION_STREAM_SEARCH_PARAM_URL + "=" + UrlUtil.escapeUrlParam(theUrl);
+		if (theOutputFormat != null) {
+			url += "&" + ProviderConstants.OPERATION_STREAM_SEARCH_PARAM_OUTPUT_FORMAT + "=" + UrlUtil.escapeUrlParam(theOutputFormat);
+		}
+		HttpGet get = new HttpGet(url);
+		try (CloseableHttpResponse response = ourHttpClient.execute(get)) {
+			String body = IOUtils.toString(response.getEntity().getContent(), StandardCharsets.UTF_8);
+			assertEquals(theExpectedStatus, response.getStatusLine().getStatusCode(), body);
+			return body;
+		}
+	}
+}
@@ -12,6 +12,7 @@ import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
 import ca.uhn.fhir.jpa.api.dao.ReindexParameters;
 import ca.uhn.fhir.jpa.api.model.DaoMethodOutcome;
 import ca.uhn.fhir.jpa.batch.models.Batch2JobStartResponse;
+import ca.uhn.fhir.jpa.model.entity.ResourceEncodingEnum;
 import ca.uhn.fhir.jpa.model.entity.ResourceHistoryTable;
 import ca.uhn.fhir.jpa.model.entity.ResourceIndexedComboStringUnique;
 import ca.uhn.fhir.jpa.model.entity.ResourceIndexedComboTokenNonUnique;
@@ -32,6 +33,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import java.util.Date;
@@ -69,6 +71,7 @@ public class ReindexTaskTest extends BaseJpaR4Test {
 		myInterceptorRegistry.unregisterAllAnonymousInterceptors();
 		myStorageSettings.setStoreMetaSourceInformation(new JpaStorageSettings().getStoreMetaSourceInformation());
 		myStorageSettings.setPreserveRequestIdInResourceBody(new JpaStorageSettings().isPreserveRequestIdInResourceBody());
+		myStorageSettings.setResourceEncoding(new JpaStorageSettings().getResourceEncoding());
 	}
 
 	@Test
@@ -180,6 +183,53 @@ public class ReindexTaskTest extends BaseJpaR4Test {
 
 	}
 
+	@ParameterizedTest
+	@ValueSource(booleans = {true, false})
+	public void testOptimizeStorage_AllVersions_MigrateToCompressionCodec(boolean theRelocateToCompressedColumn) {
+		// Setup
+		IIdType patientId = createPatient(withActiveTrue());
+		for (int i = 0; i < 5; i++) {
+			Patient p = new Patient();
+			p.setId(patientId.toUnqualifiedVersionless());
+			p.setActive(true);
+			p.addIdentifier().setValue(String.valueOf(i));
+			myPatientDao.update(p, mySrd);
+		}
+		for (int i = 0; i < 4; i++) {
+			createPatient(withActiveTrue());
+		}
+		if (theRelocateToCompressedColumn) {
+			List<ResourceHistoryTable> allHistoryEntities = runInTransaction(() -> myResourceHistoryTableDao.findAll());
+			allHistoryEntities.forEach(t -> relocateResourceTextToCompressedColumn(t.getResourceId(), t.getVersion()));
+		}
+
+		// execute
+		myStorageSettings.setResourceEncoding(ResourceEncodingEnum.JZSTD);
+		JobInstanceStartRequest startRequest = new JobInstanceStartRequest();
+		startRequest.setJobDefinitionId(JOB_REINDEX);
+		startRequest.setParameters(
+			new ReindexJobParameters()
+				.setOptimizeStorage(ReindexParameters.OptimizeStorageModeEnum.ALL_VERSIONS)
+				.setReindexSearchParameters(ReindexParameters.ReindexSearchParametersEnum.NONE)
+		);
+		Batch2JobStartResponse startResponse = myJobCoordinator.startInstance(mySrd, startRequest);
+		myBatch2JobHelper.awaitJobCompletion(startResponse);
+
+		// validate
+		runInTransaction(() -> {
+			assertEquals(10, myResourceHistoryTableDao.count());
+			for (ResourceHistoryTable history : myResourceHistoryTableDao.findAll()) {
+				assertEquals(ResourceEncodingEnum.JZSTD, history.getEncoding());
+				assertNull(history.getResourceTextVc());
+				assertNotNull(history.getResource());
+			}
+		});
+		Patient patient = myPatientDao.read(patientId, mySrd);
+		assertTrue(patient.getActive());
+		assertEquals("4", patient.getIdentifierFirstRep().getValue());
+		assertEquals("0", myPatientDao.read(patientId.withVersion("2"), mySrd).getIdentifierFirstRep().getValue());
+	}
+
 	@Test
 	public void testOptimizeStorage_AllVersions_CopyProvenanceEntityData() {
 		// Setup
@@ -0,0 +1,156 @@
+package ca.uhn.fhir.jpa.search.builder;
+
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.cache.ParsedResourceCacheSvc;
+import ca.uhn.fhir.jpa.model.entity.ResourceEncodingEnum;
+import ca.uhn.fhir.jpa.model.entity.ResourceHistoryTable;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.test.BaseJpaR4Test;
+import ca.uhn.fhir.model.api.ResourceMetadataKeyEnum;
+import ca.uhn.fhir.rest.api.SortSpec;
+import ca.uhn.fhir.util.StopWatch;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class SearchResultLoadExecutorR4Test extends BaseJpaR4Test {
+	private static final Logger ourLog = LoggerFactory.getLogger(SearchResultLoadExecutorR4Test.class);
+
+	@Autowired
+	private ParsedResourceCacheSvc myParsedResourceCacheSvc;
+
+	@AfterEach
+	public void afterEach() {
+		myStorageSettings.setSearchResultLoadThreadCount(new JpaStorageSettings().getSearchResultLoadThreadCount());
+		myStorageSettings.setParsedResourceCacheResourceTypes(new JpaStorageSettings().getParsedResourceCacheResourceTypes());
+		myParsedResourceCacheSvc.unregisterListener();
+		myParsedResourceCacheSvc.invalidateAll();
+		SearchBuilder.setMaxPageSize50ForTest(false);
+	}
+
+	@Test
+	public void testParallelLoadPreservesOrder() {
+		// Force the PIDs to be loaded in several chunks
+		SearchBuilder.setMaxPageSize50ForTest(true);
+		createObservationsWithSubjects(60);
+
+		List<String> serial = toIdsWithSearchMode(searchObservationsWithSubject(1000));
+		assertThat(serial).hasSize(120);
+
+		myStorageSettings.setSearchResultLoadThreadCount(4);
+		List<String> parallel = toIdsWithSearchMode(searchObservationsWithSubject(1000));
+		assertEquals(serial, parallel);
+	}
+
+	@Test
+	public void testParallelLoadPropagatesParseFailure() {
+		myStorageSettings.setSearchResultLoadThreadCount(4);
+		List<IIdType> patientIds = createObservationsWithSubjects(5);
+
+		runInTransaction(() -> {
+			ResourceHistoryTable history = myResourceHistoryTableDao.findForIdAndVersionAndFetchProvenance(patientIds.get(2).getIdPartAsLong(), 1);
+			history.setEncoding(ResourceEncodingEnum.JSON);
+			history.setResourceTextVc("{\"resourceType\":\"Patient\",");
+			myResourceHistoryTableDao.save(history);
+		});
+
+		assertThatThrownBy(() -> searchObservationsWithSubject(1000))
+			.hasMessageContaining(Msg.code(928));
+	}
+
+	@Test
+	public void testParallelLoadCachesParsedResourcesAfterCommit() {
+		createObservationsWithSubjects(5);
+		myStorageSettings.setParsedResourceCacheResourceTypes(Set.of("Patient"));
+		myParsedResourceCacheSvc.invalidateAll();
+		myStorageSettings.setSearchResultLoadThreadCount(4);
+
+		runInTransaction(() -> {
+			assertThat(searchObservationsWithSubject(1000)).hasSize(10);
+			assertEquals(5, myParsedResourceCacheSvc.getMissCount());
+			assertEquals(0, myParsedResourceCacheSvc.getEstimatedSize());
+		});
+
+		assertEquals(5, myParsedResourceCacheSvc.getEstimatedSize());
+	}
+
+	/**
+	 * Reports the page latency of a large search with an <code>_include</code> when
+	 * resources are loaded serially and in parallel
+	 */
+	@Test
+	@Disabled
+	public void testTimingsLargePageWithInclude() {
+		createObservationsWithSubjects(400);
+
+		for (int round = 0; round < 2; round++) {
+			for (int threadCount : new int[] {1, 4}) {
+				myStorageSettings.setSearchResultLoadThreadCount(threadCount);
+				List<Long> latencies = new ArrayList<>();
+				for (int i = 0; i < 50; i++) {
+					StopWatch sw = new StopWatch();
+					assertThat(searchObservationsWithSubject(400)).hasSize(800);
+					latencies.add(sw.getMillis());
+				}
+				Collections.sort(latencies);
+				ourLog.info(
+					"Threads {}: p50 {}ms - p99 {}ms - max {}ms",
+					threadCount,
+					latencies.get(latencies.size() / 2),
+					latencies.get((int) Math.ceil(latencies.size() * 0.99) - 1),
+					latencies.get(latencies.size() - 1));
+			}
+		}
+	}
+
+	private List<IIdType> createObservationsWithSubjects(int theCount) {
+		List<IIdType> retVal = new ArrayList<>();
+		for (int i = 0; i < theCount; i++) {
+			Patient patient = new Patient();
+			patient.addName().setFamily("Family" + i).addGiven("Given" + i);
+			patient.addIdentifier().setSystem("http://mrn").setValue("MRN" + i);
+			patient.addAddress().addLine("123 Main St").setCity("Springfield").setState("IL").setPostalCode("62701");
+			IIdType patientId = myPatientDao.create(patient, mySrd).getId().toUnqualifiedVersionless();
+			retVal.add(patientId);
+
+			Observation obs = new Observation();
+			obs.setStatus(Observation.ObservationStatus.FINAL);
+			obs.getCode().addCoding().setSystem("http://loinc.org").setCode("789-8").setDisplay("Erythrocytes [#/volume] in Blood by Automated count");
+			obs.getSubject().setReferenceElement(patientId);
+			obs.getValueQuantity().setSystem("http://unitsofmeasure.org").setCode("mg/L").setValue(i);
+			myObservationDao.create(obs, mySrd);
+		}
+		return retVal;
+	}
+
+	private List<IBaseResource> searchObservationsWithSubject(int theCount) {
+		SearchParameterMap map = SearchParameterMap.newSynchronous();
+		map.setSort(new SortSpec("value-quantity"));
+		map.addInclude(Observation.INCLUDE_SUBJECT);
+		map.setCount(theCount);
+		return myObservationDao.search(map, mySrd).getResources(0, theCount * 2);
+	}
+
+	private static List<String> toIdsWithSearchMode(List<IBaseResource> theResources) {
+		return theResources.stream()
+			.map(t -> t.getIdElement().toUnqualifiedVersionless().getValue() + " " + ResourceMetadataKeyEnum.ENTRY_SEARCH_MODE.get(t))
+			.toList();
+	}
+}
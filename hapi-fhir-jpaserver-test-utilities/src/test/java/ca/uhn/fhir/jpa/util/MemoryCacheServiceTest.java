@@ -64,6 +64,30 @@ class MemoryCacheServiceTest {
 		assertEquals(tagDef, retVal);
 	}
 
+	@Test
+	public void statisticsCountHitsAndMisses() {
+		MemoryCacheService.CacheEnum cache = MemoryCacheService.CacheEnum.RESOURCE_ID_NOT_FOUND;
+
+		assertNull(mySvc.getIfPresent(cache, "Patient/A"));
+		mySvc.put(cache, "Patient/A", 1L);
+		assertEquals(1L, (Long) mySvc.getIfPresent(cache, "Patient/A"));
+		assertEquals(1L, (Long) mySvc.get(cache, "Patient/A", k -> 2L));
+		assertEquals(3L, (Long) mySvc.get(cache, "Patient/B", k -> 3L));
+		assertThat(mySvc.getAllPresent(cache, List.of("Patient/A", "Patient/B", "Patient/C"))).hasSize(2);
+
+		MemoryCacheService.CacheStatistics statistics = mySvc.getStatistics(cache);
+		assertEquals(4, statistics.getHitCount());
+		assertEquals(3, statistics.getMissCount());
+		assertEquals(0, mySvc.getStatistics(MemoryCacheService.CacheEnum.TAG_DEFINITION).getHitCount());
+
+		mySvc.invalidateNowAndAfterCommit(cache, "Patient/A");
+		assertNull(mySvc.getIfPresent(cache, "Patient/A"));
+
+		mySvc.resetStatistics();
+		assertEquals(0, statistics.getHitCount());
+		assertEquals(0, statistics.getMissCount());
+	}
+
 	@Nested
 	public static class CaffeineAbuseTest {
 
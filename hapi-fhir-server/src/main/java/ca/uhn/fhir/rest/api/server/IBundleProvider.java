@@ -107,6 +107,19 @@ public interface IBundleProvider {
 		return null;
 	}
 
+	/**
+	 * If {@link #getCurrentPageOffset()} returns a non-null value, this method may return an opaque
+	 * value identifying the position immediately after the last result in the current page. If it
+	 * does, the server adds it to the <code>next</code> paging link as the <code>_keyset</code>
+	 * parameter, so that the next page can be found without skipping over all of the results in the
+	 * previous pages.
+	 *
+	 * @since 7.6.0
+	 */
+	default String getNextPageKeyset() {
+		return null;
+	}
+
 	/**
 	 * Returns the instant as of which this result was created. The
 	 * result of this value is used to populate the <code>lastUpdated</code>
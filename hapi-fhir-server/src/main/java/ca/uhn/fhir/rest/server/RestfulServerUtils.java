@@ -252,6 +252,24 @@ public class RestfulServerUtils {
 			Integer theOffset,
 			Integer theCount,
 			Map<String, String[]> theRequestParameters) {
+		return createOffsetPagingLink(
+				theBundleLinks, requestPath, tenantId, theOffset, theCount, theRequestParameters, null);
+	}
+
+	/**
+	 * Creates a paging link using <code>_offset</code>. Any <code>_keyset</code> parameter in the
+	 * request is replaced with the given keyset, or removed if it is <code>null</code>.
+	 *
+	 * @since 7.6.0
+	 */
+	public static String createOffsetPagingLink(
+			BundleLinks theBundleLinks,
+			String requestPath,
+			String tenantId,
+			Integer theOffset,
+			Integer theCount,
+			Map<String, String[]> theRequestParameters,
+			@Nullable String theKeyset) {
 		StringBuilder b = new StringBuilder();
 		b.append(theBundleLinks.serverBase);
 
@@ -267,6 +285,10 @@ public class RestfulServerUtils {
 		Map<String, String[]> params = Maps.newLinkedHashMap(theRequestParameters);
 		params.put(Constants.PARAM_OFFSET, new String[] {String.valueOf(theOffset)});
 		params.put(Constants.PARAM_COUNT, new String[] {String.valueOf(theCount)});
+		params.remove(Constants.PARAM_KEYSET);
+		if (isNotBlank(theKeyset)) {
+			params.put(Constants.PARAM_KEYSET, new String[] {theKeyset});
+		}
 
 		boolean first = true;
 		for (String nextParamName : new TreeSet<>(params.keySet())) {
@@ -654,6 +676,18 @@ public class RestfulServerUtils {
 		return RestfulServerUtils.tryToExtractNamedParameter(theRequest, Constants.PARAM_OFFSET);
 	}
 
+	/**
+	 * @since 7.6.0
+	 */
+	@Nullable
+	public static String extractKeysetParameter(RequestDetails theRequest) {
+		String[] retVal = theRequest.getParameters().get(Constants.PARAM_KEYSET);
+		if (retVal == null || retVal.length == 0 || isBlank(retVal[0])) {
+			return null;
+		}
+		return retVal[0];
+	}
+
 	public static IPrimitiveType<Date> extractLastUpdatedFromResource(IBaseResource theResource) {
 		IPrimitiveType<Date> lastUpdated = null;
 		if (theResource instanceof IResource) {
@@ -709,6 +743,9 @@ public class RestfulServerUtils {
 		if (encoding == null) {
 			return null;
 		}
+		if (encoding == EncodingEnum.CBOR && !theFhirContext.isFormatCborSupported()) {
+			return null;
+		}
 		return new ResponseEncoding(theFhirContext, encoding, theContentType);
 	}
 
@@ -727,6 +764,9 @@ public class RestfulServerUtils {
 			case RDF:
 				parser = context.newRDFParser();
 				break;
+			case CBOR:
+				parser = context.newCborParser();
+				break;
 			case XML:
 			default:
 				parser = context.newXmlParser();
@@ -1018,6 +1058,17 @@ public class RestfulServerUtils {
 		} else {
 			contentType = responseEncoding.getResourceContentType();
 		}
+		if (theResource != null
+				&& !encodingDomainResourceAsText
+				&& responseEncoding.getEncoding().isBinary()) {
+			// Binary encodings are written directly to the response stream
+			FhirVersionEnum forVersion = theResource.getStructureFhirVersionEnum();
+			IParser parser = getNewParser(theServer.getFhirContext(), forVersion, theRequestDetails);
+			OutputStream outputStream = response.getResponseOutputStream(theStatusCode, contentType, null);
+			parser.encodeResourceToOutputStream(theResource, outputStream);
+			return response.commitResponse(outputStream);
+		}
+
 		String charset = Constants.CHARSET_NAME_UTF8;
 
 		Writer writer = response.getResponseWriter(theStatusCode, contentType, charset, respondGzip);
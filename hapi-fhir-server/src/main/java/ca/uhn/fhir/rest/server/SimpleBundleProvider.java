@@ -41,6 +41,7 @@ public class SimpleBundleProvider implements IBundleProvider {
 	private IPrimitiveType<Date> myPublished = InstantDt.withCurrentTime();
 	private Integer myCurrentPageOffset;
 	private Integer myCurrentPageSize;
+	private String myNextPageKeyset;
 	private ResponsePage.ResponsePageBuilder myPageBuilder;
 
 	/**
@@ -127,6 +128,21 @@ public class SimpleBundleProvider implements IBundleProvider {
 		myCurrentPageSize = theCurrentPageSize;
 	}
 
+	/**
+	 * @since 7.6.0
+	 */
+	@Override
+	public String getNextPageKeyset() {
+		return myNextPageKeyset;
+	}
+
+	/**
+	 * @since 7.6.0
+	 */
+	public void setNextPageKeyset(String theNextPageKeyset) {
+		myNextPageKeyset = theNextPageKeyset;
+	}
+
 	/**
 	 * Returns the results stored in this provider
 	 */
@@ -42,6 +42,7 @@ import org.hl7.fhir.instance.model.api.IBaseResource;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.lang.reflect.Method;
@@ -201,11 +202,26 @@ public class ResourceParameter implements IParameter {
 			}
 		}
 
+		if (encoding == EncodingEnum.CBOR && !ctx.isFormatCborSupported()) {
+			String ctValue = theRequest.getHeader(Constants.HEADER_CONTENT_TYPE);
+			String msg = ctx.getLocalizer()
+					.getMessage(ResourceParameter.class, "invalidContentTypeInRequest", ctValue, restOperationType);
+			throw new InvalidRequestException(Msg.code(2591) + msg);
+		}
+
 		IParser parser = encoding.newParser(ctx);
 		parser.setServerBaseUrl(theRequest.getFhirServerBase());
 		T retVal;
 		try {
-			if (theResourceType != null) {
+			if (encoding.isBinary()) {
+				// Binary encodings are parsed from the raw request bytes
+				InputStream requestStream = new ByteArrayInputStream(theRequest.loadRequestContents());
+				if (theResourceType != null) {
+					retVal = parser.parseResource(theResourceType, requestStream);
+				} else {
+					retVal = (T) parser.parseResource(requestStream);
+				}
+			} else if (theResourceType != null) {
 				retVal = parser.parseResource(theResourceType, requestReader);
 			} else {
 				retVal = (T) parser.parseResource(requestReader);
@@ -282,7 +282,8 @@ public class ResponsePage {
 							myResponseBundleRequest.requestDetails.getTenantId(),
 							myRequestedPage.offset + myRequestedPage.limit,
 							myRequestedPage.limit,
-							myResponseBundleRequest.getRequestParameters());
+							myResponseBundleRequest.getRequestParameters(),
+							myBundleProvider.getNextPageKeyset());
 					break;
 				case NONCACHED_OFFSET:
 					next = RestfulServerUtils.createOffsetPagingLink(
@@ -291,7 +292,8 @@ public class ResponsePage {
 							myResponseBundleRequest.requestDetails.getTenantId(),
 							ObjectUtils.defaultIfNull(myRequestedPage.offset, 0) + myNumToReturn,
 							myNumToReturn,
-							myResponseBundleRequest.getRequestParameters());
+							myResponseBundleRequest.getRequestParameters(),
+							myBundleProvider != null ? myBundleProvider.getNextPageKeyset() : null);
 					break;
 				case BUNDLE_PROVIDER_PAGE_IDS:
 					next = RestfulServerUtils.createPagingLink(
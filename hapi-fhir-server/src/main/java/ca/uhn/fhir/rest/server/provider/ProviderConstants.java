@@ -243,4 +243,19 @@ public class ProviderConstants {
 	 * Operation name for the "$export" operation
 	 */
 	public static final String OPERATION_EXPORT = "$export";
+
+	/**
+	 * Operation name for the $stream-search operation
+	 */
+	public static final String OPERATION_STREAM_SEARCH = "$stream-search";
+
+	/**
+	 * The search URL for the $stream-search operation
+	 */
+	public static final String OPERATION_STREAM_SEARCH_PARAM_URL = "url";
+
+	/**
+	 * The output format (NDJSON or a JSON searchset Bundle) for the $stream-search operation
+	 */
+	public static final String OPERATION_STREAM_SEARCH_PARAM_OUTPUT_FORMAT = "_outputFormat";
 }
@@ -34,7 +34,7 @@ import ca.uhn.fhir.jpa.api.dao.IFhirSystemDao;
 import ca.uhn.fhir.jpa.api.svc.IIdHelperService;
 import ca.uhn.fhir.jpa.dao.tx.HapiTransactionService;
 import ca.uhn.fhir.parser.DataFormatException;
-import ca.uhn.fhir.parser.IParser;
+import ca.uhn.fhir.parser.NDJsonParser;
 import ca.uhn.fhir.rest.api.server.RequestDetails;
 import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
 import ca.uhn.fhir.rest.api.server.storage.IResourcePersistentId;
@@ -42,7 +42,6 @@ import ca.uhn.fhir.rest.api.server.storage.TransactionDetails;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import ca.uhn.fhir.rest.server.exceptions.PreconditionFailedException;
 import jakarta.annotation.Nonnull;
-import org.apache.commons.io.LineIterator;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IIdType;
 import org.slf4j.Logger;
@@ -55,8 +54,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import static org.apache.commons.lang3.StringUtils.isNotBlank;
-
 public class ConsumeFilesStep implements ILastJobStepWorker<BulkImportJobParameters, NdJsonFileJson> {
 
 	private static final Logger ourLog = LoggerFactory.getLogger(ConsumeFilesStep.class);
@@ -85,20 +82,12 @@ public class ConsumeFilesStep implements ILastJobStepWorker<BulkImportJobParamet
 		String ndjson = theStepExecutionDetails.getData().getNdJsonText();
 		String sourceName = theStepExecutionDetails.getData().getSourceName();
 
-		IParser jsonParser = myCtx.newJsonParser();
-		LineIterator lineIter = new LineIterator(new StringReader(ndjson));
+		NDJsonParser ndJsonParser = (NDJsonParser) myCtx.newNDJsonParser();
 		List<IBaseResource> resources = new ArrayList<>();
-		while (lineIter.hasNext()) {
-			String next = lineIter.next();
-			if (isNotBlank(next)) {
-				IBaseResource parsed;
-				try {
-					parsed = jsonParser.parseResource(next);
-				} catch (DataFormatException e) {
-					throw new JobExecutionFailedException(Msg.code(2052) + "Failed to parse resource: " + e, e);
-				}
-				resources.add(parsed);
-			}
+		try {
+			ndJsonParser.parseResources(new StringReader(ndjson)).forEachRemaining(resources::add);
+		} catch (DataFormatException e) {
+			throw new JobExecutionFailedException(Msg.code(2052) + "Failed to parse resource: " + e, e);
 		}
 
 		ourLog.info("Bulk loading {} resources from source {}", resources.size(), sourceName);
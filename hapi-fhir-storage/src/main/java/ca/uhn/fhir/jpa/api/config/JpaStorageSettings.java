@@ -98,6 +98,23 @@ public class JpaStorageSettings extends StorageSettings {
 	public static final int DEFAULT_EXPUNGE_BATCH_SIZE = 800;
 	public static final int DEFAULT_BUNDLE_BATCH_QUEUE_CAPACITY = 200;
 
+	/**
+	 * @since 7.6.0
+	 */
+	public static final int DEFAULT_PARSED_RESOURCE_CACHE_MAXIMUM_SIZE = 10000;
+	/**
+	 * @since 7.6.0
+	 */
+	public static final long DEFAULT_STREAMING_SEARCH_TIMEOUT_MILLIS = 5 * DateUtils.MILLIS_PER_MINUTE;
+	/**
+	 * @since 7.6.0
+	 */
+	public static final long DEFAULT_SEARCH_INDEX_SNAPSHOT_REFRESH_INTERVAL_MILLIS = DateUtils.MILLIS_PER_MINUTE;
+	/**
+	 * @since 7.6.0
+	 */
+	public static final int DEFAULT_STREAMING_SEARCH_BATCH_SIZE = 500;
+
 	public static final int DEFAULT_BULK_EXPORT_FILE_MAXIMUM_CAPACITY = 1_000;
 	/**
 	 * Default value for {@link #setMaximumSearchResultCountInTransaction(Integer)}
@@ -368,6 +385,81 @@ public class JpaStorageSettings extends StorageSettings {
 	 */
 	private boolean myWriteToLegacyLobColumns = false;
 
+	/**
+	 * @since 7.6.0
+	 */
+	private boolean myResourcePassThroughEncodingEnabled = false;
+
+	/**
+	 * @since 7.6.0
+	 */
+	private Set<String> myParsedResourceCacheResourceTypes = Collections.emptySet();
+
+	/**
+	 * @since 7.6.0
+	 */
+	private int myParsedResourceCacheMaximumSize = DEFAULT_PARSED_RESOURCE_CACHE_MAXIMUM_SIZE;
+
+	/**
+	 * @since 7.6.0
+	 */
+	private int mySearchResultLoadThreadCount = 1;
+
+	/**
+	 * @since 7.6.0
+	 */
+	private boolean myKeysetPagingEnabled = false;
+
+	/**
+	 * @since 7.6.0
+	 */
+	private long myStreamingSearchTimeoutMillis = DEFAULT_STREAMING_SEARCH_TIMEOUT_MILLIS;
+
+	/**
+	 * @since 7.6.0
+	 */
+	private int myStreamingSearchBatchSize = DEFAULT_STREAMING_SEARCH_BATCH_SIZE;
+
+	/**
+	 * @since 7.6.0
+	 */
+	private boolean myCostBasedPredicateOrderingEnabled = false;
+
+	/**
+	 * @since 7.6.0
+	 */
+	private long mySearchCountCacheMillis = 0;
+
+	/**
+	 * @since 7.6.0
+	 */
+	private long myResourceIdNotFoundCacheMillis = 0;
+
+	/**
+	 * @since 7.6.0
+	 */
+	private Set<String> mySearchIndexSnapshotResourceTypes = Collections.emptySet();
+
+	/**
+	 * @since 7.6.0
+	 */
+	private long mySearchIndexSnapshotRefreshIntervalMillis = DEFAULT_SEARCH_INDEX_SNAPSHOT_REFRESH_INTERVAL_MILLIS;
+
+	/**
+	 * @since 7.6.0
+	 */
+	private int myChainedSearchPreResolutionThreshold = 0;
+
+	/**
+	 * @since 7.6.0
+	 */
+	private int mySearchIndexBulkInsertBatchSize = 0;
+
+	/**
+	 * @since 7.6.0
+	 */
+	private boolean mySearchIndexFingerprintEnabled = false;
+
 	/**
 	 * Constructor
 	 */
@@ -1004,6 +1096,15 @@ public class JpaStorageSettings extends StorageSettings {
 		return myResourceEncoding;
 	}
 
+	/**
+	 * Sets the encoding used to store resource bodies. The default is {@link ResourceEncodingEnum#JSONC}.
+	 * Note that on platforms other than Oracle, {@link ResourceEncodingEnum#JSONC} is always stored as uncompressed text.
+	 * {@link ResourceEncodingEnum#CBOR} stores a binary encoding on all platforms, which is faster to
+	 * write than compressed JSON but uses more storage, and is not faster to read.
+	 * {@link ResourceEncodingEnum#JZSTD} and {@link ResourceEncodingEnum#JLZ4} store JSON compressed using
+	 * Zstandard or LZ4 on all platforms, which is much faster to compress than GZip. Existing resources
+	 * can be migrated to these encodings by reindexing with the <code>optimizeStorage</code> parameter.
+	 */
 	public void setResourceEncoding(ResourceEncodingEnum theResourceEncoding) {
 		myResourceEncoding = theResourceEncoding;
 	}
@@ -2415,6 +2516,523 @@ public class JpaStorageSettings extends StorageSettings {
 		myResourceHistoryDbEnabled = theResourceHistoryEnabled;
 	}
 
+	/**
+	 * Resources of the types returned by this setting are kept in memory after they are parsed
+	 * from the database, so that loading the same version of the same resource again (e.g. because
+	 * it is returned as an <code>_include</code> by many different searches) does not require its
+	 * stored body to be decompressed and parsed again. Each resource returned to a caller is a copy
+	 * of the cached resource, and the resource metadata (tags, source, partition, etc.) is always
+	 * populated from the database.
+	 * <p>
+	 * Cached resources are removed when they are modified, using the
+	 * {@link ca.uhn.fhir.jpa.cache.IResourceChangeListenerRegistry resource change listener} mechanism.
+	 * This mechanism periodically loads the ID and version of every resource of each watched type, so
+	 * this setting is intended for reference data types such as <code>Practitioner</code>,
+	 * <code>Organization</code> or <code>Location</code>, and not for types which have a very large
+	 * number of resources. Default is an empty set, meaning that no resources are cached.
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public Set<String> getParsedResourceCacheResourceTypes() {
+		return myParsedResourceCacheResourceTypes;
+	}
+
+	/**
+	 * Resources of the types returned by this setting are kept in memory after they are parsed
+	 * from the database. See {@link #getParsedResourceCacheResourceTypes()} for details.
+	 *
+	 * @since 7.6.0
+	 */
+	public void setParsedResourceCacheResourceTypes(Set<String> theParsedResourceCacheResourceTypes) {
+		Validate.notNull(theParsedResourceCacheResourceTypes, "theParsedResourceCacheResourceTypes must not be null");
+		myParsedResourceCacheResourceTypes = Set.copyOf(theParsedResourceCacheResourceTypes);
+	}
+
+	/**
+	 * The maximum number of resources held in memory by the parsed resource cache (see
+	 * {@link #getParsedResourceCacheResourceTypes()}). This setting must be set before the
+	 * server is started. Default is {@link #DEFAULT_PARSED_RESOURCE_CACHE_MAXIMUM_SIZE}.
+	 *
+	 * @since 7.6.0
+	 */
+	public int getParsedResourceCacheMaximumSize() {
+		return myParsedResourceCacheMaximumSize;
+	}
+
+	/**
+	 * The maximum number of resources held in memory by the parsed resource cache (see
+	 * {@link #getParsedResourceCacheResourceTypes()}). This setting must be set before the
+	 * server is started. Default is {@link #DEFAULT_PARSED_RESOURCE_CACHE_MAXIMUM_SIZE}.
+	 *
+	 * @since 7.6.0
+	 */
+	public void setParsedResourceCacheMaximumSize(int theParsedResourceCacheMaximumSize) {
+		Validate.isTrue(
+				theParsedResourceCacheMaximumSize > 0, "theParsedResourceCacheMaximumSize must be greater than 0");
+		myParsedResourceCacheMaximumSize = theParsedResourceCacheMaximumSize;
+	}
+
+	/**
+	 * When loading a page of search results (including any <code>_include</code> and
+	 * <code>_revinclude</code> resources), the resources are fetched from the database in
+	 * chunks and then parsed. If this setting is greater than 1, the resources in each chunk
+	 * are parsed in parallel using a thread pool of this size, and the next chunk is fetched
+	 * while the previous one is being parsed. Results are always returned in the same order
+	 * as they would be if they were loaded serially.
+	 * <p>
+	 * This setting is intended for servers which return large pages of results. The thread
+	 * pool is shared by all searches, and is created using this setting the first time it
+	 * is needed. Default is 1, meaning that resources are parsed on the thread performing
+	 * the search.
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public int getSearchResultLoadThreadCount() {
+		return mySearchResultLoadThreadCount;
+	}
+
+	/**
+	 * When loading a page of search results (including any <code>_include</code> and
+	 * <code>_revinclude</code> resources), the resources are fetched from the database in
+	 * chunks and then parsed. See {@link #getSearchResultLoadThreadCount()} for details.
+	 * Default is 1, meaning that resources are parsed on the thread performing the search.
+	 *
+	 * @since 7.6.0
+	 */
+	public void setSearchResultLoadThreadCount(int theSearchResultLoadThreadCount) {
+		Validate.isTrue(theSearchResultLoadThreadCount > 0, "theSearchResultLoadThreadCount must be greater than 0");
+		mySearchResultLoadThreadCount = theSearchResultLoadThreadCount;
+	}
+
+	/**
+	 * If enabled (default is <code>false</code>), synchronous searches using <code>_offset</code> which
+	 * have no sort, or which are sorted only by <code>_lastUpdated</code>, use keyset paging. The results
+	 * are ordered by their last updated time (if sorted) and then by their internal ID, and the
+	 * <code>next</code> link for each page includes a <code>_keyset</code> parameter identifying the last
+	 * result in the page. The next page is then found using a <code>WHERE</code> clause on those columns
+	 * instead of an SQL <code>OFFSET</code>, so the cost of fetching a page does not grow with the number
+	 * of results in the previous pages.
+	 * <p>
+	 * Note that enabling this setting adds an ordering to unsorted <code>_offset</code> searches.
+	 * Searches using other sorts, <code>$everything</code>, <code>$lastn</code> and fulltext searches
+	 * continue to use <code>OFFSET</code>.
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public boolean isKeysetPagingEnabled() {
+		return myKeysetPagingEnabled;
+	}
+
+	/**
+	 * If enabled (default is <code>false</code>), synchronous searches using <code>_offset</code> which
+	 * have no sort, or which are sorted only by <code>_lastUpdated</code>, use keyset paging. See
+	 * {@link #isKeysetPagingEnabled()} for details.
+	 *
+	 * @since 7.6.0
+	 */
+	public void setKeysetPagingEnabled(boolean theKeysetPagingEnabled) {
+		myKeysetPagingEnabled = theKeysetPagingEnabled;
+	}
+
+	/**
+	 * Streaming searches (the <code>$stream-search</code> operation) hold a database
+	 * cursor open for as long as the client is reading the results. If a streaming search
+	 * is still running after this amount of time, no further results are written, an
+	 * <code>OperationOutcome</code> describing the timeout is appended to the response, and
+	 * the cursor is closed. Default is five minutes.
+	 * <p>
+	 * Each streaming search holds one database connection and one read-only transaction
+	 * for its whole duration, so a long timeout combined with slow clients can exhaust the
+	 * connection pool. The timeout is checked before each resource is written, so a slow
+	 * client can not extend the search beyond it, except for a single write which is blocked
+	 * because the client has stopped reading. Such writes are only bounded by the servlet
+	 * container's idle timeout.
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public long getStreamingSearchTimeoutMillis() {
+		return myStreamingSearchTimeoutMillis;
+	}
+
+	/**
+	 * Streaming searches (the <code>$stream-search</code> operation) hold a database
+	 * cursor open for as long as the client is reading the results. See
+	 * {@link #getStreamingSearchTimeoutMillis()} for details. Default is five minutes.
+	 *
+	 * @since 7.6.0
+	 */
+	public void setStreamingSearchTimeoutMillis(long theStreamingSearchTimeoutMillis) {
+		Validate.isTrue(theStreamingSearchTimeoutMillis > 0, "theStreamingSearchTimeoutMillis must be greater than 0");
+		myStreamingSearchTimeoutMillis = theStreamingSearchTimeoutMillis;
+	}
+
+	/**
+	 * The number of resources which are loaded from the database, and then written to the
+	 * response, at a time by a streaming search (the <code>$stream-search</code>
+	 * operation). This bounds the memory used by each streaming search. Default is
+	 * {@value #DEFAULT_STREAMING_SEARCH_BATCH_SIZE}.
+	 *
+	 * @since 7.6.0
+	 */
+	public int getStreamingSearchBatchSize() {
+		return myStreamingSearchBatchSize;
+	}
+
+	/**
+	 * The number of resources which are loaded from the database, and then written to the
+	 * response, at a time by a streaming search (the <code>$stream-search</code>
+	 * operation). Default is {@value #DEFAULT_STREAMING_SEARCH_BATCH_SIZE}.
+	 *
+	 * @since 7.6.0
+	 */
+	public void setStreamingSearchBatchSize(int theStreamingSearchBatchSize) {
+		Validate.isTrue(theStreamingSearchBatchSize > 0, "theStreamingSearchBatchSize must be greater than 0");
+		myStreamingSearchBatchSize = theStreamingSearchBatchSize;
+	}
+
+	/**
+	 * If enabled, searches with more than one search parameter apply the parameter predicates
+	 * in order of their estimated selectivity instead of the order the parameters appear in the
+	 * request. Selectivity is estimated from sampled row counts in the search index tables, which
+	 * are cached and periodically refreshed. The most selective parameter becomes the table the
+	 * generated SQL is rooted on. The chosen order is reported using the
+	 * {@link ca.uhn.fhir.interceptor.api.Pointcut#JPA_PERFTRACE_INFO} pointcut.
+	 * <p>
+	 * Default is <code>false</code>
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public boolean isCostBasedPredicateOrderingEnabled() {
+		return myCostBasedPredicateOrderingEnabled;
+	}
+
+	/**
+	 * If enabled, searches with more than one search parameter apply the parameter predicates
+	 * in order of their estimated selectivity instead of the order the parameters appear in the
+	 * request. Selectivity is estimated from sampled row counts in the search index tables, which
+	 * are cached and periodically refreshed. The most selective parameter becomes the table the
+	 * generated SQL is rooted on. The chosen order is reported using the
+	 * {@link ca.uhn.fhir.interceptor.api.Pointcut#JPA_PERFTRACE_INFO} pointcut.
+	 * <p>
+	 * Default is <code>false</code>
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public void setCostBasedPredicateOrderingEnabled(boolean theCostBasedPredicateOrderingEnabled) {
+		myCostBasedPredicateOrderingEnabled = theCostBasedPredicateOrderingEnabled;
+	}
+
+	/**
+	 * If this is set to a value greater than 0, search totals which are calculated using a
+	 * <code>SELECT COUNT(*)</code> (e.g. for <code>_total=accurate</code> or
+	 * <code>_summary=count</code>) are cached for this many milliseconds, keyed by the
+	 * normalized search URL and partition. A cached total is discarded as soon as a
+	 * resource of the same type is created, updated or deleted on this server, but writes
+	 * made by other servers in a cluster are only seen once the entry has expired. Counts
+	 * are never cached for longer than one hour.
+	 * <p>
+	 * Cached totals are also used as the total for <code>_total=estimated</code>.
+	 * </p>
+	 * <p>
+	 * Default is <code>0</code>, meaning that totals are not cached.
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public long getSearchCountCacheMillis() {
+		return mySearchCountCacheMillis;
+	}
+
+	/**
+	 * If this is set to a value greater than 0, search totals which are calculated using a
+	 * <code>SELECT COUNT(*)</code> (e.g. for <code>_total=accurate</code> or
+	 * <code>_summary=count</code>) are cached for this many milliseconds, keyed by the
+	 * normalized search URL and partition. A cached total is discarded as soon as a
+	 * resource of the same type is created, updated or deleted on this server, but writes
+	 * made by other servers in a cluster are only seen once the entry has expired. Counts
+	 * are never cached for longer than one hour.
+	 * <p>
+	 * Cached totals are also used as the total for <code>_total=estimated</code>.
+	 * </p>
+	 * <p>
+	 * Default is <code>0</code>, meaning that totals are not cached.
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public void setSearchCountCacheMillis(long theSearchCountCacheMillis) {
+		Validate.isTrue(theSearchCountCacheMillis >= 0, "theSearchCountCacheMillis must not be negative");
+		mySearchCountCacheMillis = theSearchCountCacheMillis;
+	}
+
+	/**
+	 * If this is set to a value greater than 0, client-assigned resource IDs which are looked up
+	 * and found not to exist (e.g. the targets of references to resources which have not been
+	 * loaded yet) are remembered for this many milliseconds, so that repeated lookups of the same
+	 * ID don't need to query the database. An entry is discarded as soon as a resource with that
+	 * ID is created on this server, but resources created by other servers in a cluster are only
+	 * seen once the entry has expired. Entries are never kept for longer than one hour, and are
+	 * not used when partitioning is enabled.
+	 * <p>
+	 * Default is <code>0</code>, meaning that IDs which are not found are not cached.
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public long getResourceIdNotFoundCacheMillis() {
+		return myResourceIdNotFoundCacheMillis;
+	}
+
+	/**
+	 * If this is set to a value greater than 0, client-assigned resource IDs which are looked up
+	 * and found not to exist (e.g. the targets of references to resources which have not been
+	 * loaded yet) are remembered for this many milliseconds, so that repeated lookups of the same
+	 * ID don't need to query the database. An entry is discarded as soon as a resource with that
+	 * ID is created on this server, but resources created by other servers in a cluster are only
+	 * seen once the entry has expired. Entries are never kept for longer than one hour, and are
+	 * not used when partitioning is enabled.
+	 * <p>
+	 * Default is <code>0</code>, meaning that IDs which are not found are not cached.
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public void setResourceIdNotFoundCacheMillis(long theResourceIdNotFoundCacheMillis) {
+		Validate.isTrue(theResourceIdNotFoundCacheMillis >= 0, "theResourceIdNotFoundCacheMillis must not be negative");
+		myResourceIdNotFoundCacheMillis = theResourceIdNotFoundCacheMillis;
+	}
+
+	/**
+	 * Searches for resources of the types returned by this setting are answered from an in-memory
+	 * snapshot of all resources of that type, instead of being executed against the database. This
+	 * is intended for small, read-mostly resource types such as <code>Practitioner</code> or
+	 * <code>Organization</code>, since every resource of a listed type is held in memory along with
+	 * its search indexes.
+	 * <p>
+	 * Searches which cannot be evaluated in memory (e.g. searches using <code>_include</code>,
+	 * <code>_sort</code>, chained parameters or <code>_lastUpdated</code>), searches which return
+	 * more than one page of results, and searches performed inside a transaction are still executed
+	 * against the database. Writes made on this server are visible to the next search, but writes made
+	 * by other servers in a cluster are only seen after up to
+	 * {@link #getSearchIndexSnapshotRefreshIntervalMillis()}. Snapshots are not used when
+	 * partitioning is enabled.
+	 * </p>
+	 * <p>
+	 * Default is an empty set, meaning that all searches are executed against the database.
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public Set<String> getSearchIndexSnapshotResourceTypes() {
+		return mySearchIndexSnapshotResourceTypes;
+	}
+
+	/**
+	 * Searches for resources of the types returned by this setting are answered from an in-memory
+	 * snapshot of all resources of that type, instead of being executed against the database. This
+	 * is intended for small, read-mostly resource types such as <code>Practitioner</code> or
+	 * <code>Organization</code>, since every resource of a listed type is held in memory along with
+	 * its search indexes.
+	 * <p>
+	 * Searches which cannot be evaluated in memory (e.g. searches using <code>_include</code>,
+	 * <code>_sort</code>, chained parameters or <code>_lastUpdated</code>), searches which return
+	 * more than one page of results, and searches performed inside a transaction are still executed
+	 * against the database. Writes made on this server are visible to the next search, but writes made
+	 * by other servers in a cluster are only seen after up to
+	 * {@link #getSearchIndexSnapshotRefreshIntervalMillis()}. Snapshots are not used when
+	 * partitioning is enabled, or on servers using a FHIR version older than DSTU3.
+	 * </p>
+	 * <p>
+	 * Default is an empty set, meaning that all searches are executed against the database.
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public void setSearchIndexSnapshotResourceTypes(Set<String> theSearchIndexSnapshotResourceTypes) {
+		Validate.notNull(theSearchIndexSnapshotResourceTypes, "theSearchIndexSnapshotResourceTypes must not be null");
+		mySearchIndexSnapshotResourceTypes = Set.copyOf(theSearchIndexSnapshotResourceTypes);
+	}
+
+	/**
+	 * How often the search index snapshots (see {@link #getSearchIndexSnapshotResourceTypes()})
+	 * check the database for changes made by other servers in a cluster. This is the maximum
+	 * time for which a search answered from a snapshot can miss such a change. This setting must
+	 * be set before the first search of a snapshot resource type. Default is
+	 * {@link #DEFAULT_SEARCH_INDEX_SNAPSHOT_REFRESH_INTERVAL_MILLIS}.
+	 *
+	 * @since 7.6.0
+	 */
+	public long getSearchIndexSnapshotRefreshIntervalMillis() {
+		return mySearchIndexSnapshotRefreshIntervalMillis;
+	}
+
+	/**
+	 * How often the search index snapshots (see {@link #getSearchIndexSnapshotResourceTypes()})
+	 * check the database for changes made by other servers in a cluster. This is the maximum
+	 * time for which a search answered from a snapshot can miss such a change. This setting must
+	 * be set before the first search of a snapshot resource type. Default is
+	 * {@link #DEFAULT_SEARCH_INDEX_SNAPSHOT_REFRESH_INTERVAL_MILLIS}.
+	 *
+	 * @since 7.6.0
+	 */
+	public void setSearchIndexSnapshotRefreshIntervalMillis(long theSearchIndexSnapshotRefreshIntervalMillis) {
+		Validate.isTrue(
+				theSearchIndexSnapshotRefreshIntervalMillis > 0,
+				"theSearchIndexSnapshotRefreshIntervalMillis must be greater than 0");
+		mySearchIndexSnapshotRefreshIntervalMillis = theSearchIndexSnapshotRefreshIntervalMillis;
+	}
+
+	/**
+	 * If this is set to a value greater than 0, each link of a chained search parameter
+	 * (e.g. <code>Observation?subject:Patient.name=smith</code>) and of a <code>_has</code>
+	 * parameter is first resolved to the IDs of the resources it matches using a separate query.
+	 * If no more than this many resources match, the main query matches their IDs directly
+	 * instead of joining the search index tables of the linked resource type. Deeper chains are
+	 * resolved starting with the innermost link. Links which match more resources than this are
+	 * joined as usual, so the separate query never reads more than this many rows plus one.
+	 * <p>
+	 * When {@link #isCostBasedPredicateOrderingEnabled()} is also enabled, links whose estimated
+	 * number of matches is already known to exceed this threshold are joined without trying to
+	 * resolve them first.
+	 * </p>
+	 * <p>
+	 * Default is <code>0</code>, meaning that chains are always joined.
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public int getChainedSearchPreResolutionThreshold() {
+		return myChainedSearchPreResolutionThreshold;
+	}
+
+	/**
+	 * If this is set to a value greater than 0, each link of a chained search parameter
+	 * (e.g. <code>Observation?subject:Patient.name=smith</code>) and of a <code>_has</code>
+	 * parameter is first resolved to the IDs of the resources it matches using a separate query.
+	 * If no more than this many resources match, the main query matches their IDs directly
+	 * instead of joining the search index tables of the linked resource type. Deeper chains are
+	 * resolved starting with the innermost link. Links which match more resources than this are
+	 * joined as usual, so the separate query never reads more than this many rows plus one.
+	 * <p>
+	 * When {@link #isCostBasedPredicateOrderingEnabled()} is also enabled, links whose estimated
+	 * number of matches is already known to exceed this threshold are joined without trying to
+	 * resolve them first.
+	 * </p>
+	 * <p>
+	 * Default is <code>0</code>, meaning that chains are always joined.
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public void setChainedSearchPreResolutionThreshold(int theChainedSearchPreResolutionThreshold) {
+		Validate.isTrue(
+				theChainedSearchPreResolutionThreshold >= 0,
+				"theChainedSearchPreResolutionThreshold must not be negative");
+		myChainedSearchPreResolutionThreshold = theChainedSearchPreResolutionThreshold;
+	}
+
+	/**
+	 * If this is set to a value greater than 0, new search index rows (e.g. <code>HFJ_SPIDX_*</code>
+	 * and <code>HFJ_RES_LINK</code> rows) created while writing resources are not added to the
+	 * Hibernate session. Instead they are collected for the whole database transaction and written
+	 * using batched JDBC inserts of up to this many rows each, when the session is flushed or just
+	 * before the transaction commits. This avoids the dirty checking and memory overhead of keeping
+	 * every index row in the session, which can be significant for large transaction bundles and
+	 * bulk ingestion. IDs for the new rows are still allocated from the pooled sequences used by
+	 * Hibernate.
+	 * <p>
+	 * Index rows for unique combo search parameters are always written through the session, since
+	 * conflicts on them must be reported as a version conflict.
+	 * </p>
+	 * <p>
+	 * Default is <code>0</code>, meaning that all index rows are written through the Hibernate session.
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public int getSearchIndexBulkInsertBatchSize() {
+		return mySearchIndexBulkInsertBatchSize;
+	}
+
+	/**
+	 * If this is set to a value greater than 0, new search index rows (e.g. <code>HFJ_SPIDX_*</code>
+	 * and <code>HFJ_RES_LINK</code> rows) created while writing resources are not added to the
+	 * Hibernate session. Instead they are collected for the whole database transaction and written
+	 * using batched JDBC inserts of up to this many rows each, when the session is flushed or just
+	 * before the transaction commits. This avoids the dirty checking and memory overhead of keeping
+	 * every index row in the session, which can be significant for large transaction bundles and
+	 * bulk ingestion. IDs for the new rows are still allocated from the pooled sequences used by
+	 * Hibernate.
+	 * <p>
+	 * Index rows for unique combo search parameters are always written through the session, since
+	 * conflicts on them must be reported as a version conflict.
+	 * </p>
+	 * <p>
+	 * Default is <code>0</code>, meaning that all index rows are written through the Hibernate session.
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public void setSearchIndexBulkInsertBatchSize(int theSearchIndexBulkInsertBatchSize) {
+		Validate.isTrue(
+				theSearchIndexBulkInsertBatchSize >= 0, "theSearchIndexBulkInsertBatchSize must not be negative");
+		mySearchIndexBulkInsertBatchSize = theSearchIndexBulkInsertBatchSize;
+	}
+
+	/**
+	 * If enabled, a compact fingerprint of the search index rows of each resource is stored
+	 * in the <code>HFJ_RESOURCE</code> table whenever the resource is indexed. The fingerprint
+	 * holds a hash of the sorted rows in each index table. When a resource which has a
+	 * fingerprint is updated, its existing index rows are not loaded up front. Instead, the new
+	 * index rows are fingerprinted, and only the index tables whose fingerprint has changed are
+	 * loaded and compared. Updates which don't change any indexed values therefore skip the
+	 * index tables entirely, which can make a large difference for resources with hundreds of
+	 * index rows.
+	 * <p>
+	 * Fingerprints are cleared when a resource is indexed while this setting is disabled, so the
+	 * setting can be safely disabled and enabled again later. Reindexing a resource always
+	 * compares all of its index rows.
+	 * </p>
+	 * <p>
+	 * Default is <code>false</code>
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public boolean isSearchIndexFingerprintEnabled() {
+		return mySearchIndexFingerprintEnabled;
+	}
+
+	/**
+	 * If enabled, a compact fingerprint of the search index rows of each resource is stored
+	 * in the <code>HFJ_RESOURCE</code> table whenever the resource is indexed. The fingerprint
+	 * holds a hash of the sorted rows in each index table. When a resource which has a
+	 * fingerprint is updated, its existing index rows are not loaded up front. Instead, the new
+	 * index rows are fingerprinted, and only the index tables whose fingerprint has changed are
+	 * loaded and compared. Updates which don't change any indexed values therefore skip the
+	 * index tables entirely, which can make a large difference for resources with hundreds of
+	 * index rows.
+	 * <p>
+	 * Fingerprints are cleared when a resource is indexed while this setting is disabled, so the
+	 * setting can be safely disabled and enabled again later. Reindexing a resource always
+	 * compares all of its index rows.
+	 * </p>
+	 * <p>
+	 * Default is <code>false</code>
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public void setSearchIndexFingerprintEnabled(boolean theSearchIndexFingerprintEnabled) {
+		mySearchIndexFingerprintEnabled = theSearchIndexFingerprintEnabled;
+	}
+
 	/**
 	 * This setting controls whether MdmLink and other non-resource DB history is enabled.
 	 * <p/>
@@ -2489,6 +3107,50 @@ public class JpaStorageSettings extends StorageSettings {
 		myWriteToLegacyLobColumns = theWriteToLegacyLobColumns;
 	}
 
+	/**
+	 * If enabled (default is <code>false</code>), resources which are loaded from the database
+	 * and which are stored as JSON keep a reference to their stored text, and the JSON
+	 * parser writes that text directly instead of re-encoding the resource when it is returned
+	 * to a client. The resource ID and <code>Resource.meta</code> are always encoded from the
+	 * loaded resource. The stored text is only used if the response is not pretty printed, no
+	 * <code>_summary</code> or <code>_elements</code> filtering applies, and no narrative
+	 * generator is configured.
+	 * <p>
+	 * The stored text is only attached to resources loaded by read, vread, search, paging and
+	 * history requests, and only if no interceptors (including interceptors registered on the
+	 * server or on the individual request) are registered for the
+	 * {@link ca.uhn.fhir.interceptor.api.Pointcut#STORAGE_PRESHOW_RESOURCES} or
+	 * {@link ca.uhn.fhir.interceptor.api.Pointcut#SERVER_OUTGOING_RESPONSE} pointcuts, since
+	 * these may modify the resources being returned.
+	 * </p>
+	 * <p>
+	 * The stored text is not checked against the resource when it is encoded. Custom resource
+	 * providers which handle one of the operations above by loading resources from the repository
+	 * and modifying them before returning them (without saving them) must remove the
+	 * {@link ca.uhn.fhir.rest.api.Constants#RESOURCE_PASS_THROUGH_JSON} user data key, or the
+	 * modifications will not be visible to the client. In that case this setting should not be
+	 * enabled.
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public boolean isResourcePassThroughEncodingEnabled() {
+		return myResourcePassThroughEncodingEnabled;
+	}
+
+	/**
+	 * If enabled (default is <code>false</code>), resources which are loaded from the database
+	 * and which are stored as JSON keep a reference to their stored text, and the JSON
+	 * parser writes that text directly instead of re-encoding the resource when it is returned
+	 * to a client. See {@link #isResourcePassThroughEncodingEnabled()} for the conditions
+	 * which apply.
+	 *
+	 * @since 7.6.0
+	 */
+	public void setResourcePassThroughEncodingEnabled(boolean theResourcePassThroughEncodingEnabled) {
+		myResourcePassThroughEncodingEnabled = theResourcePassThroughEncodingEnabled;
+	}
+
 	/**
 	 * This setting controls whether MdmLink and other non-resource DB history is enabled.
 	 * <p/>
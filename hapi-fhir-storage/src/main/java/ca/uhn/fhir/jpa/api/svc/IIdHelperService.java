@@ -32,6 +32,7 @@ import org.hl7.fhir.instance.model.api.IAnyResource;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IIdType;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -131,6 +132,19 @@ public interface IIdHelperService<T extends IResourcePersistentId> {
 			boolean theExcludeDeleted)
 			throws ResourceNotFoundException;
 
+	/**
+	 * Resolves a collection of resource IDs (which must all have a resource type and an ID part) using
+	 * as few database round trips as possible, e.g. to resolve all of the reference targets in a
+	 * transaction bundle up front. Deleted resources are included in the results. IDs which can not be
+	 * found are simply absent from the returned map, rather than causing an exception.
+	 *
+	 * @return A map from the versionless, unqualified ID (e.g. <code>Patient/123</code>) to the resolved resource
+	 * @since 7.6.0
+	 */
+	@Nonnull
+	Map<String, IResourceLookup> resolveResourceIdentities(
+			@Nonnull RequestPartitionId theRequestPartitionId, Collection<IIdType> theIds);
+
 	/**
 	 * Returns true if the given resource ID should be stored in a forced ID. Under default config
 	 * (meaning client ID strategy is {@link JpaStorageSettings.ClientIdStrategyEnum#ALPHANUMERIC})
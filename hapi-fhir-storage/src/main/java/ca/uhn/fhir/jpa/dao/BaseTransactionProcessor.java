@@ -49,6 +49,7 @@ import ca.uhn.fhir.jpa.model.entity.StorageSettings;
 import ca.uhn.fhir.jpa.model.search.StorageProcessingMessage;
 import ca.uhn.fhir.jpa.partition.IRequestPartitionHelperSvc;
 import ca.uhn.fhir.jpa.searchparam.extractor.ResourceIndexedSearchParams;
+import ca.uhn.fhir.jpa.searchparam.extractor.SearchParamExtractorService;
 import ca.uhn.fhir.jpa.searchparam.matcher.InMemoryMatchResult;
 import ca.uhn.fhir.jpa.searchparam.matcher.InMemoryResourceMatcher;
 import ca.uhn.fhir.jpa.searchparam.matcher.SearchParamMatcher;
@@ -107,6 +108,7 @@ import org.hl7.fhir.r4.model.IdType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.core.task.TaskExecutor;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionDefinition;
@@ -115,6 +117,7 @@ import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
@@ -129,6 +132,8 @@ import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -186,6 +191,11 @@ public abstract class BaseTransactionProcessor {
 
 	private TaskExecutor myExecutor;
 
+	private AsyncTaskExecutor myIndexingExecutor;
+
+	@Autowired
+	private SearchParamExtractorService mySearchParamExtractorService;
+
 	@Autowired
 	private IResourceVersionSvc myResourceVersionSvc;
 
@@ -213,6 +223,14 @@ public abstract class BaseTransactionProcessor {
 		return myExecutor;
 	}
 
+	private AsyncTaskExecutor getIndexingTaskExecutor() {
+		if (myIndexingExecutor == null) {
+			int poolSize = myStorageSettings.getTransactionIndexingPoolSize();
+			myIndexingExecutor = myThreadPoolFactory.newThreadPool(poolSize, poolSize, "transaction-indexing-");
+		}
+		return myIndexingExecutor;
+	}
+
 	public <BUNDLE extends IBaseBundle> BUNDLE transaction(
 			RequestDetails theRequestDetails, BUNDLE theRequest, boolean theNestedMode) {
 		String actionName = "Transaction";
@@ -1666,6 +1684,10 @@ public abstract class BaseTransactionProcessor {
 		FhirTerser terser = myContext.newTerser();
 		theTransactionStopWatch.startTask("Index " + theIdToPersistedOutcome.size() + " resources");
 		IdentityHashMap<DaoMethodOutcome, Set<IBaseReference>> deferredIndexesForAutoVersioning = null;
+		List<DaoMethodOutcome> outcomesToSaveAfterPreExtraction = null;
+		if (myStorageSettings.getTransactionIndexingPoolSize() > 1 && theIdToPersistedOutcome.size() > 1) {
+			outcomesToSaveAfterPreExtraction = new ArrayList<>();
+		}
 		int i = 0;
 		for (DaoMethodOutcome nextOutcome : theIdToPersistedOutcome.values()) {
 
@@ -1687,7 +1709,17 @@ public abstract class BaseTransactionProcessor {
 
 			Set<IBaseReference> referencesToAutoVersion =
 					BaseStorageDao.extractReferencesToAutoVersion(myContext, myStorageSettings, nextResource);
-			if (referencesToAutoVersion.isEmpty()) {
+			if (referencesToAutoVersion.isEmpty() && outcomesToSaveAfterPreExtraction != null) {
+				// no references to autoversion - we can resolve now, and save once everything is resolved
+				resolveReferences(
+						theTransactionDetails,
+						theIdSubstitutions,
+						theIdToPersistedOutcome,
+						terser,
+						nextResource,
+						referencesToAutoVersion);
+				outcomesToSaveAfterPreExtraction.add(nextOutcome);
+			} else if (referencesToAutoVersion.isEmpty()) {
 				// no references to autoversion - we can do the resolve and save now
 				resolveReferencesThenSaveAndIndexResource(
 						theRequest,
@@ -1710,6 +1742,25 @@ public abstract class BaseTransactionProcessor {
 			}
 		}
 
+		// Entries with all of their references resolved don't depend on each other, so their
+		// search index values can be extracted in parallel before they are saved one by one
+		if (outcomesToSaveAfterPreExtraction != null) {
+			preExtractSearchIndexParameters(
+					theRequest, theTransactionDetails, outcomesToSaveAfterPreExtraction, updatedEntities, terser);
+			for (DaoMethodOutcome nextOutcome : outcomesToSaveAfterPreExtraction) {
+				saveAndIndexResource(
+						theRequest,
+						theTransactionDetails,
+						theIdSubstitutions,
+						entriesToProcess,
+						nonUpdatedEntities,
+						updatedEntities,
+						nextOutcome,
+						nextOutcome.getResource(),
+						Collections.emptySet());
+			}
+		}
+
 		// If we have any resources we'll be auto-versioning, index these next
 		if (deferredIndexesForAutoVersioning != null) {
 			for (Map.Entry<DaoMethodOutcome, Set<IBaseReference>> nextEntry :
@@ -1734,6 +1785,65 @@ public abstract class BaseTransactionProcessor {
 		}
 	}
 
+	/**
+	 * Extracts the search index values (other than references) for the given resources in parallel, and
+	 * stores them in the transaction details so that they are used when the resources are saved. Resources
+	 * are skipped if anything which runs before they are indexed could still modify them, i.e. if they
+	 * contain inline conditional references, or if they are updates and there are hooks registered for
+	 * {@link Pointcut#STORAGE_PRESTORAGE_RESOURCE_UPDATED}. Resources which fail here are simply
+	 * extracted again (and fail with the usual error) when they are saved.
+	 */
+	private void preExtractSearchIndexParameters(
+			RequestDetails theRequest,
+			TransactionDetails theTransactionDetails,
+			List<DaoMethodOutcome> theOutcomes,
+			Set<IBasePersistedResource> theUpdatedEntities,
+			FhirTerser theTerser) {
+		boolean haveUpdateHooks = CompositeInterceptorBroadcaster.hasHooks(
+				Pointcut.STORAGE_PRESTORAGE_RESOURCE_UPDATED, myInterceptorBroadcaster, theRequest);
+
+		List<IBaseResource> resources = new ArrayList<>(theOutcomes.size());
+		for (DaoMethodOutcome nextOutcome : theOutcomes) {
+			if (haveUpdateHooks && theUpdatedEntities.contains(nextOutcome.getEntity())) {
+				continue;
+			}
+			IBaseResource nextResource = nextOutcome.getResource();
+			boolean haveInlineConditionalReference = theTerser.getAllResourceReferences(nextResource).stream()
+					.map(t -> t.getResourceReference().getReferenceElement().getValue())
+					.anyMatch(t -> t != null && t.indexOf('?') != -1);
+			if (!haveInlineConditionalReference) {
+				resources.add(nextResource);
+			}
+		}
+		if (resources.size() < 2) {
+			return;
+		}
+
+		StopWatch sw = new StopWatch();
+		List<Future<ResourceIndexedSearchParams>> futures = new ArrayList<>(resources.size());
+		for (IBaseResource nextResource : resources) {
+			futures.add(getIndexingTaskExecutor()
+					.submit(() ->
+							mySearchParamExtractorService.preExtractSearchIndexParameters(theRequest, nextResource)));
+		}
+
+		for (int i = 0; i < resources.size(); i++) {
+			try {
+				ResourceIndexedSearchParams params = futures.get(i).get();
+				SearchParamExtractorService.addPreExtractedSearchIndexParameters(
+						theTransactionDetails, resources.get(i), params);
+			} catch (ExecutionException e) {
+				ourLog.debug("Failed to pre-extract search index values, will retry when saving", e.getCause());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				futures.forEach(t -> t.cancel(false));
+				break;
+			}
+		}
+
+		ourLog.debug("Pre-extracted search index values for {} resources in {}", resources.size(), sw);
+	}
+
 	private void resolveReferencesThenSaveAndIndexResource(
 			RequestDetails theRequest,
 			TransactionDetails theTransactionDetails,
@@ -1746,6 +1856,32 @@ public abstract class BaseTransactionProcessor {
 			DaoMethodOutcome theDaoMethodOutcome,
 			IBaseResource theResource,
 			Set<IBaseReference> theReferencesToAutoVersion) {
+		resolveReferences(
+				theTransactionDetails,
+				theIdSubstitutions,
+				theIdToPersistedOutcome,
+				terser,
+				theResource,
+				theReferencesToAutoVersion);
+		saveAndIndexResource(
+				theRequest,
+				theTransactionDetails,
+				theIdSubstitutions,
+				entriesToProcess,
+				nonUpdatedEntities,
+				updatedEntities,
+				theDaoMethodOutcome,
+				theResource,
+				theReferencesToAutoVersion);
+	}
+
+	private void resolveReferences(
+			TransactionDetails theTransactionDetails,
+			IdSubstitutionMap theIdSubstitutions,
+			Map<IIdType, DaoMethodOutcome> theIdToPersistedOutcome,
+			FhirTerser terser,
+			IBaseResource theResource,
+			Set<IBaseReference> theReferencesToAutoVersion) {
 		// References
 		List<ResourceReferenceInfo> allRefs = terser.getAllResourceReferences(theResource);
 		for (ResourceReferenceInfo nextRef : allRefs) {
@@ -1853,7 +1989,18 @@ public abstract class BaseTransactionProcessor {
 				}
 			}
 		}
+	}
 
+	private void saveAndIndexResource(
+			RequestDetails theRequest,
+			TransactionDetails theTransactionDetails,
+			IdSubstitutionMap theIdSubstitutions,
+			EntriesToProcessMap entriesToProcess,
+			Set<IIdType> nonUpdatedEntities,
+			Set<IBasePersistedResource> updatedEntities,
+			DaoMethodOutcome theDaoMethodOutcome,
+			IBaseResource theResource,
+			Set<IBaseReference> theReferencesToAutoVersion) {
 		IPrimitiveType<Date> deletedInstantOrNull = ResourceMetadataKeyEnum.DELETED_AT.get(theResource);
 		Date deletedTimestampOrNull = deletedInstantOrNull != null ? deletedInstantOrNull.getValue() : null;
 
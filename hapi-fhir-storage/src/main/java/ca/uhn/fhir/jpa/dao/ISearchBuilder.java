@@ -30,6 +30,7 @@ import ca.uhn.fhir.rest.api.server.storage.IResourcePersistentId;
 import ca.uhn.fhir.rest.param.DateRangeParam;
 import com.google.common.collect.Streams;
 import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
 import jakarta.persistence.EntityManager;
 import org.apache.commons.io.IOUtils;
 import org.hl7.fhir.instance.model.api.IBaseResource;
@@ -75,8 +76,39 @@ public interface ISearchBuilder<T extends IResourcePersistentId<?>> {
 			RequestDetails theRequest,
 			RequestPartitionId theRequestPartitionId);
 
+	/**
+	 * Returns an estimate of the number of results for <code>_total=estimated</code>, or
+	 * <code>null</code> if no estimate can be made without counting the results. Unlike
+	 * {@link #createCountQuery(SearchParameterMap, String, RequestDetails, RequestPartitionId)}
+	 * this should never perform an expensive count.
+	 *
+	 * @since 7.6.0
+	 */
+	@Nullable
+	default Long createEstimatedCountQuery(
+			SearchParameterMap theParams,
+			String theSearchUuid,
+			RequestDetails theRequest,
+			RequestPartitionId theRequestPartitionId) {
+		return null;
+	}
+
 	void setMaxResultsToFetch(Integer theMaxResultsToFetch);
 
+	/**
+	 * If the most recent query created by this builder uses keyset paging (see
+	 * {@link ca.uhn.fhir.jpa.api.config.JpaStorageSettings#setKeysetPagingEnabled(boolean)}), returns
+	 * the <code>_keyset</code> parameter value identifying the position after the given result.
+	 * Otherwise returns <code>null</code>.
+	 *
+	 * @param theLastResult The last result in the current page
+	 * @since 7.6.0
+	 */
+	@Nullable
+	default String createNextPageKeyset(T theLastResult) {
+		return null;
+	}
+
 	void loadResourcesByPid(
 			Collection<T> thePids,
 			Collection<T> theIncludedPids,
@@ -33,8 +33,10 @@ import org.springframework.transaction.support.TransactionSynchronizationManager
 import java.util.Collection;
 import java.util.EnumMap;
 import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
 
+import static java.util.concurrent.TimeUnit.HOURS;
 import static java.util.concurrent.TimeUnit.MINUTES;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
@@ -43,13 +45,15 @@ import static org.apache.commons.lang3.StringUtils.isNotBlank;
  * This class acts as a central spot for all of the many Caffeine caches we use in HAPI FHIR.
  * <p>
  * The API is super simplistic, and caches are all 1-minute, max 10000 entries for starters. We could definitely add nuance to this,
- * which will be much easier now that this is being centralized. Some logging/monitoring would be good too.
+ * which will be much easier now that this is being centralized. Hit and miss counts for each cache are available
+ * from {@link #getStatistics(CacheEnum)}.
  */
 // TODO: JA2 extract an interface for this class and use it everywhere
 public class MemoryCacheService {
 
 	private final JpaStorageSettings myStorageSettings;
 	private final EnumMap<CacheEnum, Cache<?, ?>> myCaches = new EnumMap<>(CacheEnum.class);
+	private final EnumMap<CacheEnum, CacheStatistics> myStatistics = new EnumMap<>(CacheEnum.class);
 
 	public MemoryCacheService(JpaStorageSettings theStorageSettings) {
 		myStorageSettings = theStorageSettings;
@@ -70,6 +74,30 @@ public class MemoryCacheService {
 							SECONDS.convert(myStorageSettings.getTranslationCachesExpireAfterWriteInMinutes(), MINUTES);
 					maximumSize = 10000;
 					break;
+				case PARSED_RESOURCE:
+					// Entries are checked against the stored version before they are used, so they
+					// can be kept longer than most caches
+					timeoutSeconds = SECONDS.convert(10, MINUTES);
+					maximumSize = myStorageSettings.getParsedResourceCacheMaximumSize();
+					break;
+				case SEARCH_PARAM_CARDINALITY:
+					// Cardinalities are only used to choose a predicate order, so they
+					// don't need to be fresh. Expiring them is what refreshes the statistics.
+					timeoutSeconds = SECONDS.convert(10, MINUTES);
+					maximumSize = 10000;
+					break;
+				case SEARCH_COUNT:
+					// The configured cache time is checked when an entry is read, this is
+					// just the upper limit
+					timeoutSeconds = SECONDS.convert(1, HOURS);
+					maximumSize = 10000;
+					break;
+				case RESOURCE_ID_NOT_FOUND:
+					// The configured cache time is checked when an entry is read, this is
+					// just the upper limit
+					timeoutSeconds = SECONDS.convert(1, HOURS);
+					maximumSize = myStorageSettings.isMassIngestionMode() ? 100000 : 10000;
+					break;
 				case PID_TO_FORCED_ID:
 				case FORCED_ID_TO_PID:
 				case MATCH_URL:
@@ -91,6 +119,7 @@ public class MemoryCacheService {
 			Cache<Object, Object> nextCache = CacheFactory.build(SECONDS.toMillis(timeoutSeconds), maximumSize);
 
 			myCaches.put(next, nextCache);
+			myStatistics.put(next, new CacheStatistics());
 		}
 	}
 
@@ -101,7 +130,14 @@ public class MemoryCacheService {
 
 	protected <K, T> T doGet(CacheEnum theCache, K theKey, Function<K, T> theSupplier) {
 		Cache<K, T> cache = getCache(theCache);
-		return cache.get(theKey, theSupplier);
+		CacheStatistics statistics = myStatistics.get(theCache);
+		boolean[] loaded = new boolean[1];
+		T retVal = cache.get(theKey, k -> {
+			loaded[0] = true;
+			return theSupplier.apply(k);
+		});
+		statistics.record(!loaded[0]);
+		return retVal;
 	}
 
 	/**
@@ -126,7 +162,9 @@ public class MemoryCacheService {
 	}
 
 	protected <K, V> V doGetIfPresent(CacheEnum theCache, K theKey) {
-		return (V) getCache(theCache).getIfPresent(theKey);
+		V retVal = (V) getCache(theCache).getIfPresent(theKey);
+		myStatistics.get(theCache).record(retVal != null);
+		return retVal;
 	}
 
 	public <K, V> void put(CacheEnum theCache, K theKey, V theValue) {
@@ -169,7 +207,35 @@ public class MemoryCacheService {
 
 	@SuppressWarnings("unchecked")
 	protected <K, V> Map<K, V> doGetAllPresent(CacheEnum theCache, Collection<K> theKeys) {
-		return (Map<K, V>) getCache(theCache).getAllPresent(theKeys);
+		Map<K, V> retVal = (Map<K, V>) getCache(theCache).getAllPresent(theKeys);
+		CacheStatistics statistics = myStatistics.get(theCache);
+		statistics.myHits.add(retVal.size());
+		statistics.myMisses.add(theKeys.size() - retVal.size());
+		return retVal;
+	}
+
+	public <K> void invalidate(CacheEnum theCache, K theKey) {
+		assert theCache.getKeyType().isAssignableFrom(theKey.getClass());
+		getCache(theCache).invalidate(theKey);
+	}
+
+	/**
+	 * Invalidates the given key immediately, and again if and when the current database
+	 * transaction commits. The second invalidation removes any entry which was added by
+	 * a concurrent transaction which could not yet see the changes made by this one.
+	 *
+	 * @since 7.6.0
+	 */
+	public <K> void invalidateNowAndAfterCommit(CacheEnum theCache, K theKey) {
+		invalidate(theCache, theKey);
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCommit() {
+					invalidate(theCache, theKey);
+				}
+			});
+		}
 	}
 
 	public void invalidateAllCaches() {
@@ -190,6 +256,23 @@ public class MemoryCacheService {
 		}
 	}
 
+	/**
+	 * Returns the number of lookups in the given cache which found an entry, and which did not,
+	 * since this service was started or {@link #resetStatistics()} was last called.
+	 *
+	 * @since 7.6.0
+	 */
+	public CacheStatistics getStatistics(CacheEnum theCache) {
+		return myStatistics.get(theCache);
+	}
+
+	/**
+	 * @since 7.6.0
+	 */
+	public void resetStatistics() {
+		myStatistics.values().forEach(CacheStatistics::reset);
+	}
+
 	public enum CacheEnum {
 		TAG_DEFINITION(TagDefinitionCacheKey.class),
 		RESOURCE_LOOKUP(String.class),
@@ -206,7 +289,27 @@ public class MemoryCacheService {
 		RESOURCE_CONDITIONAL_CREATE_VERSION(Long.class),
 		HISTORY_COUNT(HistoryCountKey.class),
 		NAME_TO_PARTITION(String.class),
-		ID_TO_PARTITION(Integer.class);
+		ID_TO_PARTITION(Integer.class),
+		/**
+		 * Key type: {@literal String} (versionless resource ID, e.g. <code>Practitioner/123</code>)
+		 * Value type: a parsed resource along with the PID and version it was parsed from
+		 */
+		PARSED_RESOURCE(String.class),
+		/**
+		 * Key type: {@literal String} (the index table, hash column and hash value that were sampled)
+		 * Value type: {@literal Long} (the number of matching index rows, up to the sample limit)
+		 */
+		SEARCH_PARAM_CARDINALITY(String.class),
+		/**
+		 * Key type: {@literal String} (resource type, invalidation generation, partition and normalized search URL)
+		 * Value type: the total and the time it was counted
+		 */
+		SEARCH_COUNT(String.class),
+		/**
+		 * Key type: {@literal String} (versionless resource ID, e.g. <code>Patient/abc</code>)
+		 * Value type: {@literal Long} (the time at which the ID was found not to exist)
+		 */
+		RESOURCE_ID_NOT_FOUND(String.class);
 
 		public Class<?> getKeyType() {
 			return myKeyType;
@@ -219,6 +322,38 @@ public class MemoryCacheService {
 		}
 	}
 
+	public static class CacheStatistics {
+
+		private final LongAdder myHits = new LongAdder();
+		private final LongAdder myMisses = new LongAdder();
+
+		private void record(boolean theHit) {
+			if (theHit) {
+				myHits.increment();
+			} else {
+				myMisses.increment();
+			}
+		}
+
+		private void reset() {
+			myHits.reset();
+			myMisses.reset();
+		}
+
+		public long getHitCount() {
+			return myHits.sum();
+		}
+
+		public long getMissCount() {
+			return myMisses.sum();
+		}
+
+		@Override
+		public String toString() {
+			return "hits=" + getHitCount() + ", misses=" + getMissCount();
+		}
+	}
+
 	public static class TagDefinitionCacheKey {
 
 		private final TagTypeEnum myType;
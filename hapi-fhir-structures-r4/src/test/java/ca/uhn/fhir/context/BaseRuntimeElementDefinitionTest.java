@@ -2,6 +2,7 @@ package ca.uhn.fhir.context;
 
 import ca.uhn.fhir.i18n.Msg;
 import org.hl7.fhir.r4.model.Enumerations;
+import org.hl7.fhir.r4.model.HumanName;
 import org.hl7.fhir.r4.model.Patient;
 import org.junit.jupiter.api.Test;
 
@@ -57,4 +58,16 @@ public class BaseRuntimeElementDefinitionTest {
 			assertEquals("HAPI-2142: Remove by index can only be called on a list-valued field.  'gender' is a single-valued field.", e.getMessage());
 		}
 	}
+
+	@Test
+	void accessor_getFirstValueOrNull() {
+		Patient patient = new Patient();
+		RuntimeResourceDefinition def = ourFhirContext.getResourceDefinition(patient);
+		BaseRuntimeChildDefinition.IAccessor accessor = def.getChildByName("name").getAccessor();
+		assertThat(accessor.getFirstValueOrNull(patient)).isEmpty();
+
+		HumanName name = patient.addName().setFamily("FAMILY");
+		patient.addName().setFamily("FAMILY2");
+		assertThat(accessor.<HumanName>getFirstValueOrNull(patient)).containsSame(name);
+	}
 }
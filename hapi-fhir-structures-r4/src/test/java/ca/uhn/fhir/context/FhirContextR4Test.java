@@ -1,13 +1,20 @@
 package ca.uhn.fhir.context;
 
+import ca.uhn.fhir.util.StopWatch;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 
 import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThatExceptionOfType;
 
 public class FhirContextR4Test {
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(FhirContextR4Test.class);
 
 	@Test
 	void customResourceTypeClassNameAndResourceDefSame() {
@@ -45,4 +52,49 @@ public class FhirContextR4Test {
 
 		assertThatExceptionOfType(ConfigurationException.class).isThrownBy(() -> fhirContext.getAllResourceDefinitions());
 	}
+
+	@Test
+	void modelScannerSnapshotIsSharedAcrossContexts() {
+		ModelScannerSnapshot snapshot = ModelScannerSnapshot.forVersion(FhirVersionEnum.R4);
+		assertSame(snapshot, ModelScannerSnapshot.forVersion(FhirVersionEnum.R4));
+		assertSame(Patient.class, snapshot.getResourceTypes().get("patient"));
+
+		FhirContext first = FhirContext.forR4();
+		FhirContext second = FhirContext.forR4();
+		assertEquals(first.getResourceTypes(), second.getResourceTypes());
+		assertEquals(snapshot.getResourceTypes().size(), first.getResourceTypes().size());
+		assertEquals("Observation", second.getResourceDefinition("Observation").getName());
+		assertSame(Observation.class, second.getResourceDefinition("observation").getImplementingClass());
+		assertEquals("HumanName", second.getElementDefinition("HumanName").getName());
+	}
+
+	/**
+	 * Compares the time needed to create a context and scan a few resource types. Run
+	 * this test in a fresh JVM to see the cold start times, since classes which have
+	 * already been loaded and initialized stay that way for the remainder of the run.
+	 */
+	@Test
+	@Disabled
+	void testTimingsContextStartup() {
+		for (int pass = 0; pass < 5; pass++) {
+			ModelScannerSnapshot.clearAll();
+			StopWatch sw = new StopWatch();
+			scanSomeTypes(FhirContext.forR4());
+			ourLog.info("Pass {}: New context without snapshot: {}", pass, sw);
+
+			sw.restart();
+			scanSomeTypes(FhirContext.forR4());
+			ourLog.info("Pass {}: New context with snapshot: {}", pass, sw);
+
+			sw.restart();
+			scanSomeTypes(FhirContext.forR4Cached());
+			ourLog.info("Pass {}: Cached context: {}", pass, sw);
+		}
+	}
+
+	private static void scanSomeTypes(FhirContext theContext) {
+		for (String next : new String[] {"Patient", "Observation", "Encounter", "Bundle", "Condition"}) {
+			theContext.getResourceDefinition(next);
+		}
+	}
 }
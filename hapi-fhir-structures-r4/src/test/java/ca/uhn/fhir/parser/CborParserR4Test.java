@@ -0,0 +1,236 @@
+package ca.uhn.fhir.parser;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.rest.api.EncodingEnum;
+import ca.uhn.fhir.test.BaseTest;
+import ca.uhn.fhir.util.StopWatch;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.DateTimeType;
+import org.hl7.fhir.r4.model.DecimalType;
+import org.hl7.fhir.r4.model.Encounter;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Quantity;
+import org.hl7.fhir.r4.model.StringType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CborParserR4Test extends BaseTest {
+	private static final Logger ourLog = LoggerFactory.getLogger(CborParserR4Test.class);
+	private static final FhirContext ourCtx = FhirContext.forR4Cached();
+
+	@AfterEach
+	public void afterEach() {
+		ourCtx.getParserOptions().setParseJsonUsingTokenStream(false);
+	}
+
+	@Test
+	public void testFormatSupported() {
+		assertTrue(ourCtx.isFormatCborSupported());
+		assertEquals(EncodingEnum.CBOR, ourCtx.newCborParser().getEncoding());
+		assertEquals(EncodingEnum.CBOR, EncodingEnum.forContentType("application/fhir+cbor"));
+		assertEquals(EncodingEnum.CBOR, EncodingEnum.forContentType("cbor"));
+		assertTrue(EncodingEnum.CBOR.isBinary());
+	}
+
+	@ParameterizedTest
+	@ValueSource(booleans = {false, true})
+	public void testRoundTripMatchesJson(boolean theTokenStream) throws IOException {
+		String input = loadResource("/bundle-with-two-patient-resources.json");
+		Bundle bundle = ourCtx.newJsonParser().parseResource(Bundle.class, input);
+
+		byte[] encoded = ourCtx.newCborParser().encodeResourceToBytes(bundle);
+		ourCtx.getParserOptions().setParseJsonUsingTokenStream(theTokenStream);
+		Bundle parsed = ourCtx.newCborParser().parseResource(Bundle.class, encoded);
+
+		IParser jsonParser = ourCtx.newJsonParser().setPrettyPrint(true);
+		assertEquals(jsonParser.encodeResourceToString(bundle), jsonParser.encodeResourceToString(parsed));
+	}
+
+	@ParameterizedTest
+	@ValueSource(booleans = {false, true})
+	public void testRoundTripPreservesDecimalsAndPrimitiveExtensions(boolean theTokenStream) {
+		Observation obs = new Observation();
+		obs.setId("Observation/123");
+		obs.setValue(new Quantity().setValueElement(new DecimalType("1.50000000000000000001")).setUnit("mg"));
+		obs.getReferenceRangeFirstRep().getLow().setValueElement(new DecimalType("2.10"));
+		obs.getStatusElement().setValueAsString("final");
+		obs.getStatusElement().addExtension("http://foo", new StringType("bar"));
+		Encounter enc = new Encounter();
+		enc.setId("#1");
+		enc.setStatus(Encounter.EncounterStatus.ARRIVED);
+		obs.getContained().add(enc);
+		obs.getEncounter().setReference("#1");
+
+		byte[] encoded = ourCtx.newCborParser().encodeResourceToBytes(obs);
+		ourCtx.getParserOptions().setParseJsonUsingTokenStream(theTokenStream);
+		Observation parsed = (Observation) ourCtx.newCborParser().parseResource(new ByteArrayInputStream(encoded));
+
+		assertEquals("Observation/123", parsed.getIdElement().getValue());
+		assertEquals("1.50000000000000000001", parsed.getValueQuantity().getValueElement().getValueAsString());
+		assertEquals("2.10", parsed.getReferenceRangeFirstRep().getLow().getValueElement().getValueAsString());
+		assertEquals("bar", parsed.getStatusElement().getExtensionString("http://foo"));
+		assertEquals(Encounter.EncounterStatus.ARRIVED, ((Encounter) parsed.getEncounter().getResource()).getStatus());
+	}
+
+	@Test
+	public void testEncodingOptionsAreApplied() {
+		Patient patient = new Patient();
+		patient.setActive(true);
+		patient.addName().setFamily("Simpson");
+
+		CborParser parser = ourCtx.newCborParser();
+		parser.setDontEncodeElements(java.util.Set.of("Patient.name"));
+		Patient parsed = parser.parseResource(Patient.class, parser.encodeResourceToBytes(patient));
+
+		assertTrue(parsed.getActive());
+		assertThat(parsed.getName()).isEmpty();
+	}
+
+	@Test
+	public void testTextMethodsAreRejected() {
+		CborParser parser = ourCtx.newCborParser();
+		Patient patient = new Patient();
+		patient.setActive(true);
+
+		assertThatThrownBy(() -> parser.encodeResourceToString(patient))
+			.isInstanceOf(DataFormatException.class)
+			.hasMessageContaining(Msg.code(2574));
+		assertThatThrownBy(() -> parser.encodeResourceToWriter(patient, new StringWriter()))
+			.isInstanceOf(DataFormatException.class)
+			.hasMessageContaining(Msg.code(2574));
+		assertThatThrownBy(() -> parser.parseResource("{\"resourceType\":\"Patient\"}"))
+			.isInstanceOf(DataFormatException.class)
+			.hasMessageContaining(Msg.code(2573));
+	}
+
+	@Test
+	public void testParseInvalidContent() {
+		CborParser parser = ourCtx.newCborParser();
+
+		assertThatThrownBy(() -> parser.parseResource(Patient.class, new byte[0]))
+			.isInstanceOf(DataFormatException.class)
+			.hasMessageContaining(Msg.code(2571));
+		// A CBOR text string, rather than a map
+		assertThatThrownBy(() -> parser.parseResource(Patient.class, new byte[]{0x61, 0x41}))
+			.isInstanceOf(DataFormatException.class)
+			.hasMessageContaining(Msg.code(2572));
+	}
+
+	@Test
+	public void testEncodeToOutputStreamForTextEncoding() throws IOException {
+		Patient patient = new Patient();
+		patient.setActive(true);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ourCtx.newJsonParser().encodeResourceToOutputStream(patient, out);
+
+		assertEquals("{\"resourceType\":\"Patient\",\"active\":true}", out.toString(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Compares CBOR with gzipped JSON text, which is the default JPA storage encoding (JSONC)
+	 */
+	@Test
+	@Disabled
+	public void testTimingsCborVersusCompressedJson() throws IOException {
+		Bundle bundle = createBigBundle(5000);
+		IParser jsonParser = ourCtx.newJsonParser();
+		CborParser cborParser = ourCtx.newCborParser();
+
+		String json = jsonParser.encodeResourceToString(bundle);
+		byte[] jsonc = gzip(json);
+		byte[] cbor = cborParser.encodeResourceToBytes(bundle);
+		ourLog.info("Size - JSON: {} bytes - JSONC: {} bytes - CBOR: {} bytes - Gzipped CBOR: {} bytes",
+			json.length(), jsonc.length, cbor.length, gzip(cbor).length);
+		Observation single = (Observation) bundle.getEntryFirstRep().getResource();
+		ourLog.info("Single resource size - JSON: {} bytes - JSONC: {} bytes - CBOR: {} bytes",
+			jsonParser.encodeResourceToString(single).length(), gzip(jsonParser.encodeResourceToString(single)).length, cborParser.encodeResourceToBytes(single).length);
+
+		int passes = 50;
+		for (int round = 0; round < 2; round++) {
+			for (int i = 0; i < 10; i++) {
+				jsonParser.parseResource(gunzip(jsonc));
+				cborParser.parseResource(Bundle.class, cbor);
+			}
+
+			StopWatch sw = new StopWatch();
+			for (int i = 0; i < passes; i++) {
+				jsonParser.parseResource(gunzip(jsonc));
+			}
+			ourLog.info("Parse JSONC: {} passes in {}", passes, sw);
+
+			sw = new StopWatch();
+			for (int i = 0; i < passes; i++) {
+				cborParser.parseResource(Bundle.class, cbor);
+			}
+			ourLog.info("Parse CBOR: {} passes in {}", passes, sw);
+
+			sw = new StopWatch();
+			for (int i = 0; i < passes; i++) {
+				gzip(jsonParser.encodeResourceToString(bundle));
+			}
+			ourLog.info("Encode JSONC: {} passes in {}", passes, sw);
+
+			sw = new StopWatch();
+			for (int i = 0; i < passes; i++) {
+				cborParser.encodeResourceToBytes(bundle);
+			}
+			ourLog.info("Encode CBOR: {} passes in {}", passes, sw);
+		}
+	}
+
+	private static byte[] gzip(String theInput) throws IOException {
+		return gzip(theInput.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static byte[] gzip(byte[] theInput) throws IOException {
+		ByteArrayOutputStream retVal = new ByteArrayOutputStream();
+		try (GZIPOutputStream out = new GZIPOutputStream(retVal)) {
+			out.write(theInput);
+		}
+		return retVal.toByteArray();
+	}
+
+	private static String gunzip(byte[] theInput) throws IOException {
+		try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(theInput))) {
+			return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		}
+	}
+
+	private static Bundle createBigBundle(int theEntryCount) {
+		Bundle b = new Bundle();
+		for (int i = 0; i < theEntryCount; i++) {
+			Observation obs = new Observation();
+			obs.setId("Observation/" + i);
+			obs.setStatus(Observation.ObservationStatus.FINAL);
+			obs.getCode().addCoding().setSystem("http://loinc.org").setCode("789-8").setDisplay("Erythrocytes [#/volume] in Blood by Automated count");
+			obs.getSubject().setReference("Patient/" + i);
+			obs.setEffective(new DateTimeType(new Date()));
+			obs.addIdentifier().setSystem("http://foo").setValue("blah" + i);
+			obs.setValue(new Quantity().setSystem("http://unitsofmeasure.org").setCode("mg/L").setUnit("mg/L").setValue(123.567d));
+			b.addEntry().setFullUrl("http://foo/Observation/" + i).setResource(obs);
+		}
+		return b;
+	}
+}
@@ -0,0 +1,166 @@
+package ca.uhn.fhir.parser;
+
+import ca.uhn.fhir.context.BaseRuntimeChildDefinition;
+import ca.uhn.fhir.context.BaseRuntimeElementCompositeDefinition;
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.RuntimeResourceDefinition;
+import ca.uhn.fhir.util.StopWatch;
+import org.apache.commons.io.output.NullWriter;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.CodeableConcept;
+import org.hl7.fhir.r4.model.DateTimeType;
+import org.hl7.fhir.r4.model.Enumerations;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Quantity;
+import org.hl7.fhir.r4.model.StringType;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CompositeEncodePlanR4Test {
+	private static final Logger ourLog = LoggerFactory.getLogger(CompositeEncodePlanR4Test.class);
+	private static final FhirContext ourCtx = FhirContext.forR4Cached();
+
+	@Test
+	public void testPlanIsCachedOnDefinition() {
+		RuntimeResourceDefinition def = ourCtx.getResourceDefinition("Patient");
+		assertSame(def.getEncodePlan(), def.getEncodePlan());
+	}
+
+	@Test
+	public void testPlanMatchesDefinition() {
+		RuntimeResourceDefinition def = ourCtx.getResourceDefinition("Observation");
+		List<BaseRuntimeChildDefinition> children = def.getChildrenAndExtension();
+		List<CompositeEncodePlan.ChildPlan> plans = def.getEncodePlan().getChildren();
+
+		assertEquals(children.size(), plans.size());
+		for (int i = 0; i < children.size(); i++) {
+			CompositeEncodePlan.ChildPlan plan = plans.get(i);
+			BaseRuntimeChildDefinition child = children.get(i);
+			assertSame(child, plan.getDef());
+			String name = child.getElementName();
+			assertEquals("id".equals(name), plan.isId(), name);
+			assertEquals("text".equals(name), plan.isNarrative(), name);
+			assertEquals("contained".equals(name), plan.isContainedResources(), name);
+			assertEquals("extension".equals(name) || "modifierExtension".equals(name), plan.isExtension(), name);
+			assertEquals(child.isMultipleCardinality(), plan.isMultipleCardinality(), name);
+		}
+	}
+
+	@Test
+	public void testEncodeChoiceTypesAndPrimitiveExtensions() {
+		Observation obs = new Observation();
+		obs.setStatus(Observation.ObservationStatus.FINAL);
+		obs.getStatusElement().addExtension("http://foo", new StringType("FOO"));
+		obs.setValue(new Quantity().setValue(123).setUnit("mg"));
+		Observation obs2 = new Observation();
+		obs2.setValue(new StringType("VALUE"));
+		obs2.getCode().addCoding().setCode("CODE");
+
+		IParser parser = ourCtx.newJsonParser();
+		// Encode twice so that the second pass uses the cached datatype resolution
+		for (int i = 0; i < 2; i++) {
+			String encoded = parser.encodeResourceToString(obs);
+			assertThat(encoded).contains("\"valueQuantity\":{\"value\":123,\"unit\":\"mg\"}");
+			assertThat(encoded).contains("\"status\":\"final\",\"_status\":{\"extension\":[{\"url\":\"http://foo\",\"valueString\":\"FOO\"}]}");
+
+			encoded = parser.encodeResourceToString(obs2);
+			assertThat(encoded).contains("\"valueString\":\"VALUE\"");
+			assertThat(encoded).doesNotContain("valueQuantity");
+		}
+
+		Patient patient = new Patient();
+		patient.setGender(Enumerations.AdministrativeGender.MALE);
+		patient.addName().addGiven("A").addGiven("B");
+		patient.getNameFirstRep().getGiven().get(1).addExtension("http://foo", new StringType("B"));
+		String encoded = ourCtx.newXmlParser().encodeResourceToString(patient);
+		assertThat(encoded).contains("<gender value=\"male\"/>");
+		encoded = parser.encodeResourceToString(patient);
+		assertThat(encoded).contains("\"given\":[\"A\",\"B\"],\"_given\":[null,{\"extension\":[{\"url\":\"http://foo\",\"valueString\":\"B\"}]}]");
+	}
+
+	@Test
+	public void testDeclaredExtensionChildIsExtension() {
+		BaseRuntimeElementCompositeDefinition<?> def = (BaseRuntimeElementCompositeDefinition<?>) ourCtx.getElementDefinition(MyPatientWithCustomUrlExtension.class);
+		boolean foundDeclaredExtension = false;
+		for (CompositeEncodePlan.ChildPlan next : def.getEncodePlan().getChildren()) {
+			if (next.getDef().getExtensionUrl() != null) {
+				assertTrue(next.isExtension());
+				foundDeclaredExtension = true;
+			}
+		}
+		assertTrue(foundDeclaredExtension);
+		assertFalse(ourCtx.getResourceDefinition("Patient").getEncodePlan().getChildren().stream().anyMatch(t -> t.getDef().getExtensionUrl() != null));
+	}
+
+	@Test
+	@Disabled
+	public void testTimingsEncodePatient() throws IOException {
+		Patient patient = new Patient();
+		patient.setId("Patient/123");
+		patient.addIdentifier().setSystem("http://foo").setValue("bar");
+		patient.addName().setFamily("FAMILY").addGiven("GIVEN1").addGiven("GIVEN2");
+		patient.setGender(Enumerations.AdministrativeGender.FEMALE);
+		patient.getBirthDateElement().setValueAsString("2000-01-01");
+		patient.addAddress().addLine("123 Fake Street").setCity("Toronto").setCountry("CA");
+		runTimings("Patient", patient, 100000);
+	}
+
+	@Test
+	@Disabled
+	public void testTimingsEncodeObservation() throws IOException {
+		runTimings("Observation", createObservation(0), 100000);
+	}
+
+	@Test
+	@Disabled
+	public void testTimingsEncodeLargeBundle() throws IOException {
+		Bundle bundle = new Bundle();
+		bundle.setType(Bundle.BundleType.SEARCHSET);
+		for (int i = 0; i < 5000; i++) {
+			bundle.addEntry().setFullUrl("http://foo/Observation/" + i).setResource(createObservation(i));
+		}
+		runTimings("Bundle", bundle, 50);
+	}
+
+	private static Observation createObservation(int theIndex) {
+		Observation obs = new Observation();
+		obs.setId("Observation/" + theIndex);
+		obs.setStatus(Observation.ObservationStatus.FINAL);
+		obs.setCode(new CodeableConcept().addCoding(new org.hl7.fhir.r4.model.Coding("http://loinc.org", "1234-5", "Display")));
+		obs.getSubject().setReference("Patient/123");
+		obs.setEffective(new DateTimeType(new Date()));
+		obs.setValue(new Quantity().setSystem("http://unitsofmeasure.org").setCode("mg/L").setUnit("mg/L").setValue(123.567d));
+		return obs;
+	}
+
+	private static void runTimings(String theName, IBaseResource theResource, int thePasses) throws IOException {
+		for (String encoding : new String[]{"json", "xml"}) {
+			IParser parser = "json".equals(encoding) ? ourCtx.newJsonParser() : ourCtx.newXmlParser();
+			for (int i = 0; i < thePasses / 5; i++) {
+				parser.encodeResourceToWriter(theResource, new NullWriter());
+			}
+
+			StopWatch sw = new StopWatch();
+			for (int i = 0; i < thePasses; i++) {
+				parser.encodeResourceToWriter(theResource, new NullWriter());
+			}
+			ourLog.info("{} {} - Encoded {} passes - {} / pass - {} / second",
+				theName, encoding, thePasses, sw.formatMillisPerOperation(thePasses), sw.formatThroughput(thePasses, TimeUnit.SECONDS));
+		}
+	}
+}
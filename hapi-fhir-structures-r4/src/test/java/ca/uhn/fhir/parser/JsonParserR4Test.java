@@ -28,6 +28,7 @@ import org.hl7.fhir.r4.model.Encounter;
 import org.hl7.fhir.r4.model.Extension;
 import org.hl7.fhir.r4.model.HumanName;
 import org.hl7.fhir.r4.model.Identifier;
+import org.hl7.fhir.r4.model.InstantType;
 import org.hl7.fhir.r4.model.Medication;
 import org.hl7.fhir.r4.model.MedicationDispense;
 import org.hl7.fhir.r4.model.MedicationRequest;
@@ -1376,6 +1377,57 @@ public class JsonParserR4Test extends BaseTest {
 	}
 
 
+	@Test
+	public void testEncodePassThroughJson() {
+		Patient patient = new Patient();
+		patient.setId("Patient/123/_history/2");
+		patient.getMeta().setLastUpdatedElement(new InstantType("2024-01-01T00:00:00Z"));
+		patient.getMeta().addTag("http://tags", "tag0", null);
+		patient.setActive(false);
+		// The stored text deliberately differs from the model so that we can tell which was used
+		patient.setUserData(Constants.RESOURCE_PASS_THROUGH_JSON, "{\"resourceType\":\"Patient\",\"meta\":{\"versionId\":\"1\"},\"active\":true,\"name\":[{\"family\":\"STORED\"}]}");
+
+		String encoded = ourCtx.newJsonParser().encodeResourceToString(patient);
+		assertEquals("{\"resourceType\":\"Patient\",\"id\":\"123\",\"meta\":{\"versionId\":\"2\",\"lastUpdated\":\"2024-01-01T00:00:00Z\",\"tag\":[{\"system\":\"http://tags\",\"code\":\"tag0\"}]},\"active\":true,\"name\":[{\"family\":\"STORED\"}]}", encoded);
+
+		// Inside a bundle
+		Bundle bundle = new Bundle();
+		bundle.setType(Bundle.BundleType.SEARCHSET);
+		bundle.addEntry().setResource(patient);
+		bundle.addEntry().setResource(new Patient().setActive(false));
+		encoded = ourCtx.newJsonParser().encodeResourceToString(bundle);
+		assertThat(encoded).contains("\"resource\":{\"resourceType\":\"Patient\",\"id\":\"123\",\"meta\":{");
+		assertThat(encoded).contains("\"active\":true,\"name\":[{\"family\":\"STORED\"}]}},{\"resource\":{\"resourceType\":\"Patient\",\"active\":false}}");
+
+		// Only resource type and meta in the stored text
+		patient.setUserData(Constants.RESOURCE_PASS_THROUGH_JSON, "{\"resourceType\":\"Patient\"}");
+		encoded = ourCtx.newJsonParser().encodeResourceToString(patient);
+		assertThat(encoded).endsWith("\"code\":\"tag0\"}]}}");
+	}
+
+	@Test
+	public void testEncodePassThroughJsonNotUsedWhenOutputWouldDiffer() {
+		Patient patient = new Patient();
+		patient.setId("Patient/123");
+		patient.setActive(false);
+		patient.getText().setDivAsString("<div>MODEL</div>");
+		patient.setUserData(Constants.RESOURCE_PASS_THROUGH_JSON, "{\"resourceType\":\"Patient\",\"active\":true}");
+
+		assertThat(ourCtx.newJsonParser().setPrettyPrint(true).encodeResourceToString(patient)).contains("\"active\": false");
+		assertThat(ourCtx.newJsonParser().setSummaryMode(true).encodeResourceToString(patient)).contains("\"active\":false");
+		assertThat(ourCtx.newJsonParser().setSuppressNarratives(true).encodeResourceToString(patient)).contains("\"active\":false");
+		assertThat(ourCtx.newJsonParser().setEncodeElements(Set.of("Patient.active")).encodeResourceToString(patient)).contains("\"active\":false");
+		assertThat(ourCtx.newJsonParser().setStripVersionsFromReferences(false).encodeResourceToString(patient)).contains("\"active\":false");
+		assertThat(ourCtx.newXmlParser().encodeResourceToString(patient)).contains("<active value=\"false\"/>");
+
+		Observation obs = new Observation();
+		obs.getContained().add(patient);
+		obs.getSubject().setReference("#123");
+		assertThat(ourCtx.newJsonParser().encodeResourceToString(obs)).contains("\"active\":false");
+
+		assertThat(ourCtx.newJsonParser().encodeResourceToString(patient)).contains("\"active\":true");
+	}
+
 	@AfterAll
 	public static void afterClassClearContext() {
 		TestUtil.randomizeLocaleAndTimezone();
@@ -0,0 +1,287 @@
+package ca.uhn.fhir.parser;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.test.BaseTest;
+import ca.uhn.fhir.util.StopWatch;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Binary;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.DateTimeType;
+import org.hl7.fhir.r4.model.Encounter;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Quantity;
+import org.hl7.fhir.r4.model.StringType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class JsonTokenStreamParserR4Test extends BaseTest {
+	private static final Logger ourLog = LoggerFactory.getLogger(JsonTokenStreamParserR4Test.class);
+	private static final FhirContext ourCtx = FhirContext.forR4();
+
+	@AfterEach
+	public void afterEach() {
+		ourCtx.getParserOptions().setParseJsonUsingTokenStream(false);
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {
+		"/bundle-with-two-patient-resources.json",
+		"/bundle-circ-ref.json",
+		"/entities-from-cerner.json",
+		"/multi-thread-parsing-issue-bundle.json",
+		"/observation-decimal-element-with-leading-plus.json",
+		"/static-capabilitystatement.json"
+	})
+	public void testParseMatchesTreeParser(String theClasspath) throws IOException {
+		String input = loadResource(theClasspath);
+		assertSameAsTreeParser(input);
+	}
+
+	@Test
+	public void testParseBigBundleMatchesTreeParser() {
+		String input = ourCtx.newJsonParser().encodeResourceToString(createBigBundle(10));
+		assertSameAsTreeParser(input);
+	}
+
+	@Test
+	public void testParseResourceTypeNotFirst() {
+		String input = """
+			{
+			  "id": "123",
+			  "contained": [ {
+			    "id": "1",
+			    "status": "arrived",
+			    "resourceType": "Encounter"
+			  } ],
+			  "status": "final",
+			  "encounter": { "reference": "#1" },
+			  "resourceType": "Observation"
+			}""";
+
+		Observation obs = parseStreaming(Observation.class, input);
+
+		assertEquals("Observation/123", obs.getIdElement().getValue());
+		assertEquals(Observation.ObservationStatus.FINAL, obs.getStatus());
+		Encounter enc = (Encounter) obs.getEncounter().getResource();
+		assertEquals(Encounter.EncounterStatus.ARRIVED, enc.getStatus());
+		assertSameAsTreeParser(input);
+	}
+
+	@Test
+	public void testParsePrimitiveExtensionsBeforeAndAfterValue() {
+		String input = """
+			{
+			  "resourceType": "Patient",
+			  "_gender": { "id": "G", "extension": [ { "url": "http://foo", "valueString": "GENDER" } ] },
+			  "gender": "male",
+			  "name": [ {
+			    "given": [ "A", null, "C" ],
+			    "_given": [ null, { "extension": [ { "valueString": "B", "url": "http://bar" } ] }, { "id": "C" } ]
+			  } ],
+			  "_birthDate": { "extension": [ { "url": "http://baz", "valueCode": "unknown" } ] }
+			}""";
+
+		Patient patient = parseStreaming(Patient.class, input);
+
+		assertEquals("G", patient.getGenderElement().getId());
+		assertEquals("GENDER", patient.getGenderElement().getExtensionString("http://foo"));
+		assertEquals(3, patient.getNameFirstRep().getGiven().size());
+		assertEquals("A", patient.getNameFirstRep().getGiven().get(0).getValue());
+		assertNull(patient.getNameFirstRep().getGiven().get(1).getValue());
+		assertEquals("B", patient.getNameFirstRep().getGiven().get(1).getExtensionString("http://bar"));
+		assertEquals("C", patient.getNameFirstRep().getGiven().get(2).getId());
+		assertNull(patient.getBirthDateElement().getValue());
+		assertEquals("unknown", patient.getBirthDateElement().getExtensionString("http://baz"));
+		assertSameAsTreeParser(input);
+	}
+
+	@Test
+	public void testParseExtensionUrlNotFirst() {
+		String input = """
+			{
+			  "resourceType": "Patient",
+			  "extension": [ {
+			    "extension": [ { "valueString": "CHILD", "url": "child" } ],
+			    "url": "http://parent"
+			  } ]
+			}""";
+
+		Patient patient = parseStreaming(Patient.class, input);
+
+		assertEquals("http://parent", patient.getExtension().get(0).getUrl());
+		assertEquals("CHILD", ((StringType) patient.getExtension().get(0).getExtension().get(0).getValue()).getValue());
+		assertSameAsTreeParser(input);
+	}
+
+	@Test
+	public void testParseDecimalPrecisionPreservedWhenBuffered() {
+		String input = """
+			{
+			  "valueQuantity": { "value": 1.50000000000000000001 },
+			  "status": "final",
+			  "resourceType": "Observation"
+			}""";
+
+		Observation obs = parseStreaming(Observation.class, input);
+
+		assertEquals("1.50000000000000000001", obs.getValueQuantity().getValueElement().getValueAsString());
+		assertSameAsTreeParser(input);
+	}
+
+	@Test
+	public void testParseLargeBinary() {
+		Binary binary = new Binary();
+		binary.setContentType("application/octet-stream");
+		binary.setData(new byte[5 * 1024 * 1024]);
+		String input = ourCtx.newJsonParser().encodeResourceToString(binary);
+
+		Binary parsed = parseStreaming(Binary.class, input);
+
+		assertEquals(5 * 1024 * 1024, parsed.getData().length);
+	}
+
+	@Test
+	public void testParseMissingResourceType() {
+		try {
+			parseStreaming(Patient.class, "{\"id\": \"123\"}");
+			fail();
+		} catch (DataFormatException e) {
+			assertEquals(Msg.code(2557) + "Invalid JSON content detected, missing required element: 'resourceType'", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testParseMissingNestedResourceType() {
+		try {
+			parseStreaming(Bundle.class, "{\"resourceType\": \"Bundle\", \"entry\": [ { \"resource\": { \"id\": \"123\" } } ] }");
+			fail();
+		} catch (DataFormatException e) {
+			assertEquals(Msg.code(2558) + "Missing required element 'resourceType' from JSON resource object, unable to parse", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testParseNotAnObject() {
+		try {
+			parseStreaming(Patient.class, "[ ]");
+			fail();
+		} catch (DataFormatException e) {
+			assertEquals(Msg.code(2555) + "Content does not appear to be FHIR JSON, first non-whitespace character was: '[' (must be '{')", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testParseTrailingContent() {
+		try {
+			parseStreaming(Patient.class, "{\"resourceType\": \"Patient\"} {}");
+			fail();
+		} catch (DataFormatException e) {
+			assertThat(e.getMessage()).startsWith(Msg.code(2556));
+		}
+	}
+
+	@Test
+	public void testParseInvalidJson() {
+		try {
+			parseStreaming(Patient.class, "{\"resourceType\": \"Patient\", \"id\": ");
+			fail();
+		} catch (DataFormatException e) {
+			assertThat(e.getMessage()).startsWith(Msg.code(1861) + "Failed to parse JSON encoded FHIR content: ");
+		}
+	}
+
+	/**
+	 * Compares throughput and allocation of the tree based and token stream based parsers
+	 */
+	@Test
+	@Disabled
+	public void testTimingsInputTreeVersusTokenStream() {
+		String input = ourCtx.newJsonParser().encodeResourceToString(createBigBundle(5000));
+		ourLog.info("Input is {} chars", input.length());
+
+		for (boolean tokenStream : new boolean[]{false, true, false, true}) {
+			ourCtx.getParserOptions().setParseJsonUsingTokenStream(tokenStream);
+			IParser parser = ourCtx.newJsonParser();
+			for (int i = 0; i < 20; i++) {
+				parser.parseResource(input);
+			}
+
+			long allocatedBefore = getAllocatedBytes();
+			StopWatch sw = new StopWatch();
+			int passes = 100;
+			for (int i = 0; i < passes; i++) {
+				parser.parseResource(input);
+			}
+			long allocated = getAllocatedBytes() - allocatedBefore;
+			ourLog.info("TokenStream[{}] parsed {} passes - {} / pass - {} / second - {} MB allocated / pass",
+				tokenStream, passes, sw.formatMillisPerOperation(passes), sw.formatThroughput(passes, TimeUnit.SECONDS), allocated / passes / (1024 * 1024));
+		}
+	}
+
+	private static long getAllocatedBytes() {
+		com.sun.management.ThreadMXBean threadMxBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		return threadMxBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	private static <T extends IBaseResource> T parseStreaming(Class<T> theType, String theInput) {
+		ourCtx.getParserOptions().setParseJsonUsingTokenStream(true);
+		try {
+			return ourCtx.newJsonParser().parseResource(theType, theInput);
+		} finally {
+			ourCtx.getParserOptions().setParseJsonUsingTokenStream(false);
+		}
+	}
+
+	private static void assertSameAsTreeParser(String theInput) {
+		IParser encoder = ourCtx.newJsonParser().setPrettyPrint(true);
+
+		ourCtx.getParserOptions().setParseJsonUsingTokenStream(false);
+		String expected = encoder.encodeResourceToString(ourCtx.newJsonParser().parseResource(theInput));
+		ourCtx.getParserOptions().setParseJsonUsingTokenStream(true);
+		String actual = encoder.encodeResourceToString(ourCtx.newJsonParser().parseResource(theInput));
+		ourCtx.getParserOptions().setParseJsonUsingTokenStream(false);
+
+		assertEquals(expected, actual);
+	}
+
+	private static Bundle createBigBundle(int theEntryCount) {
+		Bundle b = new Bundle();
+		for (int i = 0; i < theEntryCount; i++) {
+			Observation obs = new Observation();
+			obs.setId("Observation/" + i);
+
+			Patient pt = new Patient();
+			pt.addName().setFamily("FAM").addGiven("GIVEN" + i);
+			obs.getSubject().setResource(pt);
+
+			Encounter enc = new Encounter();
+			enc.setId("#1");
+			enc.setStatus(Encounter.EncounterStatus.ARRIVED);
+			obs.getEncounter().setReference("#1");
+			obs.getContained().add(enc);
+			obs.setEffective(new DateTimeType(new Date()));
+			obs.addIdentifier().setSystem("http://foo").setValue("blah");
+			obs.setValue(new Quantity().setSystem("UCUM").setCode("mg/L").setUnit("mg/L").setValue(123.567d));
+
+			b.addEntry().setFullUrl("http://foo/Observation/" + i).setResource(obs);
+		}
+		return b;
+	}
+}
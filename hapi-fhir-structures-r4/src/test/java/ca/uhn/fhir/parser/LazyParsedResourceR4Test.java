@@ -0,0 +1,119 @@
+package ca.uhn.fhir.parser;
+
+import ca.uhn.fhir.context.FhirContext;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Quantity;
+import org.hl7.fhir.r4.model.StringType;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class LazyParsedResourceR4Test {
+	private static final FhirContext ourCtx = FhirContext.forR4Cached();
+
+	@Test
+	public void testEncodeUntouchedResourceCopiesRawContent() throws IOException {
+		String input = ourCtx.newJsonParser().setPrettyPrint(true).encodeResourceToString(createPatient());
+
+		LazyParsedResource<Patient> lazy = ourCtx.newJsonParser().parseResourceLazily(Patient.class, input);
+
+		assertEquals("Patient", lazy.getResourceType());
+		assertEquals(input, lazy.encodeResourceToString());
+		StringWriter writer = new StringWriter();
+		lazy.encodeResourceToWriter(writer);
+		assertEquals(input, writer.toString());
+		assertFalse(lazy.isMaterialized());
+	}
+
+	@Test
+	public void testEncodeMaterializedResourceUsesModel() {
+		String input = ourCtx.newJsonParser().encodeResourceToString(createPatient());
+
+		LazyParsedResource<Patient> lazy = ourCtx.newJsonParser().parseResourceLazily(Patient.class, input);
+		lazy.getResource().getNameFirstRep().setFamily("CHANGED");
+
+		assertTrue(lazy.isMaterialized());
+		assertThat(lazy.encodeResourceToString()).contains("\"family\":\"CHANGED\"");
+	}
+
+	@Test
+	public void testPartialResourceOnlyContainsRequestedElements() {
+		String input = ourCtx.newJsonParser().encodeResourceToString(createPatient());
+
+		LazyParsedResource<IBaseResource> lazy = ourCtx.newJsonParser().parseResourceLazily(input);
+		Patient partial = (Patient) lazy.getPartialResource("Patient.name.family", "birthDate");
+
+		assertEquals("Patient/123/_history/2", partial.getIdElement().getValue());
+		assertEquals("2", partial.getMeta().getVersionId());
+		assertEquals("FAMILY", partial.getNameFirstRep().getFamily());
+		assertEquals("GIVEN", partial.getNameFirstRep().getGivenAsSingleString());
+		assertEquals("EXT", partial.getBirthDateElement().getExtensionString("http://foo"));
+		assertFalse(partial.hasAddress());
+		assertFalse(partial.hasText());
+		assertFalse(lazy.isMaterialized());
+
+		Patient full = (Patient) lazy.getPartialResource("Patient");
+		assertTrue(full.hasAddress());
+		assertFalse(lazy.isMaterialized());
+	}
+
+	@Test
+	public void testPartialResourcePreservesDecimalPrecision() {
+		String input = """
+			{
+			  "resourceType": "Observation",
+			  "status": "final",
+			  "valueQuantity": { "value": 1.50000000000000000001, "unit": "mg" }
+			}""";
+
+		LazyParsedResource<Observation> lazy = ourCtx.newJsonParser().parseResourceLazily(Observation.class, input);
+		Observation partial = lazy.getPartialResource("value");
+
+		assertEquals("1.50000000000000000001", ((Quantity) partial.getValue()).getValueElement().getValueAsString());
+		assertFalse(partial.hasStatus());
+	}
+
+	@Test
+	public void testPartialResourceXmlParsesFullResource() {
+		String input = ourCtx.newXmlParser().encodeResourceToString(createPatient());
+
+		LazyParsedResource<Patient> lazy = ourCtx.newXmlParser().parseResourceLazily(Patient.class, input);
+		assertEquals(input, lazy.encodeResourceToString());
+
+		Patient partial = lazy.getPartialResource("name");
+		assertTrue(partial.hasAddress());
+		assertEquals("Patient", lazy.getResourceType());
+	}
+
+	@Test
+	public void testPartialResourceInvalidJson() {
+		LazyParsedResource<Patient> lazy = ourCtx.newJsonParser().parseResourceLazily(Patient.class, "{\"resourceType\": \"Patient\", \"name\": [");
+		try {
+			lazy.getPartialResource("name");
+			fail();
+		} catch (DataFormatException e) {
+			assertThat(e.getMessage()).contains("Failed to parse JSON encoded FHIR content");
+		}
+	}
+
+	private static Patient createPatient() {
+		Patient patient = new Patient();
+		patient.setId("Patient/123/_history/2");
+		patient.getMeta().setVersionId("2");
+		patient.getText().setDivAsString("<div>Some narrative</div>");
+		patient.addName().setFamily("FAMILY").addGiven("GIVEN");
+		patient.getBirthDateElement().setValueAsString("2000-01-01");
+		patient.getBirthDateElement().addExtension("http://foo", new StringType("EXT"));
+		patient.addAddress().setCity("Toronto");
+		return patient;
+	}
+}
@@ -1,14 +1,36 @@
 package ca.uhn.fhir.parser;
 
 import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.i18n.Msg;
 import ca.uhn.fhir.util.BundleBuilder;
+import ca.uhn.fhir.util.StopWatch;
 import ca.uhn.fhir.util.TestUtil;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.r4.model.Patient;
 import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThatExceptionOfType;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class NDJsonParserTest {
@@ -118,6 +140,111 @@ public class NDJsonParserTest {
 		});
 	}
 	
+	@Test
+	public void testParseResourcesIncrementally() throws IOException {
+		String ndjson = createNDJson(5).replace("\n", "\n\n");
+
+		List<String> ids = new ArrayList<>();
+		try (NDJsonResourceIterator iter = ((NDJsonParser) ourCtx.newNDJsonParser()).parseResources(new StringReader(ndjson))) {
+			while (iter.hasNext()) {
+				ids.add(iter.next().getIdElement().getIdPart());
+			}
+			assertThatExceptionOfType(NoSuchElementException.class).isThrownBy(iter::next);
+		}
+		assertThat(ids).containsExactly("P0", "P1", "P2", "P3", "P4");
+	}
+
+	@Test
+	public void testParseResourcesInParallelPreservesOrder() {
+		String ndjson = createNDJson(1000);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			NDJsonParser parser = (NDJsonParser) ourCtx.newNDJsonParser();
+			List<String> ids = parser.parseResources(new StringReader(ndjson), executor, 4)
+				.stream()
+				.map(t -> t.getIdElement().getIdPart())
+				.collect(Collectors.toList());
+
+			assertThat(ids).hasSize(1000);
+			for (int i = 0; i < ids.size(); i++) {
+				assertEquals("P" + i, ids.get(i));
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testParseResourcesInvalidLine() {
+		String ndjson = createNDJson(300) + "\n\n{\"resourceType\":\"Patient\",\"active\":\"bad\"\n" + createNDJson(10);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			NDJsonParser parser = (NDJsonParser) ourCtx.newNDJsonParser();
+			assertThatExceptionOfType(DataFormatException.class)
+				.isThrownBy(() -> parser.parseResources(new StringReader(ndjson), executor, 2).forEachRemaining(t -> {}))
+				.withMessageStartingWith(Msg.code(2564) + "Failed to parse NDJSON line 302: ");
+			assertThatExceptionOfType(DataFormatException.class)
+				.isThrownBy(() -> parser.parseResources(new StringReader(ndjson)).forEachRemaining(t -> {}))
+				.withMessageStartingWith(Msg.code(2564) + "Failed to parse NDJSON line 302: ");
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Compares parsing a large NDJSON file sequentially and in parallel
+	 */
+	@Test
+	@Disabled
+	public void testTimingsParseLargeFile() throws IOException {
+		File file = File.createTempFile("ndjson-timings", ".ndjson");
+		file.deleteOnExit();
+		try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+			IParser jsonParser = ourCtx.newJsonParser();
+			for (int i = 0; i < 1000000; i++) {
+				Patient p = new Patient();
+				p.setId("Patient/P" + i);
+				p.addName().setFamily("FAMILY" + i).addGiven("GIVEN");
+				p.addIdentifier().setSystem("http://foo").setValue("ID" + i);
+				p.getBirthDateElement().setValueAsString("2000-01-01");
+				writer.write(jsonParser.encodeResourceToString(p));
+				writer.write("\n");
+			}
+		}
+		ourLog.info("Wrote {} MB", file.length() / (1024 * 1024));
+
+		NDJsonParser parser = (NDJsonParser) ourCtx.newNDJsonParser();
+		for (int pass = 0; pass < 2; pass++) {
+			StopWatch sw = new StopWatch();
+			try (NDJsonResourceIterator iter = parser.parseResources(new FileReader(file, StandardCharsets.UTF_8))) {
+				long count = iter.stream().count();
+				ourLog.info("Sequential parsed {} resources in {} - {} / second", count, sw, sw.formatThroughput(count, TimeUnit.SECONDS));
+			}
+
+			sw.restart();
+			int parallelism = Runtime.getRuntime().availableProcessors();
+			try (NDJsonResourceIterator iter = parser.parseResources(new FileReader(file, StandardCharsets.UTF_8), ForkJoinPool.commonPool(), parallelism)) {
+				long count = iter.stream().count();
+				ourLog.info("Parallel ({}) parsed {} resources in {} - {} / second", parallelism, count, sw, sw.formatThroughput(count, TimeUnit.SECONDS));
+			}
+		}
+	}
+
+	private static String createNDJson(int theCount) {
+		IParser jsonParser = ourCtx.newJsonParser();
+		StringBuilder b = new StringBuilder();
+		for (int i = 0; i < theCount; i++) {
+			if (i > 0) {
+				b.append('\n');
+			}
+			Patient p = new Patient();
+			p.setId("Patient/P" + i);
+			p.addName().setFamily("FAMILY" + i);
+			b.append(jsonParser.encodeResourceToString(p));
+		}
+		return b.toString();
+	}
+
 	@AfterAll
 	public static void afterClassClearContext() {
 		TestUtil.randomizeLocaleAndTimezone();
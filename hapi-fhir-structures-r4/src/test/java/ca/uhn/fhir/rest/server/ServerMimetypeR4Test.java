@@ -20,9 +20,11 @@ import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.client.methods.HttpTrace;
+import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
 import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Bundle;
 import org.hl7.fhir.r4.model.CapabilityStatement;
 import org.hl7.fhir.r4.model.CodeType;
 import org.hl7.fhir.r4.model.DateType;
@@ -338,6 +340,40 @@ public class ServerMimetypeR4Test {
 		assertEquals(Constants.CT_FHIR_JSON_NEW, status.getFirstHeader("content-type").getValue().replaceAll(";.*", ""));
 	}
 
+	@Test
+	public void testSearchWithFormatCbor() throws Exception {
+
+		HttpGet httpGet = new HttpGet(ourServer.getBaseUrl() + "/Patient?_format=cbor");
+		try (CloseableHttpResponse status = ourClient.execute(httpGet)) {
+			byte[] responseContent = IOUtils.toByteArray(status.getEntity().getContent());
+
+			assertEquals(200, status.getStatusLine().getStatusCode());
+			assertEquals(Constants.CT_FHIR_CBOR, status.getFirstHeader("content-type").getValue().replaceAll(";.*", ""));
+			Bundle bundle = ourCtx.newCborParser().parseResource(Bundle.class, responseContent);
+			assertEquals(2, bundle.getEntry().size());
+			assertEquals("The Family", ((Patient) bundle.getEntry().get(1).getResource()).getNameFirstRep().getFamily());
+		}
+	}
+
+	@Test
+	public void testCreateWithCbor() throws Exception {
+		Patient p = new Patient();
+		p.addName().setFamily("FAMILY");
+		byte[] enc = ourCtx.newCborParser().encodeResourceToBytes(p);
+
+		HttpPost httpPost = new HttpPost(ourServer.getBaseUrl() + "/Patient");
+		httpPost.setEntity(new ByteArrayEntity(enc, ContentType.parse(Constants.CT_FHIR_CBOR)));
+		httpPost.addHeader(Constants.HEADER_ACCEPT, Constants.CT_FHIR_CBOR);
+		try (CloseableHttpResponse status = ourClient.execute(httpPost)) {
+			byte[] responseContent = IOUtils.toByteArray(status.getEntity().getContent());
+
+			assertEquals(201, status.getStatusLine().getStatusCode());
+			assertEquals(Constants.CT_FHIR_CBOR, status.getFirstHeader("content-type").getValue().replaceAll(";.*", ""));
+			Patient created = ourCtx.newCborParser().parseResource(Patient.class, responseContent);
+			assertEquals("FAMILY", created.getNameFirstRep().getFamily());
+		}
+	}
+
 	@Test
 	public void testSearchWithFormatXmlLegacy() throws Exception {
 
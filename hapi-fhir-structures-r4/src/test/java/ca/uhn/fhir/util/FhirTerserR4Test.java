@@ -1,6 +1,7 @@
 package ca.uhn.fhir.util;
 
 import ca.uhn.fhir.context.BaseRuntimeChildDefinition;
+import ca.uhn.fhir.context.BaseRuntimeElementCompositeDefinition;
 import ca.uhn.fhir.context.BaseRuntimeElementDefinition;
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.i18n.Msg;
@@ -43,6 +44,7 @@ import org.hl7.fhir.r4.model.StringType;
 import org.hl7.fhir.r4.model.Substance;
 import org.hl7.fhir.r4.model.ValueSet;
 import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.slf4j.Logger;
@@ -1579,6 +1581,112 @@ public class FhirTerserR4Test {
 		}
 	}
 
+	@Test
+	public void testCompiledPath() {
+		Patient patient = new Patient();
+		patient.addName().setFamily("FAMILY1").addGiven("GIVEN1");
+		patient.addName().setFamily("FAMILY2").addGiven("GIVEN2").addGiven("GIVEN3");
+		patient.addExtension("http://foo", new StringType("FOO"));
+		FhirTerser terser = myCtx.newTerser();
+
+		ICompiledTerserPath given = terser.compile(Patient.class, "Patient.name.given");
+		assertEquals("Patient.name.given", given.getPath());
+		assertThat(given.getValues(patient, StringType.class)).extracting(StringType::getValue).containsExactly("GIVEN1", "GIVEN2", "GIVEN3");
+		assertEquals(terser.getValues(patient, "Patient.name.given"), given.getValues(patient));
+		assertEquals("GIVEN1", given.getSinglePrimitiveValue(patient).orElseThrow());
+
+		ICompiledTerserPath family = terser.compile("Patient", "name.family");
+		assertThat(family.getValues(patient)).hasSize(2);
+		assertFalse(family.getSingleValue(new Patient(), StringType.class).isPresent());
+
+		ICompiledTerserPath extension = terser.compile(Patient.class, "extension('http://foo').valueString");
+		assertEquals(terser.getValues(patient, "extension('http://foo').valueString"), extension.getValues(patient));
+		assertEquals("FOO", ((StringType) extension.getValues(patient).get(0)).getValue());
+
+		// Paths for a different resource type never match
+		assertThat(terser.compile(Patient.class, "Observation.status").getValues(patient)).isEmpty();
+	}
+
+	@Test
+	public void testCompiledPathChoiceType() {
+		Observation obs = new Observation();
+		obs.setValue(new Quantity().setValue(123).setUnit("mg"));
+		FhirTerser terser = myCtx.newTerser();
+
+		assertThat(terser.compile(Observation.class, "Observation.valueQuantity.value").getValues(obs)).hasSize(1);
+		assertThat(terser.compile(Observation.class, "Observation.value[x]").getValues(obs)).hasSize(1);
+		assertThat(terser.compile(Observation.class, "Observation.valueString").getValues(obs)).isEmpty();
+	}
+
+	@Test
+	public void testCompiledPathIsCached() {
+		ICompiledTerserPath first = myCtx.newTerser().compile(Patient.class, "Patient.name.family");
+		ICompiledTerserPath second = myCtx.newTerser().compile("Patient", "Patient.name.family");
+		assertThat(second).isSameAs(first);
+	}
+
+	@Test
+	public void testCompiledPathCacheEvictsLeastRecentlyUsed() {
+		FhirTerser terser = FhirContext.forR4().newTerser();
+		ICompiledTerserPath first = terser.compile(Patient.class, "Patient.extension('http://foo/0').valueString");
+		ICompiledTerserPath last = null;
+		for (int i = 1; i <= BaseRuntimeElementCompositeDefinition.MAX_CACHED_TERSER_PATHS * 2; i++) {
+			last = terser.compile(Patient.class, "Patient.extension('http://foo/" + i + "').valueString");
+		}
+
+		assertThat(terser.compile(Patient.class, last.getPath())).isSameAs(last);
+		assertThat(terser.compile(Patient.class, first.getPath())).isNotSameAs(first);
+	}
+
+	@Test
+	public void testCompiledPathInvalid() {
+		FhirTerser terser = myCtx.newTerser();
+		try {
+			terser.compile(StringType.class, "value");
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertEquals(Msg.code(2568) + "Type is not a composite type: org.hl7.fhir.r4.model.StringType", e.getMessage());
+		}
+
+		ICompiledTerserPath path = terser.compile(Patient.class, "Patient.foo");
+		try {
+			path.getValues(new Patient());
+			fail();
+		} catch (DataFormatException e) {
+			assertThat(e.getMessage()).contains("Unknown child name 'foo'");
+		}
+	}
+
+	/**
+	 * Compares repeated evaluation of a path using the string based API against
+	 * a compiled path
+	 */
+	@Test
+	@Disabled
+	public void testTimingsCompiledPath() {
+		Patient patient = new Patient();
+		patient.addName().setFamily("FAMILY").addGiven("GIVEN1").addGiven("GIVEN2");
+		patient.addIdentifier().setSystem("http://foo").setValue("bar");
+		FhirTerser terser = myCtx.newTerser();
+		ICompiledTerserPath compiled = terser.compile(Patient.class, "Patient.name.given");
+		int count = 5000000;
+
+		for (int pass = 0; pass < 5; pass++) {
+			int total = 0;
+			StopWatch sw = new StopWatch();
+			for (int i = 0; i < count; i++) {
+				total += terser.getValues(patient, "Patient.name.given").size();
+			}
+			ourLog.info("Pass {}: String path: {} ({})", pass, sw, total);
+
+			sw.restart();
+			for (int i = 0; i < count; i++) {
+				total += compiled.getValues(patient).size();
+			}
+			ourLog.info("Pass {}: Compiled path: {} ({})", pass, sw, total);
+		}
+	}
+
 	@Block
 	public static class MyValueSetExpansionComponent extends ValueSet.ValueSetExpansionComponent {
 		private static final long serialVersionUID = 2624360513249904086L;